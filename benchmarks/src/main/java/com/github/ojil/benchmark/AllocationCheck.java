@@ -0,0 +1,97 @@
+/*
+ * AllocationCheck.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+
+/**
+ * AllocationCheck checks the steady-state allocation of every StageCatalog
+ * stage against its declared budget, and exits with status 1 if any stage is
+ * over budget. Usage:
+ * <p>
+ * <code>java -cp target/benchmarks.jar com.github.ojil.benchmark.AllocationCheck
+ * [-r QVGA|HD1080|UHD4K] [-p] [stage ...]</code>
+ * <p>
+ * With no stage names every stage is checked. -r sets the resolution (QVGA by
+ * default). -p prints the measured bytes per input pixel of each stage in the
+ * format of allocation-budgets.properties, for use when a budget is
+ * deliberately changed.
+ *
+ * @author webb
+ */
+public class AllocationCheck {
+    private static final int WARMUP = 50;
+    private static final int FRAMES = 20;
+
+    private AllocationCheck() {
+    }
+
+    /**
+     * Run the check.
+     *
+     * @param args
+     *            the command line.
+     * @throws ImageError
+     *             if a stage fails or has no declared budget.
+     */
+    public static void main(final String[] args) throws ImageError {
+        Resolution res = Resolution.QVGA;
+        boolean bPrint = false;
+        final List<String> lNames = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-r".equals(args[i]) && (i + 1 < args.length)) { //$NON-NLS-1$
+                res = Resolution.valueOf(args[++i]);
+            } else if ("-p".equals(args[i])) { //$NON-NLS-1$
+                bPrint = true;
+            } else {
+                lNames.add(args[i]);
+            }
+        }
+        if (lNames.isEmpty()) {
+            lNames.addAll(StageCatalog.getNames());
+        }
+        final AllocationHarness harness = new AllocationHarness(AllocationCheck.WARMUP, AllocationCheck.FRAMES);
+        int nOver = 0;
+        for (final String szName : lNames) {
+            final StageCatalog.Case c = StageCatalog.get(szName);
+            final Image<?, ?> image = c.createInput(res);
+            final long lPixels = (long) image.getWidth() * image.getHeight();
+            final long lBytes = harness.measure(c, res);
+            if (bPrint) {
+                System.out.println(String.format("%s=%.1f", szName, (double) lBytes / lPixels)); //$NON-NLS-1$
+                continue;
+            }
+            final long lBudget = harness.getBudget(c, res, image);
+            final boolean bOver = lBytes > lBudget;
+            if (bOver) {
+                nOver++;
+            }
+            System.out.println(String.format("%-32s %12d B/frame %8.1f B/pixel  budget %12d  %s", szName, lBytes, (double) lBytes / lPixels, lBudget, //$NON-NLS-1$
+                    bOver ? "OVER" : "ok")); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (nOver > 0) {
+            System.out.println(nOver + " stage(s) over budget at " + res); //$NON-NLS-1$
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * AllocationHarness.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import com.github.ojil.core.ErrorCodes;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * AllocationHarness measures how many bytes a pipeline allocates per frame once
+ * it has warmed up. A stage (or a Sequence) is pushed a number of warm-up
+ * frames, so that classes are loaded, lazily created state exists and the JIT
+ * compiler has done its work, and then a number of measured frames, reading
+ * the bytes allocated by the current thread from
+ * com.sun.management.ThreadMXBean before and after. Everything is run on the
+ * calling thread, so stages that hand work to other threads are only partly
+ * measured.
+ * <p>
+ * The declared budget of each StageCatalog stage is read from
+ * allocation-budgets.properties, which is kept next to this class. A budget is
+ * given in bytes per input pixel, so one budget covers every resolution; a
+ * stage whose allocation grows faster than its input, such as an FFT, can
+ * declare a separate budget for a resolution as stage.RESOLUTION. A
+ * fixed SLACK is added for the per-push objects (the output image header,
+ * small arrays) that do not grow with the image. A stage that exceeds its
+ * budget has regressed, or has been improved and its budget should be
+ * lowered.
+ *
+ * @author webb
+ */
+public class AllocationHarness {
+    /**
+     * The allowance, in bytes per frame, added to every budget.
+     */
+    public static final long SLACK = 16384;
+
+    private static final String BUDGETS = "allocation-budgets.properties"; //$NON-NLS-1$
+
+    private final com.sun.management.ThreadMXBean bean;
+    private final int nWarmup;
+    private final int nFrames;
+    private Properties propBudgets;
+
+    /**
+     * Creates a new AllocationHarness.
+     *
+     * @param nWarmup
+     *            the number of frames pushed before measuring.
+     * @param nFrames
+     *            the number of frames measured.
+     * @throws ImageError
+     *             if the Java runtime does not report per-thread allocation,
+     *             or the frame counts are not positive.
+     */
+    public AllocationHarness(final int nWarmup, final int nFrames) throws ImageError {
+        final java.lang.management.ThreadMXBean beanThread = ManagementFactory.getThreadMXBean();
+        if (!(beanThread instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) beanThread).isThreadAllocatedMemorySupported()) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, beanThread.toString(), null, null);
+        }
+        if ((nWarmup < 0) || (nFrames <= 0)) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, Integer.toString(nWarmup), Integer.toString(nFrames), null);
+        }
+        bean = (com.sun.management.ThreadMXBean) beanThread;
+        bean.setThreadAllocatedMemoryEnabled(true);
+        this.nWarmup = nWarmup;
+        this.nFrames = nFrames;
+    }
+
+    private long allocated() {
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the declared budget of a catalog stage for an input size.
+     *
+     * @param c
+     *            the catalog case.
+     * @param res
+     *            the resolution.
+     * @param image
+     *            the input image.
+     * @return the budget in bytes per frame.
+     * @throws ImageError
+     *             if no budget is declared for the stage.
+     */
+    public long getBudget(final StageCatalog.Case c, final Resolution res, final Image<?, ?> image) throws ImageError {
+        if (propBudgets == null) {
+            final Properties prop = new Properties();
+            try (InputStream is = AllocationHarness.class.getResourceAsStream(AllocationHarness.BUDGETS)) {
+                if (is == null) {
+                    throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, AllocationHarness.BUDGETS, null, null);
+                }
+                prop.load(is);
+            } catch (final IOException e) {
+                throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, AllocationHarness.BUDGETS, e.toString(), null);
+            }
+            propBudgets = prop;
+        }
+        // a variant without a budget of its own is held to its reference's
+        final String szName = ((c instanceof StageCatalog.Variant) && (propBudgets.getProperty(c.getName()) == null)) ? ((StageCatalog.Variant) c).getReference()
+                : c.getName();
+        final String szBudget = propBudgets.getProperty(szName + "." + res.name(), propBudgets.getProperty(szName)); //$NON-NLS-1$
+        if (szBudget == null) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, c.getName(), AllocationHarness.BUDGETS, null);
+        }
+        final double dPerPixel;
+        try {
+            dPerPixel = Double.parseDouble(szBudget.trim());
+        } catch (final NumberFormatException e) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, c.getName(), szBudget, null);
+        }
+        return (long) Math.ceil(dPerPixel * image.getWidth() * image.getHeight()) + AllocationHarness.SLACK;
+    }
+
+    /**
+     * Measure a catalog stage at a resolution. The input is restored before
+     * every push if the stage works in place; the restore itself allocates
+     * nothing.
+     *
+     * @param c
+     *            the catalog case.
+     * @param res
+     *            the resolution.
+     * @return the mean bytes allocated per frame.
+     * @throws ImageError
+     *             if the stage fails.
+     */
+    public long measure(final StageCatalog.Case c, final Resolution res) throws ImageError {
+        final PipelineStage stage = c.create(res);
+        final Image<?, ?> image = c.createInput(res);
+        final Object[] rSaved = c.isInPlace() ? image.getData().clone() : null;
+        for (int i = 0; i < nWarmup; i++) {
+            AllocationHarness.restore(rSaved, image);
+            c.run(stage, image);
+        }
+        final long lStart = allocated();
+        for (int i = 0; i < nFrames; i++) {
+            AllocationHarness.restore(rSaved, image);
+            c.run(stage, image);
+        }
+        return (allocated() - lStart) / nFrames;
+    }
+
+    /**
+     * Measure a stage or Sequence. The same image is pushed every frame, so
+     * the stage must not modify its input.
+     *
+     * @param stage
+     *            the stage.
+     * @param image
+     *            the input image.
+     * @return the mean bytes allocated per frame.
+     * @throws ImageError
+     *             if the stage fails.
+     */
+    public long measure(final PipelineStage stage, final Image<?, ?> image) throws ImageError {
+        for (int i = 0; i < nWarmup; i++) {
+            stage.push(image);
+            stage.getFront();
+        }
+        final long lStart = allocated();
+        for (int i = 0; i < nFrames; i++) {
+            stage.push(image);
+            stage.getFront();
+        }
+        return (allocated() - lStart) / nFrames;
+    }
+
+    private static void restore(final Object[] rSaved, final Image<?, ?> image) {
+        if (rSaved != null) {
+            System.arraycopy(rSaved, 0, image.getData(), 0, rSaved.length);
+        }
+    }
+}
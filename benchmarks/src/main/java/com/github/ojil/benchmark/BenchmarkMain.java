@@ -0,0 +1,72 @@
+/*
+ * BenchmarkMain.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkMain runs the benchmarks with the settings we compare releases
+ * with: the GC profiler is always enabled, so every result includes the bytes
+ * allocated per operation (gc.alloc.rate.norm) alongside the time, and results
+ * are written as JSON to ojil-benchmarks.json unless -rf / -rff say
+ * otherwise. All other JMH command line options are accepted, for example
+ * <p>
+ * <code>java -jar target/benchmarks.jar StageBenchmark -p resolution=QVGA
+ * -rff ojil-0.0.3.json</code>
+ *
+ * @author webb
+ */
+public class BenchmarkMain {
+    /**
+     * The default result file.
+     */
+    public static final String RESULT_FILE = "ojil-benchmarks.json"; //$NON-NLS-1$
+
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args
+     *            JMH command line options.
+     * @throws CommandLineOptionException
+     *             if the options cannot be parsed.
+     * @throws RunnerException
+     *             if the benchmarks cannot be run.
+     */
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+        final CommandLineOptions cmd = new CommandLineOptions(args);
+        final ChainedOptionsBuilder opts = new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class);
+        if (!cmd.getResultFormat().hasValue()) {
+            opts.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmd.getResult().hasValue()) {
+            opts.result(BenchmarkMain.RESULT_FILE);
+        }
+        new Runner(opts.build()).run();
+    }
+}
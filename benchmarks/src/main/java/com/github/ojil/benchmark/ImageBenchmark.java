@@ -0,0 +1,229 @@
+/*
+ * ImageBenchmark.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.ojil.core.Complex32Image;
+import com.github.ojil.core.Gray16Image;
+import com.github.ojil.core.Gray32Image;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.RgbImage;
+import com.github.ojil.core.RgbVal;
+
+/**
+ * ImageBenchmark measures the core image types themselves: allocating an
+ * image, cloning it, and reading every pixel. Every stage does at least some
+ * of these, so they set the floor for stage costs.
+ *
+ * @author webb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@State(Scope.Thread)
+public class ImageBenchmark {
+    /**
+     * The resolution of the images.
+     */
+    @Param({ "QVGA", "HD1080", "UHD4K" })
+    public Resolution resolution;
+
+    private Gray8Image<?> gray8;
+    private Gray16Image<?> gray16;
+    private Gray32Image<?> gray32;
+    private RgbImage<?> rgb;
+    private Complex32Image<?> complex32;
+
+    /**
+     * Create the images.
+     *
+     * @throws ImageError
+     *             if the images cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws ImageError {
+        gray8 = SyntheticImages.gray8(resolution.getWidth(), resolution.getHeight());
+        gray16 = SyntheticImages.gray16(resolution.getWidth(), resolution.getHeight());
+        gray32 = SyntheticImages.gray32(resolution.getWidth(), resolution.getHeight());
+        rgb = SyntheticImages.rgb(resolution.getWidth(), resolution.getHeight());
+        complex32 = SyntheticImages.complex32(resolution.getFftSize());
+    }
+
+    /**
+     * Allocate a Gray8Image.
+     *
+     * @return the image.
+     */
+    @Benchmark
+    public Object newGray8() {
+        return new Gray8Image<>(resolution.getWidth(), resolution.getHeight());
+    }
+
+    /**
+     * Allocate a Gray16Image.
+     *
+     * @return the image.
+     */
+    @Benchmark
+    public Object newGray16() {
+        return new Gray16Image<>(resolution.getWidth(), resolution.getHeight());
+    }
+
+    /**
+     * Allocate a Gray32Image.
+     *
+     * @return the image.
+     */
+    @Benchmark
+    public Object newGray32() {
+        return new Gray32Image<>(resolution.getWidth(), resolution.getHeight());
+    }
+
+    /**
+     * Allocate an RgbImage.
+     *
+     * @return the image.
+     */
+    @Benchmark
+    public Object newRgb() {
+        return new RgbImage<>(resolution.getWidth(), resolution.getHeight());
+    }
+
+    /**
+     * Allocate a Complex32Image at the resolution's FFT size.
+     *
+     * @return the image.
+     */
+    @Benchmark
+    public Object newComplex32() {
+        return new Complex32Image<>(resolution.getFftSize(), resolution.getFftSize());
+    }
+
+    /**
+     * Clone a Gray8Image.
+     *
+     * @return the copy.
+     */
+    @Benchmark
+    public Object cloneGray8() {
+        return gray8.clone();
+    }
+
+    /**
+     * Clone a Gray16Image.
+     *
+     * @return the copy.
+     */
+    @Benchmark
+    public Object cloneGray16() {
+        return gray16.clone();
+    }
+
+    /**
+     * Clone a Gray32Image.
+     *
+     * @return the copy.
+     */
+    @Benchmark
+    public Object cloneGray32() {
+        return gray32.clone();
+    }
+
+    /**
+     * Clone an RgbImage.
+     *
+     * @return the copy.
+     */
+    @Benchmark
+    public Object cloneRgb() {
+        return rgb.clone();
+    }
+
+    /**
+     * Clone a Complex32Image.
+     *
+     * @return the copy.
+     */
+    @Benchmark
+    public Object cloneComplex32() {
+        return complex32.clone();
+    }
+
+    /**
+     * Read every pixel of a Gray8Image.
+     *
+     * @return the sum of the pixels.
+     */
+    @Benchmark
+    public int sumGray8() {
+        final Byte[] data = gray8.getData();
+        int nSum = 0;
+        for (final Byte b : data) {
+            nSum += b;
+        }
+        return nSum;
+    }
+
+    /**
+     * Read every pixel of a Gray32Image.
+     *
+     * @return the sum of the pixels.
+     */
+    @Benchmark
+    public int sumGray32() {
+        final Integer[] data = gray32.getData();
+        int nSum = 0;
+        for (final Integer n : data) {
+            nSum += n;
+        }
+        return nSum;
+    }
+
+    /**
+     * Read every pixel of an RgbImage and unpack its channels.
+     *
+     * @return the sum of the channels.
+     */
+    @Benchmark
+    public int sumRgb() {
+        final Integer[] data = rgb.getData();
+        int nSum = 0;
+        for (final Integer n : data) {
+            nSum += RgbVal.getR(n) + RgbVal.getG(n) + RgbVal.getB(n);
+        }
+        return nSum;
+    }
+}
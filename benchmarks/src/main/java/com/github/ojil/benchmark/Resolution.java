@@ -0,0 +1,81 @@
+/*
+ * Resolution.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+/**
+ * The frame sizes the benchmarks are run at.
+ *
+ * @author webb
+ */
+public enum Resolution {
+    /**
+     * 320 x 240.
+     */
+    QVGA(320, 240),
+    /**
+     * 1920 x 1080.
+     */
+    HD1080(1920, 1080),
+    /**
+     * 3840 x 2160.
+     */
+    UHD4K(3840, 2160);
+
+    private final int nWidth;
+    private final int nHeight;
+
+    private Resolution(final int nWidth, final int nHeight) {
+        this.nWidth = nWidth;
+        this.nHeight = nHeight;
+    }
+
+    /**
+     * Returns the frame width.
+     *
+     * @return the width in pixels.
+     */
+    public int getWidth() {
+        return nWidth;
+    }
+
+    /**
+     * Returns the frame height.
+     *
+     * @return the height in pixels.
+     */
+    public int getHeight() {
+        return nHeight;
+    }
+
+    /**
+     * Returns the side of the largest power-of-two square that fits in the
+     * frame. Stages built on the FFT only accept square, power-of-two images,
+     * so they are benchmarked at this size instead of the full frame.
+     *
+     * @return the side of the square in pixels.
+     */
+    public int getFftSize() {
+        return Integer.highestOneBit(Math.min(nWidth, nHeight));
+    }
+
+    @Override
+    public String toString() {
+        return name() + "(" + nWidth + "x" + nHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * SequenceBenchmark.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.ojil.algorithm.Complex32IFft;
+import com.github.ojil.algorithm.Gray8Canny;
+import com.github.ojil.algorithm.Gray8CannyHoriz;
+import com.github.ojil.algorithm.Gray8CannyVert;
+import com.github.ojil.algorithm.Gray8ConnComp;
+import com.github.ojil.algorithm.Gray8DetectHaarMultiScale;
+import com.github.ojil.algorithm.Gray8Fft;
+import com.github.ojil.algorithm.Gray8GaussHoriz;
+import com.github.ojil.algorithm.Gray8GaussSmoothVert;
+import com.github.ojil.algorithm.Gray8Threshold;
+import com.github.ojil.algorithm.Gray8WienerDeconv;
+import com.github.ojil.algorithm.PsfGray8;
+import com.github.ojil.algorithm.RgbAvgGray;
+import com.github.ojil.core.CompiledSequence;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.Sequence;
+
+/**
+ * SequenceBenchmark measures the pipelines applications actually run, end to
+ * end, on a color frame: edge detection (RGB to gray, Gaussian smoothing,
+ * Canny), Haar multi-scale detection, connected components of a thresholded
+ * image, and FFT-based restoration. The edge pipeline is measured both as a
+ * Sequence and as a CompiledSequence, which reuses its buffers, and is
+ * compared with the complete edge detector Gray8Canny.
+ *
+ * @author webb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@State(Scope.Thread)
+public class SequenceBenchmark {
+    /**
+     * The resolution of the input.
+     */
+    @Param({ "QVGA", "HD1080", "UHD4K" })
+    public Resolution resolution;
+
+    private Image<?, ?> imageRgb;
+    private Image<?, ?> imageFft;
+    private Sequence seqCanny;
+    private CompiledSequence compiledCanny;
+    private Sequence seqCannyEdges;
+    private Sequence seqHaar;
+    private Sequence seqConnComp;
+    private Sequence seqFft;
+    private Gray8WienerDeconv wiener;
+
+    /**
+     * Create the pipelines and inputs.
+     *
+     * @throws ImageError
+     *             if a pipeline cannot be created.
+     * @throws IOException
+     *             if the Haar cascade cannot be read.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws ImageError, IOException {
+        imageRgb = SyntheticImages.rgb(resolution.getWidth(), resolution.getHeight());
+        imageFft = SyntheticImages.gray8(resolution.getFftSize(), resolution.getFftSize());
+
+        seqCanny = new Sequence(new RgbAvgGray());
+        seqCanny.add(new Gray8GaussHoriz(20));
+        seqCanny.add(new Gray8GaussSmoothVert(20));
+        seqCanny.add(new Gray8CannyHoriz(20));
+        seqCanny.add(new Gray8CannyVert(20));
+
+        compiledCanny = new CompiledSequence(ImageSpec.of(imageRgb), new RgbAvgGray(), new Gray8GaussHoriz(20), new Gray8GaussSmoothVert(20),
+                new Gray8CannyHoriz(20), new Gray8CannyVert(20));
+
+        seqCannyEdges = new Sequence(new RgbAvgGray());
+        seqCannyEdges.add(new Gray8Canny(20, 4, 12));
+
+        seqHaar = new Sequence(new RgbAvgGray());
+        seqHaar.add(new Gray8DetectHaarMultiScale(new ByteArrayInputStream(SyntheticImages.haarCascade(4).getBytes()), 1, 10));
+
+        seqConnComp = new Sequence(new RgbAvgGray());
+        seqConnComp.add(new Gray8Threshold(50, false));
+        seqConnComp.add(new Gray8ConnComp());
+
+        seqFft = new Sequence(new Gray8Fft());
+        seqFft.add(new Complex32IFft(true));
+
+        wiener = new Gray8WienerDeconv(PsfGray8.disk(resolution.getFftSize(), 3), 100);
+    }
+
+    /**
+     * RGB to gray, Gaussian smoothing and Canny edge detection.
+     *
+     * @return the edge image.
+     * @throws ImageError
+     *             if the pipeline fails.
+     */
+    @Benchmark
+    public Image<?, ?> rgbGrayGaussCanny() throws ImageError {
+        seqCanny.push(imageRgb);
+        return seqCanny.getFront();
+    }
+
+    /**
+     * The same pipeline as rgbGrayGaussCanny, run by a CompiledSequence.
+     *
+     * @return the edge image.
+     * @throws ImageError
+     *             if the pipeline fails.
+     */
+    @Benchmark
+    public Image<?, ?> rgbGrayGaussCannyCompiled() throws ImageError {
+        compiledCanny.push(imageRgb);
+        return compiledCanny.getFront();
+    }
+
+    /**
+     * RGB to gray and the complete Canny edge detector, which also does the
+     * Gaussian smoothing, suppression and thresholding.
+     *
+     * @return the edge image.
+     * @throws ImageError
+     *             if the pipeline fails.
+     */
+    @Benchmark
+    public Image<?, ?> rgbGrayCannyEdges() throws ImageError {
+        seqCannyEdges.push(imageRgb);
+        return seqCannyEdges.getFront();
+    }
+
+    /**
+     * RGB to gray and Haar multi-scale detection.
+     *
+     * @return the detection mask.
+     * @throws ImageError
+     *             if the pipeline fails.
+     */
+    @Benchmark
+    public Image<?, ?> haarMultiScale() throws ImageError {
+        seqHaar.push(imageRgb);
+        return seqHaar.getFront();
+    }
+
+    /**
+     * RGB to gray, threshold and connected components.
+     *
+     * @return the labeled image.
+     * @throws ImageError
+     *             if the pipeline fails.
+     */
+    @Benchmark
+    public Image<?, ?> connComp() throws ImageError {
+        seqConnComp.push(imageRgb);
+        return seqConnComp.getFront();
+    }
+
+    /**
+     * Forward and inverse FFT of a square gray image.
+     *
+     * @return the reconstructed image.
+     * @throws ImageError
+     *             if the pipeline fails.
+     */
+    @Benchmark
+    public Image<?, ?> fftRoundTrip() throws ImageError {
+        seqFft.push(imageFft);
+        return seqFft.getFront();
+    }
+
+    /**
+     * Wiener deconvolution of a square gray image.
+     *
+     * @return the restored image.
+     * @throws ImageError
+     *             if the deconvolution fails.
+     */
+    @Benchmark
+    public Image<?, ?> wienerDeconv() throws ImageError {
+        wiener.push(imageFft);
+        return wiener.getFront();
+    }
+}
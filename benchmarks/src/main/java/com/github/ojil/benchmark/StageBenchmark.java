@@ -0,0 +1,124 @@
+/*
+ * StageBenchmark.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * StageBenchmark measures one push of each stage in StageCatalog at each
+ * resolution. The stage and its input are created once per trial, so the
+ * time measured is that of push (and of draining the output, for
+ * generators), including any images the stage allocates.
+ * <p>
+ * Stages that overwrite their input have it restored from a saved copy of
+ * its data before every push, so each push sees the same pixels. The restore
+ * is a System.arraycopy of the image's data array and is included in the
+ * time; it is small next to the cost of the stages involved.
+ *
+ * @author webb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@State(Scope.Thread)
+public class StageBenchmark {
+    // @formatter:off
+    /**
+     * The stage or variant to benchmark, by its StageCatalog name.
+     */
+    @Param({ "Complex32Gray32", "Complex32IFft", "Copy", "Gray16Crop", "Gray16Gray8", "Gray16LinComb", "Gray16Threshold", "Gray32Convolve",
+            "Gray32Div", "Gray32Gray8", "Gray32Scale2Gray8", "Gray32Threshold", "Gray82Gray32", "Gray8Abs", "Gray8Add", "Gray8AffineWarp",
+            "Gray8And", "Gray8Bilateral", "Gray8BoxBlur", "Gray8Canny", "Gray8CannyHoriz", "Gray8CannyVert", "Gray8Close", "Gray8ConnComp",
+            "Gray8Convolve", "Gray8Crop", "Gray8DeblurHorizHalftone", "Gray8DetectHaarMultiScale", "Gray8Dilate", "Gray8Erode", "Gray8Fft",
+            "Gray8GaussDeblurHoriz", "Gray8GaussHoriz", "Gray8GaussRecursive", "Gray8GaussSmooth", "Gray8GaussSmoothVert", "Gray8Gray32",
+            "Gray8HistEq", "Gray8HistMatch", "Gray8HorizSimpleEdge", "Gray8HorizSum", "Gray8HorizVar", "Gray8HorizVertContrast",
+            "Gray8InverseFilter", "Gray8LinComb", "Gray8Lookup", "Gray8MaskPoly", "Gray8Median", "Gray8Mpy", "Gray8Open",
+            "Gray8OtsuThreshold", "Gray8Peak3x3", "Gray8PeakNxN", "Gray8QmSum", "Gray8Rect", "Gray8RectStretch", "Gray8Reduce", "Gray8Rgb",
+            "Gray8Shrink", "Gray8Sub", "Gray8SubImageGenerator", "Gray8SumGray32", "Gray8Threshold", "Gray8TrapWarp",
+            "Gray8Unsigned2Signed", "Gray8UnsignedBackgroundSubtract", "Gray8VertTrapWarp", "Gray8VertVar", "Gray8WienerDeconv",
+            "MaskedGray32SubImgGen", "MaskedGray8SubImgGen", "Rgb3x3Average", "RgbAbsDiffGray", "RgbAdjustBrightness", "RgbAffineWarp",
+            "RgbAvgGray", "RgbBilateral", "RgbBoxBlur", "RgbClip", "RgbConvolve", "RgbCrop", "RgbDimMask", "RgbGaussRecursive",
+            "RgbHorizGaussSmooth", "RgbHsv", "RgbMaskPoly", "RgbMaskedAbsDiff", "RgbMaskedMaxDiff", "RgbMaxContrast2Gray", "RgbMaxDiff",
+            "RgbMedian", "RgbMinDiff", "RgbMultiVecThresh", "RgbSelectGray", "RgbShrink", "RgbSplit", "RgbStretch", "RgbSubSample",
+            "RgbVecThresh", "RgbVertGaussSmooth", "RgbVertTrapWarp", "Gray8CannyHoriz/compiled", "Gray8CannyVert/compiled",
+            "Gray8GaussHoriz/compiled", "Gray8GaussSmooth/compiled", "Gray8GaussSmoothVert/compiled", "Gray8Rgb/compiled",
+            "Gray8Shrink/compiled", "RgbAvgGray/compiled", "RgbSelectGray/compiled", "Gray8GaussSmooth/separable",
+            "Gray8GaussRecursive/compiled", "Gray8Canny/compiled" })
+    public String stage;
+    // @formatter:on
+
+    /**
+     * The resolution of the input.
+     */
+    @Param({ "QVGA", "HD1080", "UHD4K" })
+    public Resolution resolution;
+
+    private StageCatalog.Case c;
+    private PipelineStage pipe;
+    private Image<?, ?> imageInput;
+    private Object[] rSaved;
+
+    /**
+     * Create the stage and its input.
+     *
+     * @throws ImageError
+     *             if the stage or input cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws ImageError {
+        c = StageCatalog.get(stage);
+        pipe = c.create(resolution);
+        imageInput = c.createInput(resolution);
+        rSaved = c.isInPlace() ? imageInput.getData().clone() : null;
+    }
+
+    /**
+     * Push the input through the stage.
+     *
+     * @return the stage output, so it is not optimized away.
+     * @throws ImageError
+     *             if the stage fails.
+     */
+    @Benchmark
+    public Image<?, ?> push() throws ImageError {
+        if (rSaved != null) {
+            System.arraycopy(rSaved, 0, imageInput.getData(), 0, rSaved.length);
+        }
+        return c.run(pipe, imageInput);
+    }
+}
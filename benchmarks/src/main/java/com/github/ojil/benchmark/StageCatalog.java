@@ -0,0 +1,1198 @@
+/*
+ * StageCatalog.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import com.github.ojil.algorithm.Complex32Gray32;
+import com.github.ojil.algorithm.Complex32IFft;
+import com.github.ojil.algorithm.Convolution;
+import com.github.ojil.algorithm.Copy;
+import com.github.ojil.algorithm.Gray16Crop;
+import com.github.ojil.algorithm.Gray16Gray8;
+import com.github.ojil.algorithm.Gray16LinComb;
+import com.github.ojil.algorithm.Gray16Threshold;
+import com.github.ojil.algorithm.Gray32Convolve;
+import com.github.ojil.algorithm.Gray32Div;
+import com.github.ojil.algorithm.Gray32Gray8;
+import com.github.ojil.algorithm.Gray32Scale2Gray8;
+import com.github.ojil.algorithm.Gray32Threshold;
+import com.github.ojil.algorithm.Gray82Gray32;
+import com.github.ojil.algorithm.Gray8Abs;
+import com.github.ojil.algorithm.Gray8Add;
+import com.github.ojil.algorithm.Gray8AffineWarp;
+import com.github.ojil.algorithm.Gray8And;
+import com.github.ojil.algorithm.Gray8Bilateral;
+import com.github.ojil.algorithm.Gray8BoxBlur;
+import com.github.ojil.algorithm.Gray8Canny;
+import com.github.ojil.algorithm.Gray8CannyHoriz;
+import com.github.ojil.algorithm.Gray8CannyVert;
+import com.github.ojil.algorithm.Gray8Close;
+import com.github.ojil.algorithm.Gray8ConnComp;
+import com.github.ojil.algorithm.Gray8Convolve;
+import com.github.ojil.algorithm.Gray8Crop;
+import com.github.ojil.algorithm.Gray8DeblurHorizHalftone;
+import com.github.ojil.algorithm.Gray8DetectHaarMultiScale;
+import com.github.ojil.algorithm.Gray8Dilate;
+import com.github.ojil.algorithm.Gray8Erode;
+import com.github.ojil.algorithm.Gray8Fft;
+import com.github.ojil.algorithm.Gray8GaussDeblurHoriz;
+import com.github.ojil.algorithm.Gray8GaussHoriz;
+import com.github.ojil.algorithm.Gray8GaussRecursive;
+import com.github.ojil.algorithm.Gray8GaussSmooth;
+import com.github.ojil.algorithm.Gray8GaussSmoothVert;
+import com.github.ojil.algorithm.Gray8Gray32;
+import com.github.ojil.algorithm.Gray8HistEq;
+import com.github.ojil.algorithm.Gray8HistMatch;
+import com.github.ojil.algorithm.Gray8HorizSimpleEdge;
+import com.github.ojil.algorithm.Gray8HorizSum;
+import com.github.ojil.algorithm.Gray8HorizVar;
+import com.github.ojil.algorithm.Gray8HorizVertContrast;
+import com.github.ojil.algorithm.Gray8InverseFilter;
+import com.github.ojil.algorithm.Gray8LinComb;
+import com.github.ojil.algorithm.Gray8Lookup;
+import com.github.ojil.algorithm.Gray8MaskPoly;
+import com.github.ojil.algorithm.Gray8Median;
+import com.github.ojil.algorithm.Gray8Mpy;
+import com.github.ojil.algorithm.Gray8Open;
+import com.github.ojil.algorithm.Gray8OtsuThreshold;
+import com.github.ojil.algorithm.Gray8Peak3x3;
+import com.github.ojil.algorithm.Gray8PeakNxN;
+import com.github.ojil.algorithm.Gray8QmSum;
+import com.github.ojil.algorithm.Gray8Rect;
+import com.github.ojil.algorithm.Gray8RectStretch;
+import com.github.ojil.algorithm.Gray8Reduce;
+import com.github.ojil.algorithm.Gray8Rgb;
+import com.github.ojil.algorithm.Gray8Shrink;
+import com.github.ojil.algorithm.Gray8Sub;
+import com.github.ojil.algorithm.Gray8SubImageGenerator;
+import com.github.ojil.algorithm.Gray8SumGray32;
+import com.github.ojil.algorithm.Gray8Threshold;
+import com.github.ojil.algorithm.Gray8TrapWarp;
+import com.github.ojil.algorithm.Gray8Unsigned2Signed;
+import com.github.ojil.algorithm.Gray8UnsignedBackgroundSubtract;
+import com.github.ojil.algorithm.Gray8VertTrapWarp;
+import com.github.ojil.algorithm.Gray8VertVar;
+import com.github.ojil.algorithm.Gray8WienerDeconv;
+import com.github.ojil.algorithm.MaskedGray32SubImgGen;
+import com.github.ojil.algorithm.MaskedGray8SubImgGen;
+import com.github.ojil.algorithm.PsfGray8;
+import com.github.ojil.algorithm.Rgb3x3Average;
+import com.github.ojil.algorithm.RgbAbsDiffGray;
+import com.github.ojil.algorithm.RgbAdjustBrightness;
+import com.github.ojil.algorithm.RgbAffineWarp;
+import com.github.ojil.algorithm.RgbAvgGray;
+import com.github.ojil.algorithm.RgbBilateral;
+import com.github.ojil.algorithm.RgbBoxBlur;
+import com.github.ojil.algorithm.RgbClip;
+import com.github.ojil.algorithm.RgbConvolve;
+import com.github.ojil.algorithm.RgbCrop;
+import com.github.ojil.algorithm.RgbDimMask;
+import com.github.ojil.algorithm.RgbGaussRecursive;
+import com.github.ojil.algorithm.RgbHorizGaussSmooth;
+import com.github.ojil.algorithm.RgbHsv;
+import com.github.ojil.algorithm.RgbMaskPoly;
+import com.github.ojil.algorithm.RgbMaskedAbsDiff;
+import com.github.ojil.algorithm.RgbMaskedMaxDiff;
+import com.github.ojil.algorithm.RgbMaxContrast2Gray;
+import com.github.ojil.algorithm.RgbMaxDiff;
+import com.github.ojil.algorithm.RgbMedian;
+import com.github.ojil.algorithm.RgbMinDiff;
+import com.github.ojil.algorithm.RgbMultiVecThresh;
+import com.github.ojil.algorithm.RgbSelectGray;
+import com.github.ojil.algorithm.RgbShrink;
+import com.github.ojil.algorithm.RgbSplit;
+import com.github.ojil.algorithm.RgbStretch;
+import com.github.ojil.algorithm.RgbSubSample;
+import com.github.ojil.algorithm.RgbVecThresh;
+import com.github.ojil.algorithm.RgbVertGaussSmooth;
+import com.github.ojil.algorithm.RgbVertTrapWarp;
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.CompiledSequence;
+import com.github.ojil.core.ErrorCodes;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.Ladder;
+import com.github.ojil.core.PipelineStage;
+import com.github.ojil.core.Rect;
+import com.github.ojil.core.RgbVal;
+import com.github.ojil.core.Sequence;
+
+/**
+ * StageCatalog knows how to build a configured instance of every stage in
+ * com.github.ojil.algorithm, and an input it accepts, at each benchmark
+ * resolution. Ladder.Join's are included as a Ladder of two Copy stages, so
+ * the cost measured is that of the join. Stage parameters are fixed, typical
+ * values (e.g., Gaussian sigma 2.0, 15-pixel windows, a crop of the middle
+ * half of the image) so results can be compared from one release to the
+ * next.
+ * <p>
+ * The catalog also holds Variants: alternative implementations of a catalog
+ * stage (an optimized kernel, or the same stage run through a different
+ * path, such as CompiledSequence) that must produce exactly the same output
+ * as the stage they stand in for. The conformance tests check this, and
+ * StageBenchmark measures variants alongside the stages.
+ * <p>
+ * When a stage or variant is added to the library it should be added here
+ * too, and its name added to the stage parameter of StageBenchmark.
+ *
+ * @author webb
+ */
+public class StageCatalog {
+    /**
+     * The kinds of input image the stages take.
+     */
+    public enum Input {
+        /** The synthetic gray scene. */
+        GRAY8,
+        /** The gray scene thresholded to Byte.MIN_VALUE / Byte.MAX_VALUE. */
+        BINARY,
+        /** The gray scene at the resolution's FFT size. */
+        GRAY8_FFT,
+        /** The gray scene as a Gray16Image. */
+        GRAY16,
+        /** The gray scene as a Gray32Image. */
+        GRAY32,
+        /** The FFT of the gray scene at the resolution's FFT size. */
+        COMPLEX32_FFT,
+        /** The color scene. */
+        RGB,
+        /** The gray scene with its middle masked. */
+        GRAY8_MASKED,
+        /** The Gray32 scene with its middle masked. */
+        GRAY32_MASKED,
+        /** The color scene with its middle masked. */
+        RGB_MASKED;
+
+        /**
+         * Create an input image of this kind.
+         *
+         * @param res
+         *            the resolution.
+         * @return the image.
+         * @throws ImageError
+         *             if the image cannot be created.
+         */
+        public Image<?, ?> create(final Resolution res) throws ImageError {
+            final int nWidth = res.getWidth();
+            final int nHeight = res.getHeight();
+            switch (this) {
+                case GRAY8:
+                    return SyntheticImages.gray8(nWidth, nHeight);
+                case BINARY:
+                    return SyntheticImages.binary(nWidth, nHeight);
+                case GRAY8_FFT:
+                    return SyntheticImages.gray8(res.getFftSize(), res.getFftSize());
+                case GRAY16:
+                    return SyntheticImages.gray16(nWidth, nHeight);
+                case GRAY32:
+                    return SyntheticImages.gray32(nWidth, nHeight);
+                case COMPLEX32_FFT:
+                    return SyntheticImages.complex32(res.getFftSize());
+                case RGB:
+                    return SyntheticImages.rgb(nWidth, nHeight);
+                case GRAY8_MASKED:
+                    return SyntheticImages.gray8Masked(nWidth, nHeight);
+                case GRAY32_MASKED:
+                    return SyntheticImages.gray32Masked(nWidth, nHeight);
+                case RGB_MASKED:
+                    return SyntheticImages.rgbMasked(nWidth, nHeight);
+                default:
+                    throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, toString(), null, null);
+            }
+        }
+    }
+
+    /**
+     * One entry in the catalog: a named stage, the kind of input it takes,
+     * and how it treats that input.
+     */
+    public abstract static class Case {
+        private final String szName;
+        private final Input input;
+        private final boolean bInPlace;
+        private final boolean bGenerator;
+
+        /**
+         * Creates a Case for a stage that leaves its input unchanged and
+         * produces one output per push.
+         *
+         * @param szName
+         *            the stage name.
+         * @param input
+         *            the kind of input.
+         */
+        protected Case(final String szName, final Input input) {
+            this(szName, input, false, false);
+        }
+
+        /**
+         * Creates a Case.
+         *
+         * @param szName
+         *            the stage name.
+         * @param input
+         *            the kind of input.
+         * @param bInPlace
+         *            true if the stage overwrites its input.
+         * @param bGenerator
+         *            true if the stage produces a series of outputs per push
+         *            (a sub-image generator).
+         */
+        protected Case(final String szName, final Input input, final boolean bInPlace, final boolean bGenerator) {
+            this.szName = szName;
+            this.input = input;
+            this.bInPlace = bInPlace;
+            this.bGenerator = bGenerator;
+        }
+
+        /**
+         * Create a configured stage.
+         *
+         * @param res
+         *            the resolution of the images it will be given.
+         * @return the stage.
+         * @throws ImageError
+         *             if the stage cannot be constructed.
+         */
+        public abstract PipelineStage create(Resolution res) throws ImageError;
+
+        /**
+         * Create an input image for the stage.
+         *
+         * @param res
+         *            the resolution.
+         * @return the input image.
+         * @throws ImageError
+         *             if the image cannot be created.
+         */
+        public Image<?, ?> createInput(final Resolution res) throws ImageError {
+            return input.create(res);
+        }
+
+        /**
+         * Push an image through the stage and return its output. A generator
+         * is drained, and its last output returned.
+         *
+         * @param stage
+         *            a stage created by create.
+         * @param image
+         *            the input image.
+         * @return the stage output.
+         * @throws ImageError
+         *             if the stage fails.
+         */
+        public Image<?, ?> run(final PipelineStage stage, final Image<?, ?> image) throws ImageError {
+            stage.push(image);
+            if (!bGenerator) {
+                return stage.getFront();
+            }
+            Image<?, ?> imageLast = null;
+            while (!stage.isEmpty()) {
+                imageLast = stage.getFront();
+            }
+            return imageLast;
+        }
+
+        /**
+         * Returns the stage name, which is also its key in the catalog.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return szName;
+        }
+
+        /**
+         * Returns the kind of input the stage takes.
+         *
+         * @return the input kind.
+         */
+        public Input getInput() {
+            return input;
+        }
+
+        /**
+         * Returns true if the stage overwrites its input, so the input must be
+         * restored before each push.
+         *
+         * @return true iff the stage works in place.
+         */
+        public boolean isInPlace() {
+            return bInPlace;
+        }
+
+        /**
+         * Returns true if the stage is a sub-image generator.
+         *
+         * @return true iff run drains a series of outputs.
+         */
+        public boolean isGenerator() {
+            return bGenerator;
+        }
+
+        @Override
+        public String toString() {
+            return szName;
+        }
+    }
+
+    /**
+     * An alternative implementation of a catalog stage. It takes the same
+     * input as the reference stage and must produce a bit-identical output.
+     */
+    public abstract static class Variant extends Case {
+        private final String szReference;
+
+        /**
+         * Creates a Variant.
+         *
+         * @param szName
+         *            the variant name.
+         * @param szReference
+         *            the name of the catalog stage it must match.
+         * @param input
+         *            the kind of input.
+         */
+        protected Variant(final String szName, final String szReference, final Input input) {
+            super(szName, input);
+            this.szReference = szReference;
+        }
+
+        /**
+         * Returns the name of the catalog stage this variant must match.
+         *
+         * @return the reference stage name.
+         */
+        public String getReference() {
+            return szReference;
+        }
+    }
+
+    // for the variants that split their work across threads; its threads are
+    // daemons, so it never needs shutting down
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+    private static final Map<String, Case> mapCases = new LinkedHashMap<>();
+    private static final Map<String, Variant> mapVariants = new LinkedHashMap<>();
+
+    private StageCatalog() {
+    }
+
+    private static void add(final Case c) {
+        StageCatalog.mapCases.put(c.getName(), c);
+    }
+
+    private static void addVariant(final Variant v) {
+        StageCatalog.mapVariants.put(v.getName(), v);
+    }
+
+    // the reference stage run through BufferedStage.push(Image, Image), into
+    // a preallocated output, by a one-stage CompiledSequence
+    private static void addCompiled(final String szReference, final Input input) {
+        StageCatalog.addVariant(new Variant(szReference + "/compiled", szReference, input) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final BufferedStage stage = (BufferedStage) StageCatalog.mapCases.get(szReference).create(res);
+                return new CompiledSequence(ImageSpec.of(createInput(res)), stage);
+            }
+        });
+    }
+
+    private static Integer[][] rotation() {
+        // 10 degrees, scaled by 2**16
+        return new Integer[][] { { 64540, -11380, 0 }, { 11380, 64540, 0 } };
+    }
+
+    private static Rect middle(final Resolution res) {
+        return new Rect(res.getWidth() / 4, res.getHeight() / 4, res.getWidth() / 2, res.getHeight() / 2);
+    }
+
+    // a 5x5 binomial blur, which is separable
+    private static Convolution binomial() throws ImageError {
+        final int[] rn = { 1, 4, 6, 4, 1 };
+        final int[] rnKernel = new int[25];
+        for (int i = 0; i < 25; i++) {
+            rnKernel[i] = rn[i / 5] * rn[i % 5];
+        }
+        return new Convolution(rnKernel, 5, 256);
+    }
+
+    private static Convolution laplacian() throws ImageError {
+        return new Convolution(new float[] { 0.5f, 1f, 0.5f, 1f, -6f, 1f, 0.5f, 1f, 0.5f }, 3);
+    }
+
+    private static Convolution sharpen() throws ImageError {
+        return new Convolution(new int[] { 0, -1, 0, -1, 5, -1, 0, -1, 0 }, 3, 1);
+    }
+
+    static {
+        StageCatalog.add(new Case("Complex32Gray32", Input.COMPLEX32_FFT) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Complex32Gray32();
+            }
+        });
+        StageCatalog.add(new Case("Complex32IFft", Input.COMPLEX32_FFT) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Complex32IFft(true);
+            }
+        });
+        StageCatalog.add(new Case("Copy", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Copy();
+            }
+        });
+        StageCatalog.add(new Case("Gray16Crop", Input.GRAY16) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray16Crop(StageCatalog.middle(res));
+            }
+        });
+        StageCatalog.add(new Case("Gray16Gray8", Input.GRAY16) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray16Gray8();
+            }
+        });
+        StageCatalog.add(new Case("Gray16LinComb", Input.GRAY16, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Ladder(new Copy(), new Copy(), new Gray16LinComb(1, 1, 2));
+            }
+        });
+        StageCatalog.add(new Case("Gray16Threshold", Input.GRAY16) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray16Threshold(0);
+            }
+        });
+        StageCatalog.add(new Case("Gray32Convolve", Input.GRAY32) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray32Convolve(StageCatalog.laplacian());
+            }
+        });
+        StageCatalog.add(new Case("Gray32Div", Input.GRAY32, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray32Div(3);
+            }
+        });
+        StageCatalog.add(new Case("Gray32Gray8", Input.GRAY32) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray32Gray8();
+            }
+        });
+        StageCatalog.add(new Case("Gray32Scale2Gray8", Input.GRAY32) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray32Scale2Gray8();
+            }
+        });
+        StageCatalog.add(new Case("Gray32Threshold", Input.GRAY32) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray32Threshold(128000);
+            }
+        });
+        StageCatalog.add(new Case("Gray82Gray32", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray82Gray32();
+            }
+        });
+        StageCatalog.add(new Case("Gray8Abs", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8Abs();
+            }
+        });
+        StageCatalog.add(new Case("Gray8Add", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Ladder(new Copy(), new Copy(), new Gray8Add());
+            }
+        });
+        StageCatalog.add(new Case("Gray8AffineWarp", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8AffineWarp(StageCatalog.rotation());
+            }
+        });
+        StageCatalog.add(new Case("Gray8And", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Ladder(new Copy(), new Copy(), new Gray8And());
+            }
+        });
+        StageCatalog.add(new Case("Gray8Bilateral", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Bilateral(4, 20);
+            }
+        });
+        StageCatalog.add(new Case("Gray8BoxBlur", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8BoxBlur(5, 5);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Canny", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Canny(20, 4, 12);
+            }
+        });
+        StageCatalog.add(new Case("Gray8CannyHoriz", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8CannyHoriz(20);
+            }
+        });
+        StageCatalog.add(new Case("Gray8CannyVert", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8CannyVert(20);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Close", Input.BINARY) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Close(5, 5);
+            }
+        });
+        StageCatalog.add(new Case("Gray8ConnComp", Input.BINARY) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8ConnComp();
+            }
+        });
+        StageCatalog.add(new Case("Gray8Convolve", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Convolve(StageCatalog.binomial());
+            }
+        });
+        StageCatalog.add(new Case("Gray8Crop", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Crop(StageCatalog.middle(res));
+            }
+        });
+        StageCatalog.add(new Case("Gray8DeblurHorizHalftone", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8DeblurHorizHalftone(8, 4, 2, 1, 1);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Dilate", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Dilate(7, 7);
+            }
+        });
+        StageCatalog.add(new Case("Gray8DetectHaarMultiScale", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                try {
+                    return new Gray8DetectHaarMultiScale(new ByteArrayInputStream(SyntheticImages.haarCascade(4).getBytes()), 1, 10);
+                } catch (final IOException e) {
+                    throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, e.toString(), null, null);
+                }
+            }
+        });
+        StageCatalog.add(new Case("Gray8Erode", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Erode(7, 7);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Fft", Input.GRAY8_FFT) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8Fft();
+            }
+        });
+        StageCatalog.add(new Case("Gray8GaussDeblurHoriz", Input.GRAY8_FFT) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8GaussDeblurHoriz(5, 16);
+            }
+        });
+        StageCatalog.add(new Case("Gray8GaussHoriz", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8GaussHoriz(20);
+            }
+        });
+        // the recursive Gaussians are meant for large sigma
+        StageCatalog.add(new Case("Gray8GaussRecursive", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8GaussRecursive(200);
+            }
+        });
+        StageCatalog.add(new Case("Gray8GaussSmooth", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8GaussSmooth(20);
+            }
+        });
+        StageCatalog.add(new Case("Gray8GaussSmoothVert", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8GaussSmoothVert(20);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Gray32", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8Gray32();
+            }
+        });
+        StageCatalog.add(new Case("Gray8HistEq", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8HistEq();
+            }
+        });
+        StageCatalog.add(new Case("Gray8HistMatch", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8HistMatch(SyntheticImages.flatHistogram(res.getWidth() * res.getHeight()));
+            }
+        });
+        StageCatalog.add(new Case("Gray8HorizSimpleEdge", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8HorizSimpleEdge();
+            }
+        });
+        StageCatalog.add(new Case("Gray8HorizSum", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8HorizSum(15);
+            }
+        });
+        StageCatalog.add(new Case("Gray8HorizVar", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8HorizVar(15);
+            }
+        });
+        StageCatalog.add(new Case("Gray8HorizVertContrast", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8HorizVertContrast(15, 1, 1, 2);
+            }
+        });
+        StageCatalog.add(new Case("Gray8InverseFilter", Input.GRAY8_FFT) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8InverseFilter(PsfGray8.disk(res.getFftSize(), 3), 100);
+            }
+        });
+        StageCatalog.add(new Case("Gray8LinComb", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Ladder(new Copy(), new Copy(), new Gray8LinComb(1, 1, 2));
+            }
+        });
+        StageCatalog.add(new Case("Gray8Lookup", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final Byte[] table = new Byte[256];
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (byte) (Byte.MAX_VALUE - i);
+                }
+                return new Gray8Lookup(table);
+            }
+        });
+        StageCatalog.add(new Case("Gray8MaskPoly", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8MaskPoly(StageCatalog.middle(res), true);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Median", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Median(2);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Mpy", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8Mpy(2);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Open", Input.BINARY) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Open(5, 5);
+            }
+        });
+        StageCatalog.add(new Case("Gray8OtsuThreshold", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8OtsuThreshold(true, 0);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Peak3x3", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8Peak3x3();
+            }
+        });
+        StageCatalog.add(new Case("Gray8PeakNxN", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8PeakNxN(5);
+            }
+        });
+        StageCatalog.add(new Case("Gray8QmSum", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8QmSum();
+            }
+        });
+        StageCatalog.add(new Case("Gray8Rect", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final Rect r = StageCatalog.middle(res);
+                return new Gray8Rect(r.getLeft(), r.getTop(), r.getWidth(), r.getHeight(), Byte.MAX_VALUE);
+            }
+        });
+        StageCatalog.add(new Case("Gray8RectStretch", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8RectStretch((res.getWidth() * 5) / 4, (res.getHeight() * 5) / 4);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Reduce", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Reduce(2, 2);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Rgb", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8Rgb();
+            }
+        });
+        StageCatalog.add(new Case("Gray8Shrink", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Shrink(res.getWidth() / 2, res.getHeight() / 2);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Sub", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Ladder(new Copy(), new Copy(), new Gray8Sub());
+            }
+        });
+        StageCatalog.add(new Case("Gray8SubImageGenerator", Input.GRAY8, false, true) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8SubImageGenerator(64, 64, 32, 32);
+            }
+        });
+        StageCatalog.add(new Case("Gray8SumGray32", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8SumGray32();
+            }
+        });
+        StageCatalog.add(new Case("Gray8Threshold", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8Threshold(0, false);
+            }
+        });
+        StageCatalog.add(new Case("Gray8TrapWarp", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final int w = res.getWidth();
+                final int h = res.getHeight();
+                return new Gray8TrapWarp(h / 8, (7 * h) / 8, w / 4, (3 * w) / 4, w / 8, (7 * w) / 8);
+            }
+        });
+        StageCatalog.add(new Case("Gray8Unsigned2Signed", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8Unsigned2Signed();
+            }
+        });
+        StageCatalog.add(new Case("Gray8UnsignedBackgroundSubtract", Input.GRAY8, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8UnsignedBackgroundSubtract(15, 15);
+            }
+        });
+        StageCatalog.add(new Case("Gray8VertTrapWarp", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final int w = res.getWidth();
+                final int h = res.getHeight();
+                return new Gray8VertTrapWarp(w / 8, (7 * w) / 8, h / 4, (3 * h) / 4, h / 8, (7 * h) / 8);
+            }
+        });
+        StageCatalog.add(new Case("Gray8VertVar", Input.GRAY8) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Gray8VertVar(15);
+            }
+        });
+        StageCatalog.add(new Case("Gray8WienerDeconv", Input.GRAY8_FFT) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8WienerDeconv(PsfGray8.disk(res.getFftSize(), 3), 100);
+            }
+        });
+        StageCatalog.add(new Case("MaskedGray32SubImgGen", Input.GRAY32_MASKED, false, true) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new MaskedGray32SubImgGen(64, 64, 32, 32);
+            }
+        });
+        StageCatalog.add(new Case("MaskedGray8SubImgGen", Input.GRAY8_MASKED, false, true) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new MaskedGray8SubImgGen(64, 64, 32, 32);
+            }
+        });
+        StageCatalog.add(new Case("Rgb3x3Average", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new Rgb3x3Average();
+            }
+        });
+        StageCatalog.add(new Case("RgbAbsDiffGray", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbAbsDiffGray(RgbVal.toRgb((byte) 0, (byte) 0, (byte) 0));
+            }
+        });
+        StageCatalog.add(new Case("RgbAdjustBrightness", Input.RGB, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbAdjustBrightness(300, 256, 200);
+            }
+        });
+        StageCatalog.add(new Case("RgbAffineWarp", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbAffineWarp(StageCatalog.rotation());
+            }
+        });
+        StageCatalog.add(new Case("RgbAvgGray", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbAvgGray();
+            }
+        });
+        StageCatalog.add(new Case("RgbBilateral", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbBilateral(4, 20);
+            }
+        });
+        StageCatalog.add(new Case("RgbBoxBlur", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbBoxBlur(5, 5);
+            }
+        });
+        StageCatalog.add(new Case("RgbClip", Input.RGB, true, false) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbClip(RgbVal.toRgb((byte) 0, (byte) 0, (byte) 0), 100, true);
+            }
+        });
+        StageCatalog.add(new Case("RgbConvolve", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbConvolve(StageCatalog.sharpen());
+            }
+        });
+        StageCatalog.add(new Case("RgbCrop", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbCrop(StageCatalog.middle(res));
+            }
+        });
+        StageCatalog.add(new Case("RgbDimMask", Input.RGB_MASKED) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbDimMask(128);
+            }
+        });
+        StageCatalog.add(new Case("RgbGaussRecursive", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbGaussRecursive(200);
+            }
+        });
+        StageCatalog.add(new Case("RgbHorizGaussSmooth", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbHorizGaussSmooth(20);
+            }
+        });
+        StageCatalog.add(new Case("RgbHsv", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbHsv();
+            }
+        });
+        StageCatalog.add(new Case("RgbMaskPoly", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbMaskPoly(StageCatalog.middle(res), true);
+            }
+        });
+        StageCatalog.add(new Case("RgbMaskedAbsDiff", Input.RGB_MASKED) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbMaskedAbsDiff(SyntheticImages.rgbMasked(res.getWidth(), res.getHeight()));
+            }
+        });
+        StageCatalog.add(new Case("RgbMaskedMaxDiff", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbMaskedMaxDiff(SyntheticImages.rgbMasked(res.getWidth(), res.getHeight()));
+            }
+        });
+        StageCatalog.add(new Case("RgbMaxContrast2Gray", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbMaxContrast2Gray();
+            }
+        });
+        StageCatalog.add(new Case("RgbMaxDiff", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbMaxDiff(SyntheticImages.rgb(res.getWidth(), res.getHeight(), 3));
+            }
+        });
+        StageCatalog.add(new Case("RgbMedian", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbMedian(2);
+            }
+        });
+        StageCatalog.add(new Case("RgbMinDiff", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbMinDiff(SyntheticImages.rgb(res.getWidth(), res.getHeight(), 3));
+            }
+        });
+        StageCatalog.add(new Case("RgbMultiVecThresh", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final Integer[] rgbVals = { RgbVal.toRgb((byte) 40, (byte) 0, (byte) -40), RgbVal.toRgb((byte) -40, (byte) 0, (byte) 40) };
+                final Integer[] rgbVecs = { RgbVal.toRgb((byte) 1, (byte) 1, (byte) 1), RgbVal.toRgb((byte) 1, (byte) -1, (byte) 1) };
+                return new RgbMultiVecThresh(rgbVals, rgbVecs, 1000);
+            }
+        });
+        StageCatalog.add(new Case("RgbSelectGray", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbSelectGray(RgbSelectGray.ColorClass.Green());
+            }
+        });
+        StageCatalog.add(new Case("RgbShrink", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbShrink(res.getWidth() / 2, res.getHeight() / 2);
+            }
+        });
+        StageCatalog.add(new Case("RgbSplit", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbSplit(20, 20, 20);
+            }
+        });
+        StageCatalog.add(new Case("RgbStretch", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbStretch((res.getWidth() * 5) / 4, (res.getHeight() * 5) / 4);
+            }
+        });
+        StageCatalog.add(new Case("RgbSubSample", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbSubSample(res.getWidth() / 2, res.getHeight() / 2);
+            }
+        });
+        StageCatalog.add(new Case("RgbVecThresh", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) {
+                return new RgbVecThresh(RgbVal.toRgb((byte) 40, (byte) 0, (byte) -40), RgbVal.toRgb((byte) 1, (byte) 1, (byte) 1), 1000, true);
+            }
+        });
+        StageCatalog.add(new Case("RgbVertGaussSmooth", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new RgbVertGaussSmooth(20);
+            }
+        });
+        StageCatalog.add(new Case("RgbVertTrapWarp", Input.RGB) { //$NON-NLS-1$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final int w = res.getWidth();
+                final int h = res.getHeight();
+                return new RgbVertTrapWarp(w / 8, (7 * w) / 8, h / 4, (3 * h) / 4, h / 8, (7 * h) / 8);
+            }
+        });
+        StageCatalog.addCompiled("Gray32Convolve", Input.GRAY32); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Bilateral", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8BoxBlur", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Canny", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8CannyHoriz", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8CannyVert", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Close", Input.BINARY); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Convolve", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Dilate", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Erode", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8GaussHoriz", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8GaussRecursive", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8GaussSmooth", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8GaussSmoothVert", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Median", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Open", Input.BINARY); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8PeakNxN", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Rgb", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("Gray8Shrink", Input.GRAY8); //$NON-NLS-1$
+        StageCatalog.addCompiled("RgbAvgGray", Input.RGB); //$NON-NLS-1$
+        StageCatalog.addCompiled("RgbBilateral", Input.RGB); //$NON-NLS-1$
+        StageCatalog.addCompiled("RgbBoxBlur", Input.RGB); //$NON-NLS-1$
+        StageCatalog.addCompiled("RgbConvolve", Input.RGB); //$NON-NLS-1$
+        StageCatalog.addCompiled("RgbMedian", Input.RGB); //$NON-NLS-1$
+        StageCatalog.addCompiled("RgbSelectGray", Input.RGB); //$NON-NLS-1$
+        // the fused Gaussian must match the two separate passes it replaces
+        StageCatalog.addVariant(new Variant("Gray8GaussSmooth/separable", "Gray8GaussSmooth", Input.GRAY8) { //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final Sequence seq = new Sequence(new Gray8GaussHoriz(20));
+                seq.add(new Gray8GaussSmoothVert(20));
+                return seq;
+            }
+        });
+        // the general peak detector must match the 3x3 one
+        StageCatalog.addVariant(new Variant("Gray8Peak3x3/nxn", "Gray8Peak3x3", Input.GRAY8) { //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8PeakNxN(3);
+            }
+        });
+        // strips filtered in parallel must give the same result
+        StageCatalog.addVariant(new Variant("Gray8Median/parallel", "Gray8Median", Input.GRAY8) { //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                return new Gray8Median(2, StageCatalog.POOL);
+            }
+        });
+        // integer kernels give the same result whatever the strategy
+        StageCatalog.addVariant(new Variant("Gray8Convolve/direct", "Gray8Convolve", Input.GRAY8) { //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final Convolution convolution = StageCatalog.binomial();
+                convolution.setStrategy(Convolution.DIRECT);
+                return new Gray8Convolve(convolution);
+            }
+        });
+        StageCatalog.addVariant(new Variant("Gray8Convolve/fft", "Gray8Convolve", Input.GRAY8) { //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final Convolution convolution = StageCatalog.binomial();
+                convolution.setStrategy(Convolution.FFT);
+                return new Gray8Convolve(convolution);
+            }
+        });
+        StageCatalog.addVariant(new Variant("RgbConvolve/fft", "RgbConvolve", Input.RGB) { //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final Convolution convolution = StageCatalog.sharpen();
+                convolution.setStrategy(Convolution.FFT);
+                return new RgbConvolve(convolution);
+            }
+        });
+        // an opening is an erosion followed by a dilation
+        StageCatalog.addVariant(new Variant("Gray8Open/sequence", "Gray8Open", Input.BINARY) { //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            public PipelineStage create(final Resolution res) throws ImageError {
+                final Sequence seq = new Sequence(new Gray8Erode(5, 5));
+                seq.add(new Gray8Dilate(5, 5));
+                return seq;
+            }
+        });
+    }
+
+    /**
+     * Returns the case for a stage or variant.
+     *
+     * @param szName
+     *            the stage or variant name.
+     * @return the case.
+     * @throws ImageError
+     *             if there is no stage or variant with this name.
+     */
+    public static Case get(final String szName) throws ImageError {
+        Case c = StageCatalog.mapCases.get(szName);
+        if (c == null) {
+            c = StageCatalog.mapVariants.get(szName);
+        }
+        if (c == null) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, szName, null, null);
+        }
+        return c;
+    }
+
+    /**
+     * Returns the names of all the stages in the catalog, in alphabetical
+     * order.
+     *
+     * @return the stage names.
+     */
+    public static List<String> getNames() {
+        return new ArrayList<>(StageCatalog.mapCases.keySet());
+    }
+
+    /**
+     * Returns all the variants in the catalog.
+     *
+     * @return the variants.
+     */
+    public static List<Variant> getVariants() {
+        return new ArrayList<>(StageCatalog.mapVariants.values());
+    }
+}
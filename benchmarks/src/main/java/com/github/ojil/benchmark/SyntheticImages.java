@@ -0,0 +1,316 @@
+/*
+ * SyntheticImages.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+import com.github.ojil.algorithm.Gray8Fft;
+import com.github.ojil.core.Complex32Image;
+import com.github.ojil.core.Gray16Image;
+import com.github.ojil.core.Gray32Image;
+import com.github.ojil.core.Gray32MaskedImage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Gray8MaskedImage;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.RgbImage;
+import com.github.ojil.core.RgbMaskedImage;
+import com.github.ojil.core.RgbVal;
+
+/**
+ * SyntheticImages creates the benchmark inputs. The images are generated
+ * rather than read from files so every run, on every machine, sees exactly
+ * the same pixels at any resolution. Each image is a smooth gradient with a
+ * grid of light and dark blocks and a little pseudo-random noise, so edge
+ * detectors, thresholds and connected components all have realistic work to
+ * do; a constant image would let many stages take shortcuts.
+ *
+ * @author webb
+ */
+public class SyntheticImages {
+    private static final int BLOCKS = 8;
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * Returns the unsigned (0..255) gray value of the synthetic scene at a
+     * pixel.
+     */
+    private static int scene(final int nRow, final int nCol, final int nWidth, final int nHeight, final int nSeed) {
+        // background gradient
+        int n = ((nCol * 96) / nWidth) + ((nRow * 64) / nHeight) + 32;
+        // blocks, alternately light and dark
+        final int nBlockRow = (nRow * BLOCKS) / nHeight;
+        final int nBlockCol = (nCol * BLOCKS) / nWidth;
+        final int nInRow = ((nRow * BLOCKS) % nHeight) * 4;
+        final int nInCol = ((nCol * BLOCKS) % nWidth) * 4;
+        if ((nInRow > nHeight) && (nInRow < (3 * nHeight)) && (nInCol > nWidth) && (nInCol < (3 * nWidth))) {
+            n += (((nBlockRow + nBlockCol + nSeed) % 2) == 0) ? 80 : -30;
+        }
+        // noise from a hash of the position, so the pattern is repeatable
+        int h = (nRow * 73856093) ^ (nCol * 19349663) ^ (nSeed * 83492791);
+        h ^= h >>> 13;
+        h *= 0x5bd1e995;
+        h ^= h >>> 15;
+        n += (h & 15) - 8;
+        return Math.max(0, Math.min(255, n));
+    }
+
+    /**
+     * Creates a Gray8Image.
+     *
+     * @param nWidth
+     *            image width.
+     * @param nHeight
+     *            image height.
+     * @return the image.
+     */
+    public static Gray8Image<?> gray8(final int nWidth, final int nHeight) {
+        final Gray8Image<?> image = new Gray8Image<>(nWidth, nHeight);
+        final Byte[] data = image.getData();
+        for (int i = 0; i < nHeight; i++) {
+            for (int j = 0; j < nWidth; j++) {
+                data[(i * nWidth) + j] = (byte) (SyntheticImages.scene(i, j, nWidth, nHeight, 0) + Byte.MIN_VALUE);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Creates a binary Gray8Image: the light blocks of the gray8 scene are
+     * Byte.MAX_VALUE and everything else is Byte.MIN_VALUE. This is the input
+     * for connected components.
+     *
+     * @param nWidth
+     *            image width.
+     * @param nHeight
+     *            image height.
+     * @return the image.
+     */
+    public static Gray8Image<?> binary(final int nWidth, final int nHeight) {
+        final Gray8Image<?> image = new Gray8Image<>(nWidth, nHeight);
+        final Byte[] data = image.getData();
+        for (int i = 0; i < nHeight; i++) {
+            for (int j = 0; j < nWidth; j++) {
+                data[(i * nWidth) + j] = (SyntheticImages.scene(i, j, nWidth, nHeight, 0) > 208) ? Byte.MAX_VALUE : Byte.MIN_VALUE;
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Creates a Gray16Image with the same scene as gray8, scaled to 16 bits.
+     *
+     * @param nWidth
+     *            image width.
+     * @param nHeight
+     *            image height.
+     * @return the image.
+     */
+    public static Gray16Image<?> gray16(final int nWidth, final int nHeight) {
+        final Gray16Image<?> image = new Gray16Image<>(nWidth, nHeight);
+        final Short[] data = image.getData();
+        for (int i = 0; i < nHeight; i++) {
+            for (int j = 0; j < nWidth; j++) {
+                data[(i * nWidth) + j] = (short) ((SyntheticImages.scene(i, j, nWidth, nHeight, 0) << 7) - 16384);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Creates a Gray32Image with the same scene as gray8.
+     *
+     * @param nWidth
+     *            image width.
+     * @param nHeight
+     *            image height.
+     * @return the image.
+     */
+    public static Gray32Image<?> gray32(final int nWidth, final int nHeight) {
+        final Gray32Image<?> image = new Gray32Image<>(nWidth, nHeight);
+        final Integer[] data = image.getData();
+        for (int i = 0; i < nHeight; i++) {
+            for (int j = 0; j < nWidth; j++) {
+                data[(i * nWidth) + j] = SyntheticImages.scene(i, j, nWidth, nHeight, 0) * 1000;
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Creates a Complex32Image holding the FFT of a square gray8 scene.
+     *
+     * @param nSize
+     *            image width and height; must be a power of 2.
+     * @return the image.
+     * @throws ImageError
+     *             if the size is not a power of 2.
+     */
+    public static Complex32Image<?> complex32(final int nSize) throws ImageError {
+        final Gray8Fft fft = new Gray8Fft();
+        fft.push(SyntheticImages.gray8(nSize, nSize));
+        return (Complex32Image<?>) fft.getFront();
+    }
+
+    /**
+     * Creates an RgbImage. The three channels show the scene with different
+     * block phases and noise, so they are not simply copies of each other.
+     *
+     * @param nWidth
+     *            image width.
+     * @param nHeight
+     *            image height.
+     * @return the image.
+     */
+    public static RgbImage<?> rgb(final int nWidth, final int nHeight) {
+        return SyntheticImages.rgb(nWidth, nHeight, 0);
+    }
+
+    /**
+     * Creates an RgbImage with a different scene for each seed. Stages that
+     * compare an image against a background use a second seed for the
+     * background.
+     *
+     * @param nWidth
+     *            image width.
+     * @param nHeight
+     *            image height.
+     * @param nSeed
+     *            selects the scene.
+     * @return the image.
+     */
+    public static RgbImage<?> rgb(final int nWidth, final int nHeight, final int nSeed) {
+        final RgbImage<?> image = new RgbImage<>(nWidth, nHeight);
+        final Integer[] data = image.getData();
+        for (int i = 0; i < nHeight; i++) {
+            for (int j = 0; j < nWidth; j++) {
+                final int r = SyntheticImages.scene(i, j, nWidth, nHeight, nSeed);
+                final int g = SyntheticImages.scene(i, j, nWidth, nHeight, nSeed + 1);
+                final int b = SyntheticImages.scene(nHeight - 1 - i, j, nWidth, nHeight, nSeed + 2);
+                data[(i * nWidth) + j] = RgbVal.toRgb((byte) (r + Byte.MIN_VALUE), (byte) (g + Byte.MIN_VALUE), (byte) (b + Byte.MIN_VALUE));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Creates the mask used by the masked images: the middle half of the
+     * image, in both directions, is masked.
+     *
+     * @param nWidth
+     *            mask width.
+     * @param nHeight
+     *            mask height.
+     * @return the mask.
+     */
+    public static Gray8Image<?> mask(final int nWidth, final int nHeight) {
+        final Gray8Image<?> mask = new Gray8Image<>(nWidth, nHeight, Byte.MIN_VALUE);
+        final Byte[] data = mask.getData();
+        for (int i = nHeight / 4; i < ((3 * nHeight) / 4); i++) {
+            for (int j = nWidth / 4; j < ((3 * nWidth) / 4); j++) {
+                data[(i * nWidth) + j] = Byte.MAX_VALUE;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Creates a Gray8MaskedImage from gray8 and mask.
+     *
+     * @param nWidth
+     *            image width.
+     * @param nHeight
+     *            image height.
+     * @return the image.
+     * @throws ImageError
+     *             never; the image and mask are the same size.
+     */
+    public static Gray8MaskedImage<?> gray8Masked(final int nWidth, final int nHeight) throws ImageError {
+        return new Gray8MaskedImage<>(SyntheticImages.gray8(nWidth, nHeight), SyntheticImages.mask(nWidth, nHeight));
+    }
+
+    /**
+     * Creates a Gray32MaskedImage from gray32 and mask.
+     *
+     * @param nWidth
+     *            image width.
+     * @param nHeight
+     *            image height.
+     * @return the image.
+     * @throws ImageError
+     *             never; the image and mask are the same size.
+     */
+    public static Gray32MaskedImage<?> gray32Masked(final int nWidth, final int nHeight) throws ImageError {
+        return new Gray32MaskedImage<>(SyntheticImages.gray32(nWidth, nHeight), SyntheticImages.mask(nWidth, nHeight));
+    }
+
+    /**
+     * Creates an RgbMaskedImage from rgb and mask.
+     *
+     * @param nWidth
+     *            image width.
+     * @param nHeight
+     *            image height.
+     * @return the image.
+     */
+    public static RgbMaskedImage<?> rgbMasked(final int nWidth, final int nHeight) {
+        return new RgbMaskedImage<>(SyntheticImages.rgb(nWidth, nHeight), SyntheticImages.mask(nWidth, nHeight));
+    }
+
+    /**
+     * Creates a flat histogram for an image with the given number of pixels,
+     * suitable as the target of Gray8HistMatch.
+     *
+     * @param nPixels
+     *            number of pixels in the image.
+     * @return a 256-element histogram which sums to nPixels.
+     */
+    public static Integer[] flatHistogram(final int nPixels) {
+        final Integer[] hist = new Integer[256];
+        for (int i = 0; i < hist.length; i++) {
+            hist[i] = (nPixels / 256) + ((i < (nPixels % 256)) ? 1 : 0);
+        }
+        return hist;
+    }
+
+    /**
+     * Returns a small Haar cascade in the text format read by
+     * HaarClassifierCascade.fromStream. It has nStages stages of two-feature
+     * stumps looking for light-over-dark and dark-left-of-light edges on a
+     * 20x20 window. The thresholds are chosen so that some windows of the
+     * synthetic scene pass some stages, as a real cascade would, rather than
+     * all windows being rejected by the first.
+     *
+     * @param nStages
+     *            number of stages.
+     * @return the cascade text.
+     */
+    public static String haarCascade(final int nStages) {
+        final StringBuilder sb = new StringBuilder("(hcsb 20 20 ").append(nStages).append(' '); //$NON-NLS-1$
+        for (int i = 0; i < nStages; i++) {
+            sb.append("(hcs 2 "); //$NON-NLS-1$
+            sb.append("(hwcs (hf (hr 0 0 20 10 -1)(hr 0 10 20 10 1)(hr 0 0 0 0 0)0)") //$NON-NLS-1$
+                    .append(i * 64).append(" -65536 65536)"); //$NON-NLS-1$
+            sb.append("(hwcs (hf (hr 0 0 10 20 1)(hr 10 0 10 20 -1)(hr 0 0 0 0 0)0)") //$NON-NLS-1$
+                    .append(i * 32).append(" -65536 65536)"); //$NON-NLS-1$
+            sb.append("0)"); //$NON-NLS-1$
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+}
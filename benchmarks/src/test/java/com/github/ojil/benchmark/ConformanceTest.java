@@ -0,0 +1,218 @@
+/*
+ * ConformanceTest.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.benchmark;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.github.ojil.algorithm.Gray8ConnComp;
+import com.github.ojil.core.Complex;
+import com.github.ojil.core.Gray32OffsetImage;
+import com.github.ojil.core.Gray8OffsetImage;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.PipelineStage;
+import com.github.ojil.core.Rect;
+import com.github.ojil.core.RgbOffsetImage;
+
+/**
+ * ConformanceTest checks that every stage in StageCatalog still produces
+ * exactly the output it produced when its golden digest was recorded, and
+ * that every catalog Variant produces exactly the output of the stage it
+ * stands in for. Stages are run at QVGA on the deterministic synthetic
+ * inputs; the digest is a SHA-256 of the output's class, size, offset and
+ * every pixel value (including which pixels a stage leaves unwritten), so
+ * any change in fixed-point rounding, clamping or signed-byte handling is
+ * caught.
+ * <p>
+ * The golden digests are in golden-outputs.properties. When a stage's output
+ * is changed on purpose, regenerate them by running the tests with
+ * -Dojil.golden.write=path/to/golden-outputs.properties and review the
+ * diff.
+ *
+ * @author webb
+ */
+public class ConformanceTest {
+    private static final Resolution RES = Resolution.QVGA;
+    private static final String GOLDEN = "golden-outputs.properties"; //$NON-NLS-1$
+    private static final String WRITE = "ojil.golden.write"; //$NON-NLS-1$
+
+    private static void add(final MessageDigest md, final int n) {
+        md.update((byte) (n >>> 24));
+        md.update((byte) (n >>> 16));
+        md.update((byte) (n >>> 8));
+        md.update((byte) n);
+    }
+
+    private static void add(final MessageDigest md, final Image<?, ?> image) {
+        md.update(image.getClass().getName().getBytes());
+        ConformanceTest.add(md, image.getWidth());
+        ConformanceTest.add(md, image.getHeight());
+        if (image instanceof Gray8OffsetImage) {
+            ConformanceTest.add(md, ((Gray8OffsetImage<?>) image).getXOffset());
+            ConformanceTest.add(md, ((Gray8OffsetImage<?>) image).getYOffset());
+        } else if (image instanceof Gray32OffsetImage) {
+            ConformanceTest.add(md, ((Gray32OffsetImage<?>) image).getXOffset());
+            ConformanceTest.add(md, ((Gray32OffsetImage<?>) image).getYOffset());
+        } else if (image instanceof RgbOffsetImage) {
+            ConformanceTest.add(md, ((RgbOffsetImage<?>) image).getXOffset());
+            ConformanceTest.add(md, ((RgbOffsetImage<?>) image).getYOffset());
+        }
+        for (final Object o : image.getData()) {
+            // some stages leave border or masked pixels unwritten (null),
+            // which is distinct from any value
+            md.update((byte) ((o == null) ? 0 : 1));
+            if (o == null) {
+                continue;
+            }
+            if (o instanceof Complex) {
+                ConformanceTest.add(md, ((Complex) o).real());
+                ConformanceTest.add(md, ((Complex) o).imag());
+            } else {
+                ConformanceTest.add(md, ((Number) o).intValue());
+            }
+        }
+    }
+
+    private static String digest(final StageCatalog.Case c) throws ImageError, NoSuchAlgorithmException {
+        final MessageDigest md = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+        final PipelineStage stage = c.create(ConformanceTest.RES);
+        stage.push(c.createInput(ConformanceTest.RES));
+        if (stage instanceof Gray8ConnComp) {
+            // getFront colors the components randomly, so digest the
+            // components themselves
+            final Gray8ConnComp cc = (Gray8ConnComp) stage;
+            ConformanceTest.add(md, cc.getComponentCount());
+            for (int i = 0; i < cc.getComponentCount(); i++) {
+                final Rect r = cc.getComponent(i);
+                ConformanceTest.add(md, r.getLeft());
+                ConformanceTest.add(md, r.getTop());
+                ConformanceTest.add(md, r.getWidth());
+                ConformanceTest.add(md, r.getHeight());
+            }
+        } else if (c.isGenerator()) {
+            while (!stage.isEmpty()) {
+                ConformanceTest.add(md, stage.getFront());
+            }
+        } else {
+            ConformanceTest.add(md, stage.getFront());
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : md.digest()) {
+            sb.append(String.format("%02x", b & 0xff)); //$NON-NLS-1$
+        }
+        return sb.toString();
+    }
+
+    private static Properties readGolden() throws IOException {
+        final Properties prop = new Properties();
+        try (InputStream is = ConformanceTest.class.getResourceAsStream(ConformanceTest.GOLDEN)) {
+            if (is != null) {
+                prop.load(is);
+            }
+        }
+        return prop;
+    }
+
+    private static void writeGolden(final String szPath) throws ImageError, NoSuchAlgorithmException, IOException {
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(szPath), "ISO-8859-1"))) { //$NON-NLS-1$
+            pw.println("# SHA-256 digests of the output of each StageCatalog stage at " + ConformanceTest.RES + "."); //$NON-NLS-1$ //$NON-NLS-2$
+            pw.println("# Generated by ConformanceTest with -D" + ConformanceTest.WRITE + "; do not edit by hand."); //$NON-NLS-1$ //$NON-NLS-2$
+            for (final String szName : StageCatalog.getNames()) {
+                pw.println(szName + "=" + ConformanceTest.digest(StageCatalog.get(szName))); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * Every catalog stage must reproduce its golden output.
+     *
+     * @throws Throwable
+     *             if a stage fails or the golden file cannot be read.
+     */
+    @Test
+    public void testStagesMatchGolden() throws Throwable {
+        final String szWrite = System.getProperty(ConformanceTest.WRITE);
+        if (szWrite != null) {
+            ConformanceTest.writeGolden(szWrite);
+            return;
+        }
+        final Properties prop = ConformanceTest.readGolden();
+        final List<String> lFailed = new ArrayList<>();
+        for (final String szName : StageCatalog.getNames()) {
+            final String szGolden = prop.getProperty(szName);
+            if (szGolden == null) {
+                lFailed.add(szName + " (no golden digest)"); //$NON-NLS-1$
+            } else if (!szGolden.equals(ConformanceTest.digest(StageCatalog.get(szName)))) {
+                lFailed.add(szName);
+            }
+        }
+        if (!lFailed.isEmpty()) {
+            fail("output differs from golden: " + lFailed); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Every variant must produce the same output as its reference stage.
+     *
+     * @throws Throwable
+     *             if a stage fails.
+     */
+    @Test
+    public void testVariantsMatchReference() throws Throwable {
+        final List<String> lFailed = new ArrayList<>();
+        for (final StageCatalog.Variant v : StageCatalog.getVariants()) {
+            final String szReference = ConformanceTest.digest(StageCatalog.get(v.getReference()));
+            if (!szReference.equals(ConformanceTest.digest(v))) {
+                lFailed.add(v.getName());
+            }
+        }
+        if (!lFailed.isEmpty()) {
+            fail("output differs from reference: " + lFailed); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * The digests must not depend on anything but the stage and its input, or
+     * the golden outputs mean nothing.
+     *
+     * @throws Throwable
+     *             if a stage fails.
+     */
+    @Test
+    public void testDigestsAreRepeatable() throws Throwable {
+        for (final String szName : StageCatalog.getNames()) {
+            final StageCatalog.Case c = StageCatalog.get(szName);
+            assertTrue(szName, ConformanceTest.digest(c).equals(ConformanceTest.digest(c)));
+        }
+    }
+}
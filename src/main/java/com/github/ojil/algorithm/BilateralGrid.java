@@ -0,0 +1,209 @@
+/*
+ * BilateralGrid.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+/**
+ * BilateralGrid approximates a bilateral filter of an 8-bit plane, for
+ * Gray8Bilateral and RgbBilateral, with the bilateral grid of Paris and
+ * Durand ("A fast approximation of the bilateral filter using a signal
+ * processing approach", ECCV 2006) and Chen, Paris and Durand ("Real-time
+ * edge-aware image processing with the bilateral grid", SIGGRAPH 2007).
+ * <p>
+ * The grid has a cell for each block of nSpatial by nSpatial pixels and each
+ * range of nRange values. Each pixel adds its value and a weight of one to
+ * the nearest cell. The grid is then blurred along each of its three axes
+ * with the Gaussian from KernelTables, so that pixels close in position and
+ * value are averaged together and pixels across an edge are not. Each output
+ * pixel is the blurred value divided by the blurred weight, interpolated
+ * trilinearly at the pixel's position and value. The cost is linear in the
+ * number of pixels, plus the size of the grid, and so goes down as the
+ * sigmas go up.
+ * <p>
+ * Plane values are unsigned bytes, 0 to 255. The grid and the cell tables
+ * for the image size are made for each call, and the tables for the values
+ * are not changed after construction, so an instance can be used from
+ * several threads at once.
+ *
+ * @author webb
+ */
+final class BilateralGrid {
+    // KernelTables' Gaussian for sigma 2.0 has a standard deviation of about
+    // one grid cell, so the grid blur is a Gaussian of sigma nSpatial pixels
+    // and nRange values.
+    private static final int GRID_SIGMA = 20;
+
+    private final int nSpatial;
+    private final int nRange;
+    private final float[] rfCoeff;
+    private final int cGridDepth;
+    // offset of the cell for each value when splatting
+    private final int[] rnSplatZ = new int[256];
+    // offset of the cell before and the fraction of the way to the next for
+    // each value when slicing
+    private final int[] rnSliceZ = new int[256];
+    private final float[] rfSliceZ = new float[256];
+
+    /**
+     * Creates a new BilateralGrid.
+     *
+     * @param nSpatial
+     *            the spatial sigma, in pixels, at least 1.
+     * @param nRange
+     *            the range sigma, in pixel values, at least 1.
+     */
+    BilateralGrid(final int nSpatial, final int nRange) {
+        this.nSpatial = nSpatial;
+        this.nRange = nRange;
+        final int[] rnGauss = KernelTables.gauss(BilateralGrid.GRID_SIGMA);
+        rfCoeff = new float[rnGauss.length];
+        for (int k = 0; k < rnGauss.length; k++) {
+            rfCoeff[k] = rnGauss[k];
+        }
+        // the cells are rounded to when splatting; there is one more cell
+        // so slicing can always interpolate with the next
+        cGridDepth = (255 / nRange) + 2;
+        for (int v = 0; v < 256; v++) {
+            rnSplatZ[v] = 2 * ((v + (nRange / 2)) / nRange);
+            rnSliceZ[v] = 2 * (v / nRange);
+            rfSliceZ[v] = (float) (v % nRange) / nRange;
+        }
+    }
+
+    // find the cells for each row or column of the image, given the offset
+    // between cells along that axis
+    private void setCells(final int cLength, final int nStride, final int[] rnSplat, final int[] rnSlice, final float[] rfSlice) {
+        for (int k = 0; k < cLength; k++) {
+            rnSplat[k] = nStride * ((k + (nSpatial / 2)) / nSpatial);
+            rnSlice[k] = nStride * (k / nSpatial);
+            rfSlice[k] = (float) (k % nSpatial) / nSpatial;
+        }
+    }
+
+    // Blur the grid along one axis, from rfIn into rfOut. There are cLength
+    // cells along the axis, nStride apart; the lines along the axis start at
+    // o * nOuterStride + i for o < cOuter and i < cInner, so the inner loops
+    // run over adjacent floats. Cells past the edge of the grid are empty.
+    private void blurAxis(final float[] rfIn, final float[] rfOut, final int cLength, final int nStride, final int cOuter, final int nOuterStride, final int cInner) {
+        final int cCoeff = rfCoeff.length;
+        for (int o = 0; o < cOuter; o++) {
+            for (int k = 0; k < cLength; k++) {
+                final int nBase = (o * nOuterStride) + (k * nStride);
+                final float fCenter = rfCoeff[0];
+                for (int i = 0; i < cInner; i++) {
+                    rfOut[nBase + i] = fCenter * rfIn[nBase + i];
+                }
+                for (int t = 1; t < cCoeff; t++) {
+                    final float fCoeff = rfCoeff[t];
+                    if (k >= t) {
+                        final int nFrom = nBase - (t * nStride);
+                        for (int i = 0; i < cInner; i++) {
+                            rfOut[nBase + i] += fCoeff * rfIn[nFrom + i];
+                        }
+                    }
+                    if ((k + t) < cLength) {
+                        final int nFrom = nBase + (t * nStride);
+                        for (int i = 0; i < cInner; i++) {
+                            rfOut[nBase + i] += fCoeff * rfIn[nFrom + i];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Bilateral filter a plane.
+     *
+     * @param rbIn
+     *            the input plane, unsigned values. Not modified.
+     * @param rbOut
+     *            the output plane, unsigned values.
+     * @param cWidth
+     *            the plane width.
+     * @param cHeight
+     *            the plane height.
+     */
+    void filter(final byte[] rbIn, final byte[] rbOut, final int cWidth, final int cHeight) {
+        final int nStrideX = 2 * cGridDepth;
+        final int cGridWidth = ((cWidth - 1) / nSpatial) + 2;
+        final int cGridHeight = ((cHeight - 1) / nSpatial) + 2;
+        final int nStrideY = cGridWidth * nStrideX;
+        // the grid, with the summed value and weight of each cell side by
+        // side, cells along the range axis next to each other, then along x,
+        // then y
+        final float[] rfGrid = new float[cGridHeight * nStrideY];
+        final float[] rfTemp = new float[rfGrid.length];
+        // the cells for each column and row, as for the values
+        final int[] rnSplatX = new int[cWidth];
+        final int[] rnSliceX = new int[cWidth];
+        final float[] rfSliceX = new float[cWidth];
+        final int[] rnSplatY = new int[cHeight];
+        final int[] rnSliceY = new int[cHeight];
+        final float[] rfSliceY = new float[cHeight];
+        setCells(cWidth, nStrideX, rnSplatX, rnSliceX, rfSliceX);
+        setCells(cHeight, nStrideY, rnSplatY, rnSliceY, rfSliceY);
+        for (int i = 0; i < cHeight; i++) {
+            final int nRow = i * cWidth;
+            final int nCellY = rnSplatY[i];
+            for (int j = 0; j < cWidth; j++) {
+                final int nValue = rbIn[nRow + j] & 0xff;
+                final int nCell = nCellY + rnSplatX[j] + rnSplatZ[nValue];
+                rfGrid[nCell] += nValue;
+                rfGrid[nCell + 1] += 1;
+            }
+        }
+        blurAxis(rfGrid, rfTemp, cGridDepth, 2, cGridWidth * cGridHeight, nStrideX, 2);
+        blurAxis(rfTemp, rfGrid, cGridWidth, nStrideX, cGridHeight, nStrideY, nStrideX);
+        blurAxis(rfGrid, rfTemp, cGridHeight, nStrideY, 1, 0, nStrideY);
+        final float[] rfBlur = rfTemp;
+        for (int i = 0; i < cHeight; i++) {
+            final int nRow = i * cWidth;
+            final int nCellY = rnSliceY[i];
+            final float fY = rfSliceY[i];
+            for (int j = 0; j < cWidth; j++) {
+                final int nValue = rbIn[nRow + j] & 0xff;
+                final int nCell = nCellY + rnSliceX[j] + rnSliceZ[nValue];
+                final float fX = rfSliceX[j];
+                final float fZ = rfSliceZ[nValue];
+                // interpolate along the range axis at the four corners,
+                // then along x, then along y
+                final int n01 = nCell + nStrideX;
+                final int n10 = nCell + nStrideY;
+                final int n11 = n10 + nStrideX;
+                final float fV00 = rfBlur[nCell] + (fZ * (rfBlur[nCell + 2] - rfBlur[nCell]));
+                final float fW00 = rfBlur[nCell + 1] + (fZ * (rfBlur[nCell + 3] - rfBlur[nCell + 1]));
+                final float fV01 = rfBlur[n01] + (fZ * (rfBlur[n01 + 2] - rfBlur[n01]));
+                final float fW01 = rfBlur[n01 + 1] + (fZ * (rfBlur[n01 + 3] - rfBlur[n01 + 1]));
+                final float fV10 = rfBlur[n10] + (fZ * (rfBlur[n10 + 2] - rfBlur[n10]));
+                final float fW10 = rfBlur[n10 + 1] + (fZ * (rfBlur[n10 + 3] - rfBlur[n10 + 1]));
+                final float fV11 = rfBlur[n11] + (fZ * (rfBlur[n11 + 2] - rfBlur[n11]));
+                final float fW11 = rfBlur[n11 + 1] + (fZ * (rfBlur[n11 + 3] - rfBlur[n11 + 1]));
+                final float fV0 = fV00 + (fX * (fV01 - fV00));
+                final float fW0 = fW00 + (fX * (fW01 - fW00));
+                final float fV1 = fV10 + (fX * (fV11 - fV10));
+                final float fW1 = fW10 + (fX * (fW11 - fW10));
+                final float fV = fV0 + (fY * (fV1 - fV0));
+                final float fW = fW0 + (fY * (fW1 - fW0));
+                // every pixel adds to one of the corners, so fW is positive
+                final int nOut = Math.round(fV / fW);
+                rbOut[nRow + j] = (byte) Math.max(0, Math.min(255, nOut));
+            }
+        }
+    }
+}
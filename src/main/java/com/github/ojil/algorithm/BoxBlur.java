@@ -0,0 +1,133 @@
+/*
+ * BoxBlur.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+/**
+ * BoxBlur sums a rectangular window around each pixel of a plane, for
+ * Gray8BoxBlur and RgbBoxBlur. A sum is kept for each column of the window
+ * height; moving down a row changes each by one pixel out and one in, and
+ * moving right along a row adds one column sum to the window sum and
+ * subtracts another. The cost per pixel does not depend on the window size.
+ * <p>
+ * The plane values are longs, which can hold the red, green, and blue bands
+ * of a pixel in three lanes of LANE_BITS bits (see spread), so that all three
+ * bands are summed by each addition. The lanes do not carry into each other as
+ * long as the window has no more than MAX_LANE_AREA pixels. The image is
+ * extended past its borders by repeating the border pixels. An instance holds
+ * only the window size, so it can be used from several threads at once.
+ *
+ * @author webb
+ */
+final class BoxBlur {
+    /**
+     * The width of a lane in a spread pixel.
+     */
+    static final int LANE_BITS = 21;
+
+    /**
+     * The mask for one lane of a spread pixel.
+     */
+    static final long LANE_MASK = (1L << BoxBlur.LANE_BITS) - 1;
+
+    /**
+     * The largest window, in pixels, whose sums of unsigned bytes fit in a
+     * lane.
+     */
+    static final int MAX_LANE_AREA = (int) (BoxBlur.LANE_MASK / 255);
+
+    private final int nWidth;
+    private final int nHeight;
+
+    /**
+     * Creates a new BoxBlur.
+     *
+     * @param nWidth
+     *            the window width, odd.
+     * @param nHeight
+     *            the window height, odd.
+     */
+    BoxBlur(final int nWidth, final int nHeight) {
+        this.nWidth = nWidth;
+        this.nHeight = nHeight;
+    }
+
+    /**
+     * Spread the red, green, and blue bands of a packed pixel into three
+     * lanes, as unsigned values. Red is in the highest lane.
+     *
+     * @param nRgb
+     *            the packed ARGB pixel.
+     * @return the spread pixel.
+     */
+    static long spread(final int nRgb) {
+        return (((long) ((nRgb >> 16) & 0xff)) << (2 * BoxBlur.LANE_BITS)) | (((long) ((nRgb >> 8) & 0xff)) << BoxBlur.LANE_BITS) | (nRgb & 0xff);
+    }
+
+    /**
+     * Sum the window around each pixel of a plane.
+     *
+     * @param rlIn
+     *            the input plane, non-negative values. Not modified.
+     * @param rlOut
+     *            the window sums.
+     * @param cWidth
+     *            the plane width.
+     * @param cHeight
+     *            the plane height.
+     */
+    void sum(final long[] rlIn, final long[] rlOut, final int cWidth, final int cHeight) {
+        final int nRx = nWidth / 2;
+        final int nRy = nHeight / 2;
+        // column sums for the current row, with nWidth / 2 repeated border
+        // columns on each side
+        final long[] rlCol = new long[cWidth + (2 * nRx)];
+        for (int j = 0; j < cWidth; j++) {
+            long l = 0;
+            for (int k = -nRy; k <= nRy; k++) {
+                l += rlIn[(Math.min(Math.max(k, 0), cHeight - 1) * cWidth) + j];
+            }
+            rlCol[nRx + j] = l;
+        }
+        for (int i = 0; i < cHeight; i++) {
+            if (i > 0) {
+                // move the column sums one row down. Subtracting first keeps
+                // every lane from going negative or overflowing.
+                final int nOut = Math.max(i - nRy - 1, 0) * cWidth;
+                final int nIn = Math.min(i + nRy, cHeight - 1) * cWidth;
+                for (int j = 0; j < cWidth; j++) {
+                    rlCol[nRx + j] = (rlCol[nRx + j] - rlIn[nOut + j]) + rlIn[nIn + j];
+                }
+            }
+            for (int k = 0; k < nRx; k++) {
+                rlCol[k] = rlCol[nRx];
+                rlCol[nRx + cWidth + k] = rlCol[(nRx + cWidth) - 1];
+            }
+            long lSum = 0;
+            for (int k = 0; k < nWidth; k++) {
+                lSum += rlCol[k];
+            }
+            final int nRow = i * cWidth;
+            rlOut[nRow] = lSum;
+            for (int j = 1; j < cWidth; j++) {
+                lSum = (lSum - rlCol[j - 1]) + rlCol[(j + nWidth) - 1];
+                rlOut[nRow + j] = lSum;
+            }
+        }
+    }
+}
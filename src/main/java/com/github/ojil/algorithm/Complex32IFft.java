@@ -30,6 +30,8 @@ import com.github.ojil.core.Gray32Image;
 import com.github.ojil.core.Gray8Image;
 import com.github.ojil.core.Image;
 import com.github.ojil.core.ImageError;
+import com.github.ojil.core.PipelineEvents;
+import com.github.ojil.core.PipelineListener;
 import com.github.ojil.core.PipelineStage;
 
 /**
@@ -91,6 +93,8 @@ public class Complex32IFft extends PipelineStage {
         final Complex data[] = cxmIn.getData();
         // create output
         final Complex32Image<?> cxmResult = new Complex32Image<>(nWidth, nHeight);
+        final PipelineListener listener = PipelineEvents.getListener();
+        final long lStart = (listener == null) ? 0 : System.nanoTime();
         // take inverse FFT of each row
         final Complex cxRow[] = new Complex[nWidth];
         for (int i = 0; i < nHeight; i++) {
@@ -114,6 +118,9 @@ public class Complex32IFft extends PipelineStage {
                 cxmResult.getData()[(i * nWidth) + j] = cxResult[i];
             }
         }
+        if (listener != null) {
+            listener.fftTransformed(nWidth, nHeight, true, System.nanoTime() - lStart);
+        }
         // convert back to a gray image
         // first convert it to an integer image
         final Gray32Image<?> imInteger = new Gray32Image<>(nWidth, nHeight);
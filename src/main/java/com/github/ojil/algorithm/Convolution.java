@@ -0,0 +1,748 @@
+/*
+ * Convolution.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.ErrorCodes;
+import com.github.ojil.core.ImageError;
+
+/**
+ * Convolution applies an arbitrary rectangular kernel to a plane of pixel
+ * values, for Gray8Convolve, Gray32Convolve, and RgbConvolve. Output pixel
+ * (x, y) is the sum over the kernel of k(i, j) * in(x + j - cx, y + i - cy),
+ * where (cx, cy) = ((width - 1) / 2, (height - 1) / 2) is the kernel center;
+ * the kernel is not flipped. The image is extended past its borders by
+ * repeating the border pixels.
+ * <p>
+ * There are three ways to compute it:
+ * <ul>
+ * <li>SEPARABLE, when the kernel is the product of a column and a row (it
+ * has rank 1): a vertical then a horizontal pass, costing width + height
+ * operations per pixel.</li>
+ * <li>DIRECT: every tap for every pixel, accumulated a row at a time so the
+ * rows read stay in cache, costing one operation per non-zero tap.</li>
+ * <li>FFT: the product of the transforms of the extended image and the
+ * kernel, padded to powers of 2. The cost per pixel grows only with the log
+ * of the image size, not with the kernel.</li>
+ * </ul>
+ * By default (AUTO) the cheapest is chosen for each image size from a simple
+ * cost model; setStrategy overrides it.
+ * <p>
+ * Integer kernels are divided by their divisor and rounded to the nearest
+ * integer, halves up, at the end. SEPARABLE and DIRECT sum them in long
+ * arithmetic, which is exact as long as the sum over the kernel of |k| times
+ * the largest |input| is below 2^63. FFT works in double precision. Its
+ * rounding error is of the order of 2^-52 * log2(P) * sqrt(P) * sum|k| *
+ * max|input| for P transform points; this class treats the FFT as exact only
+ * when the larger, conservative bound 2^-52 * P * sum|k| * max|input| is
+ * below 1/4, which holds for 8-bit input and any kernel of practical size.
+ * Under AUTO an integer kernel never uses the FFT when that bound is not met
+ * by the input, so the result is always exact (and so independent of the
+ * strategy). With FFT set explicitly, full-range Gray32 input and a large
+ * kernel can give results off by one.
+ * <p>
+ * Float kernels are summed in double precision and can differ between
+ * strategies by rounding. The working buffers are made for each call and the
+ * kernel transform is replaced rather than modified, so an instance can be
+ * used by several stages and threads at once, as long as setStrategy is not
+ * called meanwhile.
+ *
+ * @author webb
+ */
+public class Convolution {
+    /**
+     * Choose the strategy from the cost model.
+     */
+    public static final int AUTO = 0;
+    /**
+     * Compute every tap directly.
+     */
+    public static final int DIRECT = 1;
+    /**
+     * Separate the kernel into a column and a row.
+     */
+    public static final int SEPARABLE = 2;
+    /**
+     * Multiply Fourier transforms.
+     */
+    public static final int FFT = 3;
+
+    // Cost of an FFT, per point per level of each transform, relative to a
+    // multiply-add. Measured: the FFT takes as long as a direct 11x11 kernel
+    // at QVGA, and a direct 15x15 kernel at 1080p.
+    private static final double FFT_COST = 2.2;
+
+    private final int cKernelWidth;
+    private final int cKernelHeight;
+    private final double[] rdKernel;
+    // the kernel for the long sums, or null for a float kernel
+    private final int[] rnKernel;
+    private final boolean bInteger;
+    private final int nDivisor;
+    private final int cTaps;
+    // sum of |k|, for the FFT error bound
+    private final double dKernelNorm;
+    // the column and row the kernel is the product of, or null if it is not
+    // separable. Integer kernels use rnCol and rnRow, float kernels rdCol
+    // and rdRow.
+    private double[] rdCol = null;
+    private double[] rdRow = null;
+    private int[] rnCol = null;
+    private int[] rnRow = null;
+    private int nStrategy = Convolution.AUTO;
+    // the kernel transform for the last FFT size used
+    private volatile KernelTransform transform = null;
+
+    /**
+     * The transform of the kernel padded to one FFT size. It is not changed
+     * once made, so it can be read by any thread that sees it.
+     */
+    private static final class KernelTransform {
+        final int cFftWidth;
+        final int cFftHeight;
+        final double[] rdRe;
+        final double[] rdIm;
+
+        KernelTransform(final int cFftWidth, final int cFftHeight, final double[] rdRe, final double[] rdIm) {
+            this.cFftWidth = cFftWidth;
+            this.cFftHeight = cFftHeight;
+            this.rdRe = rdRe;
+            this.rdIm = rdIm;
+        }
+    }
+
+    /**
+     * Creates a Convolution with an integer kernel. The result is the
+     * weighted sum divided by nDivisor, rounded to the nearest integer.
+     *
+     * @param rnKernel
+     *            the kernel, in row-major order.
+     * @param cKernelWidth
+     *            the kernel width. The height is the kernel length divided by
+     *            this.
+     * @param nDivisor
+     *            the divisor.
+     * @throws ImageError
+     *             if the kernel is empty or its length is not a multiple of
+     *             the width, or the divisor is 0.
+     */
+    public Convolution(final int[] rnKernel, final int cKernelWidth, final int nDivisor) throws ImageError {
+        if (nDivisor == 0) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.MATH_DIVISION_ZERO, null, null, null);
+        }
+        checkSize(rnKernel.length, cKernelWidth);
+        this.cKernelWidth = cKernelWidth;
+        cKernelHeight = rnKernel.length / cKernelWidth;
+        bInteger = true;
+        this.nDivisor = nDivisor;
+        this.rnKernel = rnKernel.clone();
+        rdKernel = new double[rnKernel.length];
+        int cTaps = 0;
+        double dNorm = 0;
+        for (int i = 0; i < rnKernel.length; i++) {
+            rdKernel[i] = rnKernel[i];
+            dNorm += Math.abs(rdKernel[i]);
+            if (rnKernel[i] != 0) {
+                cTaps++;
+            }
+        }
+        this.cTaps = cTaps;
+        dKernelNorm = dNorm;
+        separateInteger(rnKernel);
+    }
+
+    /**
+     * Creates a Convolution with a float kernel. The result is the weighted
+     * sum rounded to the nearest integer.
+     *
+     * @param rfKernel
+     *            the kernel, in row-major order.
+     * @param cKernelWidth
+     *            the kernel width. The height is the kernel length divided by
+     *            this.
+     * @throws ImageError
+     *             if the kernel is empty or its length is not a multiple of
+     *             the width.
+     */
+    public Convolution(final float[] rfKernel, final int cKernelWidth) throws ImageError {
+        checkSize(rfKernel.length, cKernelWidth);
+        this.cKernelWidth = cKernelWidth;
+        cKernelHeight = rfKernel.length / cKernelWidth;
+        bInteger = false;
+        nDivisor = 1;
+        rnKernel = null;
+        rdKernel = new double[rfKernel.length];
+        int cTaps = 0;
+        double dNorm = 0;
+        for (int i = 0; i < rfKernel.length; i++) {
+            rdKernel[i] = rfKernel[i];
+            dNorm += Math.abs(rdKernel[i]);
+            if (rfKernel[i] != 0) {
+                cTaps++;
+            }
+        }
+        this.cTaps = cTaps;
+        dKernelNorm = dNorm;
+        separateFloat();
+    }
+
+    private static void checkSize(final int cLength, final int cKernelWidth) throws ImageError {
+        if ((cLength == 0) || (cKernelWidth <= 0) || ((cLength % cKernelWidth) != 0)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_WRONG_SIZE, new Integer(cLength).toString(),
+                    new Integer(cKernelWidth).toString(), null);
+        }
+    }
+
+    // An integer kernel of rank 1 is the product of an integer column and an
+    // integer row whose entries have no common factor: each row of the kernel
+    // is a rational multiple of that row, and since the row has no common
+    // factor, an integer one. So the separable sums are integers too.
+    private void separateInteger(final int[] rnKernel) {
+        int nP = -1;
+        for (int n = 0; n < rnKernel.length; n++) {
+            if (rnKernel[n] != 0) {
+                nP = n;
+                break;
+            }
+        }
+        rnCol = new int[cKernelHeight];
+        rnRow = new int[cKernelWidth];
+        if (nP < 0) {
+            // all zero
+            return;
+        }
+        final int p = nP / cKernelWidth;
+        final int q = nP % cKernelWidth;
+        final long lPQ = rnKernel[nP];
+        for (int i = 0; i < cKernelHeight; i++) {
+            for (int j = 0; j < cKernelWidth; j++) {
+                if (((long) rnKernel[(i * cKernelWidth) + j] * lPQ) != ((long) rnKernel[(i * cKernelWidth) + q] * rnKernel[(p * cKernelWidth) + j])) {
+                    rnCol = null;
+                    rnRow = null;
+                    return;
+                }
+            }
+        }
+        int nGcd = 0;
+        for (int j = 0; j < cKernelWidth; j++) {
+            nGcd = Convolution.gcd(nGcd, Math.abs(rnKernel[(p * cKernelWidth) + j]));
+        }
+        for (int j = 0; j < cKernelWidth; j++) {
+            rnRow[j] = rnKernel[(p * cKernelWidth) + j] / nGcd;
+        }
+        for (int i = 0; i < cKernelHeight; i++) {
+            rnCol[i] = rnKernel[(i * cKernelWidth) + q] / rnRow[q];
+        }
+    }
+
+    private static int gcd(final int a, final int b) {
+        return (b == 0) ? a : Convolution.gcd(b, a % b);
+    }
+
+    // A float kernel is separable if it is the product of its largest row
+    // and column to within rounding.
+    private void separateFloat() {
+        int nP = 0;
+        for (int n = 1; n < rdKernel.length; n++) {
+            if (Math.abs(rdKernel[n]) > Math.abs(rdKernel[nP])) {
+                nP = n;
+            }
+        }
+        final int p = nP / cKernelWidth;
+        final int q = nP % cKernelWidth;
+        final double dPQ = rdKernel[nP];
+        rdCol = new double[cKernelHeight];
+        rdRow = new double[cKernelWidth];
+        if (dPQ == 0) {
+            return;
+        }
+        for (int j = 0; j < cKernelWidth; j++) {
+            rdRow[j] = rdKernel[(p * cKernelWidth) + j];
+        }
+        for (int i = 0; i < cKernelHeight; i++) {
+            rdCol[i] = rdKernel[(i * cKernelWidth) + q] / dPQ;
+        }
+        for (int i = 0; i < cKernelHeight; i++) {
+            for (int j = 0; j < cKernelWidth; j++) {
+                if (Math.abs(rdKernel[(i * cKernelWidth) + j] - (rdCol[i] * rdRow[j])) > (1e-6 * Math.abs(dPQ))) {
+                    rdCol = null;
+                    rdRow = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the kernel width.
+     *
+     * @return the kernel width.
+     */
+    public int getKernelWidth() {
+        return cKernelWidth;
+    }
+
+    /**
+     * Returns the kernel height.
+     *
+     * @return the kernel height.
+     */
+    public int getKernelHeight() {
+        return cKernelHeight;
+    }
+
+    /**
+     * Returns whether the kernel is the product of a column and a row, so
+     * the SEPARABLE strategy can be used.
+     *
+     * @return true if the kernel is separable.
+     */
+    public boolean isSeparable() {
+        return bInteger ? (rnRow != null) : (rdRow != null);
+    }
+
+    /**
+     * Returns the strategy set by setStrategy.
+     *
+     * @return AUTO, DIRECT, SEPARABLE, or FFT.
+     */
+    public int getStrategy() {
+        return nStrategy;
+    }
+
+    /**
+     * Sets the strategy, overriding the cost model.
+     *
+     * @param nStrategy
+     *            AUTO, DIRECT, SEPARABLE, or FFT.
+     * @throws ImageError
+     *             if nStrategy is not one of these, or is SEPARABLE and the
+     *             kernel is not separable.
+     */
+    public void setStrategy(final int nStrategy) throws ImageError {
+        if ((nStrategy < Convolution.AUTO) || (nStrategy > Convolution.FFT) || ((nStrategy == Convolution.SEPARABLE) && !isSeparable())) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(nStrategy).toString(),
+                    new Integer(Convolution.AUTO).toString(), new Integer(Convolution.FFT).toString());
+        }
+        this.nStrategy = nStrategy;
+    }
+
+    /**
+     * Returns the strategy that will be used for an image size: the one set
+     * by setStrategy, or under AUTO the cheapest by the cost model. Under
+     * AUTO, push replaces FFT with the cheaper of the other strategies for
+     * an integer kernel when the input is too large for the FFT to be exact
+     * (see the class description).
+     *
+     * @param cWidth
+     *            the image width.
+     * @param cHeight
+     *            the image height.
+     * @return DIRECT, SEPARABLE, or FFT.
+     */
+    public int chooseStrategy(final int cWidth, final int cHeight) {
+        if (nStrategy != Convolution.AUTO) {
+            return nStrategy;
+        }
+        final double dPixels = (double) cWidth * cHeight;
+        final double dDirect = cTaps;
+        final double dSeparable = isSeparable() ? (cKernelWidth + cKernelHeight) : Double.MAX_VALUE;
+        final int cFftWidth = Convolution.powerOf2((cWidth + cKernelWidth) - 1);
+        final int cFftHeight = Convolution.powerOf2((cHeight + cKernelHeight) - 1);
+        final double dFftPoints = (double) cFftWidth * cFftHeight;
+        // a forward and an inverse transform
+        final double dFft = (2 * Convolution.FFT_COST * dFftPoints * (Math.log(dFftPoints) / Math.log(2))) / dPixels;
+        if ((dSeparable <= dDirect) && (dSeparable <= dFft)) {
+            return Convolution.SEPARABLE;
+        }
+        return (dDirect <= dFft) ? Convolution.DIRECT : Convolution.FFT;
+    }
+
+    private static int powerOf2(final int n) {
+        int nPower = 1;
+        while (nPower < n) {
+            nPower <<= 1;
+        }
+        return nPower;
+    }
+
+    /**
+     * Convolve a plane of pixel values.
+     *
+     * @param rnIn
+     *            the input values, in row-major order. Not modified.
+     * @param rnOut
+     *            the output values, rounded to the nearest integer.
+     * @param cWidth
+     *            the plane width.
+     * @param cHeight
+     *            the plane height.
+     */
+    public void push(final int[] rnIn, final int[] rnOut, final int cWidth, final int cHeight) {
+        final int cExtWidth = (cWidth + cKernelWidth) - 1;
+        final int cExtHeight = (cHeight + cKernelHeight) - 1;
+        int nChosen = chooseStrategy(cWidth, cHeight);
+        if ((nChosen == Convolution.FFT) && bInteger && (nStrategy == Convolution.AUTO) && !isFftExact(rnIn, cExtWidth, cExtHeight)) {
+            nChosen = (isSeparable() && ((cKernelWidth + cKernelHeight) <= cTaps)) ? Convolution.SEPARABLE : Convolution.DIRECT;
+        }
+        final int nCx = (cKernelWidth - 1) / 2;
+        final int nCy = (cKernelHeight - 1) / 2;
+        if (bInteger && (nChosen != Convolution.FFT)) {
+            // the image extended by the kernel size
+            final int[] rnExt = new int[cExtWidth * cExtHeight];
+            for (int y = 0; y < cExtHeight; y++) {
+                final int nIn = Math.min(Math.max(y - nCy, 0), cHeight - 1) * cWidth;
+                for (int x = 0; x < cExtWidth; x++) {
+                    rnExt[(y * cExtWidth) + x] = rnIn[nIn + Math.min(Math.max(x - nCx, 0), cWidth - 1)];
+                }
+            }
+            final long[] rlAcc = new long[cWidth];
+            if (nChosen == Convolution.SEPARABLE) {
+                pushSeparableInteger(rnExt, rlAcc, rnOut, cWidth, cHeight, cExtWidth);
+            } else {
+                pushDirectInteger(rnExt, rlAcc, rnOut, cWidth, cHeight, cExtWidth);
+            }
+            return;
+        }
+        // the image extended by the kernel size
+        final double[] rdExt = new double[cExtWidth * cExtHeight];
+        for (int y = 0; y < cExtHeight; y++) {
+            final int nIn = Math.min(Math.max(y - nCy, 0), cHeight - 1) * cWidth;
+            for (int x = 0; x < cExtWidth; x++) {
+                rdExt[(y * cExtWidth) + x] = rnIn[nIn + Math.min(Math.max(x - nCx, 0), cWidth - 1)];
+            }
+        }
+        final double[] rdAcc = new double[cWidth];
+        switch (nChosen) {
+            case SEPARABLE:
+                pushSeparable(rdExt, rdAcc, rnOut, cWidth, cHeight, cExtWidth);
+                break;
+            case FFT:
+                pushFft(rdExt, rdAcc, rnOut, cWidth, cHeight, cExtWidth, cExtHeight);
+                break;
+            default:
+                pushDirect(rdExt, rdAcc, rnOut, cWidth, cHeight, cExtWidth);
+                break;
+        }
+    }
+
+    // true if the conservative FFT error bound in the class description is
+    // met for this input
+    private boolean isFftExact(final int[] rnIn, final int cExtWidth, final int cExtHeight) {
+        long lMax = 0;
+        for (final int n : rnIn) {
+            lMax = Math.max(lMax, Math.abs((long) n));
+        }
+        final double dPoints = (double) Convolution.powerOf2(cExtWidth) * Convolution.powerOf2(cExtHeight);
+        return (Math.ulp(1.0) * dPoints * dKernelNorm * lMax) < 0.25;
+    }
+
+    private void store(final int[] rnOut, final int nBase, final double[] rd, final int cWidth) {
+        for (int x = 0; x < cWidth; x++) {
+            rnOut[nBase + x] = divide(Math.round(rd[x]));
+        }
+    }
+
+    private void store(final int[] rnOut, final int nBase, final long[] rl, final int cWidth) {
+        for (int x = 0; x < cWidth; x++) {
+            rnOut[nBase + x] = divide(rl[x]);
+        }
+    }
+
+    // l / nDivisor rounded to nearest, halves up, and clamped to an int
+    private int divide(final long l) {
+        final long lResult;
+        if (bInteger && (nDivisor != 1)) {
+            // floor((2 * l + d) / (2 * d)) for d > 0
+            final long lDen = 2L * Math.abs(nDivisor);
+            final long lNum = ((nDivisor > 0) ? (2 * l) : (-2 * l)) + Math.abs(nDivisor);
+            final long lQuot = lNum / lDen;
+            lResult = (((lNum % lDen) != 0) && (lNum < 0)) ? lQuot - 1 : lQuot;
+        } else {
+            lResult = l;
+        }
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, lResult));
+    }
+
+    private void pushDirectInteger(final int[] rnExt, final long[] rlAcc, final int[] rnOut, final int cWidth, final int cHeight, final int cExtWidth) {
+        for (int y = 0; y < cHeight; y++) {
+            for (int x = 0; x < cWidth; x++) {
+                rlAcc[x] = 0;
+            }
+            for (int i = 0; i < cKernelHeight; i++) {
+                for (int j = 0; j < cKernelWidth; j++) {
+                    final long lK = rnKernel[(i * cKernelWidth) + j];
+                    if (lK == 0) {
+                        continue;
+                    }
+                    final int nBase = ((y + i) * cExtWidth) + j;
+                    for (int x = 0; x < cWidth; x++) {
+                        rlAcc[x] += lK * rnExt[nBase + x];
+                    }
+                }
+            }
+            store(rnOut, y * cWidth, rlAcc, cWidth);
+        }
+    }
+
+    private void pushSeparableInteger(final int[] rnExt, final long[] rlAcc, final int[] rnOut, final int cWidth, final int cHeight, final int cExtWidth) {
+        final long[] rlTemp = new long[cExtWidth];
+        for (int y = 0; y < cHeight; y++) {
+            // the column pass over one extended row, then the row pass
+            for (int x = 0; x < cExtWidth; x++) {
+                rlTemp[x] = 0;
+            }
+            for (int i = 0; i < cKernelHeight; i++) {
+                final long lK = rnCol[i];
+                if (lK == 0) {
+                    continue;
+                }
+                final int nBase = (y + i) * cExtWidth;
+                for (int x = 0; x < cExtWidth; x++) {
+                    rlTemp[x] += lK * rnExt[nBase + x];
+                }
+            }
+            for (int x = 0; x < cWidth; x++) {
+                rlAcc[x] = 0;
+            }
+            for (int j = 0; j < cKernelWidth; j++) {
+                final long lK = rnRow[j];
+                if (lK == 0) {
+                    continue;
+                }
+                for (int x = 0; x < cWidth; x++) {
+                    rlAcc[x] += lK * rlTemp[x + j];
+                }
+            }
+            store(rnOut, y * cWidth, rlAcc, cWidth);
+        }
+    }
+
+    private void pushDirect(final double[] rdExt, final double[] rdAcc, final int[] rnOut, final int cWidth, final int cHeight, final int cExtWidth) {
+        for (int y = 0; y < cHeight; y++) {
+            for (int x = 0; x < cWidth; x++) {
+                rdAcc[x] = 0;
+            }
+            for (int i = 0; i < cKernelHeight; i++) {
+                for (int j = 0; j < cKernelWidth; j++) {
+                    final double dK = rdKernel[(i * cKernelWidth) + j];
+                    if (dK == 0) {
+                        continue;
+                    }
+                    final int nBase = ((y + i) * cExtWidth) + j;
+                    for (int x = 0; x < cWidth; x++) {
+                        rdAcc[x] += dK * rdExt[nBase + x];
+                    }
+                }
+            }
+            store(rnOut, y * cWidth, rdAcc, cWidth);
+        }
+    }
+
+    private void pushSeparable(final double[] rdExt, final double[] rdAcc, final int[] rnOut, final int cWidth, final int cHeight, final int cExtWidth) {
+        final double[] rdTemp = new double[cExtWidth];
+        for (int y = 0; y < cHeight; y++) {
+            // the column pass over one extended row, then the row pass
+            for (int x = 0; x < cExtWidth; x++) {
+                rdTemp[x] = 0;
+            }
+            for (int i = 0; i < cKernelHeight; i++) {
+                final double dK = rdCol[i];
+                if (dK == 0) {
+                    continue;
+                }
+                final int nBase = (y + i) * cExtWidth;
+                for (int x = 0; x < cExtWidth; x++) {
+                    rdTemp[x] += dK * rdExt[nBase + x];
+                }
+            }
+            for (int x = 0; x < cWidth; x++) {
+                rdAcc[x] = 0;
+            }
+            for (int j = 0; j < cKernelWidth; j++) {
+                final double dK = rdRow[j];
+                if (dK == 0) {
+                    continue;
+                }
+                for (int x = 0; x < cWidth; x++) {
+                    rdAcc[x] += dK * rdTemp[x + j];
+                }
+            }
+            store(rnOut, y * cWidth, rdAcc, cWidth);
+        }
+    }
+
+    // Returns the kernel transform for an FFT size, making it if the last
+    // one made was for another size. Threads that race here each make their
+    // own, and any of them may be kept.
+    private KernelTransform getTransform(final int cFftWidth, final int cFftHeight) {
+        final KernelTransform t = transform;
+        if ((t != null) && (t.cFftWidth == cFftWidth) && (t.cFftHeight == cFftHeight)) {
+            return t;
+        }
+        final double[] rdKernelRe = new double[cFftWidth * cFftHeight];
+        final double[] rdKernelIm = new double[cFftWidth * cFftHeight];
+        for (int i = 0; i < cKernelHeight; i++) {
+            for (int j = 0; j < cKernelWidth; j++) {
+                rdKernelRe[(i * cFftWidth) + j] = rdKernel[(i * cKernelWidth) + j];
+            }
+        }
+        for (int y = 0; y < cKernelHeight; y++) {
+            Convolution.fft(rdKernelRe, rdKernelIm, y * cFftWidth, cFftWidth, false);
+        }
+        Convolution.fftColumns(rdKernelRe, rdKernelIm, cFftWidth, cFftHeight, false);
+        final KernelTransform tNew = new KernelTransform(cFftWidth, cFftHeight, rdKernelRe, rdKernelIm);
+        transform = tNew;
+        return tNew;
+    }
+
+    private void pushFft(final double[] rdExt, final double[] rdAcc, final int[] rnOut, final int cWidth, final int cHeight, final int cExtWidth, final int cExtHeight) {
+        final int cFftWidth = Convolution.powerOf2(cExtWidth);
+        final int cFftHeight = Convolution.powerOf2(cExtHeight);
+        final int cPoints = cFftWidth * cFftHeight;
+        final KernelTransform t = getTransform(cFftWidth, cFftHeight);
+        final double[] rdKernelRe = t.rdRe;
+        final double[] rdKernelIm = t.rdIm;
+        final double[] rdRe = new double[cPoints];
+        final double[] rdIm = new double[cPoints];
+        for (int y = 0; y < cExtHeight; y++) {
+            System.arraycopy(rdExt, y * cExtWidth, rdRe, y * cFftWidth, cExtWidth);
+        }
+        // the rows past the extended image are 0, and so are their transforms
+        for (int y = 0; y < cExtHeight; y++) {
+            Convolution.fft(rdRe, rdIm, y * cFftWidth, cFftWidth, false);
+        }
+        Convolution.fftColumns(rdRe, rdIm, cFftWidth, cFftHeight, false);
+        // correlation: multiply by the conjugate of the kernel transform
+        for (int n = 0; n < cPoints; n++) {
+            final double dRe = (rdRe[n] * rdKernelRe[n]) + (rdIm[n] * rdKernelIm[n]);
+            final double dIm = (rdIm[n] * rdKernelRe[n]) - (rdRe[n] * rdKernelIm[n]);
+            rdRe[n] = dRe;
+            rdIm[n] = dIm;
+        }
+        // only the first cHeight rows of the result are needed
+        Convolution.fftColumns(rdRe, rdIm, cFftWidth, cFftHeight, true);
+        for (int y = 0; y < cHeight; y++) {
+            Convolution.fft(rdRe, rdIm, y * cFftWidth, cFftWidth, true);
+            for (int x = 0; x < cWidth; x++) {
+                rdAcc[x] = rdRe[(y * cFftWidth) + x] / cPoints;
+            }
+            store(rnOut, y * cWidth, rdAcc, cWidth);
+        }
+    }
+
+    // In-place iterative radix-2 FFT of the n points starting at nOffset,
+    // without scaling. n must be a power of 2.
+    private static void fft(final double[] rdRe, final double[] rdIm, final int nOffset, final int n, final boolean bInverse) {
+        // bit-reversal permutation
+        for (int i = 1, j = 0; i < n; i++) {
+            int nBit = n >> 1;
+            for (; (j & nBit) != 0; nBit >>= 1) {
+                j ^= nBit;
+            }
+            j ^= nBit;
+            if (i < j) {
+                final int a = nOffset + i;
+                final int b = nOffset + j;
+                double d = rdRe[a];
+                rdRe[a] = rdRe[b];
+                rdRe[b] = d;
+                d = rdIm[a];
+                rdIm[a] = rdIm[b];
+                rdIm[b] = d;
+            }
+        }
+        for (int nLength = 2; nLength <= n; nLength <<= 1) {
+            final int nHalf = nLength / 2;
+            final double dAngle = ((bInverse ? 2 : -2) * Math.PI) / nLength;
+            final double dWRe = Math.cos(dAngle);
+            final double dWIm = Math.sin(dAngle);
+            for (int i = 0; i < n; i += nLength) {
+                double dRe = 1;
+                double dIm = 0;
+                for (int k = 0; k < nHalf; k++) {
+                    final int a = nOffset + i + k;
+                    final int b = a + nHalf;
+                    final double dTRe = (rdRe[b] * dRe) - (rdIm[b] * dIm);
+                    final double dTIm = (rdRe[b] * dIm) + (rdIm[b] * dRe);
+                    rdRe[b] = rdRe[a] - dTRe;
+                    rdIm[b] = rdIm[a] - dTIm;
+                    rdRe[a] += dTRe;
+                    rdIm[a] += dTIm;
+                    final double d = (dRe * dWRe) - (dIm * dWIm);
+                    dIm = (dRe * dWIm) + (dIm * dWRe);
+                    dRe = d;
+                }
+            }
+        }
+    }
+
+    // The same FFT applied to every column of a cWidth x cHeight array. Whole
+    // rows are swapped and combined at a time, so memory is read in order
+    // rather than a column at a time.
+    private static void fftColumns(final double[] rdRe, final double[] rdIm, final int cWidth, final int cHeight, final boolean bInverse) {
+        final double[] rdSwap = new double[cWidth];
+        for (int i = 1, j = 0; i < cHeight; i++) {
+            int nBit = cHeight >> 1;
+            for (; (j & nBit) != 0; nBit >>= 1) {
+                j ^= nBit;
+            }
+            j ^= nBit;
+            if (i < j) {
+                System.arraycopy(rdRe, i * cWidth, rdSwap, 0, cWidth);
+                System.arraycopy(rdRe, j * cWidth, rdRe, i * cWidth, cWidth);
+                System.arraycopy(rdSwap, 0, rdRe, j * cWidth, cWidth);
+                System.arraycopy(rdIm, i * cWidth, rdSwap, 0, cWidth);
+                System.arraycopy(rdIm, j * cWidth, rdIm, i * cWidth, cWidth);
+                System.arraycopy(rdSwap, 0, rdIm, j * cWidth, cWidth);
+            }
+        }
+        for (int nLength = 2; nLength <= cHeight; nLength <<= 1) {
+            final int nHalf = nLength / 2;
+            for (int k = 0; k < nHalf; k++) {
+                final double dAngle = ((bInverse ? 2 : -2) * Math.PI * k) / nLength;
+                final double dRe = Math.cos(dAngle);
+                final double dIm = Math.sin(dAngle);
+                for (int i = 0; i < cHeight; i += nLength) {
+                    final int nA = (i + k) * cWidth;
+                    final int nB = nA + (nHalf * cWidth);
+                    for (int x = 0; x < cWidth; x++) {
+                        final int a = nA + x;
+                        final int b = nB + x;
+                        final double dTRe = (rdRe[b] * dRe) - (rdIm[b] * dIm);
+                        final double dTIm = (rdRe[b] * dIm) + (rdIm[b] * dRe);
+                        rdRe[b] = rdRe[a] - dTRe;
+                        rdIm[b] = rdIm[a] - dTIm;
+                        rdRe[a] += dTRe;
+                        rdIm[a] += dTIm;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a string describing this convolution.
+     *
+     * @return a string giving the kernel size and strategy.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + cKernelWidth + "x" + cKernelHeight + "," + nStrategy + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+}
@@ -24,7 +24,9 @@ package com.github.ojil.algorithm;
  * The code here is based on a Wikipedia article
  * en.wikipedia.org/wiki/Connected_Component_Labeling <br>
  * new EquivalenceClass(int nLabel) creates a new equivalence class with the
- * given label. Note: nLabel must be unique to calls to the constructor. <br>
+ * given label. Note: nLabel must be unique to calls to the constructor. The
+ * caller assigns the labels, so there is no shared label counter and
+ * independent sets of classes can be built on different threads at once. <br>
  * e.find() returns the equivalence class for class e. <br>
  * e.union(f) unions class e and class f. <br>
  * e.getLabel() returns the integer label for e. e.getLabel() == f.getLabel()
@@ -34,16 +36,19 @@ package com.github.ojil.algorithm;
  *
  */
 public class EquivalenceClass {
-    private static int nNextLabel = 1;
     private final int nLabel;
     private int nRank = 0;
     private EquivalenceClass eParent;
     
     /**
      * Create a new set
+     * 
+     * @param nLabel
+     *            the set's label, which must be different from the labels of
+     *            all other sets that it will be compared with.
      */
-    public EquivalenceClass() {
-        nLabel = EquivalenceClass.nNextLabel++;
+    public EquivalenceClass(final int nLabel) {
+        this.nLabel = nLabel;
         setParent(this);
     }
     
@@ -74,15 +79,6 @@ public class EquivalenceClass {
         return find().nLabel;
     }
     
-    /**
-     * Returns number of labels assigned since reset
-     * 
-     * @return max number of distinct labels
-     */
-    public static int getLabels() {
-        return EquivalenceClass.nNextLabel;
-    }
-    
     private EquivalenceClass getParent() {
         return eParent;
     }
@@ -95,14 +91,6 @@ public class EquivalenceClass {
         eParent = e;
     }
     
-    /**
-     * Must be called once when a new set of equivalence classes is to be
-     * defined.
-     */
-    public static void reset() {
-        EquivalenceClass.nNextLabel = 1;
-    }
-    
     /**
      * Unifies this class with another class. After this operation this and y
      * will be in the same equivalence class.
@@ -0,0 +1,126 @@
+/*
+ * Gray32Convolve.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray32Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Convolves a Gray32Image with an arbitrary kernel, choosing between
+ * separable, direct, and FFT computation (see Convolution). The result is
+ * clamped to the range of an int.
+ *
+ * @author webb
+ */
+public class Gray32Convolve extends PipelineStage implements BufferedStage {
+    private final Convolution convolution;
+
+    /**
+     * Creates a new instance of Gray32Convolve.
+     *
+     * @param convolution
+     *            the kernel and strategy.
+     */
+    public Gray32Convolve(final Convolution convolution) {
+        this.convolution = convolution;
+    }
+
+    /**
+     * Returns the convolution, whose strategy can be changed.
+     *
+     * @return the convolution.
+     */
+    public Convolution getConvolution() {
+        return convolution;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray32Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray32Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray32Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY32IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray32Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Convolve the input image.
+     *
+     * @param image
+     *            the input Gray32Image. Not modified.
+     * @throws ImageError
+     *             if the input is not a Gray32Image.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray32Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY32IMAGE, image.toString(), null, null);
+        }
+        final Gray32Image<?> result = new Gray32Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Convolve a Gray32Image, writing the result into a Gray32Image of the same
+     * size. The input is not checked.
+     *
+     * @param image
+     *            the input Gray32Image
+     * @param imageOutput
+     *            the output Gray32Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Integer[] nIn = ((Gray32Image<?>) image).getData();
+        final Integer[] nResult = ((Gray32Image<?>) imageOutput).getData();
+        final int[] rnIn = new int[nIn.length];
+        final int[] rnOut = new int[nIn.length];
+        for (int i = 0; i < nIn.length; i++) {
+            rnIn[i] = nIn[i];
+        }
+        convolution.push(rnIn, rnOut, image.getWidth(), image.getHeight());
+        for (int i = 0; i < nResult.length; i++) {
+            nResult[i] = rnOut[i];
+        }
+    }
+
+    /**
+     * Returns a string describing this convolution.
+     *
+     * @return a string giving the kernel.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + convolution.toString() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
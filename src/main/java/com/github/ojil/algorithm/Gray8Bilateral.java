@@ -0,0 +1,157 @@
+/*
+ * Gray8Bilateral.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Smooths a gray image while keeping its edges, with an approximate bilateral
+ * filter: each pixel is replaced by a weighted average of the pixels near it
+ * whose values are close to its own. The weights fall off as Gaussians of
+ * distance, with sigma nSpatial pixels, and of difference in value, with
+ * sigma nRange. Pixels across an edge are not averaged together, so edges
+ * stay sharp. The filter is computed with a bilateral grid (see
+ * BilateralGrid), in time linear in the number of pixels; larger sigmas make
+ * it faster, not slower.
+ *
+ * @author webb
+ */
+public class Gray8Bilateral extends PipelineStage implements BufferedStage {
+    private final int nSpatial;
+    private final int nRange;
+    private final BilateralGrid filter;
+
+    /**
+     * Creates a new instance of Gray8Bilateral.
+     *
+     * @param nSpatial
+     *            the spatial sigma, in pixels.
+     * @param nRange
+     *            the range sigma, in pixel values (0 to 255).
+     * @throws ImageError
+     *             if either sigma is less than 1.
+     */
+    public Gray8Bilateral(final int nSpatial, final int nRange) throws ImageError {
+        if (nSpatial < 1) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(nSpatial).toString(), new Integer(1).toString(),
+                    new Integer(Integer.MAX_VALUE).toString());
+        }
+        if (nRange < 1) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(nRange).toString(), new Integer(1).toString(),
+                    new Integer(Integer.MAX_VALUE).toString());
+        }
+        this.nSpatial = nSpatial;
+        this.nRange = nRange;
+        filter = new BilateralGrid(nSpatial, nRange);
+    }
+
+    /**
+     * Returns the spatial sigma.
+     *
+     * @return the spatial sigma, in pixels.
+     */
+    public int getSpatial() {
+        return nSpatial;
+    }
+
+    /**
+     * Returns the range sigma.
+     *
+     * @return the range sigma, in pixel values.
+     */
+    public int getRange() {
+        return nRange;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Bilateral filter the input image.
+     *
+     * @param image
+     *            the input Gray8Image. Not modified.
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Bilateral filter a Gray8Image, writing the result into a Gray8Image of the
+     * same size. The input is not checked.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Byte[] bIn = ((Gray8Image<?>) image).getData();
+        final Byte[] bResult = ((Gray8Image<?>) imageOutput).getData();
+        final byte[] rbIn = new byte[bIn.length];
+        final byte[] rbOut = new byte[bIn.length];
+        // the grid works on unsigned values
+        for (int i = 0; i < bIn.length; i++) {
+            rbIn[i] = (byte) (bIn[i] - Byte.MIN_VALUE);
+        }
+        filter.filter(rbIn, rbOut, image.getWidth(), image.getHeight());
+        for (int i = 0; i < bResult.length; i++) {
+            bResult[i] = (byte) (rbOut[i] + Byte.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Returns a string describing this bilateral filter.
+     *
+     * @return a string giving the sigmas.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + nSpatial + "," + nRange + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
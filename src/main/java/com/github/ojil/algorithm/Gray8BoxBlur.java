@@ -0,0 +1,156 @@
+/*
+ * Gray8BoxBlur.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Box blurs a gray image: each pixel is replaced by the average of the
+ * rectangular window centered on it, rounded to nearest. The window sums are
+ * kept up to date as the window slides, so the time taken does not depend on
+ * the window size (see BoxBlur). The image is extended past its borders by
+ * repeating the border pixels. Blurring the bands of a planar color image
+ * with this stage gives the same result as RgbBoxBlur.
+ *
+ * @author webb
+ */
+public class Gray8BoxBlur extends PipelineStage implements BufferedStage {
+    private final int nWidth;
+    private final int nHeight;
+    private final BoxBlur blur;
+
+    /**
+     * Creates a new instance of Gray8BoxBlur.
+     *
+     * @param nWidth
+     *            the window width, odd.
+     * @param nHeight
+     *            the window height, odd.
+     * @throws ImageError
+     *             if the width or height is less than 1 or even.
+     */
+    public Gray8BoxBlur(final int nWidth, final int nHeight) throws ImageError {
+        if ((nWidth < 1) || ((nWidth % 2) == 0)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_WRONG_SIZE, new Integer(nWidth).toString(), null, null);
+        }
+        if ((nHeight < 1) || ((nHeight % 2) == 0)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_WRONG_SIZE, new Integer(nHeight).toString(), null, null);
+        }
+        this.nWidth = nWidth;
+        this.nHeight = nHeight;
+        blur = new BoxBlur(nWidth, nHeight);
+    }
+
+    /**
+     * Returns the window width.
+     *
+     * @return the width.
+     */
+    public int getWidth() {
+        return nWidth;
+    }
+
+    /**
+     * Returns the window height.
+     *
+     * @return the height.
+     */
+    public int getHeight() {
+        return nHeight;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Box blur the input image.
+     *
+     * @param image
+     *            the input Gray8Image. Not modified.
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Box blur a Gray8Image, writing the result into a Gray8Image of the same
+     * size. The input is not checked.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Byte[] bIn = ((Gray8Image<?>) image).getData();
+        final Byte[] bResult = ((Gray8Image<?>) imageOutput).getData();
+        final long[] rlIn = new long[bIn.length];
+        final long[] rlOut = new long[bIn.length];
+        final int nArea = nWidth * nHeight;
+        final int nHalf = nArea / 2;
+        // the sums are of unsigned values, so they round the same way as
+        // RgbBoxBlur
+        for (int i = 0; i < bIn.length; i++) {
+            rlIn[i] = bIn[i] - Byte.MIN_VALUE;
+        }
+        blur.sum(rlIn, rlOut, image.getWidth(), image.getHeight());
+        for (int i = 0; i < bResult.length; i++) {
+            bResult[i] = (byte) (((rlOut[i] + nHalf) / nArea) + Byte.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Returns a string describing this box blur.
+     *
+     * @return a string giving the window size.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + nWidth + "," + nHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
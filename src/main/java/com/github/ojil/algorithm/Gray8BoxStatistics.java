@@ -0,0 +1,286 @@
+/*
+ * Gray8BoxStatistics.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+
+/**
+ * Gray8BoxStatistics computes, for every pixel of a gray image, the count,
+ * sum and sum of squares of the pixels in a window along its row or column,
+ * and from them the mean and variance. The window runs from nBefore pixels
+ * before the pixel to nAfter pixels after it, and is cut off at the image
+ * borders, so windows near the borders hold fewer pixels.
+ * <p>
+ * The sums are kept as running totals, adding the pixel entering the window
+ * and subtracting the one leaving it, so the cost per pixel does not depend
+ * on the window size. Columns are summed a row at a time, with one running
+ * total per column, so memory is always read in order. Sums of squares are
+ * accumulated in 64 bits, so no sum can overflow for rows and columns shorter
+ * than 2<sup>24</sup> pixels, whatever the window size. Pixel values are used
+ * as stored, from Byte.MIN_VALUE to Byte.MAX_VALUE. The buffers are kept from
+ * one push to the next, so once they are allocated pushing images of the same
+ * size allocates nothing.
+ *
+ * @author webb
+ */
+public class Gray8BoxStatistics {
+    /**
+     * Sum along rows.
+     */
+    public static final int HORIZONTAL = 0;
+    /**
+     * Sum along columns.
+     */
+    public static final int VERTICAL = 1;
+
+    private final int nDirection;
+    private final int nBefore;
+    private final int nAfter;
+    private int cWidth = 0;
+    private int cHeight = 0;
+    private int[] rnSum = new int[0];
+    private long[] rlSumSq = new long[0];
+    // running totals for each column, when summing vertically
+    private int[] rnColSum = new int[0];
+    private long[] rlColSumSq = new long[0];
+
+    /**
+     * Creates a new instance of Gray8BoxStatistics.
+     *
+     * @param nDirection
+     *            HORIZONTAL or VERTICAL.
+     * @param nBefore
+     *            the number of pixels before (left of or above) each pixel
+     *            in its window.
+     * @param nAfter
+     *            the number of pixels after (right of or below) each pixel in
+     *            its window.
+     * @throws ImageError
+     *             if the direction is not HORIZONTAL or VERTICAL, or nBefore
+     *             or nAfter is negative.
+     */
+    public Gray8BoxStatistics(final int nDirection, final int nBefore, final int nAfter) throws ImageError {
+        if ((nDirection != Gray8BoxStatistics.HORIZONTAL) && (nDirection != Gray8BoxStatistics.VERTICAL)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(nDirection).toString(),
+                    new Integer(Gray8BoxStatistics.HORIZONTAL).toString(), new Integer(Gray8BoxStatistics.VERTICAL).toString());
+        }
+        if ((nBefore < 0) || (nAfter < 0)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(Math.min(nBefore, nAfter)).toString(),
+                    new Integer(0).toString(), new Integer(Integer.MAX_VALUE).toString());
+        }
+        this.nDirection = nDirection;
+        this.nBefore = nBefore;
+        this.nAfter = nAfter;
+    }
+
+    /**
+     * Returns the number of pixels in the window of a pixel.
+     *
+     * @param nIndex
+     *            the index of the pixel (row * width + column).
+     * @return the number of pixels in its window.
+     */
+    public int getCount(final int nIndex) {
+        final int nPos;
+        final int cLength;
+        if (nDirection == Gray8BoxStatistics.HORIZONTAL) {
+            nPos = nIndex % cWidth;
+            cLength = cWidth;
+        } else {
+            nPos = nIndex / cWidth;
+            cLength = cHeight;
+        }
+        return (Math.min(cLength - 1, nPos + nAfter) - Math.max(0, nPos - nBefore)) + 1;
+    }
+
+    /**
+     * Returns the mean of the window of a pixel, times 256.
+     *
+     * @param nIndex
+     *            the index of the pixel (row * width + column).
+     * @return the mean of its window, times 256.
+     */
+    public int getMean(final int nIndex) {
+        return (int) ((256L * rnSum[nIndex]) / getCount(nIndex));
+    }
+
+    /**
+     * Returns the sum of the window of a pixel.
+     *
+     * @param nIndex
+     *            the index of the pixel (row * width + column).
+     * @return the sum of its window.
+     */
+    public int getSum(final int nIndex) {
+        return rnSum[nIndex];
+    }
+
+    /**
+     * Returns the sums of the windows of all pixels. The array is reused by
+     * the next push.
+     *
+     * @return the sums, in row-major order.
+     */
+    public int[] getSums() {
+        return rnSum;
+    }
+
+    /**
+     * Returns the sum of squares of the window of a pixel.
+     *
+     * @param nIndex
+     *            the index of the pixel (row * width + column).
+     * @return the sum of the squares of the pixels in its window.
+     */
+    public long getSumSq(final int nIndex) {
+        return rlSumSq[nIndex];
+    }
+
+    /**
+     * Returns the sums of squares of the windows of all pixels. The array is
+     * reused by the next push.
+     *
+     * @return the sums of squares, in row-major order.
+     */
+    public long[] getSumsSq() {
+        return rlSumSq;
+    }
+
+    /**
+     * Returns the sample variance of the window of a pixel, (sum of squares -
+     * sum * sum / count) / (count - 1), in integer arithmetic. A window
+     * clipped to a single pixel, as at the first pixel of a line when there
+     * is nothing before it, has variance 0.
+     *
+     * @param nIndex
+     *            the index of the pixel (row * width + column).
+     * @return the variance of its window.
+     */
+    public long getVariance(final int nIndex) {
+        final long lSum = rnSum[nIndex];
+        final int nCount = getCount(nIndex);
+        if (nCount <= 1) {
+            return 0;
+        }
+        return (rlSumSq[nIndex] - ((lSum * lSum) / nCount)) / (nCount - 1);
+    }
+
+    /**
+     * Compute the window sums for every pixel of a gray image.
+     *
+     * @param image
+     *            the input image.
+     * @throws ImageError
+     *             if the input image is not a Gray8Image.
+     */
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        cWidth = image.getWidth();
+        cHeight = image.getHeight();
+        if (rnSum.length != (cWidth * cHeight)) {
+            rnSum = new int[cWidth * cHeight];
+            rlSumSq = new long[cWidth * cHeight];
+        }
+        final Byte[] bData = ((Gray8Image<?>) image).getData();
+        if (nDirection == Gray8BoxStatistics.HORIZONTAL) {
+            pushHoriz(bData);
+        } else {
+            pushVert(bData);
+        }
+    }
+
+    private void pushHoriz(final Byte[] bData) {
+        for (int i = 0; i < cHeight; i++) {
+            final int nBase = i * cWidth;
+            int nSum = 0;
+            long lSumSq = 0;
+            for (int j = 0; j <= Math.min(cWidth - 1, nAfter); j++) {
+                final int n = bData[nBase + j];
+                nSum += n;
+                lSumSq += n * n;
+            }
+            for (int j = 0; j < cWidth; j++) {
+                rnSum[nBase + j] = nSum;
+                rlSumSq[nBase + j] = lSumSq;
+                // move the window one pixel right
+                if ((j + nAfter + 1) < cWidth) {
+                    final int n = bData[nBase + j + nAfter + 1];
+                    nSum += n;
+                    lSumSq += n * n;
+                }
+                if ((j - nBefore) >= 0) {
+                    final int n = bData[(nBase + j) - nBefore];
+                    nSum -= n;
+                    lSumSq -= n * n;
+                }
+            }
+        }
+    }
+
+    private void pushVert(final Byte[] bData) {
+        if (rnColSum.length != cWidth) {
+            rnColSum = new int[cWidth];
+            rlColSumSq = new long[cWidth];
+        }
+        final int[] rnColSum = this.rnColSum;
+        final long[] rlColSumSq = this.rlColSumSq;
+        for (int j = 0; j < cWidth; j++) {
+            rnColSum[j] = 0;
+            rlColSumSq[j] = 0;
+        }
+        for (int i = 0; i <= Math.min(cHeight - 1, nAfter); i++) {
+            addRow(bData, i * cWidth, 1, rnColSum, rlColSumSq);
+        }
+        for (int i = 0; i < cHeight; i++) {
+            final int nBase = i * cWidth;
+            System.arraycopy(rnColSum, 0, rnSum, nBase, cWidth);
+            System.arraycopy(rlColSumSq, 0, rlSumSq, nBase, cWidth);
+            // move the window one row down
+            if ((i + nAfter + 1) < cHeight) {
+                addRow(bData, (i + nAfter + 1) * cWidth, 1, rnColSum, rlColSumSq);
+            }
+            if ((i - nBefore) >= 0) {
+                addRow(bData, (i - nBefore) * cWidth, -1, rnColSum, rlColSumSq);
+            }
+        }
+    }
+
+    // add nSign times the row starting at nBase to the column totals
+    private void addRow(final Byte[] bData, final int nBase, final int nSign, final int[] rnColSum, final long[] rlColSumSq) {
+        for (int j = 0; j < cWidth; j++) {
+            final int n = bData[nBase + j];
+            rnColSum[j] += nSign * n;
+            rlColSumSq[j] += nSign * n * n;
+        }
+    }
+
+    /**
+     * Returns a string describing this Gray8BoxStatistics.
+     *
+     * @return a string giving the direction and window.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + nDirection + "," + nBefore + "," + nAfter + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Gray8Canny.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Finds edges in a gray image with the Canny edge detector. The image is
+ * blurred with a Gaussian, the gradient is computed by central differences,
+ * points which are not a maximum of the gradient magnitude across the edge
+ * (the gradient direction, quantized to 45 degrees) are suppressed, and the
+ * remaining points are thresholded with hysteresis: a point is an edge if its
+ * gradient magnitude is at least the high threshold, or at least the low
+ * threshold and connected to an edge through other such points. The output
+ * is Byte.MAX_VALUE at edges and Byte.MIN_VALUE elsewhere.
+ * <p>
+ * Blurring, gradient and suppression are done together in one pass down the
+ * image, which keeps only the few rows each step needs, in int arrays. The
+ * only whole-image buffer is one byte per pixel for the edge following.
+ * <p>
+ * The Gaussian is the one used by Gray8GaussHoriz, normalized here to unit
+ * gain, and the borders are reflected as there. Sigma is multiplied by 10
+ * and given as an integer. The thresholds are gradient magnitudes, in gray
+ * levels per pixel of the blurred image.
+ *
+ * @author webb
+ */
+public class Gray8Canny extends PipelineStage implements BufferedStage {
+    // fraction bits of the blurred image
+    private static final int FRACTION = 4;
+    // pixel states for the edge following
+    private static final byte NONE = 0;
+    private static final byte WEAK = 1;
+    private static final byte EDGE = 2;
+
+    private int cSigma;
+    // one side of the Gaussian, starting at the center, from KernelTables
+    private int[] rnCoeff;
+    // sum of both sides of the Gaussian
+    private int nGain;
+    private int nLow;
+    private int nHigh;
+
+    /**
+     * Creates a new instance of Gray8Canny.
+     *
+     * @param cSigma
+     *            the sigma value for the Gaussian, which is the sigma in the
+     *            Gaussian distribution multipied by 10.0 and converted to
+     *            integer.
+     * @param nLow
+     *            the low threshold on the gradient magnitude.
+     * @param nHigh
+     *            the high threshold on the gradient magnitude.
+     * @throws ImageError
+     *             if sigma or the thresholds are out of range.
+     */
+    public Gray8Canny(final int cSigma, final int nLow, final int nHigh) throws ImageError {
+        setSigma(cSigma);
+        setThresholds(nLow, nHigh);
+    }
+
+    // blur row nRow of bIn horizontally into rnOut, which gets FRACTION
+    // fraction bits. rnRow is scratch space for the unboxed input row.
+    private void blurRow(final Byte[] bIn, final int nRow, final int cWidth, final int[] rnRow, final int[] rnOut) {
+        final int cCoeff = rnCoeff.length;
+        final int nBase = nRow * cWidth;
+        for (int j = 0; j < cWidth; j++) {
+            rnRow[j] = bIn[nBase + j] - Byte.MIN_VALUE;
+        }
+        for (int j = 0; j < cWidth; j++) {
+            int wSum = 0;
+            for (int k = 1; k < cCoeff; k++) {
+                wSum += rnCoeff[k] * rnRow[KernelTables.reflect(j - k, cWidth)];
+            }
+            for (int k = 0; k < cCoeff; k++) {
+                if ((j + k) < cWidth) {
+                    wSum += rnCoeff[k] * rnRow[j + k];
+                } else {
+                    wSum += rnCoeff[k] * rnRow[KernelTables.reflect(j + k, cWidth)];
+                }
+            }
+            rnOut[j] = ((wSum << Gray8Canny.FRACTION) + (nGain / 2)) / nGain;
+        }
+    }
+
+    /**
+     * Returns the high threshold.
+     *
+     * @return the high threshold on the gradient magnitude.
+     */
+    public int getHighThreshold() {
+        return nHigh;
+    }
+
+    /**
+     * Returns the low threshold.
+     *
+     * @return the low threshold on the gradient magnitude.
+     */
+    public int getLowThreshold() {
+        return nLow;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Returns the current value of sigma.
+     *
+     * @return the sigma value, multiplied by 10.
+     */
+    public int getSigma() {
+        return cSigma;
+    }
+
+    // compute the squared gradient magnitude and the quantized gradient
+    // direction of row nRow from the blurred rows above, at and below it
+    private static void gradientRow(final int[] rnAbove, final int[] rnRow, final int[] rnBelow, final int cWidth, final int[] rnMag, final byte[] rbDir) {
+        for (int j = 0; j < cWidth; j++) {
+            final int nDx = rnRow[Math.min(j + 1, cWidth - 1)] - rnRow[Math.max(j - 1, 0)];
+            final int nDy = rnBelow[j] - rnAbove[j];
+            rnMag[j] = (nDx * nDx) + (nDy * nDy);
+            final int nAx = Math.abs(nDx);
+            final int nAy = Math.abs(nDy);
+            // tan(22.5 degrees) is about 106/256
+            if ((nAy << 8) <= (nAx * 106)) {
+                rbDir[j] = 0; // horizontal gradient: vertical edge
+            } else if ((nAx << 8) <= (nAy * 106)) {
+                rbDir[j] = 2; // vertical gradient: horizontal edge
+            } else if ((nDx > 0) == (nDy > 0)) {
+                rbDir[j] = 1; // down and to the right
+            } else {
+                rbDir[j] = 3; // down and to the left
+            }
+        }
+    }
+
+    /**
+     * Find the edges in the input image.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @throws ImageError
+     *             if image is not a Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Find the edges in a Gray8Image, writing the result into a Gray8Image
+     * of the same size. The input is not checked.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Byte[] bIn = ((Gray8Image<?>) image).getData();
+        final Byte[] bResult = ((Gray8Image<?>) imageOutput).getData();
+        final int[] rnCoeff = this.rnCoeff;
+        final int cCoeff = rnCoeff.length;
+        final int cWidth = image.getWidth();
+        final int cHeight = image.getHeight();
+        // The central difference of the blurred image is twice the gradient,
+        // and has FRACTION fraction bits; the magnitudes are squared.
+        final int nLowScaled = nLow << (Gray8Canny.FRACTION + 1);
+        final int nHighScaled = nHigh << (Gray8Canny.FRACTION + 1);
+        final int nLowSq = nLowScaled * nLowScaled;
+        final int nHighSq = nHighScaled * nHighScaled;
+        // horizontally blurred rows, as in Gray8GaussSmooth
+        final int cRing = Math.min(cHeight, (2 * cCoeff) - 1);
+        final int[][] rnRing = new int[cRing][cWidth];
+        final int[] rnRow = new int[cWidth];
+        // the last three blurred rows, and the last three gradient rows
+        final int[][] rnBlur = new int[3][cWidth];
+        final int[][] rnMag = new int[3][cWidth];
+        final byte[][] rbDir = new byte[3][cWidth];
+        final byte[] rbState = new byte[cWidth * cHeight];
+        int[] rnStack = new int[64];
+        int nTop = 0;
+        int nNextH = 0;
+        int nNextBlur = 0;
+        int nNextGrad = 0;
+        for (int i = 0; i < cHeight; i++) {
+            // suppression of row i needs the gradient of rows i-1 to i+1,
+            // which needs the blurred rows i-2 to i+2
+            final int nLastGrad = Math.min(cHeight - 1, i + 1);
+            for (; nNextGrad <= nLastGrad; nNextGrad++) {
+                final int nLastBlur = Math.min(cHeight - 1, nNextGrad + 1);
+                for (; nNextBlur <= nLastBlur; nNextBlur++) {
+                    final int nLastH = Math.min(cHeight - 1, (nNextBlur + cCoeff) - 1);
+                    for (; nNextH <= nLastH; nNextH++) {
+                        blurRow(bIn, nNextH, cWidth, rnRow, rnRing[nNextH % cRing]);
+                    }
+                    final int[] rnCenter = rnRing[nNextBlur % cRing];
+                    final int[] rnOut = rnBlur[nNextBlur % 3];
+                    for (int j = 0; j < cWidth; j++) {
+                        rnOut[j] = rnCoeff[0] * rnCenter[j];
+                    }
+                    for (int k = 1; k < cCoeff; k++) {
+                        final int nAbove = KernelTables.reflect(nNextBlur - k, cHeight);
+                        final int nBelow = KernelTables.reflect(nNextBlur + k, cHeight);
+                        final int[] rnAbove = rnRing[nAbove % cRing];
+                        final int[] rnBelow = rnRing[nBelow % cRing];
+                        final int nCoeff = rnCoeff[k];
+                        for (int j = 0; j < cWidth; j++) {
+                            rnOut[j] += nCoeff * (rnAbove[j] + rnBelow[j]);
+                        }
+                    }
+                    for (int j = 0; j < cWidth; j++) {
+                        rnOut[j] = (rnOut[j] + (nGain / 2)) / nGain;
+                    }
+                }
+                // the blurred image is extended past its borders by repeating
+                // the border rows
+                Gray8Canny.gradientRow(rnBlur[Math.max(nNextGrad - 1, 0) % 3], rnBlur[nNextGrad % 3], rnBlur[Math.min(nNextGrad + 1, cHeight - 1) % 3], cWidth,
+                        rnMag[nNextGrad % 3], rbDir[nNextGrad % 3]);
+            }
+            // non-maximum suppression; outside the image the magnitude is 0
+            final int[] rnMagAbove = (i > 0) ? rnMag[(i - 1) % 3] : null;
+            final int[] rnMagRow = rnMag[i % 3];
+            final int[] rnMagBelow = (i < (cHeight - 1)) ? rnMag[(i + 1) % 3] : null;
+            final byte[] rbDirRow = rbDir[i % 3];
+            final int nBase = i * cWidth;
+            for (int j = 0; j < cWidth; j++) {
+                final int nMag = rnMagRow[j];
+                if (nMag < nLowSq) {
+                    continue;
+                }
+                // the neighbors across the edge
+                final int nBefore;
+                final int nAfter;
+                switch (rbDirRow[j]) {
+                    case 0:
+                        nBefore = (j > 0) ? rnMagRow[j - 1] : 0;
+                        nAfter = (j < (cWidth - 1)) ? rnMagRow[j + 1] : 0;
+                        break;
+                    case 2:
+                        nBefore = (rnMagAbove != null) ? rnMagAbove[j] : 0;
+                        nAfter = (rnMagBelow != null) ? rnMagBelow[j] : 0;
+                        break;
+                    case 1:
+                        nBefore = ((rnMagAbove != null) && (j > 0)) ? rnMagAbove[j - 1] : 0;
+                        nAfter = ((rnMagBelow != null) && (j < (cWidth - 1))) ? rnMagBelow[j + 1] : 0;
+                        break;
+                    default:
+                        nBefore = ((rnMagAbove != null) && (j < (cWidth - 1))) ? rnMagAbove[j + 1] : 0;
+                        nAfter = ((rnMagBelow != null) && (j > 0)) ? rnMagBelow[j - 1] : 0;
+                        break;
+                }
+                // ties go to the point before, so a plateau gives one edge
+                if ((nMag <= nBefore) || (nMag < nAfter)) {
+                    continue;
+                }
+                if (nMag >= nHighSq) {
+                    rbState[nBase + j] = Gray8Canny.EDGE;
+                    if (nTop == rnStack.length) {
+                        final int[] rnNew = new int[2 * rnStack.length];
+                        System.arraycopy(rnStack, 0, rnNew, 0, nTop);
+                        rnStack = rnNew;
+                    }
+                    rnStack[nTop++] = nBase + j;
+                } else {
+                    rbState[nBase + j] = Gray8Canny.WEAK;
+                }
+            }
+        }
+        // hysteresis: follow weak points connected to edges
+        while (nTop > 0) {
+            final int nPos = rnStack[--nTop];
+            final int nRow = nPos / cWidth;
+            final int nCol = nPos % cWidth;
+            for (int nY = Math.max(nRow - 1, 0); nY <= Math.min(nRow + 1, cHeight - 1); nY++) {
+                for (int nX = Math.max(nCol - 1, 0); nX <= Math.min(nCol + 1, cWidth - 1); nX++) {
+                    final int nNeighbor = (nY * cWidth) + nX;
+                    if (rbState[nNeighbor] == Gray8Canny.WEAK) {
+                        rbState[nNeighbor] = Gray8Canny.EDGE;
+                        if (nTop == rnStack.length) {
+                            final int[] rnNew = new int[2 * rnStack.length];
+                            System.arraycopy(rnStack, 0, rnNew, 0, nTop);
+                            rnStack = rnNew;
+                        }
+                        rnStack[nTop++] = nNeighbor;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < rbState.length; i++) {
+            bResult[i] = (rbState[i] == Gray8Canny.EDGE) ? Byte.MAX_VALUE : Byte.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Sets a new value for sigma. A larger sigma finds fewer, smoother edges.
+     *
+     * @param cSigma
+     *            the new sigma value, multiplied by 10.
+     * @throws ImageError
+     *             if cSigma is less than or equal to 1.
+     */
+    public void setSigma(final int cSigma) throws ImageError {
+        if (cSigma <= 1) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(cSigma).toString(), new Integer(1).toString(),
+                    new Integer(Integer.MAX_VALUE).toString());
+        }
+        this.cSigma = cSigma;
+        rnCoeff = KernelTables.gauss(cSigma);
+        nGain = rnCoeff[0];
+        for (int k = 1; k < rnCoeff.length; k++) {
+            nGain += 2 * rnCoeff[k];
+        }
+    }
+
+    /**
+     * Sets the hysteresis thresholds.
+     *
+     * @param nLow
+     *            the low threshold on the gradient magnitude, in gray levels
+     *            per pixel.
+     * @param nHigh
+     *            the high threshold on the gradient magnitude, in gray levels
+     *            per pixel.
+     * @throws ImageError
+     *             if nLow is negative or nHigh is less than nLow or greater
+     *             than 255.
+     */
+    public void setThresholds(final int nLow, final int nHigh) throws ImageError {
+        if (nLow < 0) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.THRESHOLD_NEGATIVE, new Integer(nLow).toString(), null, null);
+        }
+        if ((nHigh < nLow) || (nHigh > 255)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(nHigh).toString(), new Integer(nLow).toString(),
+                    new Integer(255).toString());
+        }
+        this.nLow = nLow;
+        this.nHigh = nHigh;
+    }
+
+    /**
+     * returns a string describing this Canny edge detector.
+     *
+     * @return a string describing the Canny edge detector.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + cSigma + "," + nLow + "," + nHigh + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+}
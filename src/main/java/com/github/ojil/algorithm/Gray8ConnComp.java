@@ -51,6 +51,7 @@ public class Gray8ConnComp extends PipelineStage {
     private boolean bComponents = false;
     private Gray16Image<?> imLabeled = null;
     private int nSortedLabels = -1;
+    private int nNextLabel = 1;
     private PriorityQueue pqLabels = null;
     Random random = new Random();
     private EquivalenceClass reClasses[];
@@ -116,7 +117,7 @@ public class Gray8ConnComp extends PipelineStage {
         if (rnPerimeters != null) {
             return;
         }
-        rnPerimeters = new Integer[EquivalenceClass.getLabels()];
+        rnPerimeters = new Integer[nNextLabel];
         for (int i = 0; i < rnPerimeters.length; i++) {
             rnPerimeters[i] = 0;
         }
@@ -279,7 +280,7 @@ public class Gray8ConnComp extends PipelineStage {
         } else {
             final RgbImage<?> rgbOutput = new RgbImage<>(imLabeled.getWidth(), imLabeled.getHeight());
             final Integer[] rgbData = rgbOutput.getData();
-            final int nMaxLabel = EquivalenceClass.getLabels();
+            final int nMaxLabel = nNextLabel;
             final Short[] grayData = imLabeled.getData();
             final Integer[] rgbLabels = new Integer[nMaxLabel + 1];
             for (int i = 0; i < rgbLabels.length; i++) {
@@ -363,7 +364,9 @@ public class Gray8ConnComp extends PipelineStage {
             throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
         }
         // initialize the label lookup array
-        EquivalenceClass.reset();
+        nNextLabel = 1;
+        sClasses = 0;
+        rnPerimeters = null;
         reClasses = new EquivalenceClass[image.getWidth() * image.getHeight()];
         
         // note that we've not computed the final labels or
@@ -405,7 +408,7 @@ public class Gray8ConnComp extends PipelineStage {
                         case 0:
                             // 0 0 0
                             // 0 X
-                            reClasses[nRow + j] = new EquivalenceClass();
+                            reClasses[nRow + j] = new EquivalenceClass(nNextLabel++);
                             sClasses++;
                             break;
                         case 1:
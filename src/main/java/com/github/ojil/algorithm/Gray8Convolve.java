@@ -0,0 +1,126 @@
+/*
+ * Gray8Convolve.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Convolves a gray image with an arbitrary kernel, choosing between separable,
+ * direct, and FFT computation (see Convolution). The result is clamped to the
+ * range of a signed byte.
+ *
+ * @author webb
+ */
+public class Gray8Convolve extends PipelineStage implements BufferedStage {
+    private final Convolution convolution;
+
+    /**
+     * Creates a new instance of Gray8Convolve.
+     *
+     * @param convolution
+     *            the kernel and strategy.
+     */
+    public Gray8Convolve(final Convolution convolution) {
+        this.convolution = convolution;
+    }
+
+    /**
+     * Returns the convolution, whose strategy can be changed.
+     *
+     * @return the convolution.
+     */
+    public Convolution getConvolution() {
+        return convolution;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Convolve the input image.
+     *
+     * @param image
+     *            the input Gray8Image. Not modified.
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Convolve a Gray8Image, writing the result into a Gray8Image of the same
+     * size. The input is not checked.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Byte[] bIn = ((Gray8Image<?>) image).getData();
+        final Byte[] bResult = ((Gray8Image<?>) imageOutput).getData();
+        final int[] rnIn = new int[bIn.length];
+        final int[] rnOut = new int[bIn.length];
+        for (int i = 0; i < bIn.length; i++) {
+            rnIn[i] = bIn[i];
+        }
+        convolution.push(rnIn, rnOut, image.getWidth(), image.getHeight());
+        for (int i = 0; i < bResult.length; i++) {
+            bResult[i] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, rnOut[i]));
+        }
+    }
+
+    /**
+     * Returns a string describing this convolution.
+     *
+     * @return a string giving the kernel.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + convolution.toString() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
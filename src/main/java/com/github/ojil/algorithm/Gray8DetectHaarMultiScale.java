@@ -26,13 +26,22 @@ package com.github.ojil.algorithm;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import com.github.ojil.core.Deadline;
+import com.github.ojil.core.ErrorCodes;
 import com.github.ojil.core.Gray8Image;
 import com.github.ojil.core.Gray8MaskedImage;
 import com.github.ojil.core.Gray8OffsetImage;
 import com.github.ojil.core.Image;
 import com.github.ojil.core.ImageError;
+import com.github.ojil.core.PipelineEvents;
+import com.github.ojil.core.PipelineListener;
 import com.github.ojil.core.PipelineStage;
+import com.github.ojil.core.StageTimeTracker;
 
 /**
  * DetectHaar applies a Haar cascade at multiple locations and multiple scales
@@ -53,11 +62,26 @@ import com.github.ojil.core.PipelineStage;
  * image results in a new mask being available on getFront. The mask can be
  * further processed by doing connected component detection to determine the
  * feature characteristics, or the mask can be displayed in an overlay on the
- * original image to show the feature areas.
+ * original image to show the feature areas.<br>
+ * While a StageTimeTracker is enabled, each scale's pass is recorded in it as
+ * a task named for this class and the scale, e.g.
+ * "Gray8DetectHaarMultiScale scale=4", with " stride=2" appended for the
+ * sparse search done by push with a time budget. Each pass is also reported to the
+ * installed PipelineListener, if any.<br>
+ * A Deadline set with setDeadline is checked before each subimage is tested.
+ * Once it expires, push gives up on the image and throws an ImageError with
+ * code ErrorCodes.PIPELINE_DEADLINE_EXPIRED. LivePipeline uses this to
+ * abandon a frame as soon as a newer one arrives.<br>
+ * For predictable time per frame, push(image, deadline) trades recall for
+ * time instead: it searches sparsely first, then tests the windows the sparse
+ * search skipped while time remains, and outputs the best mask it has when
+ * the deadline expires.
  * 
  * @author webb
  */
 public class Gray8DetectHaarMultiScale extends PipelineStage {
+    private boolean bComplete = true;
+    private Deadline deadline = Deadline.NEVER;
     private final HaarClassifierCascade hcc;
     // maximum scale is the largest factor the image is divided by
     private int nMaxScale = 10;
@@ -66,6 +90,8 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
     // scale change is the change in scale from one search to the next
     // times 256
     private final int nScaleChange = (12 * 256) / 10;
+    private int[] rnCompleted = new int[0];
+    private int[] rnSparse = new int[0];
     
     /**
      * Creates a new instance of Gray8DetectHaarMultiScale. The scale parameters
@@ -97,31 +123,36 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
         hcc = HaarClassifierCascade.fromStream(isr);
     }
     
-    /**
-     * Apply multi-scale Haar cascade and prepare a mask image showing where
-     * features were detected.
-     * 
-     * @param image
-     *            Input Gray8Image.
-     * @throws ImageError
-     *             if the input is not a Gray8Image or is too small.
-     */
-    
-    @Override
-    public void push(final Image<?, ?> image) throws ImageError {
-        Gray8Image<?> imGray;
-        if (image instanceof Gray8Image) {
-            imGray = (Gray8Image<?>) image;
-        } else {
-            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
-        }
-        if ((image.getWidth() < hcc.getWidth()) || (image.getHeight() < hcc.getHeight())) {
-            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_TOO_SMALL, image.toString(), hcc.toString(), null);
+    private int countScales(final Gray8Image<?> imGray) {
+        int nCount = 0;
+        for (int nScale = Math.min(nMaxScale, Math.min(imGray.getWidth() / hcc.getWidth(), imGray.getHeight() / hcc.getHeight())); nScale >= nMinScale; nScale = (nScale * 256)
+                / nScaleChange) {
+            nCount++;
         }
-        int nScale = Math.min(nMaxScale, Math.min(image.getWidth() / hcc.getWidth(), image.getHeight() / hcc.getHeight()));
+        return nCount;
+    }
+    
+    // run the cascade at every scale from the coarsest to the finest, with
+    // windows nStride times further apart than usual, and return the mask
+    // stretched to the input size. Each scale's mask is put in mapMasks, if
+    // not null, once the scale is finished. mapSeeds holds the masks of a
+    // search with twice the spacing: at its scales, the features it found are
+    // added to the mask and the windows it tested are skipped. Stops early,
+    // leaving the remaining scales out of lCompleted, once deadlineBudget
+    // expires.
+    private Gray8Image<?> detect(final Gray8Image<?> imGray, final int nStride, final Map<Integer, Gray8Image<?>> mapSeeds, final Map<Integer, Gray8Image<?>> mapMasks,
+            final Deadline deadlineBudget, final List<Integer> lCompleted) throws ImageError {
+        int nScale = Math.min(nMaxScale, Math.min(imGray.getWidth() / hcc.getWidth(), imGray.getHeight() / hcc.getHeight()));
         // Zero the mask
         Gray8Image<?> imMask = new Gray8Image<>(1, 1, Byte.MIN_VALUE);
-        while (nScale >= nMinScale) {
+        final StageTimeTracker tracker = StageTimeTracker.getEnabled();
+        final PipelineListener listener = PipelineEvents.getListener();
+        final boolean bTimed = (tracker != null) || (listener != null);
+        boolean bExpired = deadlineBudget.isExpired();
+        while ((nScale >= nMinScale) && !bExpired) {
+            final long lBytes = (tracker == null) ? 0 : tracker.currentAllocation();
+            final long lStart = bTimed ? System.nanoTime() : 0;
+            int nWindows = 0;
             // shrink the input image
             final int nTargetWidth = imGray.getWidth() / nScale;
             final int nTargetHeight = imGray.getHeight() / nScale;
@@ -132,20 +163,46 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
             final Gray8RectStretch grs = new Gray8RectStretch(nTargetWidth, nTargetHeight);
             grs.push(imMask);
             imMask = (Gray8Image<?>) grs.getFront();
+            final Gray8Image<?> imSeed = mapSeeds.get(nScale);
+            if (imSeed != null) {
+                // start from the features the sparse search found
+                final Byte[] rbSeed = imSeed.getData();
+                final Byte[] rbMask = imMask.getData();
+                for (int i = 0; i < rbMask.length; i++) {
+                    if (rbSeed[i] > rbMask[i]) {
+                        rbMask[i] = rbSeed[i];
+                    }
+                }
+            }
             // combine the image and mask to make a masked image
             final Gray8MaskedImage<?> gmi = new Gray8MaskedImage<>(imShrunk, imMask);
             // pass the masked image to a subimage generator
-            final MaskedGray8SubImgGen mgsi = new MaskedGray8SubImgGen(hcc.getWidth(), hcc.getHeight(), Math.max(1, gmi.getWidth() / 30), Math.max(1, gmi.getHeight() / 30));
+            final int nXStep = nStride * Math.max(1, gmi.getWidth() / 30);
+            final int nYStep = nStride * Math.max(1, gmi.getHeight() / 30);
+            final MaskedGray8SubImgGen mgsi = new MaskedGray8SubImgGen(hcc.getWidth(), hcc.getHeight(), nXStep, nYStep);
             mgsi.push(gmi);
+            final boolean bSkip = imSeed != null;
             // now run Haar detection on each scaled image
             int nxLastFound = -hcc.getWidth();
             int nyLastFound = -hcc.getHeight();
             while (!mgsi.isEmpty()) {
                 final Gray8OffsetImage<?> imSub = (Gray8OffsetImage<?>) mgsi.getFront();
+                if (bSkip && ((imSub.getXOffset() % (2 * nXStep)) == 0) && ((imSub.getYOffset() % (2 * nYStep)) == 0)) {
+                    continue;
+                }
                 // if we've found a feature recently we skip forward until
                 // we're outside the masked region. There's no point rerunning
                 // the detector
                 if ((imSub.getXOffset() > (nxLastFound + hcc.getWidth())) && (imSub.getYOffset() > (nyLastFound + hcc.getHeight()))) {
+                    if (deadline.isExpired()) {
+                        throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.PIPELINE_DEADLINE_EXPIRED, toString(), deadline.toString(), new Integer(nScale).toString());
+                    }
+                    if (deadlineBudget.isExpired()) {
+                        // keep what has been found at this scale so far
+                        bExpired = true;
+                        break;
+                    }
+                    nWindows++;
                     if (hcc.eval(imSub)) {
                         // Found something.
                         nxLastFound = imSub.getXOffset();
@@ -158,12 +215,171 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
                     }
                 }
             }
+            if (bTimed) {
+                final long lNanos = System.nanoTime() - lStart;
+                if (tracker != null) {
+                    tracker.record("Gray8DetectHaarMultiScale scale=" + nScale + ((nStride == 1) ? "" : " stride=" + nStride), lNanos, tracker.currentAllocation() - lBytes); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                }
+                if (listener != null) {
+                    listener.haarScalePassed(nScale, nTargetWidth, nTargetHeight, nWindows, lNanos);
+                }
+            }
+            if (!bExpired) {
+                lCompleted.add(nScale);
+                if (mapMasks != null) {
+                    mapMasks.put(nScale, imMask);
+                }
+            }
             nScale = (nScale * 256) / nScaleChange;
         }
-        // Stretch imMask to original image size; this is the result
-        final Gray8RectStretch grs = new Gray8RectStretch(image.getWidth(), image.getHeight());
+        // Stretch imMask to original image size
+        final Gray8RectStretch grs = new Gray8RectStretch(imGray.getWidth(), imGray.getHeight());
         grs.push(imMask);
-        super.setOutput(grs.getFront());
+        return (Gray8Image<?>) grs.getFront();
+    }
+    
+    private Gray8Image<?> checkInput(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        if ((image.getWidth() < hcc.getWidth()) || (image.getHeight() < hcc.getHeight())) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_TOO_SMALL, image.toString(), hcc.toString(), null);
+        }
+        return (Gray8Image<?>) image;
+    }
+    
+    private static int[] toArray(final List<Integer> l) {
+        final int[] rn = new int[l.size()];
+        for (int i = 0; i < rn.length; i++) {
+            rn[i] = l.get(i);
+        }
+        return rn;
+    }
+    
+    /**
+     * Returns the scales searched with the usual window spacing by the last
+     * push. Scales are given coarsest first.
+     * 
+     * @return the scales fully searched.
+     */
+    public int[] getCompletedScales() {
+        return rnCompleted;
+    }
+    
+    /**
+     * Returns the scales searched, by the last push with a time budget, with
+     * twice the usual window spacing. These cover at least the scales in
+     * getCompletedScales, unless the budget expired before the first pass was
+     * finished.
+     * 
+     * @return the scales searched sparsely, or an empty array after a push
+     *         without a time budget.
+     */
+    public int[] getSparseScales() {
+        return rnSparse;
+    }
+    
+    /**
+     * Returns true iff the last push searched every scale with the usual
+     * window spacing, either directly or by refining a sparse search.
+     * 
+     * @return true iff the last push was not cut short.
+     */
+    public boolean isComplete() {
+        return bComplete;
+    }
+    
+    /**
+     * Apply multi-scale Haar cascade and prepare a mask image showing where
+     * features were detected.
+     * 
+     * @param image
+     *            Input Gray8Image.
+     * @throws ImageError
+     *             if the input is not a Gray8Image or is too small, or if the
+     *             deadline expires before detection is finished.
+     */
+    
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        final Gray8Image<?> imGray = checkInput(image);
+        final List<Integer> lCompleted = new ArrayList<>();
+        final Gray8Image<?> imResult = detect(imGray, 1, new HashMap<Integer, Gray8Image<?>>(), null, Deadline.NEVER, lCompleted);
+        rnCompleted = Gray8DetectHaarMultiScale.toArray(lCompleted);
+        rnSparse = new int[0];
+        bComplete = true;
+        super.setOutput(imResult);
+    }
+    
+    /**
+     * Apply multi-scale Haar cascade within a time budget, and prepare a mask
+     * image showing where features were detected. The most valuable work is
+     * done first: every scale, coarsest first, is searched with windows twice
+     * as far apart as usual, which takes about a quarter of the time of a full
+     * search. Then, while the budget lasts, the search is refined: every scale
+     * is searched again with the usual spacing, starting from the features
+     * the sparse search found and skipping the windows it already tested, so
+     * no window is tested twice. When the budget expires, the features found
+     * by both searches so far are output. getCompletedScales and
+     * getSparseScales say which scales were searched.<br>
+     * If the refinement finishes, every window push(image) would test has
+     * been tested or lies in a feature already found. The output can still
+     * differ slightly from push(image), since features found by the sparse
+     * search mask their area from the start of the refinement.
+     * 
+     * @param image
+     *            Input Gray8Image.
+     * @param deadlineBudget
+     *            when to stop refining and output the result.
+     * @throws ImageError
+     *             if the input is not a Gray8Image or is too small, or if the
+     *             deadline set with setDeadline expires.
+     */
+    public void push(final Image<?, ?> image, final Deadline deadlineBudget) throws ImageError {
+        final Gray8Image<?> imGray = checkInput(image);
+        final List<Integer> lSparse = new ArrayList<>();
+        final Map<Integer, Gray8Image<?>> mapSparse = new HashMap<>();
+        final Gray8Image<?> imSparse = detect(imGray, 2, new HashMap<Integer, Gray8Image<?>>(), mapSparse, deadlineBudget, lSparse);
+        final List<Integer> lCompleted = new ArrayList<>();
+        rnSparse = Gray8DetectHaarMultiScale.toArray(lSparse);
+        if (deadlineBudget.isExpired()) {
+            rnCompleted = new int[0];
+            bComplete = countScales(imGray) == 0;
+            super.setOutput(imSparse);
+            return;
+        }
+        final Gray8Image<?> imFull = detect(imGray, 1, mapSparse, null, deadlineBudget, lCompleted);
+        rnCompleted = Gray8DetectHaarMultiScale.toArray(lCompleted);
+        bComplete = lCompleted.size() == countScales(imGray);
+        // add the features of sparse scales the refinement did not reach
+        final Byte[] rbSparse = imSparse.getData();
+        final Byte[] rbFull = imFull.getData();
+        for (int i = 0; i < rbFull.length; i++) {
+            if (rbSparse[i] > rbFull[i]) {
+                rbFull[i] = rbSparse[i];
+            }
+        }
+        super.setOutput(imFull);
+    }
+    
+    /**
+     * Returns the deadline checked during detection.
+     * 
+     * @return the deadline, Deadline.NEVER by default.
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+    
+    /**
+     * Set the deadline checked during detection. Once it expires, push
+     * abandons the image it is working on.
+     * 
+     * @param deadline
+     *            the deadline, or Deadline.NEVER to always finish.
+     */
+    public void setDeadline(final Deadline deadline) {
+        this.deadline = deadline;
     }
     
     /**
@@ -29,6 +29,8 @@ import com.github.ojil.core.Complex32Image;
 import com.github.ojil.core.Gray8Image;
 import com.github.ojil.core.Image;
 import com.github.ojil.core.ImageError;
+import com.github.ojil.core.PipelineEvents;
+import com.github.ojil.core.PipelineListener;
 import com.github.ojil.core.PipelineStage;
 
 /**
@@ -42,7 +44,7 @@ public class Gray8Fft extends PipelineStage {
      * Defines the scale factor applied to the image as a power of two, for
      * accuracy.
      */
-    public static int SCALE = 8;
+    public static final int SCALE = 8;
     
     private Fft1d fft = null;
     
@@ -87,6 +89,8 @@ public class Gray8Fft extends PipelineStage {
         final Byte data[] = gray.getData();
         // create output
         final Complex32Image<?> cxmResult = new Complex32Image<>(nWidth, nHeight);
+        final PipelineListener listener = PipelineEvents.getListener();
+        final long lStart = (listener == null) ? 0 : System.nanoTime();
         // take FFT of each row
         int nIndex = 0;
         final Complex cxRow[] = new Complex[nWidth];
@@ -116,6 +120,9 @@ public class Gray8Fft extends PipelineStage {
                 cxmResult.getData()[(i * nWidth) + j] = cxResult[i];
             }
         }
+        if (listener != null) {
+            listener.fftTransformed(nWidth, nHeight, false, System.nanoTime() - lStart);
+        }
         super.setOutput(cxmResult);
     }
 }
@@ -0,0 +1,292 @@
+/*
+ * Gray8GaussRecursive.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Computes a two-dimensional Gaussian blur of a gray image with a recursive
+ * (IIR) filter, following Young and van Vliet, "Recursive implementation of
+ * the Gaussian filter", Signal Processing 44 (1995). Each row, then each
+ * column, is filtered by a third-order recursive filter run forward and then
+ * backward. The cost per pixel is the same for every sigma, and sigma can be
+ * as large as wanted, so this is the stage to use for heavy blurs such as
+ * background flattening.
+ * <p>
+ * The result is a Gaussian with standard deviation sigma and unit gain. On
+ * average it is within half a gray level of the exact Gaussian; single
+ * pixels can be off by a few levels when sigma is below 2.0. The image is
+ * extended past its borders by repeating the border pixels. Note that this
+ * is not the same operator as Gray8GaussHoriz and the stages built on it,
+ * whose coefficient tables are exp(-x*x/(sigma*sigma)) normalized per side.
+ * The filter coefficients depend on sigma in a way that cannot be computed
+ * accurately in fixed point, so the filtering is done in floating point. As
+ * for the other Gaussian stages, sigma is multiplied by 10 and given as an
+ * integer.
+ *
+ * @author webb
+ */
+public class Gray8GaussRecursive extends PipelineStage implements BufferedStage {
+    private int cSigma;
+    // filter coefficients, divided by b0 (see Young and van Vliet)
+    private double dB;
+    private double dB1;
+    private double dB2;
+    private double dB3;
+    // maps the last three forward outputs, less the border value, to the
+    // first three backward states (see setSigma)
+    private final double[][] rdM = new double[3][3];
+
+    /**
+     * Creates a new instance of Gray8GaussRecursive.
+     *
+     * @param cSigma
+     *            the sigma value for the operator, which is the sigma in the
+     *            Gaussian distribution multipied by 10.0 and converted to
+     *            integer.
+     * @throws ImageError
+     *             if sigma is less than 5 (0.5 unscaled).
+     */
+    public Gray8GaussRecursive(final int cSigma) throws ImageError {
+        setSigma(cSigma);
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Returns the current value of sigma.
+     *
+     * @return the sigma value, multiplied by 10.
+     */
+    public int getSigma() {
+        return cSigma;
+    }
+
+    /**
+     * Apply the Gaussian to the input image.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @throws ImageError
+     *             if image is not a Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Apply the operator to a Gray8Image, writing the result into a
+     * Gray8Image of the same size. The input is not checked. Each call
+     * allocates its working buffers, a float for every pixel and four
+     * doubles for every column, so that the stage is not modified; this is
+     * reflected in its allocation budget.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Byte[] bIn = ((Gray8Image<?>) image).getData();
+        final Byte[] bResult = ((Gray8Image<?>) imageOutput).getData();
+        final int cWidth = image.getWidth();
+        final int cHeight = image.getHeight();
+        final double dB = this.dB;
+        final double dB1 = this.dB1;
+        final double dB2 = this.dB2;
+        final double dB3 = this.dB3;
+        final float[] rfBuf = new float[cWidth * cHeight];
+        // rows: forward, then backward. Outside the row the input repeats
+        // the border pixel, for which the filter output equals the input.
+        for (int i = 0; i < cHeight; i++) {
+            final int nBase = i * cWidth;
+            double d1 = bIn[nBase];
+            double d2 = d1;
+            double d3 = d1;
+            for (int j = 0; j < cWidth; j++) {
+                final double d = (dB * bIn[nBase + j]) + (dB1 * d1) + (dB2 * d2) + (dB3 * d3);
+                rfBuf[nBase + j] = (float) d;
+                d3 = d2;
+                d2 = d1;
+                d1 = d;
+            }
+            final double dU = bIn[(nBase + cWidth) - 1];
+            final double dW1 = d1 - dU;
+            final double dW2 = d2 - dU;
+            final double dW3 = d3 - dU;
+            d1 = dU + (rdM[0][0] * dW1) + (rdM[0][1] * dW2) + (rdM[0][2] * dW3);
+            d2 = dU + (rdM[1][0] * dW1) + (rdM[1][1] * dW2) + (rdM[1][2] * dW3);
+            d3 = dU + (rdM[2][0] * dW1) + (rdM[2][1] * dW2) + (rdM[2][2] * dW3);
+            for (int j = cWidth - 1; j >= 0; j--) {
+                final double d = (dB * rfBuf[nBase + j]) + (dB1 * d1) + (dB2 * d2) + (dB3 * d3);
+                rfBuf[nBase + j] = (float) d;
+                d3 = d2;
+                d2 = d1;
+                d1 = d;
+            }
+        }
+        // columns, a whole row at a time so memory is read in order
+        final double[] rd1 = new double[cWidth];
+        final double[] rd2 = new double[cWidth];
+        final double[] rd3 = new double[cWidth];
+        for (int j = 0; j < cWidth; j++) {
+            rd1[j] = rd2[j] = rd3[j] = rfBuf[j];
+        }
+        // the border value is the row-filtered last row, before it is
+        // overwritten
+        final double[] rdU = new double[cWidth];
+        for (int j = 0; j < cWidth; j++) {
+            rdU[j] = rfBuf[((cHeight - 1) * cWidth) + j];
+        }
+        for (int i = 0; i < cHeight; i++) {
+            final int nBase = i * cWidth;
+            for (int j = 0; j < cWidth; j++) {
+                final double d = (dB * rfBuf[nBase + j]) + (dB1 * rd1[j]) + (dB2 * rd2[j]) + (dB3 * rd3[j]);
+                rfBuf[nBase + j] = (float) d;
+                rd3[j] = rd2[j];
+                rd2[j] = rd1[j];
+                rd1[j] = d;
+            }
+        }
+        for (int j = 0; j < cWidth; j++) {
+            final double dU = rdU[j];
+            final double dW1 = rd1[j] - dU;
+            final double dW2 = rd2[j] - dU;
+            final double dW3 = rd3[j] - dU;
+            rd1[j] = dU + (rdM[0][0] * dW1) + (rdM[0][1] * dW2) + (rdM[0][2] * dW3);
+            rd2[j] = dU + (rdM[1][0] * dW1) + (rdM[1][1] * dW2) + (rdM[1][2] * dW3);
+            rd3[j] = dU + (rdM[2][0] * dW1) + (rdM[2][1] * dW2) + (rdM[2][2] * dW3);
+        }
+        for (int i = cHeight - 1; i >= 0; i--) {
+            final int nBase = i * cWidth;
+            for (int j = 0; j < cWidth; j++) {
+                final double d = (dB * rfBuf[nBase + j]) + (dB1 * rd1[j]) + (dB2 * rd2[j]) + (dB3 * rd3[j]);
+                rd3[j] = rd2[j];
+                rd2[j] = rd1[j];
+                rd1[j] = d;
+                final long l = Math.round(d);
+                bResult[nBase + j] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, l));
+            }
+        }
+    }
+
+    /**
+     * Sets a new value for sigma. There is no upper limit, and the time taken
+     * does not depend on sigma.
+     *
+     * @param cSigma
+     *            the new sigma value, multiplied by 10.
+     * @throws ImageError
+     *             if cSigma is less than 5; the recursive approximation is
+     *             not accurate for sigma below 0.5.
+     */
+    public void setSigma(final int cSigma) throws ImageError {
+        if (cSigma < 5) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(cSigma).toString(), new Integer(5).toString(),
+                    new Integer(Integer.MAX_VALUE).toString());
+        }
+        this.cSigma = cSigma;
+        final double dSigma = cSigma / 10.0;
+        // equation 11b of Young and van Vliet
+        final double q;
+        if (dSigma >= 2.5) {
+            q = (0.98711 * dSigma) - 0.96330;
+        } else {
+            q = 3.97156 - (4.14554 * Math.sqrt(1.0 - (0.26891 * dSigma)));
+        }
+        // equation 8c
+        final double q2 = q * q;
+        final double q3 = q2 * q;
+        final double b0 = 1.57825 + (2.44413 * q) + (1.4281 * q2) + (0.422205 * q3);
+        dB1 = ((2.44413 * q) + (2.85619 * q2) + (1.26661 * q3)) / b0;
+        dB2 = -((1.4281 * q2) + (1.26661 * q3)) / b0;
+        dB3 = (0.422205 * q3) / b0;
+        // equation 10: the gain is 1
+        dB = 1.0 - (dB1 + dB2 + dB3);
+        // The backward pass must start from the state it would have had if
+        // the border pixel had been repeated forever after the end (Triggs
+        // and Sdika, IEEE Trans. Signal Processing 54, 2006). The filter is
+        // linear, so the start state, less the border value, is a fixed
+        // matrix times the last three forward outputs, less the border value.
+        // Find its columns by running the filter far enough past the end
+        // that the response has died away.
+        final int cLength = 100 + (int) (20 * dSigma);
+        final double[] rdF = new double[cLength];
+        for (int c = 0; c < 3; c++) {
+            double d1 = (c == 0) ? 1 : 0;
+            double d2 = (c == 1) ? 1 : 0;
+            double d3 = (c == 2) ? 1 : 0;
+            for (int n = 0; n < cLength; n++) {
+                final double d = (dB1 * d1) + (dB2 * d2) + (dB3 * d3);
+                rdF[n] = d;
+                d3 = d2;
+                d2 = d1;
+                d1 = d;
+            }
+            d1 = d2 = d3 = 0;
+            for (int n = cLength - 1; n >= 0; n--) {
+                final double d = (dB * rdF[n]) + (dB1 * d1) + (dB2 * d2) + (dB3 * d3);
+                d3 = d2;
+                d2 = d1;
+                d1 = d;
+            }
+            rdM[0][c] = d1;
+            rdM[1][c] = d2;
+            rdM[2][c] = d3;
+        }
+    }
+
+    /**
+     * returns a string describing this Gaussian blur.
+     *
+     * @return a string describing the Gaussian blur.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + cSigma + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Gray8GaussSmooth.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Computes a two-dimensional Gaussian blur of a gray image. The result is
+ * exactly that of Gray8GaussHoriz followed by Gray8GaussSmoothVert with the
+ * same sigma, including the rounding after each pass and the reflection at
+ * the borders, but it is computed in one pass over the image. Each input row
+ * is blurred horizontally into a ring of just enough rows for the vertical
+ * Gaussian, and each output row is then computed from the ring row by row,
+ * so no intermediate image is allocated and memory is always read in order.
+ * Sigma is multiplied by 10 and given as an integer, as for Gray8GaussHoriz.
+ *
+ * @author webb
+ */
+public class Gray8GaussSmooth extends PipelineStage implements BufferedStage {
+    private int cSigma;
+    // one side of the Gaussian, starting at the center, from KernelTables
+    private int[] rnCoeff;
+
+    /**
+     * Creates a new instance of Gray8GaussSmooth.
+     *
+     * @param cSigma
+     *            the sigma value for the operator, which is the sigma in the
+     *            Gaussian distribution multipied by 10.0 and converted to
+     *            integer.
+     * @throws ImageError
+     *             is sigma is out of range.
+     */
+    public Gray8GaussSmooth(final int cSigma) throws ImageError {
+        setSigma(cSigma);
+    }
+
+    // blur row nRow of bIn horizontally into rnOut. rnRow is scratch space
+    // for the unboxed input row.
+    private void blurRow(final Byte[] bIn, final int nRow, final int cWidth, final int[] rnRow, final int[] rnOut) {
+        final int cCoeff = rnCoeff.length;
+        final int nBase = nRow * cWidth;
+        for (int j = 0; j < cWidth; j++) {
+            rnRow[j] = bIn[nBase + j];
+        }
+        for (int j = 0; j < cWidth; j++) {
+            int wSum;
+            if ((j >= (cCoeff - 1)) && ((j + cCoeff) <= cWidth)) {
+                // no reflection needed
+                wSum = rnCoeff[0] * rnRow[j];
+                for (int k = 1; k < cCoeff; k++) {
+                    wSum += rnCoeff[k] * (rnRow[j - k] + rnRow[j + k]);
+                }
+            } else {
+                // reflect at the borders exactly as Gray8GaussHoriz does
+                wSum = 0;
+                for (int k = 1; k < cCoeff; k++) {
+                    wSum += rnCoeff[k] * rnRow[KernelTables.reflect(j - k, cWidth)];
+                }
+                for (int k = 0; k < cCoeff; k++) {
+                    if ((j + k) < cWidth) {
+                        wSum += rnCoeff[k] * rnRow[j + k];
+                    } else {
+                        wSum += rnCoeff[k] * rnRow[KernelTables.reflect(j + k, cWidth)];
+                    }
+                }
+            }
+            rnOut[j] = (byte) (wSum >> 8);
+        }
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Returns the current value of sigma.
+     *
+     * @return the sigma value
+     */
+    public int getSigma() {
+        return cSigma;
+    }
+
+    /**
+     * Apply the Gaussian to the input image.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @throws ImageError
+     *             if image is not a Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Apply the operator to a Gray8Image, writing the result into a
+     * Gray8Image of the same size. The input is not checked.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Byte[] bIn = ((Gray8Image<?>) image).getData();
+        final Byte[] bResult = ((Gray8Image<?>) imageOutput).getData();
+        final int[] rnCoeff = this.rnCoeff;
+        final int cCoeff = rnCoeff.length;
+        final int cWidth = image.getWidth();
+        final int cHeight = image.getHeight();
+        // output row i needs the horizontally blurred rows i-cCoeff+1 through
+        // i+cCoeff-1 (the reflected rows at the borders are among them), so a
+        // ring of 2*cCoeff-1 rows is enough
+        final int cRing = Math.min(cHeight, (2 * cCoeff) - 1);
+        final int[][] rnRing = new int[cRing][cWidth];
+        final int[] rnRow = new int[cWidth];
+        final int[] rnSum = new int[cWidth];
+        int nNext = 0;
+        for (int i = 0; i < cHeight; i++) {
+            final int nLast = Math.min(cHeight - 1, (i + cCoeff) - 1);
+            for (; nNext <= nLast; nNext++) {
+                blurRow(bIn, nNext, cWidth, rnRow, rnRing[nNext % cRing]);
+            }
+            final int[] rnCenter = rnRing[i % cRing];
+            for (int j = 0; j < cWidth; j++) {
+                rnSum[j] = rnCoeff[0] * rnCenter[j];
+            }
+            for (int k = 1; k < cCoeff; k++) {
+                // reflect at the borders exactly as Gray8GaussSmoothVert does
+                final int nAbove = KernelTables.reflect(i - k, cHeight);
+                final int nBelow = KernelTables.reflect(i + k, cHeight);
+                final int[] rnAbove = rnRing[nAbove % cRing];
+                final int[] rnBelow = rnRing[nBelow % cRing];
+                final int nCoeff = rnCoeff[k];
+                for (int j = 0; j < cWidth; j++) {
+                    rnSum[j] += nCoeff * (rnAbove[j] + rnBelow[j]);
+                }
+            }
+            final int nBase = i * cWidth;
+            for (int j = 0; j < cWidth; j++) {
+                bResult[nBase + j] = (byte) (rnSum[j] >> 8);
+            }
+        }
+    }
+
+    /**
+     * sets a new value for sigma. A small sigma value gives less blur.
+     *
+     * @param cSigma
+     *            the new sigma value
+     * @throws ImageError
+     *             if cSigma is less than or equal to 1.
+     */
+    public void setSigma(final int cSigma) throws ImageError {
+        if (cSigma <= 1) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(cSigma).toString(), new Integer(1).toString(),
+                    new Integer(Integer.MAX_VALUE).toString());
+        }
+        this.cSigma = cSigma;
+        rnCoeff = KernelTables.gauss(cSigma);
+    }
+
+    /**
+     * returns a string describing this Gaussian blur.
+     *
+     * @return a string describing the Gaussian blur.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + cSigma + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -24,6 +24,8 @@
 
 package com.github.ojil.algorithm;
 
+import java.util.Arrays;
+
 import com.github.ojil.core.Gray8Image;
 import com.github.ojil.core.Image;
 import com.github.ojil.core.ImageError;
@@ -47,6 +49,7 @@ public class Gray8HistEq extends PipelineStage {
      */
     public Gray8HistEq() throws com.github.ojil.core.ImageError {
         final Integer[] nullHist = new Integer[256];
+        Arrays.fill(nullHist, 0);
         histMatch = new Gray8HistMatch(nullHist);
     }
     
@@ -31,6 +31,7 @@ import com.github.ojil.core.PipelineStage;
  */
 public class Gray8HorizSum extends PipelineStage {
     int nSumWidth;
+    Gray8BoxStatistics stats = null;
     
     /**
      * Initialize Gray8HorizSum. The width is set here.
@@ -43,46 +44,39 @@ public class Gray8HorizSum extends PipelineStage {
     }
     
     /**
-     * Sum a Gray8Image horizontally, creating a Gray32Image. The edges of the
-     * image (closer than width) are set to 0. The summing is done efficiently
-     * so that each pixel computation takes only 2 additions on average.
-     * <p>
-     * This code uses Gray8QmSum to form a cumulative sum of the whole image.
-     * Since the entire image is summed to a Gray32Image by Gray8QmSum overflow
-     * may occur if more thant 2**24 pixels are in the image (e.g., larger than
-     * 2**12x2**12 = 4096x4096).
+     * Sum a Gray8Image horizontally, creating a Gray32Image. Pixel (i,j) of
+     * the output is the sum of input pixels (i,j-width+1) through (i,j), with
+     * the input taken as unsigned (from 0 to 255). The edges of the image
+     * (closer than width) are set to 0. The sums are running sums, so each
+     * pixel takes the same time whatever the width, and they cannot overflow.
      * 
      * @param imageInput
      *            input Gray8Image.
      * @throws ImageError
-     *             if the input is not a Gray8Image.
+     *             if the input is not a Gray8Image, or the width is less than
+     *             1.
      */
     @Override
     public void push(final Image<?, ?> imageInput) throws ImageError {
         if (!(imageInput instanceof Gray8Image)) {
             throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, imageInput.toString(), null, null);
         }
-        final Gray8QmSum gqs = new Gray8QmSum();
-        gqs.push(imageInput);
-        final Gray32Image<?> gSum = (Gray32Image<?>) gqs.getFront();
-        final Integer[] sData = gSum.getData();
-        final Gray32Image<?> gResult = new Gray32Image<>(imageInput.getWidth(), imageInput.getHeight());
-        final Integer[] gData = gResult.getData();
-        for (int i = 1; i < imageInput.getHeight(); i++) {
-            for (int j = 0; j < nSumWidth; j++) {
-                gData[(i * imageInput.getWidth()) + j] = 0;
-            }
-            for (int j = nSumWidth; j < imageInput.getWidth(); j++) {
-                gData[(i * imageInput.getWidth()) + j] = sData[(i * imageInput.getWidth()) + j] - sData[((i * imageInput.getWidth()) + j) - nSumWidth];
-            }
+        if (stats == null) {
+            stats = new Gray8BoxStatistics(Gray8BoxStatistics.HORIZONTAL, nSumWidth - 1, 0);
         }
-        for (int i = 1; i < imageInput.getHeight(); i++) {
-            for (int j = 0; j < nSumWidth; j++) {
-                gData[(i * imageInput.getWidth()) + j] = 0;
+        stats.push(imageInput);
+        final int[] rnSum = stats.getSums();
+        // the sums are of signed pixels; each unsigned pixel is 128 more
+        final int nOffset = -Byte.MIN_VALUE * nSumWidth;
+        final int cWidth = imageInput.getWidth();
+        final Gray32Image<?> gResult = new Gray32Image<>(cWidth, imageInput.getHeight());
+        final Integer[] gData = gResult.getData();
+        for (int i = 0; i < imageInput.getHeight(); i++) {
+            for (int j = 0; j < Math.min(nSumWidth, cWidth); j++) {
+                gData[(i * cWidth) + j] = 0;
             }
-            for (int j = nSumWidth; j < imageInput.getWidth(); j++) {
-                gData[(i * imageInput.getWidth()) + j] = (sData[(i * imageInput.getWidth()) + j] - sData[((i * imageInput.getWidth()) + j) - nSumWidth] - sData[((i - 1) * imageInput.getWidth()) + j])
-                        + sData[(((i - 1) * imageInput.getWidth()) + j) - nSumWidth];
+            for (int j = nSumWidth; j < cWidth; j++) {
+                gData[(i * cWidth) + j] = rnSum[(i * cWidth) + j] + nOffset;
             }
         }
         super.setOutput(gResult);
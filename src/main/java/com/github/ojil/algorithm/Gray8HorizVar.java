@@ -46,6 +46,10 @@ public class Gray8HorizVar extends PipelineStage {
      * The output image.
      */
     Gray16Image<?> g16 = null;
+    /**
+     * Computes the window sums.
+     */
+    Gray8BoxStatistics stats = null;
     
     /**
      * Creates a new instance of Gray8HorizVar
@@ -59,12 +63,14 @@ public class Gray8HorizVar extends PipelineStage {
     
     /**
      * Compute the horizontal variance of pixels within nWindow of the current
-     * pixel.
+     * pixel. The window runs from nWindow - 1 pixels before the current pixel
+     * to nWindow pixels after it, cut off at the image borders. The time per
+     * pixel does not depend on nWindow.
      * 
      * @param image
      *            the input Gray8Image
      * @throws ImageError
-     *             if image is not a Gray8Image
+     *             if image is not a Gray8Image, or nWindow is less than 1
      */
     @Override
     public void push(final Image<?, ?> image) throws ImageError {
@@ -74,39 +80,13 @@ public class Gray8HorizVar extends PipelineStage {
         if ((g16 == null) || (g16.getWidth() != image.getWidth()) || (g16.getHeight() != image.getHeight())) {
             g16 = new Gray16Image<>(image.getWidth(), image.getHeight());
         }
-        final Gray8Image<?> input = (Gray8Image<?>) image;
-        final Byte[] bIn = input.getData();
-        final int cWidth = input.getWidth();
+        if (stats == null) {
+            stats = new Gray8BoxStatistics(Gray8BoxStatistics.HORIZONTAL, nWindow - 1, nWindow);
+        }
+        stats.push(image);
         final Short[] sOut = g16.getData();
-        for (int i = 0; i < input.getHeight(); i++) {
-            int nSum = 0;
-            int nSumSq = 0;
-            int nCount = 0;
-            // initialize sums and count for first pixel in row
-            for (int j = 0; j < nWindow; j++) {
-                nSum += bIn[(i * cWidth) + j];
-                nSumSq += bIn[(i * cWidth) + j] * bIn[(i * cWidth) + j];
-                nCount++;
-            }
-            // increment across the row
-            for (int j = 0; j < cWidth; j++) {
-                // if window doesn't extend past right side of
-                // row add new pixel
-                if ((j + nWindow) < cWidth) {
-                    nSum += bIn[(i * cWidth) + j + nWindow];
-                    nSumSq += bIn[(i * cWidth) + j + nWindow] * bIn[(i * cWidth) + j + nWindow];
-                    nCount++;
-                }
-                // if window doesn't extend past left side of
-                // row subtract old pixel
-                if (j >= nWindow) {
-                    nSum -= bIn[((i * cWidth) + j) - nWindow];
-                    nSumSq -= bIn[((i * cWidth) + j) - nWindow] * bIn[((i * cWidth) + j) - nWindow];
-                    nCount--;
-                }
-                final short nVar = (short) Math.min(Short.MAX_VALUE, (nSumSq - ((nSum * nSum) / nCount)) / (nCount - 1));
-                sOut[(i * cWidth) + j] = nVar;
-            }
+        for (int i = 0; i < sOut.length; i++) {
+            sOut[i] = (short) Math.min(Short.MAX_VALUE, stats.getVariance(i));
         }
         super.setOutput(g16);
     }
@@ -0,0 +1,158 @@
+/*
+ * Gray8Median.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import java.util.concurrent.ForkJoinPool;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Median filters a gray image: each pixel is replaced by the median of the
+ * square window of side 2 * radius + 1 centered on it. This removes
+ * salt-and-pepper noise while keeping edges sharp. The image is extended past
+ * its borders by repeating the border pixels. The time taken does not depend
+ * on the radius (see MedianFilter). Given a ForkJoinPool, the image is split
+ * into vertical strips which are filtered in parallel.
+ *
+ * @author webb
+ */
+public class Gray8Median extends PipelineStage implements BufferedStage {
+    private final int nRadius;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new instance of Gray8Median which filters on the calling
+     * thread.
+     *
+     * @param nRadius
+     *            the window radius.
+     * @throws ImageError
+     *             if nRadius is less than 1.
+     */
+    public Gray8Median(final int nRadius) throws ImageError {
+        this(nRadius, null);
+    }
+
+    /**
+     * Creates a new instance of Gray8Median.
+     *
+     * @param nRadius
+     *            the window radius.
+     * @param pool
+     *            the pool to filter strips of the image on in parallel, or
+     *            null to filter on the calling thread.
+     * @throws ImageError
+     *             if nRadius is less than 1.
+     */
+    public Gray8Median(final int nRadius, final ForkJoinPool pool) throws ImageError {
+        if (nRadius < 1) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(nRadius).toString(), new Integer(1).toString(),
+                    new Integer(Integer.MAX_VALUE).toString());
+        }
+        this.nRadius = nRadius;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the window radius.
+     *
+     * @return the radius.
+     */
+    public int getRadius() {
+        return nRadius;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Median filter the input image.
+     *
+     * @param image
+     *            the input Gray8Image. Not modified.
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Median filter a Gray8Image, writing the result into a Gray8Image of the
+     * same size. The input is not checked.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Byte[] bIn = ((Gray8Image<?>) image).getData();
+        final Byte[] bResult = ((Gray8Image<?>) imageOutput).getData();
+        // the buffers and the filter's histograms are made for each call, so
+        // that the stage can be used from several threads at once
+        final byte[] rbIn = new byte[bIn.length];
+        final byte[] rbOut = new byte[bIn.length];
+        // the filter works on unsigned values
+        for (int i = 0; i < bIn.length; i++) {
+            rbIn[i] = (byte) (bIn[i] - Byte.MIN_VALUE);
+        }
+        new MedianFilter(nRadius, pool).filter(rbIn, rbOut, image.getWidth(), image.getHeight());
+        for (int i = 0; i < bResult.length; i++) {
+            bResult[i] = (byte) (rbOut[i] + Byte.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Returns a string describing this median filter.
+     *
+     * @return a string giving the radius.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + nRadius + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Gray8Open.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Opens a gray image with a rectangular window: an erosion followed by a
+ * dilation with the same window. Bright features smaller than the window are
+ * removed and the rest are left almost unchanged; for a binary image this
+ * removes specks and thin lines from the foreground. The dilation uses the
+ * window reflected about the pixel, which only matters when a dimension is
+ * even. Windows are cut off at the image borders. The time taken does not
+ * depend on the window size (see MinMaxFilter).
+ *
+ * @author webb
+ */
+public class Gray8Open extends PipelineStage implements BufferedStage {
+    private static final boolean[] OPS = { false, true };
+
+    private final int nWidth;
+    private final int nHeight;
+
+    /**
+     * Creates a new instance of Gray8Open.
+     *
+     * @param nWidth
+     *            the window width.
+     * @param nHeight
+     *            the window height.
+     * @throws ImageError
+     *             if the width or height is less than 1.
+     */
+    public Gray8Open(final int nWidth, final int nHeight) throws ImageError {
+        if ((nWidth < 1) || (nHeight < 1)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(Math.min(nWidth, nHeight)).toString(),
+                    new Integer(1).toString(), new Integer(Integer.MAX_VALUE).toString());
+        }
+        this.nWidth = nWidth;
+        this.nHeight = nHeight;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Open the input image.
+     *
+     * @param image
+     *            the input Gray8Image. Not modified.
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Open a Gray8Image, writing the result into a Gray8Image of the same
+     * size. The input is not checked.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        new MinMaxFilter().push(((Gray8Image<?>) image).getData(), ((Gray8Image<?>) imageOutput).getData(), image.getWidth(), image.getHeight(), nWidth, nHeight, Gray8Open.OPS);
+    }
+
+    /**
+     * Returns a string describing this opening.
+     *
+     * @return a string giving the window size.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + nWidth + "," + nHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
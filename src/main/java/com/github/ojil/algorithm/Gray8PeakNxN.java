@@ -0,0 +1,125 @@
+/*
+ * Gray8PeakNxN.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+
+/**
+ * Find local NxN peaks in a Gray8Image. A pixel is kept if it equals the
+ * maximum of the NxN window centered on it, and is otherwise set to
+ * Byte.MIN_VALUE. Equal neighbouring maxima are all kept. If N is even the
+ * window extends one pixel further right and down. The window is cut off at
+ * the image borders, so border pixels are compared with the neighbours they
+ * have. The time taken does not depend on N (see MinMaxFilter).
+ *
+ * @author webb
+ */
+public class Gray8PeakNxN extends PipelineStage implements BufferedStage {
+    private final int nSize;
+
+    /**
+     * Creates a new instance of Gray8PeakNxN.
+     *
+     * @param nSize
+     *            the window width and height, N.
+     * @throws ImageError
+     *             if nSize is less than 1.
+     */
+    public Gray8PeakNxN(final int nSize) throws ImageError {
+        if (nSize < 1) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(nSize).toString(), new Integer(1).toString(),
+                    new Integer(Integer.MAX_VALUE).toString());
+        }
+        this.nSize = nSize;
+    }
+
+    /**
+     * Returns the window size.
+     *
+     * @return N, the window width and height.
+     */
+    public int getSize() {
+        return nSize;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Set all pixels not equal to the local NxN maximum to Byte.MIN_VALUE.
+     *
+     * @param image
+     *            the input Gray8Image. Not modified.
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof Gray8Image)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
+        }
+        final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Find the peaks of a Gray8Image, writing the result into a Gray8Image of
+     * the same size. The input is not checked.
+     *
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        new MinMaxFilter().peaks(((Gray8Image<?>) image).getData(), ((Gray8Image<?>) imageOutput).getData(), image.getWidth(), image.getHeight(), nSize, nSize);
+    }
+
+    /**
+     * Returns a string describing this peak detector.
+     *
+     * @return a string giving the window size.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + nSize + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
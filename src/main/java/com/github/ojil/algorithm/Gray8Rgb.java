@@ -24,9 +24,11 @@
 
 package com.github.ojil.algorithm;
 
+import com.github.ojil.core.BufferedStage;
 import com.github.ojil.core.Gray8Image;
 import com.github.ojil.core.Image;
 import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
 import com.github.ojil.core.PipelineStage;
 import com.github.ojil.core.RgbImage;
 
@@ -37,7 +39,7 @@ import com.github.ojil.core.RgbImage;
  *
  * @author webb
  */
-public class Gray8Rgb extends PipelineStage {
+public class Gray8Rgb extends PipelineStage implements BufferedStage {
     
     /** Creates a new instance of Gray8Rgb */
     public Gray8Rgb() {
@@ -58,11 +60,43 @@ public class Gray8Rgb extends PipelineStage {
         if (!(image instanceof Gray8Image)) {
             throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, image.toString(), null, null);
         }
-        final Gray8Image<?> gray = (Gray8Image<?>) image;
         final RgbImage<?> rgb = new RgbImage<>(image.getWidth(), image.getHeight());
-        final Byte[] grayData = gray.getData();
-        final Integer[] rgbData = rgb.getData();
-        for (int i = 0; i < (gray.getWidth() * gray.getHeight()); i++) {
+        push(image, rgb);
+        super.setOutput(rgb);
+    }
+    
+    /**
+     * Returns the spec of the output for a given input spec. The output is an
+     * RgbImage the same size as the input.
+     * 
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(RgbImage.class, specInput.getWidth(), specInput.getHeight());
+    }
+    
+    /**
+     * Converts a Gray8Image into an RgbImage of the same size. The input is
+     * not checked.
+     * 
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output RgbImage
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Byte[] grayData = ((Gray8Image<?>) image).getData();
+        final Integer[] rgbData = ((RgbImage<?>) imageOutput).getData();
+        for (int i = 0; i < (image.getWidth() * image.getHeight()); i++) {
             /*
              * Convert from signed byte value to unsigned byte for storage in
              * the RGB image.
@@ -71,6 +105,5 @@ public class Gray8Rgb extends PipelineStage {
             /* Create ARGB word */
             rgbData[i] = 0xFF000000 | ((grayUnsigned) << 16) | ((grayUnsigned) << 8) | grayUnsigned;
         }
-        super.setOutput(rgb);
     }
 }
@@ -28,10 +28,12 @@
 
 package com.github.ojil.algorithm;
 
+import com.github.ojil.core.BufferedStage;
 import com.github.ojil.core.Gray32Image;
 import com.github.ojil.core.Gray8Image;
 import com.github.ojil.core.Image;
 import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
 import com.github.ojil.core.PipelineStage;
 
 /**
@@ -41,7 +43,7 @@ import com.github.ojil.core.PipelineStage;
  * 
  * @author webb
  */
-public class Gray8Shrink extends PipelineStage {
+public class Gray8Shrink extends PipelineStage implements BufferedStage {
     private int cHeight;
     private int cWidth;
     
@@ -96,12 +98,48 @@ public class Gray8Shrink extends PipelineStage {
         if ((image.getWidth() < cWidth) || (image.getHeight() < cHeight)) {
             throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.SHRINK_OUTPUT_LARGER_THAN_INPUT, image.toString(), toString(), null);
         }
-        final Gray8Image<?> input = (Gray8Image<?>) image;
+        final Gray8Image<?> result = new Gray8Image<>(cWidth, cHeight);
+        push(image, result);
+        super.setOutput(result);
+    }
+    
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image of the target size.
+     * 
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not a Gray8Image or is smaller than the
+     *             target size.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(Gray8Image.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_GRAY8IMAGE, specInput.toString(), null, null);
+        }
+        if ((specInput.getWidth() < cWidth) || (specInput.getHeight() < cHeight)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.SHRINK_OUTPUT_LARGER_THAN_INPUT, specInput.toString(), toString(), null);
+        }
+        return new ImageSpec(Gray8Image.class, cWidth, cHeight);
+    }
+    
+    /**
+     * Shrink a Gray8Image into a Gray8Image of the target size. The input type
+     * and size are not checked.
+     * 
+     * @param image
+     *            the input Gray8Image
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
         /* horizontal shrink */
-        final Gray32Image<?> horiz = shrinkHoriz(input);
+        final Gray32Image<?> horiz = shrinkHoriz((Gray8Image<?>) image);
         /* vertical shrink */
-        final Gray8Image<?> result = shrinkVert(horiz);
-        super.setOutput(result);
+        shrinkVert(horiz, (Gray8Image<?>) imageOutput);
     }
     
     /**
@@ -183,11 +221,11 @@ public class Gray8Shrink extends PipelineStage {
      *
      * @param input
      *            the input image.
-     * @returns the shrunk image.
+     * @param vert
+     *            the shrunk image.
      */
-    private Gray8Image<?> shrinkVert(final Gray32Image<?> input) {
+    private void shrinkVert(final Gray32Image<?> input, final Gray8Image<?> vert) {
         /* vertical shrink */
-        final Gray8Image<?> vert = new Gray8Image<>(input.getWidth(), cHeight);
         final Integer[] inData = input.getData();
         final Byte[] outData = vert.getData();
         final Integer[] nPixelSum = new Integer[input.getWidth()];
@@ -215,7 +253,6 @@ public class Gray8Shrink extends PipelineStage {
                 nCount = 0;
             }
         }
-        return vert;
     }
     
     /**
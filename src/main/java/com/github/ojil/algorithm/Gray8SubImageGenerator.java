@@ -132,6 +132,23 @@ public class Gray8SubImageGenerator extends PipelineStage {
         return imageResult;
     }
     
+    /**
+     * Returns the windows this generator will produce for the current input,
+     * as offsets into the input, without copying them. Unlike getFront, the
+     * result can be split and traversed on several threads at once. It does
+     * not change the state of the generator.
+     * 
+     * @return a WindowSpliterator over the windows getFront would return.
+     * @throws ImageError
+     *             if no image has been pushed.
+     */
+    public WindowSpliterator windows() throws ImageError {
+        if (imageInput == null) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.SUBIMAGE_NO_IMAGE_AVAILABLE, toString(), null, null);
+        }
+        return new WindowSpliterator(imageInput, null, nWidth, nHeight, nXOffset, nYOffset, nHorizLimit, nVertLimit);
+    }
+    
     /**
      * Reinitializes the subimage generator and prepares it to generate the
      * first Gray8OffsetImage for the new input.
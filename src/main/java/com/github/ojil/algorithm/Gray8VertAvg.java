@@ -49,7 +49,7 @@ public class Gray8VertAvg {
      *         this vector is the average of column i in the image.
      */
     public static Byte[] push(final Gray8Image<?> image) {
-        final Integer[] sum = new Integer[image.getWidth()];
+        final int[] sum = new int[image.getWidth()];
         final Byte[] data = image.getData();
         for (int i = 0; i < image.getHeight(); i++) {
             for (int j = 0; j < image.getWidth(); j++) {
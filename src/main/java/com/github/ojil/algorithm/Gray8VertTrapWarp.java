@@ -35,6 +35,7 @@ import com.github.ojil.core.PipelineStage;
  * @author webb
  */
 public class Gray8VertTrapWarp extends PipelineStage {
+    private Gray8Image<?> imageWarped;
     private int nRowTopEnd;
     private int nRowTopStart;
     private int nRowBotEnd;
@@ -157,12 +158,12 @@ public class Gray8VertTrapWarp extends PipelineStage {
         // floating point
         int fTop = nRowTopStart << 8;
         int fBot = nRowBotStart << 8;
-        final int nHeight = imageOutput.getHeight();
-        final int nWidth = imageOutput.getWidth();
+        final int nHeight = imageWarped.getHeight();
+        final int nWidth = imageWarped.getWidth();
         final int fTopIncr = ((nRowTopEnd - nRowTopStart) << 8) / nWidth;
         final int fBotIncr = ((nRowBotEnd - nRowBotStart) << 8) / nWidth;
         final Byte[] in = ((Gray8Image<?>) image).getData();
-        final Byte[] out = ((Gray8Image<?>) super.imageOutput).getData();
+        final Byte[] out = imageWarped.getData();
         for (int i = 0; i < nWidth; i++) {
             // these are scaled by 8 bits
             int fY = fTop;
@@ -181,7 +182,7 @@ public class Gray8VertTrapWarp extends PipelineStage {
             fTop += fTopIncr;
             fBot += fBotIncr;
         }
-        super.setOutput(super.imageOutput);
+        super.setOutput(imageWarped);
     }
     
     /**
@@ -223,7 +224,7 @@ public class Gray8VertTrapWarp extends PipelineStage {
         }
         final int nWidth = this.nColEnd - this.nColStart;
         final int nHeight = Math.max(this.nRowBotStart - this.nRowTopStart, this.nRowBotEnd - this.nRowTopEnd);
-        super.imageOutput = new Gray8Image<>(nWidth, nHeight);
+        imageWarped = new Gray8Image<>(nWidth, nHeight);
         
     }
     
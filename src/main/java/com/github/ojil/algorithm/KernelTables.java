@@ -0,0 +1,377 @@
+/*
+ * KernelTables.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+/**
+ * KernelTables holds the coefficients of the Gaussian and Canny operators
+ * used by Gray8GaussHoriz, Gray8GaussSmoothVert, Gray8GaussSmooth,
+ * Gray8CannyHoriz and Gray8CannyVert (and so by the RGB stages built on
+ * them). There is one copy of each table for the whole program, so creating
+ * a stage costs nothing but the stage itself.
+ * <p>
+ * Each kernel is one side of a symmetric operator, starting at the center,
+ * scaled by 256 and indexed by sigma multiplied by 10. The precomputed
+ * tables cover sigma up to 10.0 for the Gaussian and 9.9 for Canny. Kernels
+ * for larger sigma are computed afresh on every call and nothing is kept
+ * here; the stages hold the row they were given for as long as they use it.
+ * The arrays returned may be shared and must not be modified. Such a kernel
+ * can be longer than the image; reflect maps the indexes it reaches back
+ * into the image.
+ *
+ * @author webb
+ */
+final class KernelTables {
+    /**
+     * GAUSS row i is the precomputed Gauss coefficients for sigma = i/10.0.
+     * They have been scaled by 256 and converted to integer because CLDC 1.0
+     * doesn't allow floating point. The array below was generated using two
+     * Excel macros: In cell b2 and filled out to column AM and down:
+     * =EXP(-(COLUMN(B2)-1)*(COLUMN(B2)-1)/((ROW(B2)-1)/10*(ROW(B2)-1)/10)) To
+     * compute the value shown below: =ROUND(B2/SUM($B2:$AM2)*256,0)
+     */
+    private static final int[][] GAUSS = {// @formatter:off
+            {0},  // unused, inserted to make lookup simpler
+            {256},
+            {256},
+            {256},
+            {256},
+            {256},
+            {256},
+            {255,1},
+            {254,2},
+            {250,6},
+            {244,12},
+            {236,20},
+            {227,28,1},
+            {217,37,2},
+            {207,45,4},
+            {198,52,6},
+            {189,58,8,1},
+            {180,64,11,1},
+            {172,68,15,2},
+            {164,71,18,3},
+            {157,74,21,4},
+            {150,76,24,5,1},
+            {144,77,28,6,1},
+            {138,78,30,8,1},
+            {132,79,33,10,2},
+            {127,79,35,12,3},
+            {122,79,37,13,4,1},
+            {118,78,39,15,4,1},
+            {114,78,41,17,5,1},
+            {110,77,42,18,6,2},
+            {106,76,44,20,7,2,1},
+            {103,75,45,22,8,3,1},
+            {99,74,46,23,10,3,1},
+            {96,73,46,24,11,4,1},
+            {93,72,47,26,12,5,1},
+            {91,71,47,27,13,5,2,1},
+            {88,70,48,28,14,6,2,1},
+            {86,69,48,29,15,7,3,1},
+            {83,68,48,29,16,7,3,1},
+            {81,67,48,30,17,8,3,1},
+            {79,65,48,31,18,9,4,2,1},
+            {77,64,48,32,18,10,4,2,1},
+            {75,63,48,32,19,10,5,2,1},
+            {73,62,48,33,20,11,5,2,1},
+            {72,61,47,33,21,12,6,3,1},
+            {70,60,47,33,21,12,7,3,1,1},
+            {68,59,47,34,22,13,7,3,2,1},
+            {67,58,46,34,23,14,8,4,2,1},
+            {65,57,46,34,23,14,8,4,2,1},
+            {64,56,46,34,24,15,9,5,2,1},
+            {63,55,45,34,24,15,9,5,3,1,1},
+            {61,55,45,34,24,16,10,5,3,1,1},
+            {60,54,45,34,25,16,10,6,3,2,1},
+            {59,53,44,35,25,17,11,6,3,2,1},
+            {58,52,44,35,25,17,11,7,4,2,1},
+            {57,51,43,34,26,18,12,7,4,2,1,1},
+            {56,50,43,34,26,18,12,7,4,2,1,1},
+            {55,50,43,34,26,19,12,8,5,3,1,1},
+            {54,49,42,34,26,19,13,8,5,3,2,1},
+            {53,48,42,34,26,19,13,9,5,3,2,1},
+            {52,48,41,34,27,20,14,9,6,3,2,1},
+            {51,47,41,34,27,20,14,9,6,4,2,1,1},
+            {50,46,41,34,27,20,14,10,6,4,2,1,1},
+            {49,46,40,34,27,20,15,10,7,4,2,1,1},
+            {48,45,40,33,27,21,15,10,7,4,3,1,1},
+            {48,44,39,33,27,21,15,11,7,5,3,2,1},
+            {47,44,39,33,27,21,16,11,7,5,3,2,1,1},
+            {46,43,39,33,27,21,16,11,8,5,3,2,1,1},
+            {45,42,38,33,27,21,16,12,8,5,3,2,1,1},
+            {45,42,38,33,27,21,16,12,8,6,4,2,1,1},
+            {44,41,37,32,27,22,17,12,9,6,4,2,1,1},
+            {43,41,37,32,27,22,17,12,9,6,4,3,2,1,1},
+            {43,40,37,32,27,22,17,13,9,6,4,3,2,1,1},
+            {42,40,36,32,27,22,17,13,9,7,4,3,2,1,1},
+            {41,39,36,32,27,22,17,13,10,7,5,3,2,1,1},
+            {41,39,35,31,27,22,17,13,10,7,5,3,2,1,1},
+            {40,38,35,31,27,22,18,14,10,7,5,3,2,1,1},
+            {40,38,35,31,27,22,18,14,10,7,5,4,2,1,1,1},
+            {39,37,34,31,26,22,18,14,11,8,5,4,2,2,1,1},
+            {39,37,34,30,26,22,18,14,11,8,6,4,3,2,1,1},
+            {38,36,34,30,26,22,18,14,11,8,6,4,3,2,1,1},
+            {38,36,33,30,26,22,18,14,11,8,6,4,3,2,1,1},
+            {37,36,33,30,26,22,18,15,11,9,6,4,3,2,1,1,1},
+            {37,35,33,30,26,22,18,15,12,9,6,5,3,2,1,1,1},
+            {36,35,32,29,26,22,18,15,12,9,7,5,3,2,2,1,1},
+            {36,34,32,29,26,22,18,15,12,9,7,5,4,2,2,1,1},
+            {35,34,32,29,26,22,19,15,12,9,7,5,4,3,2,1,1},
+            {35,34,32,29,26,22,19,15,12,9,7,5,4,3,2,1,1},
+            {35,33,31,29,25,22,19,15,12,10,7,5,4,3,2,1,1,1},
+            {34,33,31,28,25,22,19,15,12,10,8,6,4,3,2,1,1,1},
+            {34,33,31,28,25,22,19,16,13,10,8,6,4,3,2,1,1,1},
+            {33,32,30,28,25,22,19,16,13,10,8,6,4,3,2,2,1,1},
+            {33,32,30,28,25,22,19,16,13,10,8,6,5,3,2,2,1,1},
+            {33,32,30,27,25,22,19,16,13,10,8,6,5,3,2,2,1,1,1},
+            {32,31,30,27,25,22,19,16,13,11,8,6,5,4,3,2,1,1,1},
+            {32,31,29,27,25,22,19,16,13,11,8,7,5,4,3,2,1,1,1},
+            {32,31,29,27,24,22,19,16,13,11,9,7,5,4,3,2,1,1,1},
+            {31,30,29,27,24,22,19,16,13,11,9,7,5,4,3,2,1,1,1},
+            {31,30,28,26,24,21,19,16,13,11,9,7,5,4,3,2,2,1,1},
+            {31,30,28,26,24,21,19,16,14,11,9,7,6,4,3,2,2,1,1,1},
+            {30,29,28,26,24,21,19,16,14,11,9,7,6,4,3,2,2,1,1,1}
+    };// @formatter:on
+
+    /**
+     * CANNY row i is the precomputed Canny coefficients for sigma = i/10.0.
+     * They have been scaled by 256 and converted to integer because CLDC 1.0
+     * doesn't allow floating point. The coefficients have been scaled and
+     * normalized so the sum is 0 and the sum of the absolute values is 256
+     * (counting both sides of the Canny operator -- the operator is symmetric
+     * so we just give one side below.) The number of coefficients was
+     * determined by generating them out to the point at which the unscaled
+     * coefficient was less than a threshold, here 0.05.
+     */
+    private static final int[][] CANNY = {// @formatter:off
+            {0},
+            {-127, 21, 21, 21},
+            {-127, 21, 21, 21},
+            {-127, 25, 19, 19},
+            {-128, 42, 10, 10},
+            {-127, 56, 3, 3},
+            {-128, 57, 5},
+            {-128, 48, 15},
+            {-128, 32, 29, 1},
+            {-128, 16, 42, 5},
+            {-128, 0, 51, 11},
+            {-104, -11, 45, 16, 1},
+            {-89, -19, 39, 20, 3},
+            {-79, -24, 33, 24, 5},
+            {-72, -27, 27, 26, 8, 1},
+            {-67, -30, 21, 27, 11, 2},
+            {-63, -32, 16, 27, 14, 4},
+            {-61, -33, 12, 27, 17, 6},
+            {-58, -34, 8, 26, 20, 8},
+            {-56, -35, 4, 25, 22, 11},
+            {-55, -36, 0, 22, 22, 12, 4, 1},
+            {-51, -35, -2, 19, 22, 14, 6, 2},
+            {-48, -34, -5, 16, 21, 15, 7, 2},
+            {-45, -33, -7, 13, 20, 16, 9, 3},
+            {-43, -32, -9, 11, 19, 17, 10, 5},
+            {-41, -32, -10, 9, 18, 17, 11, 6},
+            {-40, -31, -11, 7, 17, 18, 13, 7},
+            {-39, -31, -12, 5, 16, 18, 14, 8},
+            {-38, -31, -13, 4, 15, 18, 15, 10},
+            {-37, -30, -14, 2, 14, 18, 16, 11},
+            {-36, -30, -15, 1, 13, 18, 17, 12},
+            {-34, -29, -16, -1, 10, 15, 15, 11, 7, 4},
+            {-33, -28, -16, -2, 9, 14, 15, 12, 8, 4},
+            {-32, -27, -16, -3, 7, 13, 14, 12, 8, 5},
+            {-31, -27, -16, -4, 6, 13, 14, 13, 9, 6},
+            {-30, -26, -17, -4, 5, 12, 14, 13, 10, 7},
+            {-29, -26, -17, -5, 4, 11, 14, 13, 11, 7},
+            {-29, -25, -17, -6, 3, 11, 14, 14, 11, 8},
+            {-28, -25, -17, -6, 3, 10, 14, 14, 12, 9},
+            {-27, -25, -17, -7, 2, 9, 13, 14, 13, 10},
+            {-27, -24, -17, -7, 1, 9, 13, 14, 13, 11},
+            {-26, -23, -17, -9, 0, 6, 11, 12, 11, 9, 7, 5},
+            {-25, -23, -17, -9, 0, 5, 10, 12, 11, 10, 7, 5},
+            {-25, -22, -17, -9, -1, 5, 9, 11, 11, 10, 8, 6},
+            {-24, -22, -17, -9, -2, 4, 9, 11, 11, 10, 8, 6},
+            {-23, -22, -17, -10, -2, 4, 8, 11, 12, 11, 9, 7},
+            {-23, -21, -17, -10, -3, 3, 8, 11, 12, 11, 9, 7},
+            {-23, -21, -16, -10, -3, 3, 7, 10, 12, 11, 10, 8},
+            {-22, -21, -16, -10, -3, 2, 7, 10, 12, 11, 10, 8},
+            {-22, -20, -16, -10, -4, 2, 7, 10, 12, 12, 10, 9},
+            {-22, -20, -16, -11, -4, 1, 6, 10, 11, 12, 11, 9},
+            {-21, -19, -16, -11, -5, 0, 4, 8, 9, 10, 9, 8, 6, 5},
+            {-20, -19, -16, -11, -5, 0, 4, 7, 9, 10, 9, 8, 7, 5},
+            {-20, -19, -16, -11, -6, 0, 3, 7, 9, 10, 10, 8, 7, 6},
+            {-20, -19, -16, -11, -6, -1, 3, 7, 9, 10, 10, 9, 7, 6},
+            {-19, -18, -15, -11, -6, -1, 3, 6, 9, 10, 10, 9, 8, 6},
+            {-19, -18, -15, -11, -6, -1, 2, 6, 8, 10, 10, 9, 8, 7},
+            {-19, -18, -15, -11, -6, -1, 2, 6, 8, 10, 10, 9, 8, 7},
+            {-18, -18, -15, -11, -7, -2, 2, 5, 8, 9, 10, 10, 9, 7},
+            {-18, -17, -15, -11, -7, -2, 1, 5, 8, 9, 10, 10, 9, 8},
+            {-18, -17, -15, -11, -7, -2, 1, 5, 8, 9, 10, 10, 9, 8},
+            {-17, -17, -14, -11, -7, -3, 0, 3, 6, 8, 8, 8, 8, 7, 6, 5},
+            {-17, -16, -14, -11, -7, -3, 0, 3, 6, 7, 8, 8, 8, 7, 6, 5},
+            {-17, -16, -14, -11, -8, -4, 0, 3, 5, 7, 8, 9, 8, 7, 6, 5},
+            {-17, -16, -14, -11, -8, -4, 0, 2, 5, 7, 8, 9, 8, 8, 7, 6},
+            {-16, -16, -14, -11, -8, -4, 0, 2, 5, 7, 8, 9, 8, 8, 7, 6},
+            {-16, -16, -14, -11, -8, -4, 0, 2, 5, 7, 8, 9, 8, 8, 7, 6},
+            {-16, -15, -14, -11, -8, -4, -1, 2, 4, 6, 8, 8, 9, 8, 7, 6},
+            {-16, -15, -14, -11, -8, -4, -1, 1, 4, 6, 8, 8, 9, 8, 8, 7},
+            {-16, -15, -13, -11, -8, -4, -1, 1, 4, 6, 8, 8, 9, 8, 8, 7},
+            {-15, -15, -13, -11, -8, -5, -1, 1, 4, 6, 8, 8, 9, 9, 8, 7},
+            {-15, -14, -13, -11, -8, -5, -2, 0, 3, 5, 6, 7, 7, 7, 7, 6, 5, 5},
+            {-15, -14, -13, -11, -8, -5, -2, 0, 2, 4, 6, 7, 7, 7, 7, 6, 6, 5},
+            {-15, -14, -13, -11, -8, -5, -2, 0, 2, 4, 6, 7, 7, 7, 7, 7, 6, 5},
+            {-14, -14, -13, -11, -8, -5, -2, 0, 2, 4, 6, 7, 7, 8, 7, 7, 6, 5},
+            {-14, -14, -13, -11, -8, -5, -3, 0, 2, 4, 6, 7, 7, 8, 7, 7, 6, 6},
+            {-14, -14, -12, -11, -8, -6, -3, 0, 2, 4, 5, 7, 7, 8, 7, 7, 6, 6},
+            {-14, -14, -12, -11, -8, -6, -3, 0, 1, 4, 5, 7, 7, 8, 8, 7, 7, 6},
+            {-14, -13, -12, -11, -8, -6, -3, 0, 1, 3, 5, 6, 7, 8, 8, 7, 7, 6},
+            {-14, -13, -12, -10, -8, -6, -3, 0, 1, 3, 5, 6, 7, 8, 8, 7, 7, 6},
+            {-13, -13, -12, -10, -8, -6, -3, -1, 1, 3, 5, 6, 7, 8, 8, 8, 7, 7},
+            {-13, -13, -12, -10, -8, -6, -4, -1, 0, 2, 4, 5, 6, 6, 7, 7, 6, 6, 5, 4},
+            {-13, -13, -12, -10, -8, -6, -4, -1, 0, 2, 4, 5, 6, 6, 7, 7, 6, 6, 5, 5},
+            {-13, -12, -12, -10, -8, -6, -4, -1, 0, 2, 3, 5, 6, 6, 7, 7, 6, 6, 5, 5},
+            {-13, -12, -11, -10, -8, -6, -4, -2, 0, 2, 3, 5, 6, 6, 7, 7, 6, 6, 6, 5},
+            {-13, -12, -11, -10, -8, -6, -4, -2, 0, 1, 3, 5, 6, 6, 7, 7, 7, 6, 6, 5},
+            {-12, -12, -11, -10, -8, -6, -4, -2, 0, 1, 3, 4, 6, 6, 7, 7, 7, 6, 6, 5},
+            {-12, -12, -11, -10, -8, -6, -4, -2, 0, 1, 3, 4, 5, 6, 7, 7, 7, 6, 6, 5},
+            {-12, -12, -11, -10, -8, -6, -4, -2, 0, 1, 3, 4, 5, 6, 7, 7, 7, 7, 6, 6},
+            {-12, -12, -11, -10, -8, -6, -4, -2, 0, 1, 3, 4, 5, 6, 7, 7, 7, 7, 6, 6},
+            {-12, -12, -11, -10, -8, -6, -4, -2, 0, 1, 3, 4, 5, 6, 7, 7, 7, 7, 6, 6},
+            {-12, -11, -11, -10, -8, -6, -5, -3, -1, 0, 2, 3, 4, 5, 6, 6, 6, 6, 6, 5, 5, 4},
+            {-11, -11, -11, -10, -8, -6, -5, -3, -1, 0, 2, 3, 4, 5, 6, 6, 6, 6, 6, 5, 5, 4},
+            {-11, -11, -11, -9, -8, -6, -5, -3, -1, 0, 1, 3, 4, 5, 6, 6, 6, 6, 6, 5, 5, 4},
+            {-11, -11, -10, -9, -8, -6, -5, -3, -1, 0, 1, 3, 4, 5, 6, 6, 6, 6, 6, 6, 5, 5},
+            {-11, -11, -10, -9, -8, -7, -5, -3, -1, 0, 1, 3, 4, 5, 5, 6, 6, 6, 6, 6, 5, 5},
+            {-11, -11, -10, -9, -8, -7, -5, -3, -1, 0, 1, 3, 4, 5, 5, 6, 6, 6, 6, 6, 5, 5},
+            {-11, -11, -10, -9, -8, -7, -5, -3, -1, 0, 1, 2, 4, 5, 5, 6, 6, 6, 6, 6, 5, 5},
+            {-11, -11, -10, -9, -8, -7, -5, -3, -1, 0, 1, 2, 4, 5, 5, 6, 6, 6, 6, 6, 6, 5},
+            {-11, -11, -10, -9, -8, -7, -5, -3, -1, 0, 1, 2, 4, 5, 5, 6, 6, 6, 6, 6, 6, 5},
+    };// @formatter:on
+
+    private KernelTables() {
+    }
+
+    /**
+     * Returns one side of the Canny operator for a sigma, starting at the
+     * center.
+     *
+     * @param cSigma
+     *            sigma multiplied by 10; must be at least 2.
+     * @return the coefficients, which must not be modified. Beyond the
+     *         table a new array is returned on each call.
+     */
+    static int[] canny(final int cSigma) {
+        if (cSigma < KernelTables.CANNY.length) {
+            return KernelTables.CANNY[cSigma];
+        }
+        return KernelTables.makeCanny(cSigma);
+    }
+
+    /**
+     * Returns one side of the Gaussian for a sigma, starting at the center.
+     *
+     * @param cSigma
+     *            sigma multiplied by 10; must be at least 2.
+     * @return the coefficients, which must not be modified. Beyond the
+     *         table a new array is returned on each call.
+     */
+    static int[] gauss(final int cSigma) {
+        if (cSigma < KernelTables.GAUSS.length) {
+            return KernelTables.GAUSS[cSigma];
+        }
+        return KernelTables.makeGauss(cSigma);
+    }
+
+    /**
+     * Reflects an index past either end of a line of pixels back into it, as
+     * the operators do at the image borders: index -1 becomes 1, and index
+     * cLength becomes cLength - 1. Indexes more than a line's length outside
+     * are reflected repeatedly, so any kernel can be applied to any image.
+     *
+     * @param n
+     *            the index.
+     * @param cLength
+     *            the length of the line, at least 1.
+     * @return the reflected index, from 0 to cLength - 1.
+     */
+    static int reflect(final int n, final int cLength) {
+        if ((n >= 0) && (n < cLength)) {
+            return n;
+        }
+        if ((n < 0) && (-n < cLength)) {
+            return -n;
+        }
+        // the reflections repeat every 2 * cLength - 1 pixels
+        final int nPeriod = (2 * cLength) - 1;
+        final int r = ((n % nPeriod) + nPeriod) % nPeriod;
+        return (r < cLength) ? r : nPeriod - r;
+    }
+
+    // The table's rows are close to the second derivative of the Gaussian,
+    // (x*x/(s*s)-1)*exp(-x*x/(2*s*s)), out to 2 sigma plus 1. Compute that,
+    // shift it so the sum is 0 and scale it so the sum of the absolute values
+    // is 256. At sigma 9.9 this is within 2 of the table everywhere.
+    private static int[] makeCanny(final int cSigma) {
+        final double dSigma2 = (cSigma / 10.0) * (cSigma / 10.0);
+        final int cCoeff = (((2 * cSigma) + 5) / 10) + 2;
+        final double[] rdCoeff = new double[cCoeff];
+        double dSum = 0;
+        for (int k = 0; k < cCoeff; k++) {
+            final double dK2 = (double) k * k;
+            rdCoeff[k] = ((dK2 / dSigma2) - 1) * Math.exp(-dK2 / (2 * dSigma2));
+            dSum += (k == 0) ? rdCoeff[k] : 2 * rdCoeff[k];
+        }
+        final double dMean = dSum / ((2 * cCoeff) - 1);
+        double dAbs = 0;
+        for (int k = 0; k < cCoeff; k++) {
+            rdCoeff[k] -= dMean;
+            dAbs += (k == 0) ? Math.abs(rdCoeff[k]) : 2 * Math.abs(rdCoeff[k]);
+        }
+        final int[] rnCoeff = new int[cCoeff];
+        for (int k = 0; k < cCoeff; k++) {
+            rnCoeff[k] = (int) Math.round((rdCoeff[k] * 256) / dAbs);
+        }
+        return rnCoeff;
+    }
+
+    // The Excel formula above. Column B holds exp(-1/(s*s)), so coefficient
+    // k is exp(-(k+1)*(k+1)/(s*s)), divided by the sum over the columns. There
+    // are 38 columns, which is all that matters up to sigma 10.0; past that
+    // more are summed. Trailing coefficients which round to 0 are dropped.
+    // This reproduces every row of the table exactly.
+    private static int[] makeGauss(final int cSigma) {
+        final double dSigma2 = (cSigma / 10.0) * (cSigma / 10.0);
+        // exp(-36) is far below 1/256 of any sum
+        final int cTerms = Math.max(38, (int) Math.ceil((6 * cSigma) / 10.0));
+        final double[] rdCoeff = new double[cTerms];
+        double dSum = 0;
+        for (int k = 0; k < cTerms; k++) {
+            final double dK = k + 1;
+            rdCoeff[k] = Math.exp(-(dK * dK) / dSigma2);
+            dSum += rdCoeff[k];
+        }
+        int cCoeff = cTerms;
+        while ((cCoeff > 1) && (Math.round((rdCoeff[cCoeff - 1] * 256) / dSum) == 0)) {
+            cCoeff--;
+        }
+        final int[] rnCoeff = new int[cCoeff];
+        for (int k = 0; k < cCoeff; k++) {
+            rnCoeff[k] = (int) Math.round((rdCoeff[k] * 256) / dSum);
+        }
+        return rnCoeff;
+    }
+}
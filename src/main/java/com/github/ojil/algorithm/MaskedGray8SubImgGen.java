@@ -114,7 +114,7 @@ public class MaskedGray8SubImgGen extends PipelineStage {
                     return true;
                 }
                 nHorizIndex++;
-                nPos += nWidth;
+                nPos += nXOffset;
             }
             nHorizIndex = 0;
             nVertIndex++;
@@ -186,6 +186,23 @@ public class MaskedGray8SubImgGen extends PipelineStage {
         return imageResult;
     }
     
+    /**
+     * Returns the unmasked windows this generator will produce for the
+     * current input, as offsets into the input, without copying them. Unlike
+     * getFront, the result can be split and traversed on several threads at
+     * once. It does not change the state of the generator.
+     * 
+     * @return a WindowSpliterator over the windows getFront would return.
+     * @throws ImageError
+     *             if no image has been pushed.
+     */
+    public WindowSpliterator windows() throws ImageError {
+        if (imageInput == null) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.SUBIMAGE_NO_IMAGE_AVAILABLE, toString(), null, null);
+        }
+        return new WindowSpliterator(imageInput, imageInput.getMaskData(), nWidth, nHeight, nXOffset, nYOffset, nHorizLimit + 1, nVertLimit + 1);
+    }
+    
     /**
      * Accepts a new MaskedGray8Image and initializes all the generator indices.
      * 
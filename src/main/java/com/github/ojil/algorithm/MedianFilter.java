@@ -0,0 +1,240 @@
+/*
+ * MedianFilter.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MedianFilter computes the median of a square window around each pixel of
+ * an 8-bit plane, for Gray8Median and RgbMedian, with the constant-time
+ * algorithm of Perreault and Hebert ("Median filtering in constant time",
+ * IEEE Trans. Image Processing 16, 2007). A histogram is kept for each column
+ * of the window height; moving down a row changes each by one pixel out and
+ * one in, and moving right along a row adds one column histogram to the
+ * window histogram and subtracts another. Histograms have 16 coarse bins,
+ * always kept up to date, and 256 fine bins, brought up to date only for the
+ * coarse bin holding the median. The cost per pixel does not depend on the
+ * radius.
+ * <p>
+ * The image is split into vertical strips, each with its own column
+ * histograms, which are filtered in parallel if a ForkJoinPool is given. The
+ * image is extended past its borders by repeating the border pixels. Plane
+ * values are unsigned bytes, 0 to 255. The buffers are kept from one call to
+ * the next, so an instance must only be used by one thread at a time.
+ *
+ * @author webb
+ */
+final class MedianFilter {
+    private class Strip extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int nX0;
+        private final int nX1;
+        private final int nColLo;
+        private final int cCols;
+        private final int[] rnColFine;
+        private final int[] rnColCoarse;
+        private final int[] rnFine = new int[256];
+        private final int[] rnCoarse = new int[16];
+        // the window position each coarse bin of rnFine was last updated for
+        private final int[] rnFineAt = new int[16];
+        private byte[] rbIn;
+        private byte[] rbOut;
+
+        Strip(final int nX0, final int nX1) {
+            this.nX0 = nX0;
+            this.nX1 = nX1;
+            nColLo = Math.max(0, nX0 - nRadius);
+            cCols = (Math.min(cWidth - 1, (nX1 - 1) + nRadius) - nColLo) + 1;
+            rnColFine = new int[cCols * 256];
+            rnColCoarse = new int[cCols * 16];
+        }
+
+        // index of the histogram for column c, repeating the border columns
+        private int col(final int c) {
+            return Math.min(Math.max(c, 0), cWidth - 1) - nColLo;
+        }
+
+        private void addPixel(final int nCol, final int nRow, final int nSign) {
+            final int nBin = rbIn[(nRow * cWidth) + nColLo + nCol] & 0xff;
+            rnColFine[(nCol * 256) + nBin] += nSign;
+            rnColCoarse[(nCol * 16) + (nBin >> 4)] += nSign;
+        }
+
+        // bring fine bins nCoarse*16 to nCoarse*16+15 up to date for the
+        // window centered on column j
+        private void updateFine(final int nCoarse, final int j) {
+            final int nBase = nCoarse * 16;
+            final int nAt = rnFineAt[nCoarse];
+            if ((nAt == Integer.MIN_VALUE) || ((j - nAt) > nRadius)) {
+                for (int k = 0; k < 16; k++) {
+                    rnFine[nBase + k] = 0;
+                }
+                for (int c = j - nRadius; c <= (j + nRadius); c++) {
+                    final int nCol = col(c) * 256;
+                    for (int k = 0; k < 16; k++) {
+                        rnFine[nBase + k] += rnColFine[nCol + nBase + k];
+                    }
+                }
+            } else {
+                for (int q = nAt + 1; q <= j; q++) {
+                    final int nIn = col(q + nRadius) * 256;
+                    final int nOut = col(q - nRadius - 1) * 256;
+                    for (int k = 0; k < 16; k++) {
+                        rnFine[nBase + k] += rnColFine[nIn + nBase + k] - rnColFine[nOut + nBase + k];
+                    }
+                }
+            }
+            rnFineAt[nCoarse] = j;
+        }
+
+        @Override
+        protected void compute() {
+            final int nRank = ((2 * nRadius) + 1) * ((2 * nRadius) + 1) / 2;
+            for (int k = 0; k < rnColFine.length; k++) {
+                rnColFine[k] = 0;
+            }
+            for (int k = 0; k < rnColCoarse.length; k++) {
+                rnColCoarse[k] = 0;
+            }
+            for (int c = 0; c < cCols; c++) {
+                for (int i = -nRadius; i <= nRadius; i++) {
+                    addPixel(c, Math.min(Math.max(i, 0), cHeight - 1), 1);
+                }
+            }
+            for (int i = 0; i < cHeight; i++) {
+                if (i > 0) {
+                    // move the column histograms one row down
+                    final int nRowOut = Math.max(i - nRadius - 1, 0);
+                    final int nRowIn = Math.min(i + nRadius, cHeight - 1);
+                    for (int c = 0; c < cCols; c++) {
+                        addPixel(c, nRowOut, -1);
+                        addPixel(c, nRowIn, 1);
+                    }
+                }
+                for (int k = 0; k < 16; k++) {
+                    rnCoarse[k] = 0;
+                    rnFineAt[k] = Integer.MIN_VALUE;
+                }
+                for (int c = nX0 - nRadius; c <= (nX0 + nRadius); c++) {
+                    final int nCol = col(c) * 16;
+                    for (int k = 0; k < 16; k++) {
+                        rnCoarse[k] += rnColCoarse[nCol + k];
+                    }
+                }
+                for (int j = nX0; j < nX1; j++) {
+                    if (j > nX0) {
+                        final int nIn = col(j + nRadius) * 16;
+                        final int nOut = col(j - nRadius - 1) * 16;
+                        for (int k = 0; k < 16; k++) {
+                            rnCoarse[k] += rnColCoarse[nIn + k] - rnColCoarse[nOut + k];
+                        }
+                    }
+                    int nSum = 0;
+                    int nCoarse = 0;
+                    while ((nSum + rnCoarse[nCoarse]) <= nRank) {
+                        nSum += rnCoarse[nCoarse++];
+                    }
+                    updateFine(nCoarse, j);
+                    int nBin = nCoarse * 16;
+                    while ((nSum + rnFine[nBin]) <= nRank) {
+                        nSum += rnFine[nBin++];
+                    }
+                    rbOut[(i * cWidth) + j] = (byte) nBin;
+                }
+            }
+        }
+    }
+
+    // column histograms take 1088 bytes each, so 192 of them fit in 256K
+    private static final int STRIP_COLUMNS = 192;
+
+    private final int nRadius;
+    private final ForkJoinPool pool;
+    private int cWidth = 0;
+    private int cHeight = 0;
+    private Strip[] strips = new Strip[0];
+
+    /**
+     * Creates a new MedianFilter.
+     *
+     * @param nRadius
+     *            the window radius. The window is 2 * nRadius + 1 pixels
+     *            square.
+     * @param pool
+     *            the pool to filter the strips on, or null to filter them on
+     *            the calling thread.
+     */
+    MedianFilter(final int nRadius, final ForkJoinPool pool) {
+        this.nRadius = nRadius;
+        this.pool = pool;
+    }
+
+    /**
+     * Median filter a plane.
+     *
+     * @param rbIn
+     *            the input plane, unsigned values. Not modified.
+     * @param rbOut
+     *            the output plane, unsigned values.
+     * @param cWidth
+     *            the plane width.
+     * @param cHeight
+     *            the plane height.
+     */
+    void filter(final byte[] rbIn, final byte[] rbOut, final int cWidth, final int cHeight) {
+        if ((cWidth != this.cWidth) || (cHeight != this.cHeight)) {
+            this.cWidth = cWidth;
+            this.cHeight = cHeight;
+            // Strips are made narrow enough that their column histograms
+            // stay in cache, but not much narrower than the window, or they
+            // would spend most of their time on the margins. With a pool
+            // there is at least one strip per thread.
+            final int cMinWidth = 4 * ((2 * nRadius) + 1);
+            int cStrips = (cWidth + MedianFilter.STRIP_COLUMNS - 1) / MedianFilter.STRIP_COLUMNS;
+            if (pool != null) {
+                cStrips = Math.max(cStrips, pool.getParallelism());
+            }
+            cStrips = Math.max(1, Math.min(cStrips, cWidth / cMinWidth));
+            strips = new Strip[cStrips];
+            for (int k = 0; k < cStrips; k++) {
+                strips[k] = new Strip((k * cWidth) / cStrips, ((k + 1) * cWidth) / cStrips);
+            }
+        }
+        for (final Strip strip : strips) {
+            strip.rbIn = rbIn;
+            strip.rbOut = rbOut;
+            strip.reinitialize();
+        }
+        if (pool == null) {
+            for (final Strip strip : strips) {
+                strip.compute();
+            }
+        } else {
+            final ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[strips.length];
+            for (int k = 0; k < strips.length; k++) {
+                tasks[k] = pool.submit(strips[k]);
+            }
+            for (final ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+    }
+}
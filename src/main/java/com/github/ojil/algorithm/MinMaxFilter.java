@@ -0,0 +1,385 @@
+/*
+ * MinMaxFilter.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+/**
+ * MinMaxFilter computes the maximum (dilation) or minimum (erosion) of a gray
+ * image over a rectangular window, for the morphology stages. Rows and then
+ * columns are filtered separately with the algorithm of van Herk ("A fast
+ * algorithm for local minimum and maximum filters on rectangular and
+ * octagonal kernels", Pattern Recognition Letters 13, 1992) and Gil and
+ * Werman, which takes about three comparisons per pixel whatever the window
+ * size. The window is cut off at the image borders.
+ * <p>
+ * Binary images, whose pixels are all Byte.MIN_VALUE or Byte.MAX_VALUE, are
+ * packed 64 pixels to a long and filtered with shifts and ORs, which is much
+ * faster still. The buffers are kept from one push to the next, so an
+ * instance must only be used by one thread at a time. The BufferedStage
+ * stages create one for each push(Image, Image), which must not modify the
+ * stage; Gray8Peak3x3 keeps its own.
+ *
+ * @author webb
+ */
+final class MinMaxFilter {
+    private int cWidth;
+    private int cHeight;
+    private int cWords;
+    private byte[] rbA = new byte[0];
+    private byte[] rbB = new byte[0];
+    // the van Herk/Gil-Werman prefix and suffix maxima of one row
+    private byte[] rbG = new byte[0];
+    private byte[] rbH = new byte[0];
+    // the same for the column pass, a whole row at a time
+    private byte[] rbColG = new byte[0];
+    private byte[] rbColH = new byte[0];
+    // packed binary images, and an extended row and image for the row and
+    // column passes
+    private long[] rlA = new long[0];
+    private long[] rlRow = new long[0];
+    private long[] rlExt = new long[0];
+
+    // the window of op nOp: odd ops use the reflected window, so that an
+    // erosion followed by a dilation is an opening even for even sizes
+    private static int before(final int nSize, final int nOp) {
+        return ((nOp % 2) == 0) ? (nSize - 1) / 2 : nSize / 2;
+    }
+
+    /**
+     * Apply a sequence of dilations and erosions to a gray image.
+     *
+     * @param bIn
+     *            the input pixels. Not modified.
+     * @param bOut
+     *            the output pixels. May be bIn.
+     * @param cWidth
+     *            the image width.
+     * @param cHeight
+     *            the image height.
+     * @param nWindowWidth
+     *            the window width.
+     * @param nWindowHeight
+     *            the window height.
+     * @param rbDilate
+     *            for each operation in turn, true to dilate (maximum) and
+     *            false to erode (minimum).
+     */
+    void push(final Byte[] bIn, final Byte[] bOut, final int cWidth, final int cHeight, final int nWindowWidth, final int nWindowHeight, final boolean[] rbDilate) {
+        setSize(cWidth, cHeight);
+        // copy the input, packing it as long as it is binary
+        if (rlA.length != (cWords * cHeight)) {
+            rlA = new long[cWords * cHeight];
+        }
+        boolean bBinary = true;
+        for (int i = 0; i < cHeight; i++) {
+            final int nBase = i * cWidth;
+            for (int w = 0; w < cWords; w++) {
+                long l = 0;
+                for (int j = w << 6; j < Math.min(cWidth, (w + 1) << 6); j++) {
+                    final byte b = bIn[nBase + j];
+                    rbA[nBase + j] = b;
+                    if (b == Byte.MAX_VALUE) {
+                        l |= 1L << j;
+                    } else if (b != Byte.MIN_VALUE) {
+                        bBinary = false;
+                    }
+                }
+                rlA[(i * cWords) + w] = l;
+            }
+        }
+        if (bBinary) {
+            for (int nOp = 0; nOp < rbDilate.length; nOp++) {
+                final int nLeft = MinMaxFilter.before(nWindowWidth, nOp);
+                final int nTop = MinMaxFilter.before(nWindowHeight, nOp);
+                if (!rbDilate[nOp]) {
+                    complementBits();
+                }
+                dilateBits(nLeft, nWindowWidth - nLeft - 1, nTop, nWindowHeight - nTop - 1);
+                if (!rbDilate[nOp]) {
+                    complementBits();
+                }
+            }
+            for (int i = 0; i < cHeight; i++) {
+                final int nBase = i * cWidth;
+                for (int w = 0; w < cWords; w++) {
+                    long l = rlA[(i * cWords) + w];
+                    for (int j = w << 6; j < Math.min(cWidth, (w + 1) << 6); j++) {
+                        bOut[nBase + j] = ((l & 1) != 0) ? Byte.MAX_VALUE : Byte.MIN_VALUE;
+                        l >>>= 1;
+                    }
+                }
+            }
+        } else {
+            for (int nOp = 0; nOp < rbDilate.length; nOp++) {
+                final int nLeft = MinMaxFilter.before(nWindowWidth, nOp);
+                final int nTop = MinMaxFilter.before(nWindowHeight, nOp);
+                // min(x) = ~max(~x), and ~ reverses the order of the bytes
+                // without overflow
+                if (!rbDilate[nOp]) {
+                    complement(rbA);
+                }
+                dilate(nLeft, nWindowWidth - nLeft - 1, nTop, nWindowHeight - nTop - 1);
+                if (!rbDilate[nOp]) {
+                    complement(rbA);
+                }
+            }
+            for (int i = 0; i < bOut.length; i++) {
+                bOut[i] = rbA[i];
+            }
+        }
+    }
+
+    /**
+     * Find the pixels of a gray image which are the maximum of their window,
+     * which is centered on them. The other pixels are set to Byte.MIN_VALUE.
+     *
+     * @param bIn
+     *            the input pixels. Not modified.
+     * @param bOut
+     *            the output pixels.
+     * @param cWidth
+     *            the image width.
+     * @param cHeight
+     *            the image height.
+     * @param nWindowWidth
+     *            the window width.
+     * @param nWindowHeight
+     *            the window height.
+     */
+    void peaks(final Byte[] bIn, final Byte[] bOut, final int cWidth, final int cHeight, final int nWindowWidth, final int nWindowHeight) {
+        setSize(cWidth, cHeight);
+        for (int i = 0; i < bIn.length; i++) {
+            rbA[i] = bIn[i];
+        }
+        final int nLeft = MinMaxFilter.before(nWindowWidth, 0);
+        final int nTop = MinMaxFilter.before(nWindowHeight, 0);
+        dilate(nLeft, nWindowWidth - nLeft - 1, nTop, nWindowHeight - nTop - 1);
+        for (int i = 0; i < bOut.length; i++) {
+            final byte b = bIn[i];
+            bOut[i] = (b == rbA[i]) ? b : Byte.MIN_VALUE;
+        }
+    }
+
+    private void setSize(final int cWidth, final int cHeight) {
+        this.cWidth = cWidth;
+        this.cHeight = cHeight;
+        cWords = (cWidth + 63) >>> 6;
+        if (rbA.length != (cWidth * cHeight)) {
+            rbA = new byte[cWidth * cHeight];
+            rbB = new byte[cWidth * cHeight];
+        }
+    }
+
+    private static void complement(final byte[] rb) {
+        for (int i = 0; i < rb.length; i++) {
+            rb[i] = (byte) ~rb[i];
+        }
+    }
+
+    // Replace rbA by its maximum over the window, first along the rows into
+    // rbB, then down the columns back into rbA.
+    private void dilate(final int nLeft, final int nRight, final int nTop, final int nBottom) {
+        final int cLengthH = nLeft + nRight + 1;
+        final int cLengthV = nTop + nBottom + 1;
+        // the lines are extended by nLeft pixels before and nRight after;
+        // output pixel j is the maximum of extended pixels j to j+cLengthH-1
+        final int cExt = (cWidth + cLengthH) - 1;
+        if (rbG.length < cExt) {
+            rbG = new byte[cExt];
+            rbH = new byte[cExt];
+        }
+        final byte[] rbG = this.rbG;
+        final byte[] rbH = this.rbH;
+        for (int i = 0; i < cHeight; i++) {
+            final int nBase = i * cWidth;
+            if (cLengthH == 1) {
+                System.arraycopy(rbA, nBase, rbB, nBase, cWidth);
+                continue;
+            }
+            // prefix maxima within each block of cLengthH
+            for (int k = 0; k < cExt; k++) {
+                final int j = k - nLeft;
+                final byte b = ((j >= 0) && (j < cWidth)) ? rbA[nBase + j] : Byte.MIN_VALUE;
+                rbG[k] = ((k % cLengthH) == 0) ? b : (byte) Math.max(rbG[k - 1], b);
+            }
+            // suffix maxima within each block
+            for (int k = cExt - 1; k >= 0; k--) {
+                final int j = k - nLeft;
+                final byte b = ((j >= 0) && (j < cWidth)) ? rbA[nBase + j] : Byte.MIN_VALUE;
+                rbH[k] = ((k == (cExt - 1)) || (((k + 1) % cLengthH) == 0)) ? b : (byte) Math.max(rbH[k + 1], b);
+            }
+            for (int j = 0; j < cWidth; j++) {
+                rbB[nBase + j] = (byte) Math.max(rbH[j], rbG[(j + cLengthH) - 1]);
+            }
+        }
+        if (cLengthV == 1) {
+            System.arraycopy(rbB, 0, rbA, 0, rbA.length);
+            return;
+        }
+        // the same down the columns, with whole rows as the elements
+        final int cExtRows = (cHeight + cLengthV) - 1;
+        if (rbColG.length < (cExtRows * cWidth)) {
+            rbColG = new byte[cExtRows * cWidth];
+            rbColH = new byte[cExtRows * cWidth];
+        }
+        final byte[] rbColG = this.rbColG;
+        final byte[] rbColH = this.rbColH;
+        for (int k = 0; k < cExtRows; k++) {
+            final int i = k - nTop;
+            final boolean bInside = (i >= 0) && (i < cHeight);
+            final int nBase = k * cWidth;
+            if ((k % cLengthV) == 0) {
+                for (int j = 0; j < cWidth; j++) {
+                    rbColG[nBase + j] = bInside ? rbB[(i * cWidth) + j] : Byte.MIN_VALUE;
+                }
+            } else if (bInside) {
+                for (int j = 0; j < cWidth; j++) {
+                    rbColG[nBase + j] = (byte) Math.max(rbColG[(nBase - cWidth) + j], rbB[(i * cWidth) + j]);
+                }
+            } else {
+                System.arraycopy(rbColG, nBase - cWidth, rbColG, nBase, cWidth);
+            }
+        }
+        for (int k = cExtRows - 1; k >= 0; k--) {
+            final int i = k - nTop;
+            final boolean bInside = (i >= 0) && (i < cHeight);
+            final int nBase = k * cWidth;
+            if ((k == (cExtRows - 1)) || (((k + 1) % cLengthV) == 0)) {
+                for (int j = 0; j < cWidth; j++) {
+                    rbColH[nBase + j] = bInside ? rbB[(i * cWidth) + j] : Byte.MIN_VALUE;
+                }
+            } else if (bInside) {
+                for (int j = 0; j < cWidth; j++) {
+                    rbColH[nBase + j] = (byte) Math.max(rbColH[nBase + cWidth + j], rbB[(i * cWidth) + j]);
+                }
+            } else {
+                System.arraycopy(rbColH, nBase + cWidth, rbColH, nBase, cWidth);
+            }
+        }
+        for (int i = 0; i < cHeight; i++) {
+            final int nBaseH = i * cWidth;
+            final int nBaseG = ((i + cLengthV) - 1) * cWidth;
+            for (int j = 0; j < cWidth; j++) {
+                rbA[nBaseH + j] = (byte) Math.max(rbColH[nBaseH + j], rbColG[nBaseG + j]);
+            }
+        }
+    }
+
+    private void complementBits() {
+        final long lLast = ((cWidth & 63) == 0) ? -1L : (1L << cWidth) - 1;
+        for (int i = 0; i < cHeight; i++) {
+            for (int w = 0; w < cWords; w++) {
+                rlA[(i * cWords) + w] = ~rlA[(i * cWords) + w];
+            }
+            rlA[((i + 1) * cWords) - 1] &= lLast;
+        }
+    }
+
+    // Replace rlA by its maximum (OR) over the window. Each row is ORed with
+    // itself shifted by 1, 2, 4... pixels, so after k steps each bit is the OR
+    // of the 2^k bits starting at it, and then the columns the same way, a
+    // whole row of words at a time.
+    private void dilateBits(final int nLeft, final int nRight, final int nTop, final int nBottom) {
+        final int cLengthH = nLeft + nRight + 1;
+        final int cLengthV = nTop + nBottom + 1;
+        final long lLast = ((cWidth & 63) == 0) ? -1L : (1L << cWidth) - 1;
+        if (cLengthH > 1) {
+            // each row is moved nLeft bits up into a longer row, so that bit
+            // j of the result is the OR of bits j to j+cLengthH-1 of it
+            final int cExtWords = ((cWidth + cLengthH + 62) >>> 6);
+            if (rlRow.length < cExtWords) {
+                rlRow = new long[cExtWords];
+            }
+            final long[] rlRow = this.rlRow;
+            for (int i = 0; i < cHeight; i++) {
+                final int nBase = i * cWords;
+                for (int w = 0; w < cExtWords; w++) {
+                    rlRow[w] = (w < cWords) ? rlA[nBase + w] : 0;
+                }
+                MinMaxFilter.shiftUp(rlRow, cExtWords, nLeft);
+                int nSpan = 1;
+                while ((2 * nSpan) <= cLengthH) {
+                    MinMaxFilter.orShiftedDown(rlRow, cExtWords, nSpan);
+                    nSpan *= 2;
+                }
+                if (nSpan < cLengthH) {
+                    MinMaxFilter.orShiftedDown(rlRow, cExtWords, cLengthH - nSpan);
+                }
+                System.arraycopy(rlRow, 0, rlA, nBase, cWords);
+                rlA[(nBase + cWords) - 1] &= lLast;
+            }
+        }
+        if (cLengthV > 1) {
+            // extend by nTop empty rows above and nBottom below
+            final int cExtRows = (cHeight + cLengthV) - 1;
+            if (rlExt.length < (cExtRows * cWords)) {
+                rlExt = new long[cExtRows * cWords];
+            }
+            final long[] rlExt = this.rlExt;
+            for (int i = 0; i < (cExtRows * cWords); i++) {
+                rlExt[i] = 0;
+            }
+            System.arraycopy(rlA, 0, rlExt, nTop * cWords, cHeight * cWords);
+            int nSpan = 1;
+            while ((2 * nSpan) <= cLengthV) {
+                orRowsBelow(rlExt, cExtRows, nSpan);
+                nSpan *= 2;
+            }
+            if (nSpan < cLengthV) {
+                orRowsBelow(rlExt, cExtRows, cLengthV - nSpan);
+            }
+            System.arraycopy(rlExt, 0, rlA, 0, cHeight * cWords);
+        }
+    }
+
+    // bit j of the row |= bit j+d
+    private static void orShiftedDown(final long[] rl, final int cWords, final int d) {
+        final int q = d >>> 6;
+        final int m = d & 63;
+        for (int w = 0; w < cWords; w++) {
+            final long lLow = ((w + q) < cWords) ? rl[w + q] : 0;
+            final long lHigh = ((w + q + 1) < cWords) ? rl[w + q + 1] : 0;
+            rl[w] |= (m == 0) ? lLow : (lLow >>> m) | (lHigh << (64 - m));
+        }
+    }
+
+    // bit j of the row = bit j-d
+    private static void shiftUp(final long[] rl, final int cWords, final int d) {
+        if (d == 0) {
+            return;
+        }
+        final int q = d >>> 6;
+        final int m = d & 63;
+        for (int w = cWords - 1; w >= 0; w--) {
+            final long lHigh = ((w - q) >= 0) ? rl[w - q] : 0;
+            final long lLow = ((w - q - 1) >= 0) ? rl[w - q - 1] : 0;
+            rl[w] = (m == 0) ? lHigh : (lHigh << m) | (lLow >>> (64 - m));
+        }
+    }
+
+    // row k |= row k+d
+    private void orRowsBelow(final long[] rl, final int cRows, final int d) {
+        for (int k = 0; (k + d) < cRows; k++) {
+            final int nBase = k * cWords;
+            final int nBelow = (k + d) * cWords;
+            for (int w = 0; w < cWords; w++) {
+                rl[nBase + w] |= rl[nBelow + w];
+            }
+        }
+    }
+}
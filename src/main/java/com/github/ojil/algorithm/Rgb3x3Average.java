@@ -30,11 +30,20 @@ import com.github.ojil.core.RgbImage;
 import com.github.ojil.core.RgbVal;
 
 /**
- * Pipeline stage performs a 3x3 RGB average of the input.
+ * Pipeline stage performs a 3x3 RGB average of the input. Each pixel is
+ * unpacked once, into three lanes of a long (see BoxBlur), and the sums of
+ * three rows and then three columns are kept up to date as the window slides,
+ * so the red, green, and blue bands are all summed by each addition.
+ * RgbBoxBlur averages windows of other sizes.
  * 
  * @author webb
  */
 public class Rgb3x3Average extends PipelineStage {
+    // the sum of 9 pixels of -128, in the unsigned values held in the lanes
+    private static final int BLACK_SUM = 9 * -Byte.MIN_VALUE;
+
+    private long[] rlIn = new long[0];
+    private long[] rlCol = new long[0];
     
     /**
      * Creates a new instance of Rgb3x3Average
@@ -44,9 +53,10 @@ public class Rgb3x3Average extends PipelineStage {
     
     /**
      * Do a color 3x3 average of the input image. The red, green, and blue bands
-     * are averaged independently. The code has been written to be as efficient
-     * as possible. Borders are handled by duplicating the first or last row,
-     * and replacing the first and last column with 0, when doing the average.
+     * are averaged independently, as signed values, rounding toward zero.
+     * Borders are handled by duplicating the first or last row, and replacing
+     * the column before the first and after the last with black (-128), when
+     * doing the average.
      *
      * @param imageInput
      *            the input image
@@ -66,113 +76,51 @@ public class Rgb3x3Average extends PipelineStage {
         final RgbImage<?> imageResult = new RgbImage<>(cWidth, cHeight);
         final Integer[] rgbOutput = imageResult.getData();
         
+        if (rlIn.length != rgbInput.length) {
+            rlIn = new long[rgbInput.length];
+        }
+        /*
+         * the column sums have a black column, which is 0 in the unsigned
+         * lanes, on either side of the image
+         */
+        if (rlCol.length != (cWidth + 2)) {
+            rlCol = new long[cWidth + 2];
+        }
+        for (int i = 0; i < rgbInput.length; i++) {
+            rlIn[i] = BoxBlur.spread(rgbInput[i]);
+        }
+        /*
+         * the first row uses row 0 in place of row -1
+         */
+        final int nNext = Math.min(1, cHeight - 1) * cWidth;
+        for (int j = 0; j < cWidth; j++) {
+            rlCol[j + 1] = (2 * rlIn[j]) + rlIn[nNext + j];
+        }
         for (int i = 0; i < cHeight; i++) {
-            /*
-             * declare and initialize integers which will hold the r, g, and b
-             * pixel values. The variables are named and numbered as if they
-             * were array indices for three different 3x3 arrays. They are set
-             * to -128 because this represents black in the signed byte
-             * representation of a pixel.
-             */
-            byte r00 = -128, r01 = -128, r02 = -128;
-            byte g00 = -128, g01 = -128, g02 = -128;
-            byte b00 = -128, b01 = -128, b02 = -128;
-            byte r10 = -128, r11 = -128, r12 = -128;
-            byte g10 = -128, g11 = -128, g12 = -128;
-            byte b10 = -128, b11 = -128, b12 = -128;
-            byte r20 = -128, r21 = -128, r22 = -128;
-            byte g20 = -128, g21 = -128, g22 = -128;
-            byte b20 = -128, b21 = -128, b22 = -128;
-            
-            /*
-             * set column indices into this row for first row use row 0 instead
-             * of row -1 for last row use row cHeight-1 instead of row cHeight
-             */
-            int pos0 = (i == 0) ? 0 : (i - 1) * cWidth;
-            int pos1 = i * cWidth;
-            int pos2 = (i == (cHeight - 1)) ? i * cWidth : (i + 1) * cWidth;
-            
-            /*
-             * initialize the (*,2) variables so the initial step to the right
-             * does the right thing.
-             */
-            r02 = RgbVal.getR(rgbInput[pos0]);
-            g02 = RgbVal.getG(rgbInput[pos0]);
-            b02 = RgbVal.getB(rgbInput[pos0]);
-            r12 = RgbVal.getR(rgbInput[pos1]);
-            g12 = RgbVal.getG(rgbInput[pos1]);
-            b12 = RgbVal.getB(rgbInput[pos1]);
-            r22 = RgbVal.getR(rgbInput[pos2]);
-            g22 = RgbVal.getG(rgbInput[pos2]);
-            b22 = RgbVal.getB(rgbInput[pos2]);
-            
-            for (int j = 0; j < cWidth; j++) {
-                
-                /*
-                 * move one step to the right
-                 */
-                r00 = r01;
-                r01 = r02;
-                g00 = g01;
-                g01 = g02;
-                b00 = b01;
-                b01 = b02;
-                
-                r10 = r11;
-                r11 = r12;
-                g10 = g11;
-                g11 = g12;
-                b10 = b11;
-                b11 = b12;
-                
-                r20 = r21;
-                r21 = r22;
-                g20 = g21;
-                g21 = g22;
-                b20 = b21;
-                b21 = b22;
-                
+            if (i > 0) {
                 /*
-                 * get new RGB pixel value. In this code the r, g, or b value is
-                 * treated as an unsigned value from 0 to 255, rather than as a
-                 * signed value from -128 to 127, as it is in the byte image
-                 * code. This is mathematically equivalent for averaging and
-                 * requires less computation than doing sign extension.
+                 * move the column sums one row down. The last row uses row
+                 * cHeight-1 in place of row cHeight.
                  */
-                if (j < (cWidth - 1)) {
-                    r02 = RgbVal.getR(rgbInput[pos0 + 1]);
-                    g02 = RgbVal.getG(rgbInput[pos0 + 1]);
-                    b02 = RgbVal.getB(rgbInput[pos0 + 1]);
-                    r12 = RgbVal.getR(rgbInput[pos1 + 1]);
-                    g12 = RgbVal.getG(rgbInput[pos1 + 1]);
-                    b12 = RgbVal.getB(rgbInput[pos1 + 1]);
-                    r22 = RgbVal.getR(rgbInput[pos2 + 1]);
-                    g22 = RgbVal.getG(rgbInput[pos2 + 1]);
-                    b22 = RgbVal.getB(rgbInput[pos2 + 1]);
-                } else {
-                    /*
-                     * we use black (-128) as the border in the last column
-                     */
-                    r02 = g02 = b02 = r12 = g12 = b12 = r22 = g22 = b22 = -128;
+                final int nOut = Math.max(i - 2, 0) * cWidth;
+                final int nIn = Math.min(i + 1, cHeight - 1) * cWidth;
+                for (int j = 0; j < cWidth; j++) {
+                    rlCol[j + 1] = (rlCol[j + 1] - rlIn[nOut + j]) + rlIn[nIn + j];
                 }
-                
-                /*
-                 * calculate average r, g, and b values
-                 */
-                final byte r = (byte) ((r00 + r01 + r02 + r10 + r11 + r12 + r20 + r21 + r22) / 9);
-                final byte g = (byte) ((g00 + g01 + g02 + g10 + g11 + g12 + g20 + g21 + g22) / 9);
-                final byte b = (byte) ((b00 + b01 + b02 + b10 + b11 + b12 + b20 + b21 + b22) / 9);
-                /*
-                 * note r, g, and b will always be between 0 and 255 so it is
-                 * not necessary to mask etc.
-                 */
-                rgbOutput[pos1] = RgbVal.toRgb(r, g, b);
+            }
+            long lSum = rlCol[0] + rlCol[1];
+            int nPos = i * cWidth;
+            for (int j = 0; j < cWidth; j++) {
+                lSum += rlCol[j + 2];
                 /*
-                 * advance column indices to next position
+                 * calculate average r, g, and b values, as signed values so
+                 * they round the same way as they always have
                  */
-                pos0++;
-                pos1++;
-                pos2++;
+                final int r = ((int) (lSum >> (2 * BoxBlur.LANE_BITS)) - Rgb3x3Average.BLACK_SUM) / 9;
+                final int g = ((int) ((lSum >> BoxBlur.LANE_BITS) & BoxBlur.LANE_MASK) - Rgb3x3Average.BLACK_SUM) / 9;
+                final int b = ((int) (lSum & BoxBlur.LANE_MASK) - Rgb3x3Average.BLACK_SUM) / 9;
+                rgbOutput[nPos++] = RgbVal.toRgb((byte) r, (byte) g, (byte) b);
+                lSum -= rlCol[j];
             }
         }
         /*
@@ -24,9 +24,11 @@
 
 package com.github.ojil.algorithm;
 
+import com.github.ojil.core.BufferedStage;
 import com.github.ojil.core.Gray8Image;
 import com.github.ojil.core.Image;
 import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
 import com.github.ojil.core.PipelineStage;
 import com.github.ojil.core.RgbImage;
 import com.github.ojil.core.RgbVal;
@@ -40,7 +42,7 @@ import com.github.ojil.core.RgbVal;
  * 
  * @author webb
  */
-public class RgbAvgGray extends PipelineStage {
+public class RgbAvgGray extends PipelineStage implements BufferedStage {
     
     /** Creates a new instance of RgbAvgGray */
     public RgbAvgGray() {
@@ -62,10 +64,42 @@ public class RgbAvgGray extends PipelineStage {
         if (!(image instanceof RgbImage)) {
             throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, image.toString(), null, null);
         }
-        final RgbImage<?> rgb = (RgbImage<?>) image;
-        final Integer[] rgbData = rgb.getData();
         final Gray8Image<?> gray = new Gray8Image<>(image.getWidth(), image.getHeight());
-        final Byte[] grayData = gray.getData();
+        push(image, gray);
+        super.setOutput(gray);
+    }
+    
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     * 
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not an RgbImage.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(RgbImage.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+    
+    /**
+     * Averages the R, G, and B values of an RgbImage into a Gray8Image of the
+     * same size. The input is not checked.
+     * 
+     * @param image
+     *            the input RgbImage
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Integer[] rgbData = ((RgbImage<?>) image).getData();
+        final Byte[] grayData = ((Gray8Image<?>) imageOutput).getData();
         for (int i = 0; i < (image.getWidth() * image.getHeight()); i++) {
             /*
              * get individual r, g, and b values, unmasking them from the ARGB
@@ -79,6 +113,5 @@ public class RgbAvgGray extends PipelineStage {
              */
             grayData[i] = (byte) ((r + g + b) / 3);
         }
-        super.setOutput(gray);
     }
 }
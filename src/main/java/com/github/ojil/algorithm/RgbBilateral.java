@@ -0,0 +1,167 @@
+/*
+ * RgbBilateral.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+import com.github.ojil.core.RgbImage;
+
+/**
+ * Smooths an RgbImage while keeping its edges, with an approximate bilateral
+ * filter: the red, green, and blue bands of each pixel are replaced
+ * independently by weighted averages of the pixels near it whose values in
+ * that band are close to its own. The weights fall off as Gaussians of
+ * distance, with sigma nSpatial pixels, and of difference in value, with
+ * sigma nRange. Pixels across an edge in any band are not averaged together
+ * in that band, so region boundaries stay sharp for segmentation. The filter
+ * is computed with a bilateral grid (see BilateralGrid), in time linear in
+ * the number of pixels; larger sigmas make it faster, not slower.
+ *
+ * @author webb
+ */
+public class RgbBilateral extends PipelineStage implements BufferedStage {
+    private final int nSpatial;
+    private final int nRange;
+    private final BilateralGrid filter;
+
+    /**
+     * Creates a new instance of RgbBilateral.
+     *
+     * @param nSpatial
+     *            the spatial sigma, in pixels.
+     * @param nRange
+     *            the range sigma, in pixel values (0 to 255).
+     * @throws ImageError
+     *             if either sigma is less than 1.
+     */
+    public RgbBilateral(final int nSpatial, final int nRange) throws ImageError {
+        if (nSpatial < 1) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(nSpatial).toString(), new Integer(1).toString(),
+                    new Integer(Integer.MAX_VALUE).toString());
+        }
+        if (nRange < 1) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_OUT_OF_RANGE, new Integer(nRange).toString(), new Integer(1).toString(),
+                    new Integer(Integer.MAX_VALUE).toString());
+        }
+        this.nSpatial = nSpatial;
+        this.nRange = nRange;
+        filter = new BilateralGrid(nSpatial, nRange);
+    }
+
+    /**
+     * Returns the spatial sigma.
+     *
+     * @return the spatial sigma, in pixels.
+     */
+    public int getSpatial() {
+        return nSpatial;
+    }
+
+    /**
+     * Returns the range sigma.
+     *
+     * @return the range sigma, in pixel values.
+     */
+    public int getRange() {
+        return nRange;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * RgbImage the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not an RgbImage.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(RgbImage.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(RgbImage.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Bilateral filter the input image.
+     *
+     * @param image
+     *            the input RgbImage. Not modified.
+     * @throws ImageError
+     *             if the input is not an RgbImage.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof RgbImage)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, image.toString(), null, null);
+        }
+        final RgbImage<?> result = new RgbImage<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Bilateral filter an RgbImage, writing the result into an RgbImage of the
+     * same size. The input is not checked.
+     *
+     * @param image
+     *            the input RgbImage
+     * @param imageOutput
+     *            the output RgbImage
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Integer[] rgbIn = ((RgbImage<?>) image).getData();
+        final Integer[] rgbResult = ((RgbImage<?>) imageOutput).getData();
+        final byte[] rbIn = new byte[rgbIn.length];
+        final byte[] rbOut = new byte[rgbIn.length];
+        final int[] rnResult = new int[rgbIn.length];
+        for (int i = 0; i < rnResult.length; i++) {
+            rnResult[i] = 0xFF000000;
+        }
+        // filter each band in turn, using its unsigned values directly
+        for (int nShift = 16; nShift >= 0; nShift -= 8) {
+            for (int i = 0; i < rgbIn.length; i++) {
+                rbIn[i] = (byte) (rgbIn[i] >> nShift);
+            }
+            filter.filter(rbIn, rbOut, image.getWidth(), image.getHeight());
+            for (int i = 0; i < rnResult.length; i++) {
+                rnResult[i] |= (rbOut[i] & 0xff) << nShift;
+            }
+        }
+        for (int i = 0; i < rgbResult.length; i++) {
+            rgbResult[i] = rnResult[i];
+        }
+    }
+
+    /**
+     * Returns a string describing this bilateral filter.
+     *
+     * @return a string giving the sigmas.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + nSpatial + "," + nRange + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * RgbBoxBlur.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+import com.github.ojil.core.RgbImage;
+
+/**
+ * Box blurs a color image: each pixel is replaced by the average of the
+ * rectangular window centered on it, rounded to nearest. The red, green, and
+ * blue bands are averaged independently. Each pixel is unpacked once, into
+ * three lanes of a long, and the running window sums are kept in the same
+ * form, so all three bands are updated by one addition (see BoxBlur). Windows
+ * too large for the lanes are summed one band at a time. The image is
+ * extended past its borders by repeating the border pixels. The time taken
+ * does not depend on the window size.
+ * <p>
+ * Planar images can be blurred a band at a time with Gray8BoxBlur, which
+ * gives the same result.
+ *
+ * @author webb
+ */
+public class RgbBoxBlur extends PipelineStage implements BufferedStage {
+    private static final int RECIP_BITS = 40;
+
+    private final int nWidth;
+    private final int nHeight;
+    private final BoxBlur blur;
+
+    /**
+     * Creates a new instance of RgbBoxBlur.
+     *
+     * @param nWidth
+     *            the window width, odd.
+     * @param nHeight
+     *            the window height, odd.
+     * @throws ImageError
+     *             if the width or height is less than 1 or even.
+     */
+    public RgbBoxBlur(final int nWidth, final int nHeight) throws ImageError {
+        if ((nWidth < 1) || ((nWidth % 2) == 0)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_WRONG_SIZE, new Integer(nWidth).toString(), null, null);
+        }
+        if ((nHeight < 1) || ((nHeight % 2) == 0)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.PARAMETER_WRONG_SIZE, new Integer(nHeight).toString(), null, null);
+        }
+        this.nWidth = nWidth;
+        this.nHeight = nHeight;
+        blur = new BoxBlur(nWidth, nHeight);
+    }
+
+    /**
+     * Returns the window width.
+     *
+     * @return the width.
+     */
+    public int getWidth() {
+        return nWidth;
+    }
+
+    /**
+     * Returns the window height.
+     *
+     * @return the height.
+     */
+    public int getHeight() {
+        return nHeight;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * RgbImage the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not an RgbImage.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(RgbImage.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(RgbImage.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Box blur the input image.
+     *
+     * @param image
+     *            the input RgbImage. Not modified.
+     * @throws ImageError
+     *             if the input is not an RgbImage.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof RgbImage)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, image.toString(), null, null);
+        }
+        final RgbImage<?> result = new RgbImage<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Box blur an RgbImage, writing the result into an RgbImage of the same
+     * size. The input is not checked.
+     *
+     * @param image
+     *            the input RgbImage
+     * @param imageOutput
+     *            the output RgbImage
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Integer[] rgbIn = ((RgbImage<?>) image).getData();
+        final Integer[] rgbResult = ((RgbImage<?>) imageOutput).getData();
+        final long[] rlIn = new long[rgbIn.length];
+        final long[] rlOut = new long[rgbIn.length];
+        final int nArea = nWidth * nHeight;
+        final int nHalf = nArea / 2;
+        if (nArea <= BoxBlur.MAX_LANE_AREA) {
+            for (int i = 0; i < rgbIn.length; i++) {
+                rlIn[i] = BoxBlur.spread(rgbIn[i]);
+            }
+            blur.sum(rlIn, rlOut, image.getWidth(), image.getHeight());
+            // Dividing by multiplying by lRecip and shifting right by
+            // RECIP_BITS is exact: lRecip * nArea exceeds 2^RECIP_BITS by
+            // less than nArea, and the sums plus nHalf, times nArea, are far
+            // less than 2^RECIP_BITS.
+            final long lRecip = ((1L << RgbBoxBlur.RECIP_BITS) / nArea) + 1;
+            for (int i = 0; i < rgbResult.length; i++) {
+                final long l = rlOut[i];
+                final int nR = (int) ((((l >> (2 * BoxBlur.LANE_BITS)) + nHalf) * lRecip) >> RgbBoxBlur.RECIP_BITS);
+                final int nG = (int) (((((l >> BoxBlur.LANE_BITS) & BoxBlur.LANE_MASK) + nHalf) * lRecip) >> RgbBoxBlur.RECIP_BITS);
+                final int nB = (int) ((((l & BoxBlur.LANE_MASK) + nHalf) * lRecip) >> RgbBoxBlur.RECIP_BITS);
+                rgbResult[i] = 0xFF000000 | (nR << 16) | (nG << 8) | nB;
+            }
+        } else {
+            for (int i = 0; i < rgbResult.length; i++) {
+                rgbResult[i] = 0xFF000000;
+            }
+            for (int nShift = 16; nShift >= 0; nShift -= 8) {
+                for (int i = 0; i < rgbIn.length; i++) {
+                    rlIn[i] = (rgbIn[i] >> nShift) & 0xff;
+                }
+                blur.sum(rlIn, rlOut, image.getWidth(), image.getHeight());
+                for (int i = 0; i < rgbResult.length; i++) {
+                    rgbResult[i] |= ((int) ((rlOut[i] + nHalf) / nArea)) << nShift;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a string describing this box blur.
+     *
+     * @return a string giving the window size.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + nWidth + "," + nHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * RgbConvolve.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.BufferedStage;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineStage;
+import com.github.ojil.core.RgbImage;
+import com.github.ojil.core.RgbVal;
+
+/**
+ * Convolves an RgbImage with an arbitrary kernel, choosing between separable,
+ * direct, and FFT computation (see Convolution). The red, green, and blue
+ * bands are convolved independently as signed values, as by Gray8Convolve,
+ * and clamped to the range of a signed byte.
+ *
+ * @author webb
+ */
+public class RgbConvolve extends PipelineStage implements BufferedStage {
+    private final Convolution convolution;
+
+    /**
+     * Creates a new instance of RgbConvolve.
+     *
+     * @param convolution
+     *            the kernel and strategy.
+     */
+    public RgbConvolve(final Convolution convolution) {
+        this.convolution = convolution;
+    }
+
+    /**
+     * Returns the convolution, whose strategy can be changed.
+     *
+     * @return the convolution.
+     */
+    public Convolution getConvolution() {
+        return convolution;
+    }
+
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * RgbImage the same size as the input.
+     *
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not an RgbImage.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(RgbImage.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(RgbImage.class, specInput.getWidth(), specInput.getHeight());
+    }
+
+    /**
+     * Convolve the input image.
+     *
+     * @param image
+     *            the input RgbImage. Not modified.
+     * @throws ImageError
+     *             if the input is not an RgbImage.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof RgbImage)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, image.toString(), null, null);
+        }
+        final RgbImage<?> result = new RgbImage<>(image.getWidth(), image.getHeight());
+        push(image, result);
+        super.setOutput(result);
+    }
+
+    /**
+     * Convolve an RgbImage, writing the result into an RgbImage of the same
+     * size. The input is not checked.
+     *
+     * @param image
+     *            the input RgbImage
+     * @param imageOutput
+     *            the output RgbImage
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Integer[] rgbIn = ((RgbImage<?>) image).getData();
+        final Integer[] rgbResult = ((RgbImage<?>) imageOutput).getData();
+        final int[] rnIn = new int[rgbIn.length];
+        final int[] rnOut = new int[rgbIn.length];
+        final int[] rnResult = new int[rgbIn.length];
+        for (int i = 0; i < rnResult.length; i++) {
+            rnResult[i] = 0xFF000000;
+        }
+        for (int nShift = 16; nShift >= 0; nShift -= 8) {
+            for (int i = 0; i < rgbIn.length; i++) {
+                rnIn[i] = RgbVal.toSignedByte((byte) (rgbIn[i] >> nShift));
+            }
+            convolution.push(rnIn, rnOut, image.getWidth(), image.getHeight());
+            for (int i = 0; i < rnResult.length; i++) {
+                final byte b = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, rnOut[i]));
+                rnResult[i] |= RgbVal.toUnsignedInt(b) << nShift;
+            }
+        }
+        for (int i = 0; i < rgbResult.length; i++) {
+            rgbResult[i] = rnResult[i];
+        }
+    }
+
+    /**
+     * Returns a string describing this convolution.
+     *
+     * @return a string giving the kernel.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + convolution.toString() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
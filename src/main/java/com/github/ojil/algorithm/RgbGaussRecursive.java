@@ -0,0 +1,99 @@
+/*
+ * RgbGaussRecursive.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.PipelineStage;
+import com.github.ojil.core.RgbImage;
+import com.github.ojil.core.Sequence;
+
+/**
+ * RgbGaussRecursive blurs an RgbImage with a two-dimensional Gaussian, using
+ * Gray8GaussRecursive on the red, green, and blue bands independently. Its
+ * cost does not depend on sigma.
+ *
+ * @author webb
+ */
+public class RgbGaussRecursive extends PipelineStage {
+    private Sequence seqR, seqG, seqB;
+    int nSigma;
+
+    /**
+     * Creates a new instance of RgbGaussRecursive.
+     *
+     * @param nSigma
+     *            the sigma of the Gaussian, multiplied by 10.
+     * @throws ImageError
+     *             if sigma out of range
+     */
+    public RgbGaussRecursive(final int nSigma) throws ImageError {
+        setSigma(nSigma);
+    }
+
+    /**
+     * Blur an RgbImage using a Gaussian.
+     *
+     * @param image
+     *            the input RgbImage.
+     * @throws ImageError
+     *             if the input image is not an RgbImage
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!(image instanceof RgbImage)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, image.toString(), null, null);
+        }
+        seqR.push(image);
+        seqG.push(image);
+        seqB.push(image);
+        super.setOutput(Gray3Bands2Rgb.push((Gray8Image<?>) seqR.getFront(), (Gray8Image<?>) seqG.getFront(), (Gray8Image<?>) seqB.getFront()));
+    }
+
+    /**
+     * Sets the Gaussian sigma. Constructs 3 pipelines to use for blurring
+     * each band of the RgbImage independently.
+     *
+     * @param nSigma
+     *            the sigma of the Gaussian, multiplied by 10.
+     * @throws ImageError
+     *             if sigma out of range
+     */
+    public void setSigma(final int nSigma) throws ImageError {
+        this.nSigma = nSigma;
+        seqR = new Sequence(new RgbSelectGray(RgbSelectGray.RED));
+        seqR.add(new Gray8GaussRecursive(nSigma));
+        seqG = new Sequence(new RgbSelectGray(RgbSelectGray.GREEN));
+        seqG.add(new Gray8GaussRecursive(nSigma));
+        seqB = new Sequence(new RgbSelectGray(RgbSelectGray.BLUE));
+        seqB.add(new Gray8GaussRecursive(nSigma));
+    }
+
+    /**
+     * Returns a string describing the current instance. All the constructor
+     * parameters are returned in the order specified in the constructor.
+     *
+     * @return The string describing the current instance
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + nSigma + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -24,9 +24,11 @@
 
 package com.github.ojil.algorithm;
 
+import com.github.ojil.core.BufferedStage;
 import com.github.ojil.core.Gray8Image;
 import com.github.ojil.core.Image;
 import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
 import com.github.ojil.core.PipelineStage;
 import com.github.ojil.core.RgbImage;
 import com.github.ojil.core.RgbVal;
@@ -49,7 +51,7 @@ import com.github.ojil.core.RgbVal;
  * 
  * @author webb
  */
-public class RgbSelectGray extends PipelineStage {
+public class RgbSelectGray extends PipelineStage implements BufferedStage {
     /*
      * In the absence of enums in version 1.3 we use three empty singleton
      * classes to represent the color choice.
@@ -170,10 +172,42 @@ public class RgbSelectGray extends PipelineStage {
         if (!(image instanceof RgbImage)) {
             throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, image.toString(), null, null);
         }
-        final RgbImage<?> rgb = (RgbImage<?>) image;
-        final Integer[] rgbData = rgb.getData();
         final Gray8Image<?> gray = new Gray8Image<>(image.getWidth(), image.getHeight());
-        final Byte[] grayData = gray.getData();
+        push(image, gray);
+        super.setOutput(gray);
+    }
+    
+    /**
+     * Returns the spec of the output for a given input spec. The output is a
+     * Gray8Image the same size as the input.
+     * 
+     * @param specInput
+     *            the input spec
+     * @return the output spec
+     * @throws ImageError
+     *             if the input is not an RgbImage.
+     */
+    @Override
+    public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+        if (!specInput.is(RgbImage.class)) {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.IMAGE_NOT_RGBIMAGE, specInput.toString(), null, null);
+        }
+        return new ImageSpec(Gray8Image.class, specInput.getWidth(), specInput.getHeight());
+    }
+    
+    /**
+     * Select the chosen color band of an RgbImage into a Gray8Image of the
+     * same size. The input is not checked.
+     * 
+     * @param image
+     *            the input RgbImage
+     * @param imageOutput
+     *            the output Gray8Image
+     */
+    @Override
+    public void push(final Image<?, ?> image, final Image<?, ?> imageOutput) {
+        final Integer[] rgbData = ((RgbImage<?>) image).getData();
+        final Byte[] grayData = ((Gray8Image<?>) imageOutput).getData();
         if (colorChosen.equals(RgbSelectGray.RED)) {
             for (int i = 0; i < (image.getWidth() * image.getHeight()); i++) {
                 /*
@@ -196,7 +230,6 @@ public class RgbSelectGray extends PipelineStage {
                 grayData[i] = RgbVal.getB(rgbData[i]);
             }
         }
-        super.setOutput(gray);
     }
     
     /**
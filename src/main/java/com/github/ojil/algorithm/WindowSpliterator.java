@@ -0,0 +1,316 @@
+/*
+ * WindowSpliterator.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.algorithm;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.ojil.core.Gray32Image;
+import com.github.ojil.core.Gray32OffsetImage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Gray8OffsetImage;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+
+/**
+ * WindowSpliterator describes the sub-images a sub-image generator would
+ * produce for its current input, without copying them. Each window is
+ * described only by its offset in the parent image; all windows have the
+ * same size. Unlike getFront on the generators, which copies every window
+ * into the one output image it reuses, a WindowSpliterator can be split into
+ * independent parts, and the parts traversed on different threads, so
+ * windows can be scored on every core at once. A visitor that needs the
+ * pixels reads them from the parent image, which must not be changed while
+ * windows are being visited, or calls crop for a private copy.
+ * <p>
+ * The methods follow java.util.Spliterator (tryAdvance, forEachRemaining,
+ * trySplit, estimateSize), so on Java 8 and later a WindowSpliterator can be
+ * wrapped as a Spliterator and used with parallelStream. On Java 7,
+ * forEachParallel splits it across a ForkJoinPool.
+ * <p>
+ * For a masked generator, windows whose center pixel is masked are skipped,
+ * so estimateSize is an upper bound.
+ *
+ * @author webb
+ */
+public class WindowSpliterator {
+    /**
+     * Visitor receives the windows of a WindowSpliterator.
+     */
+    public interface Visitor {
+        /**
+         * Called for each window. When windows are visited in parallel this
+         * is called from several threads at once.
+         *
+         * @param nX
+         *            the horizontal offset of the window in the parent image.
+         * @param nY
+         *            the vertical offset of the window in the parent image.
+         * @throws ImageError
+         *             to stop the traversal.
+         */
+        void visit(int nX, int nY) throws ImageError;
+    }
+
+    private static class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final WindowSpliterator ws;
+        private final Visitor visitor;
+        private final long nThreshold;
+
+        Task(final WindowSpliterator ws, final Visitor visitor, final long nThreshold) {
+            this.ws = ws;
+            this.visitor = visitor;
+            this.nThreshold = nThreshold;
+        }
+
+        @Override
+        protected void compute() {
+            Task taskPrefix = null;
+            if (ws.estimateSize() > nThreshold) {
+                final WindowSpliterator wsPrefix = ws.trySplit();
+                if (wsPrefix != null) {
+                    taskPrefix = new Task(wsPrefix, visitor, nThreshold);
+                    taskPrefix.fork();
+                }
+            }
+            if ((taskPrefix != null) && (ws.estimateSize() > nThreshold)) {
+                new Task(ws, visitor, nThreshold).compute();
+            } else {
+                try {
+                    ws.forEachRemaining(visitor);
+                } catch (final ImageError e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            if (taskPrefix != null) {
+                taskPrefix.join();
+            }
+        }
+    }
+
+    private final Image<?, ?> image;
+    private final Byte[] rbMask;
+    private final int nWidth;
+    private final int nHeight;
+    private final int nXStep;
+    private final int nYStep;
+    private final int nCols;
+    private int nIndex;
+    private final int nEnd;
+
+    /**
+     * Creates a WindowSpliterator over a grid of windows.
+     *
+     * @param image
+     *            the parent image.
+     * @param rbMask
+     *            the mask data, the size of the parent image, or null. If
+     *            given, windows whose center is not Byte.MIN_VALUE in the mask
+     *            are skipped.
+     * @param nWidth
+     *            the window width.
+     * @param nHeight
+     *            the window height.
+     * @param nXStep
+     *            the horizontal distance between windows.
+     * @param nYStep
+     *            the vertical distance between windows.
+     * @param nCols
+     *            the number of windows in each row.
+     * @param nRows
+     *            the number of rows of windows.
+     */
+    public WindowSpliterator(final Image<?, ?> image, final Byte[] rbMask, final int nWidth, final int nHeight, final int nXStep, final int nYStep, final int nCols,
+            final int nRows) {
+        this.image = image;
+        this.rbMask = rbMask;
+        this.nWidth = nWidth;
+        this.nHeight = nHeight;
+        this.nXStep = nXStep;
+        this.nYStep = nYStep;
+        this.nCols = Math.max(0, nCols);
+        nIndex = 0;
+        nEnd = this.nCols * Math.max(0, nRows);
+    }
+
+    private WindowSpliterator(final WindowSpliterator ws, final int nStart, final int nEnd) {
+        image = ws.image;
+        rbMask = ws.rbMask;
+        nWidth = ws.nWidth;
+        nHeight = ws.nHeight;
+        nXStep = ws.nXStep;
+        nYStep = ws.nYStep;
+        nCols = ws.nCols;
+        nIndex = nStart;
+        this.nEnd = nEnd;
+    }
+
+    /**
+     * Copy a window out of the parent image. Each call returns a new image, so
+     * this is safe to call from several threads at once.
+     *
+     * @param nX
+     *            the horizontal offset of the window.
+     * @param nY
+     *            the vertical offset of the window.
+     * @return a Gray8OffsetImage or Gray32OffsetImage, matching the parent.
+     *         Any part of the window outside the parent is left unset.
+     * @throws ImageError
+     *             if the parent is neither a Gray8Image nor a Gray32Image.
+     */
+    public Image<?, ?> crop(final int nX, final int nY) throws ImageError {
+        final int nLimitY = Math.min(image.getHeight() - nY, nHeight);
+        final int nLimitX = Math.min(image.getWidth() - nX, nWidth);
+        final Image<?, ?> imageResult;
+        if (image instanceof Gray8Image) {
+            imageResult = new Gray8OffsetImage<>(nWidth, nHeight, nX, nY);
+        } else if (image instanceof Gray32Image) {
+            imageResult = new Gray32OffsetImage<>(nWidth, nHeight, nX, nY);
+        } else {
+            throw new ImageError(ImageError.PACKAGE.ALGORITHM, AlgorithmErrorCodes.OBJECT_NOT_EXPECTED_TYPE, image.toString(), "Gray8Image", null); //$NON-NLS-1$
+        }
+        final Object[] dataIn = image.getData();
+        final Object[] dataOut = imageResult.getData();
+        for (int i = 0; i < nLimitY; i++) {
+            System.arraycopy(dataIn, ((i + nY) * image.getWidth()) + nX, dataOut, i * nWidth, nLimitX);
+        }
+        return imageResult;
+    }
+
+    /**
+     * Returns the number of windows not yet visited. For a masked generator
+     * this counts masked windows too.
+     *
+     * @return the number of windows left, at most.
+     */
+    public long estimateSize() {
+        return nEnd - nIndex;
+    }
+
+    /**
+     * Visit every window not yet visited, on the calling thread.
+     *
+     * @param visitor
+     *            receives the windows.
+     * @throws ImageError
+     *             if the visitor does. The windows after it are not visited.
+     */
+    public void forEachRemaining(final Visitor visitor) throws ImageError {
+        while (tryAdvance(visitor)) {
+            ;
+        }
+    }
+
+    /**
+     * Visit every window not yet visited, in parallel. The windows are split
+     * into about four parts per thread of the pool.
+     *
+     * @param pool
+     *            the pool to run on.
+     * @param visitor
+     *            receives the windows, from the pool's threads.
+     * @throws ImageError
+     *             if the visitor does. Other windows may still be visited.
+     */
+    public void forEachParallel(final ForkJoinPool pool, final Visitor visitor) throws ImageError {
+        final long nThreshold = Math.max(1, estimateSize() / (4L * pool.getParallelism()));
+        try {
+            pool.invoke(new Task(this, visitor, nThreshold));
+        } catch (final RuntimeException e) {
+            // the ImageError is the cause, possibly of a copy made by the pool
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof ImageError) {
+                    throw (ImageError) t;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the parent image.
+     *
+     * @return the image the windows lie in.
+     */
+    public Image<?, ?> getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the height of every window.
+     *
+     * @return the window height.
+     */
+    public int getWindowHeight() {
+        return nHeight;
+    }
+
+    /**
+     * Returns the width of every window.
+     *
+     * @return the window width.
+     */
+    public int getWindowWidth() {
+        return nWidth;
+    }
+
+    private boolean isMasked(final int nX, final int nY) {
+        return (rbMask != null) && (rbMask[(((nHeight / 2) + nY) * image.getWidth()) + (nWidth / 2) + nX] != Byte.MIN_VALUE);
+    }
+
+    /**
+     * Visit the next window, if any.
+     *
+     * @param visitor
+     *            receives the window.
+     * @return false if there were no windows left.
+     * @throws ImageError
+     *             if the visitor does.
+     */
+    public boolean tryAdvance(final Visitor visitor) throws ImageError {
+        while (nIndex < nEnd) {
+            final int nX = (nIndex % nCols) * nXStep;
+            final int nY = (nIndex / nCols) * nYStep;
+            nIndex++;
+            if (!isMasked(nX, nY)) {
+                visitor.visit(nX, nY);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Split off the first half of the windows not yet visited. This one keeps
+     * the second half.
+     *
+     * @return a WindowSpliterator over the first half, or null if there are
+     *         too few windows to split.
+     */
+    public WindowSpliterator trySplit() {
+        final int nMid = (nIndex + nEnd) >>> 1;
+        if (nMid <= nIndex) {
+            return null;
+        }
+        final WindowSpliterator wsPrefix = new WindowSpliterator(this, nIndex, nMid);
+        nIndex = nMid;
+        return wsPrefix;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * BufferPlan.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BufferPlan assigns the intermediate images of a pipeline to a small set of
+ * reusable buffers. Each intermediate image is defined (written) at one step
+ * of the pipeline and read at one or more later steps; it is live from the
+ * step that defines it through the last step that reads it. Two images can
+ * share a buffer if they have the same ImageSpec and their live ranges do not
+ * overlap. Since an image is still live at the step that reads it last, a
+ * stage's output never shares a buffer with its own input.
+ * <p>
+ * Images are assigned greedily in order of definition, each taking the first
+ * free buffer with a matching spec. For live ranges on a line this uses the
+ * smallest possible number of buffers for each spec. For a chain of stages
+ * with equal-sized images that is two buffers regardless of the chain length.
+ * <p>
+ * Usage: call define for each intermediate image in step order, call use for
+ * each step that reads it, then call plan. Images that are never read (such
+ * as the final output) are kept live to the end of the pipeline.
+ *
+ * @author webb
+ */
+public class BufferPlan {
+    private final List<ImageSpec> rSpecs = new ArrayList<>();
+    private final List<Integer> rDefined = new ArrayList<>();
+    private final List<Integer> rLastUse = new ArrayList<>();
+    private int[] rnBuffer = null;
+    private final List<ImageSpec> rBufferSpecs = new ArrayList<>();
+    
+    /**
+     * Creates a new, empty BufferPlan.
+     */
+    public BufferPlan() {
+    }
+    
+    /**
+     * Record an intermediate image. Images must be defined in step order.
+     *
+     * @param spec
+     *            the image's spec.
+     * @param nStep
+     *            the step that writes the image.
+     * @return the index of the image, for use in use() and getBuffer().
+     */
+    public int define(final ImageSpec spec, final int nStep) {
+        rSpecs.add(spec);
+        rDefined.add(nStep);
+        rLastUse.add(-1);
+        rnBuffer = null;
+        return rSpecs.size() - 1;
+    }
+    
+    /**
+     * Record that an intermediate image is read at a step.
+     *
+     * @param nImage
+     *            the index returned by define.
+     * @param nStep
+     *            the step that reads the image.
+     */
+    public void use(final int nImage, final int nStep) {
+        rLastUse.set(nImage, Math.max(rLastUse.get(nImage), nStep));
+        rnBuffer = null;
+    }
+    
+    /**
+     * Assign the recorded images to buffers.
+     */
+    public void plan() {
+        rBufferSpecs.clear();
+        final List<Integer> rFreeAfter = new ArrayList<>();
+        rnBuffer = new int[rSpecs.size()];
+        for (int i = 0; i < rSpecs.size(); i++) {
+            final ImageSpec spec = rSpecs.get(i);
+            final int nDefined = rDefined.get(i);
+            final int nLastUse = (rLastUse.get(i) < 0) ? Integer.MAX_VALUE : rLastUse.get(i);
+            int nBuffer = -1;
+            for (int b = 0; b < rBufferSpecs.size(); b++) {
+                if (rBufferSpecs.get(b).equals(spec) && (rFreeAfter.get(b) < nDefined)) {
+                    nBuffer = b;
+                    break;
+                }
+            }
+            if (nBuffer < 0) {
+                nBuffer = rBufferSpecs.size();
+                rBufferSpecs.add(spec);
+                rFreeAfter.add(nLastUse);
+            } else {
+                rFreeAfter.set(nBuffer, nLastUse);
+            }
+            rnBuffer[i] = nBuffer;
+        }
+    }
+    
+    /**
+     * Returns the buffer assigned to an image.
+     *
+     * @param nImage
+     *            the index returned by define.
+     * @return the buffer index.
+     */
+    public int getBuffer(final int nImage) {
+        if (rnBuffer == null) {
+            plan();
+        }
+        return rnBuffer[nImage];
+    }
+    
+    /**
+     * Returns the number of buffers needed.
+     *
+     * @return the number of buffers.
+     */
+    public int getBufferCount() {
+        if (rnBuffer == null) {
+            plan();
+        }
+        return rBufferSpecs.size();
+    }
+    
+    /**
+     * Allocate the buffers. Each image's assignment is reported to the
+     * installed PipelineListener, if any, as a hit if it reuses a buffer and
+     * a miss if its buffer is new.
+     *
+     * @return an array of images, indexed by buffer.
+     * @throws ImageError
+     *             if a buffer's spec cannot be allocated.
+     */
+    public Image<?, ?>[] allocate() throws ImageError {
+        final Image<?, ?>[] rImages = new Image<?, ?>[getBufferCount()];
+        for (int b = 0; b < rImages.length; b++) {
+            rImages[b] = rBufferSpecs.get(b).createImage();
+        }
+        final PipelineListener listener = PipelineEvents.getListener();
+        if (listener != null) {
+            // an image hits if an earlier image was assigned its buffer
+            final boolean[] rbUsed = new boolean[rImages.length];
+            for (int i = 0; i < rnBuffer.length; i++) {
+                listener.bufferAssigned(rSpecs.get(i), rbUsed[rnBuffer[i]]);
+                rbUsed[rnBuffer[i]] = true;
+            }
+        }
+        return rImages;
+    }
+}
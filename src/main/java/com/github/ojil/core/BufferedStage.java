@@ -0,0 +1,63 @@
+/*
+ * BufferedStage.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+/**
+ * BufferedStage is implemented by pipeline stages that can describe their
+ * output before any image is pushed, and that can write their output into an
+ * image supplied by the caller instead of allocating a new one. This lets a
+ * pipeline with a known input size be checked once and have its intermediate
+ * images planned and allocated ahead of time (see CompiledSequence).
+ * <p>
+ * push(Image, Image) keeps all per-image state in its arguments and local
+ * variables, so a stage whose configuration is not being changed can be used
+ * through it from several threads at once.
+ *
+ * @author webb
+ */
+public interface BufferedStage {
+    /**
+     * Returns the spec of the image this stage produces for a given input
+     * spec. This is where the stage checks its input type and size.
+     *
+     * @param specInput
+     *            the spec of the input image.
+     * @return the spec of the output image.
+     * @throws ImageError
+     *             if the stage cannot accept an input with this spec.
+     */
+    ImageSpec getOutputSpec(ImageSpec specInput) throws ImageError;
+    
+    /**
+     * Process an input image, writing the result into imageOutput. The caller
+     * guarantees that imageInput matches a spec that getOutputSpec accepted
+     * and that imageOutput matches the spec returned for it, so the input is
+     * not checked again. imageOutput is never the same object as imageInput.
+     * Implementations must not modify the state of the stage here.
+     *
+     * @param imageInput
+     *            the input image.
+     * @param imageOutput
+     *            the image to write the result into.
+     * @throws ImageError
+     *             if processing fails for reasons other than the input type
+     *             or size.
+     */
+    void push(Image<?, ?> imageInput, Image<?, ?> imageOutput) throws ImageError;
+}
@@ -0,0 +1,341 @@
+/*
+ * CachedStage.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CachedStage remembers the outputs of an expensive stage (or pipeline) for
+ * recently seen inputs. Each input is reduced to a 64-bit FNV-1a hash of its
+ * type, size, mask and pixels, used to look it up, and a second 64-bit
+ * multiply-rotate digest of the same values; if an input with the same hash,
+ * digest, type and size was pushed recently, its outputs are returned again
+ * and the stage is not run. This pays off when the same image is pushed
+ * repeatedly, as from a static camera or repeated uploads.
+ * <p>
+ * The input itself is not kept and its pixels are never compared, so two
+ * different inputs of the same type and size whose hash and digest both
+ * collide would share outputs. Neither function is cryptographic and they
+ * are computed from the same values, so this is unlikely but not ruled out,
+ * and inputs can be constructed deliberately to collide. Do not use the
+ * cache where a wrong result for such an input is unacceptable.
+ * <p>
+ * By default every pixel is hashed. With a sample stride of n, only every nth
+ * pixel is hashed, which is n times faster but treats images that differ only
+ * in unsampled pixels as the same image. Use it only when such images can be
+ * expected to give the same result.
+ * <p>
+ * The cache holds at most a given number of entries and a given total number
+ * of output pixels; the least recently used entries are evicted first. All
+ * outputs the stage produces for an input are cached, so a stage producing
+ * several outputs per input (such as a subimage generator) is drained at
+ * push. Every getFront returns a new copy of the cached output (made with
+ * clone), so it may be modified freely. Only the output images are cached:
+ * any other results the stage offers, such as RgbSplit.getRegions, describe
+ * the last input that missed the cache.
+ *
+ * @author webb
+ */
+public class CachedStage extends PipelineStage {
+    private static class Entry {
+        private final String szClass;
+        private final int nWidth;
+        private final int nHeight;
+        private final List<Image<?, ?>> lOutputs;
+        private final long lPixels;
+        private final long lDigest;
+
+        Entry(final Image<?, ?> image, final long lDigest, final List<Image<?, ?>> lOutputs, final long lPixels) {
+            this.lDigest = lDigest;
+            szClass = image.getClass().getName();
+            nWidth = image.getWidth();
+            nHeight = image.getHeight();
+            this.lOutputs = lOutputs;
+            this.lPixels = lPixels;
+        }
+
+        boolean matches(final Image<?, ?> image, final long lDigest) {
+            return (this.lDigest == lDigest) && szClass.equals(image.getClass().getName()) && (nWidth == image.getWidth()) && (nHeight == image.getHeight());
+        }
+    }
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    // the digest multiplies by the golden ratio and rotates, which spreads
+    // the values differently from FNV-1a
+    private static final long DIGEST_MULTIPLIER = 0x9e3779b97f4a7c15L;
+    private static final long DIGEST_OFFSET = 0x243f6a8885a308d3L;
+
+    private final PipelineStage stage;
+    private final int nMaxEntries;
+    private final long lMaxPixels;
+    private final int nSampleStride;
+    // access order, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Long, Entry> mapCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedList<Image<?, ?>> lPending = new LinkedList<>();
+    private long lPixels = 0;
+    private long nHits = 0;
+    private long nMisses = 0;
+    private long nEvictions = 0;
+
+    /**
+     * Creates a new CachedStage which hashes every pixel and limits only the
+     * number of entries.
+     *
+     * @param stage
+     *            the stage whose outputs are cached.
+     * @param nMaxEntries
+     *            the largest number of inputs whose outputs are kept.
+     * @throws ImageError
+     *             if nMaxEntries is less than 1.
+     */
+    public CachedStage(final PipelineStage stage, final int nMaxEntries) throws ImageError {
+        this(stage, nMaxEntries, Long.MAX_VALUE, 1);
+    }
+
+    /**
+     * Creates a new CachedStage.
+     *
+     * @param stage
+     *            the stage whose outputs are cached.
+     * @param nMaxEntries
+     *            the largest number of inputs whose outputs are kept.
+     * @param lMaxPixels
+     *            the largest total number of pixels in the cached outputs.
+     * @param nSampleStride
+     *            hash every nSampleStride'th pixel; 1 hashes every pixel.
+     * @throws ImageError
+     *             if nMaxEntries or nSampleStride is less than 1.
+     */
+    public CachedStage(final PipelineStage stage, final int nMaxEntries, final long lMaxPixels, final int nSampleStride) throws ImageError {
+        if ((nMaxEntries < 1) || (nSampleStride < 1)) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, stage.toString(), Integer.toString(nMaxEntries), Integer.toString(nSampleStride));
+        }
+        this.stage = stage;
+        this.nMaxEntries = nMaxEntries;
+        this.lMaxPixels = lMaxPixels;
+        this.nSampleStride = nSampleStride;
+    }
+
+    // add the four bytes of n to the FNV-1a hash in rl[0] and n to the
+    // digest in rl[1]
+    private static void mix(final long[] rl, final int n) {
+        long lHash = rl[0];
+        for (int nShift = 0; nShift < 32; nShift += 8) {
+            lHash = (lHash ^ ((n >>> nShift) & 0xff)) * CachedStage.FNV_PRIME;
+        }
+        rl[0] = lHash;
+        rl[1] = Long.rotateLeft((rl[1] ^ n) * CachedStage.DIGEST_MULTIPLIER, 29);
+    }
+
+    /**
+     * Forget all cached outputs. The statistics are kept.
+     */
+    public void clear() {
+        mapCache.clear();
+        lPixels = 0;
+    }
+
+    // drop least recently used entries until the cache is within its limits
+    private void evict() {
+        final Iterator<Map.Entry<Long, Entry>> it = mapCache.entrySet().iterator();
+        while (((mapCache.size() > nMaxEntries) || (lPixels > lMaxPixels)) && it.hasNext()) {
+            lPixels -= it.next().getValue().lPixels;
+            it.remove();
+            nEvictions++;
+        }
+    }
+
+    /**
+     * Returns the number of cached entries evicted to stay within the limits.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        return nEvictions;
+    }
+
+    /**
+     * Returns a copy of the next output for the last input.
+     *
+     * @return the output image.
+     * @throws ImageError
+     *             if no output is available.
+     */
+    @Override
+    public Image<?, ?> getFront() throws ImageError {
+        if (lPending.isEmpty()) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, toString(), null, null);
+        }
+        return (Image<?, ?>) lPending.removeFirst().clone();
+    }
+
+    /**
+     * Returns the number of pushes answered from the cache.
+     *
+     * @return the number of hits.
+     */
+    public long getHitCount() {
+        return nHits;
+    }
+
+    /**
+     * Returns the number of pushes passed on to the stage.
+     *
+     * @return the number of misses.
+     */
+    public long getMissCount() {
+        return nMisses;
+    }
+
+    /**
+     * Returns the total number of pixels in the cached outputs.
+     *
+     * @return the number of cached pixels.
+     */
+    public long getPixels() {
+        return lPixels;
+    }
+
+    /**
+     * Returns the number of inputs whose outputs are cached.
+     *
+     * @return the number of entries.
+     */
+    public int getSize() {
+        return mapCache.size();
+    }
+
+    /**
+     * Returns the stage whose outputs are cached.
+     *
+     * @return the stage.
+     */
+    public PipelineStage getStage() {
+        return stage;
+    }
+
+    /**
+     * Computes the hash used to look up an input.
+     *
+     * @param image
+     *            the input image.
+     * @return a hash of the image's class, size, mask and (sampled) pixels.
+     */
+    public long hash(final Image<?, ?> image) {
+        return digest(image)[0];
+    }
+
+    // Returns the lookup hash and the check digest of an input, computed in
+    // one pass over its values.
+    private long[] digest(final Image<?, ?> image) {
+        final long[] rl = { CachedStage.FNV_OFFSET, CachedStage.DIGEST_OFFSET };
+        CachedStage.mix(rl, image.getClass().getName().hashCode());
+        CachedStage.mix(rl, image.getWidth());
+        CachedStage.mix(rl, image.getHeight());
+        final Object[] data = image.getData();
+        for (int i = 0; i < data.length; i += nSampleStride) {
+            final Object o = data[i];
+            if (o instanceof Complex) {
+                CachedStage.mix(rl, ((Complex) o).real());
+                CachedStage.mix(rl, ((Complex) o).imag());
+            } else {
+                CachedStage.mix(rl, (o == null) ? 0 : ((Number) o).intValue());
+            }
+        }
+        final Byte[] rbMask;
+        if (image instanceof Gray8MaskedImage) {
+            rbMask = ((Gray8MaskedImage<?>) image).getMaskData();
+        } else if (image instanceof Gray32MaskedImage) {
+            rbMask = ((Gray32MaskedImage<?>) image).getMaskData();
+        } else {
+            rbMask = null;
+        }
+        if (rbMask != null) {
+            for (int i = 0; i < rbMask.length; i += nSampleStride) {
+                CachedStage.mix(rl, rbMask[i]);
+            }
+        } else if (image instanceof RgbMaskedImage) {
+            final RgbMaskedImage<?> rgbm = (RgbMaskedImage<?>) image;
+            for (int i = 0; i < data.length; i += nSampleStride) {
+                CachedStage.mix(rl, rgbm.isMasked(i / image.getWidth(), i % image.getWidth()) ? 1 : 0);
+            }
+        }
+        return rl;
+    }
+
+    /**
+     * Returns true iff there is no output left for the last input.
+     *
+     * @return true iff no image is available.
+     */
+    @Override
+    public boolean isEmpty() {
+        return lPending.isEmpty();
+    }
+
+    /**
+     * Look up the input in the cache, and if it is not there push it through
+     * the stage and cache all its outputs.
+     *
+     * @param image
+     *            the input image.
+     * @throws ImageError
+     *             if the stage fails.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        lPending.clear();
+        final long[] rlDigest = digest(image);
+        final Long key = rlDigest[0];
+        final Entry entry = mapCache.get(key);
+        if ((entry != null) && entry.matches(image, rlDigest[1])) {
+            nHits++;
+            lPending.addAll(entry.lOutputs);
+            return;
+        }
+        nMisses++;
+        stage.push(image);
+        final List<Image<?, ?>> lOutputs = new ArrayList<>();
+        long lEntryPixels = 0;
+        while (!stage.isEmpty()) {
+            // copy, since generators reuse their output image
+            final Image<?, ?> imageOut = (Image<?, ?>) stage.getFront().clone();
+            lOutputs.add(imageOut);
+            lEntryPixels += (long) imageOut.getWidth() * imageOut.getHeight();
+        }
+        lPending.addAll(lOutputs);
+        final Entry entryOld = mapCache.put(key, new Entry(image, rlDigest[1], lOutputs, lEntryPixels));
+        if (entryOld != null) {
+            lPixels -= entryOld.lPixels;
+        }
+        lPixels += lEntryPixels;
+        evict();
+    }
+
+    @Override
+    public String toString() {
+        return "CachedStage(" + stage.toString() + "," + nMaxEntries + "," + lMaxPixels + "," + nSampleStride + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * CompiledSequence.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+/**
+ * CompiledSequence is a sequence of BufferedStage's for a fixed input spec.
+ * When it is constructed every stage's output spec is computed, and the
+ * intermediate images are assigned to reusable buffers by a BufferPlan and
+ * allocated. Pushing an image then runs each stage into its pre-assigned
+ * buffer, so no images are allocated per push and the working set is a few
+ * buffers rather than one image per stage.
+ * <p>
+ * Because buffers are reused, the image returned by getFront is overwritten
+ * by the next push. Callers that need to keep a result must copy it.
+ *
+ * @author webb
+ */
+public class CompiledSequence extends PipelineStage {
+    private final ImageSpec specInput;
+    private final BufferedStage[] rStages;
+    private final Image<?, ?>[] rOutputs;
+    private final int nBuffers;
+    
+    /**
+     * Creates a new instance of CompiledSequence.
+     *
+     * @param specInput
+     *            the spec of the images that will be pushed.
+     * @param rStages
+     *            the stages, in the order they are applied.
+     * @throws ImageError
+     *             if there are no stages, or if a stage cannot accept the
+     *             output of the stage before it.
+     */
+    public CompiledSequence(final ImageSpec specInput, final BufferedStage... rStages) throws ImageError {
+        if (rStages.length == 0) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.PIPELINE_EMPTY_PUSH, specInput.toString(), null, null);
+        }
+        this.specInput = specInput;
+        this.rStages = rStages.clone();
+        final BufferPlan plan = new BufferPlan();
+        ImageSpec spec = specInput;
+        for (int i = 0; i < rStages.length; i++) {
+            spec = rStages[i].getOutputSpec(spec);
+            final int nImage = plan.define(spec, i);
+            if (i > 0) {
+                plan.use(nImage - 1, i);
+            }
+        }
+        final Image<?, ?>[] rBuffers = plan.allocate();
+        nBuffers = rBuffers.length;
+        rOutputs = new Image<?, ?>[rStages.length];
+        for (int i = 0; i < rStages.length; i++) {
+            rOutputs[i] = rBuffers[plan.getBuffer(i)];
+        }
+    }
+    
+    /**
+     * Returns the number of image buffers the sequence allocated.
+     *
+     * @return the number of buffers.
+     */
+    public int getBufferCount() {
+        return nBuffers;
+    }
+    
+    /**
+     * Returns the spec of the images this sequence accepts.
+     *
+     * @return the input spec.
+     */
+    public ImageSpec getInputSpec() {
+        return specInput;
+    }
+    
+    /**
+     * Run the stages on an input image. Only the input image is checked; the
+     * stages were checked when the sequence was constructed.
+     *
+     * @param image
+     *            the input image.
+     * @throws ImageError
+     *             if the image does not match the input spec.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (!specInput.matches(image)) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, image.toString(), specInput.toString(), null);
+        }
+        Image<?, ?> imageIn = image;
+        for (int i = 0; i < rStages.length; i++) {
+            rStages[i].push(imageIn, rOutputs[i]);
+            imageIn = rOutputs[i];
+        }
+        super.setOutput(imageIn);
+    }
+    
+    /**
+     * Return a string describing the sequence.
+     *
+     * @return the string describing the sequence.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(specInput.toString());
+        for (final BufferedStage s : rStages) {
+            sb.append(" -> ").append(s.toString()); //$NON-NLS-1$
+        }
+        return sb.toString();
+    }
+}
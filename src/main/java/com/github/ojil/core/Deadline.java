@@ -0,0 +1,73 @@
+/*
+ * Deadline.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+/**
+ * Deadline tells a long-running stage when its work is no longer wanted. The
+ * stage polls isExpired between units of work, so isExpired must be cheap
+ * and safe to call from the thread running the stage while another thread
+ * causes it to expire.
+ *
+ * @author webb
+ */
+public abstract class Deadline {
+    /**
+     * A deadline that never expires.
+     */
+    public static final Deadline NEVER = new Deadline() {
+        @Override
+        public boolean isExpired() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "Deadline.NEVER"; //$NON-NLS-1$
+        }
+    };
+
+    /**
+     * Returns a deadline which expires a fixed time from now.
+     *
+     * @param lNanos
+     *            the time until the deadline expires, in nanoseconds.
+     * @return the deadline.
+     */
+    public static Deadline after(final long lNanos) {
+        final long lExpires = System.nanoTime() + lNanos;
+        return new Deadline() {
+            @Override
+            public boolean isExpired() {
+                return (System.nanoTime() - lExpires) >= 0;
+            }
+
+            @Override
+            public String toString() {
+                return "Deadline(" + (lExpires - System.nanoTime()) + "ns)"; //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        };
+    }
+
+    /**
+     * Returns true once the work is no longer wanted.
+     *
+     * @return true iff the deadline has expired.
+     */
+    public abstract boolean isExpired();
+}
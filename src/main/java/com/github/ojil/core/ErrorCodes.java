@@ -44,9 +44,25 @@ public class ErrorCodes {
      * pipeline empty when image is being pushed
      */
     public static final int PIPELINE_EMPTY_PUSH = ErrorCodes.NO_RESULT_AVAILABLE + 1;
+    /**
+     * pipeline node name is already in use
+     */
+    public static final int PIPELINE_NODE_DUPLICATE = ErrorCodes.PIPELINE_EMPTY_PUSH + 1;
+    /**
+     * pipeline node name does not refer to a node in the pipeline
+     */
+    public static final int PIPELINE_NODE_UNKNOWN = ErrorCodes.PIPELINE_NODE_DUPLICATE + 1;
+    /**
+     * pipeline execution was interrupted
+     */
+    public static final int PIPELINE_INTERRUPTED = ErrorCodes.PIPELINE_NODE_UNKNOWN + 1;
+    /**
+     * a stage gave up on its input because its deadline expired
+     */
+    public static final int PIPELINE_DEADLINE_EXPIRED = ErrorCodes.PIPELINE_INTERRUPTED + 1;
     
     /**
      * Count of error codes.
      */
-    public static final int COUNT = ErrorCodes.PIPELINE_EMPTY_PUSH + 1;
+    public static final int COUNT = ErrorCodes.PIPELINE_DEADLINE_EXPIRED + 1;
 }
@@ -0,0 +1,124 @@
+/*
+ * Flow.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+/**
+ * Flow declares the interfaces of demand-driven (reactive) streams used by
+ * StageProcessor. They have the same methods and the same rules as the
+ * interfaces in java.util.concurrent.Flow (and org.reactivestreams), which
+ * this library cannot use because it is built for Java 7. Bridging to the
+ * JDK interfaces takes one small adapter per interface, each method
+ * forwarding to the method of the same name.
+ * <p>
+ * In brief: a Publisher calls Subscriber.onSubscribe once, then onNext at
+ * most as many times as the subscriber has asked for with
+ * Subscription.request, then at most one of onError or onComplete. Calls to
+ * a subscriber are never made concurrently.
+ *
+ * @author webb
+ */
+public final class Flow {
+    /**
+     * A source of items, delivered to subscribers on demand.
+     *
+     * @param <T>
+     *            the item type.
+     */
+    public interface Publisher<T> {
+        /**
+         * Add a subscriber. The publisher calls onSubscribe on it, or onError
+         * if it cannot accept the subscriber.
+         *
+         * @param subscriber
+         *            the subscriber.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items.
+     *
+     * @param <T>
+     *            the item type.
+     */
+    public interface Subscriber<T> {
+        /**
+         * Called once, before any other method, with the subscription used to
+         * ask for items.
+         *
+         * @param subscription
+         *            the subscription.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with each item, never more often than requested.
+         *
+         * @param item
+         *            the item.
+         */
+        void onNext(T item);
+
+        /**
+         * Called once if the publisher fails. No more calls follow.
+         *
+         * @param throwable
+         *            the failure.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once when the publisher has no more items. No more calls
+         * follow.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between one publisher and one subscriber.
+     */
+    public interface Subscription {
+        /**
+         * Ask for up to n more items. Demand accumulates.
+         *
+         * @param n
+         *            the number of items, which must be positive.
+         */
+        void request(long n);
+
+        /**
+         * Stop delivering items. Items may still arrive for a short time.
+         */
+        void cancel();
+    }
+
+    /**
+     * A subscriber which is also a publisher of transformed items.
+     *
+     * @param <T>
+     *            the type of items received.
+     * @param <R>
+     *            the type of items published.
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+
+    private Flow() {
+    }
+}
@@ -163,6 +163,7 @@ public abstract class Image<T extends Number, PlatformImage extends Object> {
      */
     @Override
     public String toString() {
-        return super.toString() + ":[" + imageType + "," + imageData.getClass().getSimpleName() + "," + platformImage.getClass().getName() + ",(" + getWidth() + "x" + getHeight() + ")]";
+        return super.toString() + ":[" + imageType + "," + ((imageData == null) ? null : imageData.getClass().getSimpleName()) + "," + ((platformImage == null) ? null : platformImage.getClass().getName()) + ",("
+                + getWidth() + "x" + getHeight() + ")]";
     }
 }
@@ -0,0 +1,162 @@
+/*
+ * ImageSpec.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+/**
+ * ImageSpec describes the shape of an image -- its class and dimensions --
+ * without holding any image data. It is used to describe the images passing
+ * between stages of a pipeline before any image has been pushed, so a
+ * pipeline can be checked and its buffers allocated ahead of time.
+ *
+ * @author webb
+ */
+public final class ImageSpec {
+    private final Class<?> imageClass;
+    private final int nWidth;
+    private final int nHeight;
+    
+    /**
+     * Creates a new instance of ImageSpec.
+     *
+     * @param imageClass
+     *            the image class, for example Gray8Image.class.
+     * @param nWidth
+     *            the image width.
+     * @param nHeight
+     *            the image height.
+     */
+    public ImageSpec(final Class<?> imageClass, final int nWidth, final int nHeight) {
+        this.imageClass = imageClass;
+        this.nWidth = nWidth;
+        this.nHeight = nHeight;
+    }
+    
+    /**
+     * Returns the ImageSpec describing an existing image.
+     *
+     * @param image
+     *            the image.
+     * @return the image's ImageSpec.
+     */
+    public static ImageSpec of(final Image<?, ?> image) {
+        return new ImageSpec(image.getClass(), image.getWidth(), image.getHeight());
+    }
+    
+    /**
+     * Returns true iff images with this spec are of the given class (or a
+     * subclass of it).
+     *
+     * @param c
+     *            the class to test, for example Gray8Image.class.
+     * @return true iff this spec's images can be used as instances of c.
+     */
+    public boolean is(final Class<?> c) {
+        return c.isAssignableFrom(imageClass);
+    }
+    
+    /**
+     * Returns true iff an image matches this spec, i.e., it is an instance of
+     * the spec's class and has the same dimensions.
+     *
+     * @param image
+     *            the image to test.
+     * @return true iff the image matches.
+     */
+    public boolean matches(final Image<?, ?> image) {
+        return imageClass.isInstance(image) && (image.getWidth() == nWidth) && (image.getHeight() == nHeight);
+    }
+    
+    /**
+     * Allocate a new image with this spec.
+     *
+     * @return a new image, of the spec's class and size.
+     * @throws ImageError
+     *             if the spec's class cannot be allocated here (it is not one
+     *             of the basic image types).
+     */
+    public Image<?, ?> createImage() throws ImageError {
+        if (imageClass == Gray8Image.class) {
+            return new Gray8Image<>(nWidth, nHeight);
+        }
+        if (imageClass == Gray16Image.class) {
+            return new Gray16Image<>(nWidth, nHeight);
+        }
+        if (imageClass == Gray32Image.class) {
+            return new Gray32Image<>(nWidth, nHeight);
+        }
+        if (imageClass == RgbImage.class) {
+            return new RgbImage<>(nWidth, nHeight);
+        }
+        if (imageClass == Complex32Image.class) {
+            return new Complex32Image<>(nWidth, nHeight);
+        }
+        throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, toString(), null, null);
+    }
+    
+    /**
+     * Returns the image class.
+     *
+     * @return the image class.
+     */
+    public Class<?> getImageClass() {
+        return imageClass;
+    }
+    
+    /**
+     * Returns the image width.
+     *
+     * @return the image width (columns).
+     */
+    public int getWidth() {
+        return nWidth;
+    }
+    
+    /**
+     * Returns the image height.
+     *
+     * @return the image height (rows).
+     */
+    public int getHeight() {
+        return nHeight;
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof ImageSpec)) {
+            return false;
+        }
+        final ImageSpec spec = (ImageSpec) o;
+        return (spec.imageClass == imageClass) && (spec.nWidth == nWidth) && (spec.nHeight == nHeight);
+    }
+    
+    @Override
+    public int hashCode() {
+        return (((imageClass.hashCode() * 31) + nWidth) * 31) + nHeight;
+    }
+    
+    /**
+     * Return a string describing the spec.
+     *
+     * @return the string.
+     */
+    @Override
+    public String toString() {
+        return imageClass.getSimpleName() + "(" + nWidth + "x" + nHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
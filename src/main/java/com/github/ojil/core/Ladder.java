@@ -27,6 +27,10 @@ package com.github.ojil.core;
 /**
  * Ladder manages two pipelines. An image is passed to both. The output of each
  * pipeline is passed to a merge function.
+ * <p>
+ * The pushes into both pipelines are reported to the installed
+ * PipelineListener and the enabled StageTimeTracker, if any; the join is
+ * also recorded in the StageTimeTracker.
  *
  * @author webb
  */
@@ -92,15 +96,24 @@ public class Ladder extends PipelineStage {
      */
     @Override
     public void push(final Image<?, ?> image) throws ImageError {
+        final StageTimeTracker tracker = StageTimeTracker.getEnabled();
         final Image<?, ?> imageCopy = (Image<?, ?>) image.clone();
-        pipeFirst.push(image);
-        pipeSecond.push(imageCopy);
+        PipelineEvents.push(pipeFirst, image);
+        PipelineEvents.push(pipeSecond, imageCopy);
         if (pipeFirst.isEmpty()) {
             throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, pipeFirst.toString(), null, null);
         }
         if (pipeSecond.isEmpty()) {
             throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, pipeSecond.toString(), null, null);
         }
-        super.setOutput(join.doJoin(pipeFirst.getFront(), pipeSecond.getFront()));
+        if (tracker == null) {
+            super.setOutput(join.doJoin(pipeFirst.getFront(), pipeSecond.getFront()));
+        } else {
+            final long lBytes = tracker.currentAllocation();
+            final long lStart = System.nanoTime();
+            super.setOutput(join.doJoin(pipeFirst.getFront(), pipeSecond.getFront()));
+            final long lEnd = System.nanoTime();
+            tracker.record(StageTimeTracker.getName(join), lEnd - lStart, tracker.currentAllocation() - lBytes);
+        }
     }
 }
@@ -0,0 +1,222 @@
+/*
+ * LivePipeline.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+/**
+ * LivePipeline runs frames from a live source, such as a camera, through a
+ * pipeline which may not keep up with it. There is a single-slot mailbox in
+ * front of the pipeline: the source offers each frame as it arrives, and a
+ * frame that has not been started by the time the next one arrives is
+ * replaced by it and counted as dropped. So the pipeline always works on the
+ * latest frame, and the delay from a frame's arrival to its result is at most
+ * about two frame processing times, however far the pipeline falls behind.
+ * <p>
+ * Long-running stages can also give up on a frame as soon as a newer one is
+ * waiting. Pass getNewerFrameDeadline() to such a stage (for example,
+ * Gray8DetectHaarMultiScale.setDeadline); when the stage throws an ImageError
+ * with code ErrorCodes.PIPELINE_DEADLINE_EXPIRED, process counts the frame as
+ * aborted and starts on the newer one. This gives the freshest results when
+ * the source is only sometimes faster than the pipeline; if frames always
+ * arrive faster than a stage can finish one, every frame is aborted, so
+ * leave the deadline unset there.
+ * <p>
+ * offer may be called from any thread. process must be called from one
+ * thread at a time, since the pipeline is not thread-safe.
+ *
+ * @author webb
+ */
+public class LivePipeline {
+    private final PipelineStage pipeline;
+    private Image<?, ?> imagePending = null;
+    private long lPendingArrival;
+    private volatile boolean bNewer = false;
+    private long nOffered = 0;
+    private long nDropped = 0;
+    private long nAborted = 0;
+    private long nCompleted = 0;
+    private long lLastLatency = 0;
+    private long lMaxLatency = 0;
+    private final Deadline deadlineNewer = new Deadline() {
+        @Override
+        public boolean isExpired() {
+            return bNewer;
+        }
+
+        @Override
+        public String toString() {
+            return LivePipeline.this.toString() + ".getNewerFrameDeadline()"; //$NON-NLS-1$
+        }
+    };
+
+    /**
+     * Creates a new LivePipeline.
+     *
+     * @param pipeline
+     *            the stage (or Sequence) each frame is pushed through. It must
+     *            produce one output for each input.
+     */
+    public LivePipeline(final PipelineStage pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Returns the number of frames abandoned by a stage because a newer frame
+     * arrived while they were being processed.
+     *
+     * @return the number of aborted frames.
+     */
+    public synchronized long getAbortedCount() {
+        return nAborted;
+    }
+
+    /**
+     * Returns the number of frames processed to a result.
+     *
+     * @return the number of completed frames.
+     */
+    public synchronized long getCompletedCount() {
+        return nCompleted;
+    }
+
+    /**
+     * Returns the number of frames replaced in the mailbox by a newer frame
+     * before processing started on them.
+     *
+     * @return the number of dropped frames.
+     */
+    public synchronized long getDroppedCount() {
+        return nDropped;
+    }
+
+    /**
+     * Returns the time from arrival to result of the last completed frame.
+     *
+     * @return the latency, in nanoseconds.
+     */
+    public synchronized long getLastLatency() {
+        return lLastLatency;
+    }
+
+    /**
+     * Returns the longest time from arrival to result of any completed frame.
+     *
+     * @return the latency, in nanoseconds.
+     */
+    public synchronized long getMaxLatency() {
+        return lMaxLatency;
+    }
+
+    /**
+     * Returns a deadline which expires whenever a frame newer than the one
+     * being processed is waiting in the mailbox.
+     *
+     * @return the deadline.
+     */
+    public Deadline getNewerFrameDeadline() {
+        return deadlineNewer;
+    }
+
+    /**
+     * Returns the number of frames offered.
+     *
+     * @return the number of frames offered.
+     */
+    public synchronized long getOfferedCount() {
+        return nOffered;
+    }
+
+    /**
+     * Returns the pipeline the frames are pushed through.
+     *
+     * @return the pipeline.
+     */
+    public PipelineStage getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Offer a new frame. It replaces any frame still waiting in the mailbox.
+     * This never blocks.
+     *
+     * @param image
+     *            the new frame.
+     */
+    public synchronized void offer(final Image<?, ?> image) {
+        nOffered++;
+        if (imagePending != null) {
+            nDropped++;
+        }
+        imagePending = image;
+        lPendingArrival = System.nanoTime();
+        bNewer = true;
+        notifyAll();
+    }
+
+    /**
+     * Wait for a frame, push it through the pipeline, and return the result.
+     * If a stage abandons the frame because a newer one has arrived, the
+     * newer frame is processed instead.
+     *
+     * @return the pipeline's output for the latest frame.
+     * @throws ImageError
+     *             if the pipeline throws any error other than an expired
+     *             deadline.
+     * @throws InterruptedException
+     *             if interrupted while waiting for a frame.
+     */
+    public Image<?, ?> process() throws ImageError, InterruptedException {
+        while (true) {
+            final Image<?, ?> image;
+            final long lArrival;
+            synchronized (this) {
+                while (imagePending == null) {
+                    wait();
+                }
+                image = imagePending;
+                lArrival = lPendingArrival;
+                imagePending = null;
+                bNewer = false;
+            }
+            try {
+                pipeline.push(image);
+            } catch (final ImageError e) {
+                if ((e.getPackage() == ImageError.PACKAGE.CORE) && (e.getCode() == ErrorCodes.PIPELINE_DEADLINE_EXPIRED)) {
+                    synchronized (this) {
+                        nAborted++;
+                    }
+                    continue;
+                }
+                throw e;
+            }
+            final Image<?, ?> imageResult = pipeline.getFront();
+            final long lLatency = System.nanoTime() - lArrival;
+            synchronized (this) {
+                nCompleted++;
+                lLastLatency = lLatency;
+                lMaxLatency = Math.max(lMaxLatency, lLatency);
+            }
+            return imageResult;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LivePipeline(" + pipeline.toString() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
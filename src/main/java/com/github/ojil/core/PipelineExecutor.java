@@ -0,0 +1,243 @@
+/*
+ * PipelineExecutor.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * PipelineExecutor runs many independent requests through copies of the same
+ * pipeline concurrently. Each request runs as its own task, by default on a
+ * virtual thread when the Java runtime supports them (Java 21 and later) and on
+ * a pooled platform thread otherwise, so a large number of requests can be in
+ * flight at once.
+ * <p>
+ * Pipeline stages keep per-image state, so a pipeline instance can only serve
+ * one request at a time. The executor keeps a pool of idle pipelines, created
+ * on demand by a Factory, and lends one to each request for the duration of
+ * its push. A pipeline is returned to the pool only if its push succeeded and
+ * the request was not cancelled; any further outputs it produced are
+ * discarded first. The pushes themselves are CPU-bound, so at most a fixed number of
+ * them (by default, the number of processors) run at once; requests wait for
+ * a permit only after their input has been obtained. Reading the input -- for
+ * example through ImageIo -- happens outside the permit, so requests that are
+ * blocked on I/O do not hold up processing of other requests.
+ *
+ * @author webb
+ */
+public class PipelineExecutor {
+    /**
+     * Factory creates new, independent pipeline instances for the executor.
+     */
+    public interface Factory {
+        /**
+         * Create a new pipeline. Each call must return an instance that shares
+         * no mutable state with the instances returned by other calls.
+         *
+         * @return the new pipeline.
+         * @throws ImageError
+         *             if the pipeline cannot be constructed.
+         */
+        PipelineStage create() throws ImageError;
+    }
+    
+    /**
+     * Carries an ImageError, which is not an Exception, out of
+     * Callable.call.
+     */
+    private static class ImageErrorCarrier extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        ImageErrorCarrier(final ImageError e) {
+            super(e);
+        }
+    }
+    
+    /**
+     * Request runs through FutureTask's own run, so cancel(true) interrupts it,
+     * and only unwraps an ImageError so that it becomes the cause of the
+     * ExecutionException.
+     */
+    private static class Request extends FutureTask<Image<?, ?>> {
+        Request(final Callable<Image<?, ?>> callable) {
+            super(callable);
+        }
+        
+        @Override
+        protected void setException(final Throwable t) {
+            super.setException(t instanceof ImageErrorCarrier ? t.getCause() : t);
+        }
+    }
+    
+    private final Factory factory;
+    private final ExecutorService executor;
+    private final Semaphore semCompute;
+    private final ConcurrentLinkedQueue<PipelineStage> qIdle = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Creates a new PipelineExecutor which runs requests on virtual threads if
+     * available, with at most one push per processor running at once.
+     *
+     * @param factory
+     *            creates the pipeline instances.
+     */
+    public PipelineExecutor(final Factory factory) {
+        this(factory, PipelineExecutor.createDefaultExecutor(), Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Creates a new PipelineExecutor which runs requests on the given
+     * executor.
+     *
+     * @param factory
+     *            creates the pipeline instances.
+     * @param executor
+     *            the executor that runs each request.
+     * @param nMaxCompute
+     *            the largest number of pushes that may run at once.
+     */
+    public PipelineExecutor(final Factory factory, final ExecutorService executor, final int nMaxCompute) {
+        this.factory = factory;
+        this.executor = executor;
+        semCompute = new Semaphore(Math.max(1, nMaxCompute), true);
+    }
+    
+    /**
+     * Returns an executor that starts a virtual thread per task if the Java
+     * runtime supports virtual threads, and otherwise one that reuses platform
+     * threads. Virtual threads are looked up reflectively so this library can
+     * still be compiled and run on older runtimes.
+     *
+     * @return the executor.
+     */
+    public static ExecutorService createDefaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null); //$NON-NLS-1$
+        } catch (final ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+    
+    private Image<?, ?> process(final Image<?, ?> image) throws ImageError, InterruptedException {
+        semCompute.acquire();
+        try {
+            PipelineStage pipeline = qIdle.poll();
+            if (pipeline == null) {
+                pipeline = factory.create();
+            }
+            pipeline.push(image);
+            // many stages reuse their output image on the next push, so the
+            // result must be copied before the pipeline is lent out again
+            final Image<?, ?> imageResult = (Image<?, ?>) pipeline.getFront().clone();
+            // outputs beyond the first would be returned by the next request
+            while (!pipeline.isEmpty()) {
+                pipeline.getFront();
+            }
+            // a pipeline whose push threw, or whose request was cancelled, may
+            // be left part way through an image; it is dropped rather than
+            // lent out again, and the factory makes a new one when needed
+            if (!Thread.currentThread().isInterrupted()) {
+                qIdle.offer(pipeline);
+            }
+            return imageResult;
+        } finally {
+            semCompute.release();
+        }
+    }
+    
+    /**
+     * Submit an image to be processed.
+     *
+     * @param image
+     *            the input image.
+     * @return a Future that yields a copy of the pipeline output, which is not
+     *         affected by later requests. If the pipeline fails, Future.get
+     *         throws an ExecutionException whose cause is the ImageError.
+     */
+    public Future<Image<?, ?>> submit(final Image<?, ?> image) {
+        return submit(new Callable<Image<?, ?>>() {
+            @Override
+            public Image<?, ?> call() {
+                return image;
+            }
+        });
+    }
+    
+    /**
+     * Submit a request whose input is obtained by calling source. The source
+     * is called on the request's thread before a processing permit is taken,
+     * so it may block on I/O.
+     *
+     * @param source
+     *            supplies the input image.
+     * @return a Future that yields the pipeline output.
+     */
+    public Future<Image<?, ?>> submit(final Callable<Image<?, ?>> source) {
+        final Request r = new Request(new Callable<Image<?, ?>>() {
+            @Override
+            public Image<?, ?> call() throws Exception {
+                try {
+                    return process(source.call());
+                } catch (final ImageError e) {
+                    throw new ImageErrorCarrier(e);
+                }
+            }
+        });
+        executor.execute(r);
+        return r;
+    }
+    
+    /**
+     * Submit a request which reads its input from a file using the platform's
+     * ImageIo.
+     *
+     * @param szPath
+     *            the file to read.
+     * @return a Future that yields the pipeline output.
+     */
+    public Future<Image<?, ?>> submitFile(final String szPath) {
+        return submit(new Callable<Image<?, ?>>() {
+            @Override
+            public Image<?, ?> call() {
+                return ImageFactoryService.getIoFactory().createIo().readFile(szPath);
+            }
+        });
+    }
+    
+    /**
+     * Returns the number of pipeline instances currently idle in the pool.
+     *
+     * @return the number of idle pipelines.
+     */
+    public int getIdleCount() {
+        return qIdle.size();
+    }
+    
+    /**
+     * Stop accepting requests. Requests already submitted are completed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
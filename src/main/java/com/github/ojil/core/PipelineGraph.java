@@ -0,0 +1,445 @@
+/*
+ * PipelineGraph.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * PipelineGraph connects pipeline stages in a directed acyclic graph. Each node
+ * has a unique name and takes its input from one or more previously defined
+ * nodes; the image pushed into the graph is available as the node named
+ * {@link #INPUT}. A node's output is computed once and handed to every node
+ * that consumes it, without copying, so stages that modify their input in
+ * place should be added with a private copy of their input (see
+ * {@link #addStage(String, PipelineStage, String, boolean)}).
+ * <p>
+ * Nodes can only refer to nodes that already exist, so the graph is acyclic by
+ * construction. When the graph is pushed, nodes are run level by level: a
+ * node's level is one more than the deepest of its inputs, so all nodes on a
+ * level are independent of each other. If an ExecutorService has been
+ * assigned the nodes on each level are run in parallel on it, otherwise they
+ * are run in turn on the calling thread.
+ * <p>
+ * Ordinary PipelineStage objects (including Sequence and Ladder) can be used
+ * as single-input nodes, and Ladder.Join objects as two-input nodes. After a
+ * push the output of any node can be retrieved with getResult; getFront
+ * returns the output of the node chosen with setResult, or of the most
+ * recently added node if none was chosen.
+ *
+ * @author webb
+ */
+public class PipelineGraph extends PipelineStage {
+    /**
+     * The Merge interface combines any number of images into one. It
+     * generalizes Ladder.Join to nodes with more than two inputs.
+     */
+    public interface Merge {
+        /**
+         * Combine the images and produce an image as output.
+         *
+         * @param rImages
+         *            the input images, in the order the inputs were named when
+         *            the node was added.
+         * @return the combined image
+         * @throws ImageError
+         *             typically, when the images are not the expected type or
+         *             are of other than the required size.
+         */
+        Image<?, ?> doMerge(Image<?, ?>[] rImages) throws ImageError;
+    }
+    
+    /**
+     * Name of the node holding the image pushed into the graph.
+     */
+    public static final String INPUT = "input"; //$NON-NLS-1$
+    
+    private abstract static class Node {
+        final String szName;
+        final Node[] rInputs;
+        final int nLevel;
+        Image<?, ?> imageResult;
+        
+        Node(final String szName, final Node[] rInputs) {
+            this.szName = szName;
+            this.rInputs = rInputs;
+            int nMax = -1;
+            for (final Node n : rInputs) {
+                nMax = Math.max(nMax, n.nLevel);
+            }
+            nLevel = nMax + 1;
+        }
+        
+        abstract void run() throws ImageError;
+        
+        @Override
+        public String toString() {
+            return szName;
+        }
+    }
+    
+    private static class InputNode extends Node {
+        InputNode() {
+            super(PipelineGraph.INPUT, new Node[0]);
+        }
+        
+        @Override
+        void run() {
+        }
+    }
+    
+    private static class StageNode extends Node {
+        private final PipelineStage stage;
+        private final boolean bCopy;
+        
+        StageNode(final String szName, final PipelineStage stage, final Node input, final boolean bCopy) {
+            super(szName, new Node[] { input });
+            this.stage = stage;
+            this.bCopy = bCopy;
+        }
+        
+        @Override
+        void run() throws ImageError {
+            final Image<?, ?> imageIn = rInputs[0].imageResult;
+            stage.push(bCopy ? (Image<?, ?>) imageIn.clone() : imageIn);
+            if (stage.isEmpty()) {
+                throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, stage.toString(), szName, null);
+            }
+            imageResult = stage.getFront();
+        }
+        
+        @Override
+        public String toString() {
+            return szName + "=" + stage.toString(); //$NON-NLS-1$
+        }
+    }
+    
+    private static class JoinNode extends Node {
+        private final Ladder.Join join;
+        
+        JoinNode(final String szName, final Ladder.Join join, final Node first, final Node second) {
+            super(szName, new Node[] { first, second });
+            this.join = join;
+        }
+        
+        @Override
+        void run() throws ImageError {
+            imageResult = join.doJoin(rInputs[0].imageResult, rInputs[1].imageResult);
+        }
+    }
+    
+    private static class MergeNode extends Node {
+        private final Merge merge;
+        
+        MergeNode(final String szName, final Merge merge, final Node[] rInputs) {
+            super(szName, rInputs);
+            this.merge = merge;
+        }
+        
+        @Override
+        void run() throws ImageError {
+            final Image<?, ?>[] rImages = new Image<?, ?>[rInputs.length];
+            for (int i = 0; i < rInputs.length; i++) {
+                rImages[i] = rInputs[i].imageResult;
+            }
+            imageResult = merge.doMerge(rImages);
+        }
+    }
+    
+    private final Map<String, Node> mapNodes = new HashMap<>();
+    /**
+     * Nodes grouped by level. Level 0 holds only the input node.
+     */
+    private final List<List<Node>> rLevels = new ArrayList<>();
+    private Node nodeResult = null;
+    private ExecutorService executor = null;
+    
+    /**
+     * Creates a new, empty PipelineGraph. Nodes run on the calling thread.
+     */
+    public PipelineGraph() {
+        addNode(new InputNode());
+    }
+    
+    /**
+     * Creates a new, empty PipelineGraph whose independent nodes run in
+     * parallel on the given executor.
+     *
+     * @param executor
+     *            the executor to run nodes on, or null to run them on the
+     *            calling thread.
+     */
+    public PipelineGraph(final ExecutorService executor) {
+        this();
+        this.executor = executor;
+    }
+    
+    private void addNode(final Node n) {
+        mapNodes.put(n.szName, n);
+        while (rLevels.size() <= n.nLevel) {
+            rLevels.add(new ArrayList<Node>());
+        }
+        rLevels.get(n.nLevel).add(n);
+        if (n.nLevel > 0) {
+            nodeResult = n;
+        }
+    }
+    
+    private void checkNew(final String szName) throws ImageError {
+        if (mapNodes.containsKey(szName)) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.PIPELINE_NODE_DUPLICATE, szName, toString(), null);
+        }
+    }
+    
+    private Node lookup(final String szName) throws ImageError {
+        final Node n = mapNodes.get(szName);
+        if (n == null) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.PIPELINE_NODE_UNKNOWN, szName, toString(), null);
+        }
+        return n;
+    }
+    
+    /**
+     * Add a node which applies a pipeline stage to the output of another node.
+     * The input image is shared with any other consumers of the same node.
+     *
+     * @param szName
+     *            the name of the new node.
+     * @param stage
+     *            the stage to apply.
+     * @param szInput
+     *            the name of the node supplying the input.
+     * @throws ImageError
+     *             if szName is already in use or szInput is unknown.
+     */
+    public void addStage(final String szName, final PipelineStage stage, final String szInput) throws ImageError {
+        addStage(szName, stage, szInput, false);
+    }
+    
+    /**
+     * Add a node which applies a pipeline stage to the output of another node.
+     *
+     * @param szName
+     *            the name of the new node.
+     * @param stage
+     *            the stage to apply.
+     * @param szInput
+     *            the name of the node supplying the input.
+     * @param bCopy
+     *            if true the stage is given its own copy of the input image.
+     *            This is necessary when the stage modifies its input in place
+     *            and the input is consumed by other nodes.
+     * @throws ImageError
+     *             if szName is already in use or szInput is unknown.
+     */
+    public void addStage(final String szName, final PipelineStage stage, final String szInput, final boolean bCopy) throws ImageError {
+        checkNew(szName);
+        addNode(new StageNode(szName, stage, lookup(szInput), bCopy));
+    }
+    
+    /**
+     * Add a node which combines the outputs of two other nodes.
+     *
+     * @param szName
+     *            the name of the new node.
+     * @param join
+     *            the join operation.
+     * @param szFirst
+     *            the name of the node supplying the first image.
+     * @param szSecond
+     *            the name of the node supplying the second image.
+     * @throws ImageError
+     *             if szName is already in use or an input is unknown.
+     */
+    public void addJoin(final String szName, final Ladder.Join join, final String szFirst, final String szSecond) throws ImageError {
+        checkNew(szName);
+        addNode(new JoinNode(szName, join, lookup(szFirst), lookup(szSecond)));
+    }
+    
+    /**
+     * Add a node which combines the outputs of any number of other nodes.
+     *
+     * @param szName
+     *            the name of the new node.
+     * @param merge
+     *            the merge operation.
+     * @param rszInputs
+     *            the names of the nodes supplying the inputs.
+     * @throws ImageError
+     *             if szName is already in use or an input is unknown.
+     */
+    public void addMerge(final String szName, final Merge merge, final String... rszInputs) throws ImageError {
+        checkNew(szName);
+        final Node[] rInputs = new Node[rszInputs.length];
+        for (int i = 0; i < rszInputs.length; i++) {
+            rInputs[i] = lookup(rszInputs[i]);
+        }
+        addNode(new MergeNode(szName, merge, rInputs));
+    }
+    
+    /**
+     * Choose the node whose output is returned by getFront.
+     *
+     * @param szName
+     *            the node name.
+     * @throws ImageError
+     *             if szName is unknown.
+     */
+    public void setResult(final String szName) throws ImageError {
+        nodeResult = lookup(szName);
+    }
+    
+    /**
+     * Returns the output of a node from the most recent push. The output stays
+     * available until the next push.
+     *
+     * @param szName
+     *            the node name.
+     * @return the node's output image.
+     * @throws ImageError
+     *             if szName is unknown or the node has no output.
+     */
+    public Image<?, ?> getResult(final String szName) throws ImageError {
+        final Node n = lookup(szName);
+        if (n.imageResult == null) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, szName, toString(), null);
+        }
+        return n.imageResult;
+    }
+    
+    /**
+     * Assign the executor used to run independent nodes in parallel.
+     *
+     * @param executor
+     *            the executor, or null to run nodes on the calling thread.
+     */
+    public void setExecutor(final ExecutorService executor) {
+        this.executor = executor;
+    }
+    
+    /**
+     * Run every node in the graph on the input image, level by level.
+     *
+     * @param image
+     *            the input image.
+     * @throws ImageError
+     *             if the graph has no nodes other than its input, or if any
+     *             node fails. If the calling thread is interrupted while a
+     *             level runs in parallel, push still waits for the level to
+     *             finish, then sets the interrupt flag again and throws with
+     *             code ErrorCodes.PIPELINE_INTERRUPTED.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        if (rLevels.size() < 2) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.PIPELINE_EMPTY_PUSH, toString(), null, null);
+        }
+        for (final Node n : mapNodes.values()) {
+            n.imageResult = null;
+        }
+        mapNodes.get(PipelineGraph.INPUT).imageResult = image;
+        for (int nLevel = 1; nLevel < rLevels.size(); nLevel++) {
+            final List<Node> rNodes = rLevels.get(nLevel);
+            if ((executor == null) || (rNodes.size() == 1)) {
+                for (final Node n : rNodes) {
+                    n.run();
+                }
+            } else {
+                runParallel(rNodes);
+            }
+        }
+        super.setOutput(nodeResult.imageResult);
+    }
+    
+    private void runParallel(final List<Node> rNodes) throws ImageError {
+        final List<Future<ImageError>> rFutures = new ArrayList<>(rNodes.size());
+        for (final Node n : rNodes) {
+            rFutures.add(executor.submit(new Callable<ImageError>() {
+                @Override
+                public ImageError call() {
+                    try {
+                        n.run();
+                        return null;
+                    } catch (final ImageError e) {
+                        return e;
+                    }
+                }
+            }));
+        }
+        // wait for every node on the level before reporting the first error so
+        // no node is still running when push returns. An interrupt does not
+        // stop the wait; it is reported once the whole level has finished.
+        boolean bInterrupted = false;
+        Throwable errFirst = null;
+        for (int i = 0; i < rFutures.size(); i++) {
+            Throwable err = null;
+            boolean bDone = false;
+            while (!bDone) {
+                try {
+                    err = rFutures.get(i).get();
+                    bDone = true;
+                } catch (final InterruptedException e) {
+                    bInterrupted = true;
+                } catch (final ExecutionException e) {
+                    err = e.getCause();
+                    bDone = true;
+                }
+            }
+            if (errFirst == null) {
+                errFirst = err;
+            }
+        }
+        if (bInterrupted) {
+            Thread.currentThread().interrupt();
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.PIPELINE_INTERRUPTED, toString(), null, null);
+        }
+        if (errFirst instanceof ImageError) {
+            throw (ImageError) errFirst;
+        }
+        if (errFirst instanceof RuntimeException) {
+            throw (RuntimeException) errFirst;
+        }
+        if (errFirst instanceof Error) {
+            throw (Error) errFirst;
+        }
+    }
+    
+    /**
+     * Return a string describing the graph, listing the nodes level by level.
+     *
+     * @return the string describing the graph.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("{"); //$NON-NLS-1$
+        for (int nLevel = 1; nLevel < rLevels.size(); nLevel++) {
+            if (nLevel > 1) {
+                sb.append("; "); //$NON-NLS-1$
+            }
+            sb.append(rLevels.get(nLevel).toString());
+        }
+        return sb.append("}").toString(); //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * PipelineListener.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+/**
+ * PipelineListener receives an event for each expensive operation the library
+ * performs, with the time it took. It is installed with
+ * PipelineEvents.setListener.
+ * <p>
+ * The listener is called on the thread that performed the operation, after the
+ * operation has finished, so it must be thread-safe and should return quickly.
+ * A typical listener forwards each event to a profiler. For example, on a Java
+ * runtime with Flight Recorder an application can define jdk.jfr.Event
+ * subclasses with the fields of each method below and commit one per call, so
+ * stage pushes show up in continuous recordings alongside GC pauses and CPU
+ * load. The library itself does not depend on Flight Recorder, so it still
+ * runs where Flight Recorder is not available.
+ *
+ * @author webb
+ */
+public interface PipelineListener {
+    /**
+     * Called when a BufferPlan assigns an intermediate image to a buffer.
+     *
+     * @param spec
+     *            the spec of the image.
+     * @param bHit
+     *            true if the image reuses a buffer already assigned to an
+     *            earlier image, false if a new buffer is allocated for it.
+     */
+    void bufferAssigned(ImageSpec spec, boolean bHit);
+
+    /**
+     * Called when a two-dimensional FFT or inverse FFT has been computed.
+     *
+     * @param nWidth
+     *            the width of the transform.
+     * @param nHeight
+     *            the height of the transform.
+     * @param bInverse
+     *            true for an inverse transform.
+     * @param lNanos
+     *            the time the transform took, in nanoseconds.
+     */
+    void fftTransformed(int nWidth, int nHeight, boolean bInverse, long lNanos);
+
+    /**
+     * Called when a Haar cascade has been applied at one scale of a
+     * multi-scale detection.
+     *
+     * @param nScale
+     *            the factor the image was reduced by.
+     * @param nWidth
+     *            the width of the reduced image.
+     * @param nHeight
+     *            the height of the reduced image.
+     * @param nWindows
+     *            the number of windows the cascade was evaluated on.
+     * @param lNanos
+     *            the time the pass took, in nanoseconds.
+     */
+    void haarScalePassed(int nScale, int nWidth, int nHeight, int nWindows, long lNanos);
+
+    /**
+     * Called when an image has been pushed into a stage of a Sequence or
+     * Ladder and the stage has returned.
+     *
+     * @param stage
+     *            the stage.
+     * @param image
+     *            the image that was pushed.
+     * @param lNanos
+     *            the time the push took, in nanoseconds.
+     */
+    void stagePushed(PipelineStage stage, Image<?, ?> image, long lNanos);
+}
@@ -24,20 +24,24 @@
 
 package com.github.ojil.core;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Sequence is used to construct a sequence of image processing pipeline stages.
  *
- * Each Sequence object contains a PipelineStage, which can be null, and a
- * Sequence object, which can also be null. The PipelineStage is the head of the
- * list of PipelineStage's starting here, and the Sequence object is the rest of
- * the list. The Sequence object can be non-null only if the PipelineStage
- * object is non-null.
+ * The stages are held in a list and the output of each stage is passed to the
+ * next, in the order they were added. Images are passed along iteratively so
+ * arbitrarily long sequences can be built without deep recursion. For
+ * pipelines that branch, see PipelineGraph.
+ * <p>
+ * Each stage's push is reported to the installed PipelineListener and the
+ * enabled StageTimeTracker, if any.
  * 
  * @author webb
  */
 public class Sequence extends PipelineStage {
-    private PipelineStage pFirst;
-    private Sequence pNext;
+    private final List<PipelineStage> rStages = new ArrayList<>();
     
     /** Creates a new instance of Sequence with no pipeline. */
     public Sequence() {
@@ -47,28 +51,24 @@ public class Sequence extends PipelineStage {
      * Creates a new instance of Sequence with a single PipelineStage.
      *
      * @param p
-     *            the PipelineStage.
+     *            the PipelineStage. If null, the Sequence is empty.
      */
     public Sequence(final PipelineStage p) {
-        pFirst = p;
+        add(p);
     }
     
     /**
      * add an additional PipelineStage at the end of the current Sequence.
      *
      * @param p
-     *            the PipelineStage to be added.
+     *            the PipelineStage to be added. A null stage added to an
+     *            empty Sequence is ignored, so the Sequence stays empty.
      */
     public void add(final PipelineStage p) {
-        if (pFirst == null) {
-            pFirst = p;
-        } else {
-            if (pNext == null) {
-                pNext = new Sequence(p);
-            } else {
-                pNext.add(p);
-            }
+        if ((p == null) && rStages.isEmpty()) {
+            return;
         }
+        rStages.add(p);
     }
     
     /**
@@ -78,11 +78,10 @@ public class Sequence extends PipelineStage {
      */
     @Override
     public boolean isEmpty() {
-        if (pNext == null) {
-            return pFirst.isEmpty();
-        } else {
-            return pNext.isEmpty();
+        if (rStages.isEmpty()) {
+            return true;
         }
+        return getLast().isEmpty();
     }
     
     /**
@@ -95,11 +94,14 @@ public class Sequence extends PipelineStage {
      */
     @Override
     public Image<?, ?> getFront() throws ImageError {
-        if (pNext == null) {
-            return pFirst.getFront();
-        } else {
-            return pNext.getFront();
+        if (rStages.isEmpty()) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, toString(), null, null);
         }
+        return getLast().getFront();
+    }
+    
+    private PipelineStage getLast() {
+        return rStages.get(rStages.size() - 1);
     }
     
     /**
@@ -115,15 +117,23 @@ public class Sequence extends PipelineStage {
      */
     @Override
     public void push(final Image<?, ?> i) throws ImageError {
-        if (pFirst == null) {
+        if (rStages.isEmpty()) {
             throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.PIPELINE_EMPTY_PUSH, toString(), null, null);
         }
-        pFirst.push(i);
-        if (pFirst.isEmpty()) {
-            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, pFirst.toString(), null, null);
+        Image<?, ?> image = i;
+        final int nLast = rStages.size() - 1;
+        for (int n = 0; n < nLast; n++) {
+            final PipelineStage p = rStages.get(n);
+            PipelineEvents.push(p, image);
+            if (p.isEmpty()) {
+                throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, p.toString(), null, null);
+            }
+            image = p.getFront();
         }
-        if (pNext != null) {
-            pNext.push(pFirst.getFront());
+        final PipelineStage pLast = rStages.get(nLast);
+        PipelineEvents.push(pLast, image);
+        if (pLast.isEmpty()) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, pLast.toString(), null, null);
         }
     }
     
@@ -136,15 +146,14 @@ public class Sequence extends PipelineStage {
      */
     @Override
     public String toString() {
-        if (pFirst == null) {
+        if (rStages.isEmpty()) {
             return "(null)"; //$NON-NLS-1$
-        } else {
-            if (pNext == null) {
-                return "(" + pFirst.toString() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
-            } else {
-                return "(" + pFirst.toString() + //$NON-NLS-1$
-                        " " + pNext.toString() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
-            }
         }
+        // build from the end so the nesting matches the list notation
+        String sz = "(" + getLast().toString() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+        for (int n = rStages.size() - 2; n >= 0; n--) {
+            sz = "(" + rStages.get(n).toString() + " " + sz + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        return sz;
     }
 }
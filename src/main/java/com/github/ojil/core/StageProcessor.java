@@ -0,0 +1,237 @@
+/*
+ * StageProcessor.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+/**
+ * StageProcessor adapts a PipelineStage (or a Sequence, or any other
+ * pipeline) to a demand-driven stream. Images received from upstream are
+ * pushed into the stage, and the stage's outputs are published downstream
+ * exactly as fast as downstream asks for them.
+ * <p>
+ * The stage itself is the only buffer. An input is requested from upstream
+ * only when downstream has outstanding demand and the stage has no output
+ * left, and outputs are taken from the stage with getFront only when
+ * downstream has asked for them. So a stage that produces many outputs per
+ * input, such as Gray8SubImageGenerator, is drained one output per request,
+ * and no images pile up between a fast source and a slow consumer. Note
+ * that generators which reuse their output image overwrite it on the next
+ * getFront, so a subscriber that needs to keep a window must copy it.
+ * <p>
+ * If the stage throws an ImageError, upstream is cancelled and the error is
+ * passed to downstream's onError. Upstream completion and errors are passed
+ * on once the stage has been drained. The processor accepts a single
+ * subscriber. Downstream methods are called while holding the processor's
+ * lock, so a subscriber must not wait for another thread that calls into the
+ * same processor.
+ *
+ * @author webb
+ */
+public class StageProcessor implements Flow.Processor<Image<?, ?>, Image<?, ?>> {
+    private class Downstream implements Flow.Subscription {
+        @Override
+        public void cancel() {
+            synchronized (StageProcessor.this) {
+                bCancelled = true;
+                subscriber = null;
+                if (upstream != null) {
+                    upstream.cancel();
+                }
+            }
+        }
+
+        @Override
+        public void request(final long n) {
+            synchronized (StageProcessor.this) {
+                if (n <= 0) {
+                    errStage = new IllegalArgumentException(Long.toString(n));
+                } else {
+                    nDemand = (nDemand + n < 0) ? Long.MAX_VALUE : nDemand + n;
+                }
+                drain();
+            }
+        }
+    }
+
+    private final PipelineStage stage;
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super Image<?, ?>> subscriber;
+    private long nDemand = 0;
+    private boolean bRequested = false;
+    private boolean bUpstreamDone = false;
+    private Throwable errUpstream;
+    private Throwable errStage;
+    private boolean bCancelled = false;
+    private boolean bDone = false;
+    private boolean bDraining = false;
+    private boolean bMissed = false;
+
+    /**
+     * Creates a new StageProcessor.
+     *
+     * @param stage
+     *            the stage (or pipeline) the images are pushed through.
+     */
+    public StageProcessor(final PipelineStage stage) {
+        this.stage = stage;
+    }
+
+    // emit as much as demand allows, then request more input or terminate.
+    // Reentrant calls (from a subscriber's onNext calling request, or from
+    // upstream delivering onNext inside request) only mark that another pass
+    // is needed, so the stack does not grow.
+    private void drain() {
+        if (bDraining) {
+            bMissed = true;
+            return;
+        }
+        bDraining = true;
+        try {
+            do {
+                bMissed = false;
+                if ((subscriber == null) || bDone || bCancelled) {
+                    return;
+                }
+                if (errStage != null) {
+                    terminate(errStage);
+                    return;
+                }
+                while ((nDemand > 0) && !stage.isEmpty() && !bCancelled) {
+                    final Image<?, ?> image;
+                    try {
+                        image = stage.getFront();
+                    } catch (final ImageError e) {
+                        terminate(e);
+                        return;
+                    }
+                    nDemand--;
+                    subscriber.onNext(image);
+                }
+                if (bCancelled || !stage.isEmpty()) {
+                    continue;
+                }
+                if (errUpstream != null) {
+                    terminate(errUpstream);
+                } else if (bUpstreamDone) {
+                    terminate(null);
+                } else if ((nDemand > 0) && !bRequested && (upstream != null)) {
+                    bRequested = true;
+                    upstream.request(1);
+                }
+            } while (bMissed);
+        } finally {
+            bDraining = false;
+        }
+    }
+
+    /**
+     * Returns the stage the images are pushed through.
+     *
+     * @return the stage.
+     */
+    public PipelineStage getStage() {
+        return stage;
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        bUpstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public synchronized void onError(final Throwable throwable) {
+        errUpstream = throwable;
+        drain();
+    }
+
+    /**
+     * Push an image from upstream into the stage, and publish as many of its
+     * outputs as downstream has asked for.
+     *
+     * @param image
+     *            the input image.
+     */
+    @Override
+    public synchronized void onNext(final Image<?, ?> image) {
+        bRequested = false;
+        if (bDone || bCancelled) {
+            return;
+        }
+        try {
+            stage.push(image);
+        } catch (final ImageError e) {
+            // drain cancels upstream and reports the error
+            errStage = e;
+        }
+        drain();
+    }
+
+    @Override
+    public synchronized void onSubscribe(final Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        if (bCancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public synchronized void subscribe(final Flow.Subscriber<? super Image<?, ?>> s) {
+        if ((subscriber != null) || bDone || bCancelled) {
+            s.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void cancel() {
+                }
+
+                @Override
+                public void request(final long n) {
+                }
+            });
+            s.onError(new IllegalStateException(toString()));
+            return;
+        }
+        subscriber = s;
+        s.onSubscribe(new Downstream());
+        drain();
+    }
+
+    private void terminate(final Throwable throwable) {
+        final Flow.Subscriber<? super Image<?, ?>> s = subscriber;
+        bDone = true;
+        subscriber = null;
+        if (throwable != null) {
+            if ((upstream != null) && (errUpstream == null) && !bUpstreamDone) {
+                upstream.cancel();
+            }
+            s.onError(throwable);
+        } else {
+            s.onComplete();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StageProcessor(" + stage.toString() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
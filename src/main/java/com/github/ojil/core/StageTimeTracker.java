@@ -0,0 +1,458 @@
+/*
+ * StageTimeTracker.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * StageTimeTracker is a TimeTracker for production use. It keeps, for every
+ * task, a latency histogram from which the median, 99th percentile and
+ * maximum times can be read, the number of times the task ran, and the number
+ * of bytes the task allocated on the Java heap (where the Java runtime can
+ * report per-thread allocation). Times are measured with System.nanoTime.
+ * <p>
+ * Any number of threads may record into the same tracker at once. Recording
+ * takes no locks: a histogram bucket is a fixed slot in an atomic array, so
+ * the cost of a recording does not depend on how many have been made.
+ * Histogram buckets are spaced logarithmically, eight to each power of two,
+ * so the percentiles reported are within 12.5% of the true value.
+ * <p>
+ * Besides being passed explicitly to code that uses a TimeTracker, a tracker
+ * can be enabled globally with enable. While it is enabled, Sequence, Ladder
+ * and Gray8DetectHaarMultiScale record every stage they push into it, under
+ * the stage's class name, so the stage that blows a frame budget can be found
+ * in a running application. While no tracker is enabled, each of those pushes
+ * costs one extra volatile read.
+ *
+ * @author webb
+ */
+public class StageTimeTracker implements TimeTracker {
+    /**
+     * Stats holds the measurements for one task.
+     */
+    public static final class Stats {
+        // values below this are counted exactly
+        private static final int LINEAR = 16;
+        // buckets for each power of two above LINEAR
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << Stats.SUB_BITS;
+        private static final int BUCKETS = Stats.LINEAR + ((63 - 4) * Stats.SUB_BUCKETS);
+
+        private final String szName;
+        private final AtomicLongArray rnCounts = new AtomicLongArray(Stats.BUCKETS);
+        private final AtomicLong nCount = new AtomicLong();
+        private final AtomicLong nTotal = new AtomicLong();
+        private final AtomicLong nMax = new AtomicLong();
+        private final AtomicLong nBytes = new AtomicLong();
+
+        Stats(final String szName) {
+            this.szName = szName;
+        }
+
+        private static int bucket(final long lNanos) {
+            if (lNanos < Stats.LINEAR) {
+                return (int) Math.max(0, lNanos);
+            }
+            final int nLog = 63 - Long.numberOfLeadingZeros(lNanos);
+            final int nSub = (int) (lNanos >>> (nLog - Stats.SUB_BITS)) & (Stats.SUB_BUCKETS - 1);
+            return Stats.LINEAR + ((nLog - 4) * Stats.SUB_BUCKETS) + nSub;
+        }
+
+        // the largest value counted in the bucket
+        private static long upper(final int nBucket) {
+            if (nBucket < Stats.LINEAR) {
+                return nBucket;
+            }
+            final int nLog = ((nBucket - Stats.LINEAR) / Stats.SUB_BUCKETS) + 4;
+            final int nSub = (nBucket - Stats.LINEAR) % Stats.SUB_BUCKETS;
+            final int nShift = nLog - Stats.SUB_BITS;
+            return (((long) (Stats.SUB_BUCKETS + nSub + 1)) << nShift) - 1;
+        }
+
+        void record(final long lNanos, final long lBytes) {
+            rnCounts.incrementAndGet(Stats.bucket(lNanos));
+            nCount.incrementAndGet();
+            nTotal.addAndGet(lNanos);
+            if (lBytes > 0) {
+                nBytes.addAndGet(lBytes);
+            }
+            long lMax = nMax.get();
+            while ((lNanos > lMax) && !nMax.compareAndSet(lMax, lNanos)) {
+                lMax = nMax.get();
+            }
+        }
+
+        /**
+         * Returns the total bytes allocated by the task, or 0 if the Java
+         * runtime does not report allocation.
+         *
+         * @return the bytes allocated.
+         */
+        public long getBytesAllocated() {
+            return nBytes.get();
+        }
+
+        /**
+         * Returns the number of times the task ran.
+         *
+         * @return the count.
+         */
+        public long getCount() {
+            return nCount.get();
+        }
+
+        /**
+         * Returns the longest time the task took.
+         *
+         * @return the time in nanoseconds.
+         */
+        public long getMax() {
+            return nMax.get();
+        }
+
+        /**
+         * Returns the task name.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return szName;
+        }
+
+        /**
+         * Returns the median time the task took.
+         *
+         * @return the time in nanoseconds.
+         */
+        public long getP50() {
+            return getPercentile(50);
+        }
+
+        /**
+         * Returns the 99th percentile of the times the task took.
+         *
+         * @return the time in nanoseconds.
+         */
+        public long getP99() {
+            return getPercentile(99);
+        }
+
+        /**
+         * Returns a percentile of the times the task took. The result is the
+         * upper bound of the histogram bucket the percentile falls in, and is
+         * never more than the maximum time.
+         *
+         * @param nPercent
+         *            the percentile, from 0 to 100.
+         * @return the time in nanoseconds, or 0 if the task has not run.
+         */
+        public long getPercentile(final int nPercent) {
+            long nSeen = 0;
+            for (int i = 0; i < Stats.BUCKETS; i++) {
+                nSeen += rnCounts.get(i);
+            }
+            if (nSeen == 0) {
+                return 0;
+            }
+            final long nRank = Math.max(1, ((nSeen * Math.max(0, Math.min(100, nPercent))) + 99) / 100);
+            long nSum = 0;
+            for (int i = 0; i < Stats.BUCKETS; i++) {
+                nSum += rnCounts.get(i);
+                if (nSum >= nRank) {
+                    return Math.min(Stats.upper(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * Returns the total time the task took.
+         *
+         * @return the time in nanoseconds.
+         */
+        public long getTotal() {
+            return nTotal.get();
+        }
+
+        /**
+         * Returns a one-line summary of the measurements, with times in
+         * milliseconds.
+         *
+         * @return the summary.
+         */
+        @Override
+        public String toString() {
+            return szName + "=" + StageTimeTracker.ms(getTotal()) + " (n=" + getCount() + //$NON-NLS-1$ //$NON-NLS-2$
+                    ", p50=" + StageTimeTracker.ms(getP50()) + ", p99=" + StageTimeTracker.ms(getP99()) + //$NON-NLS-1$ //$NON-NLS-2$
+                    ", max=" + StageTimeTracker.ms(getMax()) + ", alloc=" + getBytesAllocated() + "B)"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+    }
+
+    /**
+     * Reads the bytes allocated by the current thread. This is kept in its own
+     * class so that runtimes without com.sun.management only fail to load it,
+     * and allocation is then not reported.
+     */
+    private static final class Allocation {
+        private static final com.sun.management.ThreadMXBean BEAN;
+
+        static {
+            final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            com.sun.management.ThreadMXBean beanSun = null;
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                beanSun = (com.sun.management.ThreadMXBean) bean;
+                if (!beanSun.isThreadAllocatedMemorySupported() || !beanSun.isThreadAllocatedMemoryEnabled()) {
+                    beanSun = null;
+                }
+            }
+            BEAN = beanSun;
+        }
+
+        static boolean isSupported() {
+            return Allocation.BEAN != null;
+        }
+
+        static long current() {
+            return Allocation.BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+
+    private static volatile StageTimeTracker trackerEnabled;
+
+    private final boolean bAllocation;
+    private final ConcurrentMap<String, Stats> mapStats = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<String, long[]>> tlStarted = new ThreadLocal<Map<String, long[]>>() {
+        @Override
+        protected Map<String, long[]> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    /**
+     * Creates a new StageTimeTracker which reports allocation if the Java
+     * runtime supports it.
+     */
+    public StageTimeTracker() {
+        this(true);
+    }
+
+    /**
+     * Creates a new StageTimeTracker.
+     *
+     * @param bAllocation
+     *            if true, and the Java runtime supports it, the bytes
+     *            allocated by each task are recorded. Reading the allocation
+     *            costs somewhat more than reading the time.
+     */
+    public StageTimeTracker(final boolean bAllocation) {
+        this.bAllocation = bAllocation && StageTimeTracker.isAllocationSupported();
+    }
+
+    /**
+     * Stop recording stage pushes into the tracker enabled with enable.
+     */
+    public static void disable() {
+        StageTimeTracker.trackerEnabled = null;
+    }
+
+    /**
+     * Record every stage pushed by Sequence, Ladder and
+     * Gray8DetectHaarMultiScale into a tracker, until disable is called or
+     * another tracker is enabled.
+     *
+     * @param tracker
+     *            the tracker to record into.
+     */
+    public static void enable(final StageTimeTracker tracker) {
+        StageTimeTracker.trackerEnabled = tracker;
+    }
+
+    /**
+     * Returns the tracker stage pushes are being recorded into.
+     *
+     * @return the tracker, or null if none is enabled.
+     */
+    public static StageTimeTracker getEnabled() {
+        return StageTimeTracker.trackerEnabled;
+    }
+
+    /**
+     * Returns the name a stage's pushes are recorded under: the simple name of
+     * its class, or the full name for anonymous classes.
+     *
+     * @param p
+     *            the stage.
+     * @return the name.
+     */
+    public static String getName(final Object p) {
+        final String sz = p.getClass().getSimpleName();
+        return sz.isEmpty() ? p.getClass().getName() : sz;
+    }
+
+    /**
+     * Returns true if the Java runtime reports the bytes allocated by a
+     * thread.
+     *
+     * @return true if allocation can be recorded.
+     */
+    public static boolean isAllocationSupported() {
+        try {
+            return Allocation.isSupported();
+        } catch (final LinkageError e) {
+            return false;
+        }
+    }
+
+    private static String ms(final long lNanos) {
+        return String.format("%.3fms", lNanos / 1e6); //$NON-NLS-1$
+    }
+
+    private long allocated() {
+        return bAllocation ? Allocation.current() : 0;
+    }
+
+    @Override
+    public void endTask(final String szTaskName) {
+        final long lEnd = System.nanoTime();
+        final long[] rlStart = tlStarted.get().remove(szTaskName);
+        if (rlStart != null) {
+            record(szTaskName, lEnd - rlStart[0], allocated() - rlStart[1]);
+        }
+    }
+
+    @Override
+    public String getCumulativeTimes() {
+        final StringBuilder sb = new StringBuilder();
+        for (final Stats s : getStats()) {
+            if (sb.length() > 0) {
+                sb.append(", "); //$NON-NLS-1$
+            }
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the measurements for every task recorded, by decreasing total
+     * time.
+     *
+     * @return the measurements.
+     */
+    public List<Stats> getStats() {
+        final List<Stats> lStats = new ArrayList<>(mapStats.values());
+        Collections.sort(lStats, new Comparator<Stats>() {
+            @Override
+            public int compare(final Stats s1, final Stats s2) {
+                final long l1 = s1.getTotal();
+                final long l2 = s2.getTotal();
+                return (l1 < l2) ? 1 : ((l1 == l2) ? 0 : -1);
+            }
+        });
+        return lStats;
+    }
+
+    /**
+     * Returns the measurements for a task.
+     *
+     * @param szTaskName
+     *            the task name.
+     * @return the measurements, or null if the task has not been recorded.
+     */
+    public Stats getStats(final String szTaskName) {
+        return mapStats.get(szTaskName);
+    }
+
+    /**
+     * Push an image into a stage and record the time and allocation of the
+     * push under the stage's name.
+     *
+     * @param p
+     *            the stage.
+     * @param image
+     *            the image to push.
+     * @throws ImageError
+     *             if the stage does. A push that fails is not recorded.
+     */
+    public void push(final PipelineStage p, final Image<?, ?> image) throws ImageError {
+        final long lBytes = allocated();
+        final long lStart = System.nanoTime();
+        p.push(image);
+        final long lEnd = System.nanoTime();
+        record(StageTimeTracker.getName(p), lEnd - lStart, allocated() - lBytes);
+    }
+
+    /**
+     * Record one run of a task.
+     *
+     * @param szTaskName
+     *            the task name.
+     * @param lNanos
+     *            the time the task took, in nanoseconds.
+     * @param lBytes
+     *            the bytes the task allocated, or 0 if not known.
+     */
+    public void record(final String szTaskName, final long lNanos, final long lBytes) {
+        Stats s = mapStats.get(szTaskName);
+        if (s == null) {
+            final Stats sNew = new Stats(szTaskName);
+            s = mapStats.putIfAbsent(szTaskName, sNew);
+            if (s == null) {
+                s = sNew;
+            }
+        }
+        s.record(lNanos, lBytes);
+    }
+
+    @Override
+    public void reset() {
+        mapStats.clear();
+        tlStarted.get().clear();
+    }
+
+    /**
+     * Returns the bytes the current thread has allocated so far, or 0 if
+     * allocation is not being recorded. Read it before and after a task and
+     * pass the difference to record.
+     *
+     * @return the bytes allocated.
+     */
+    public long currentAllocation() {
+        return allocated();
+    }
+
+    @Override
+    public void startTask(final String szTaskName) {
+        tlStarted.get().put(szTaskName, new long[] { System.nanoTime(), allocated() });
+    }
+
+    @Override
+    public String toString() {
+        return getCumulativeTimes();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * ThreadLocalStage.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+/**
+ * ThreadLocalStage lets one configured pipeline be shared by many threads.
+ * Most stages keep per-image state (their output, and often working tables),
+ * so a stage instance cannot be pushed from two threads at once. This stage
+ * instead holds a factory for the pipeline and gives every thread that uses
+ * it its own instance, created on the thread's first push. push, isEmpty and
+ * getFront all refer to the calling thread's instance, so no synchronization
+ * is needed.
+ *
+ * @author webb
+ */
+public class ThreadLocalStage extends PipelineStage {
+    private final PipelineExecutor.Factory factory;
+    private final ThreadLocal<PipelineStage> tlStage = new ThreadLocal<>();
+    
+    /**
+     * Creates a new instance of ThreadLocalStage.
+     *
+     * @param factory
+     *            creates an independent pipeline for each thread.
+     */
+    public ThreadLocalStage(final PipelineExecutor.Factory factory) {
+        this.factory = factory;
+    }
+    
+    /**
+     * Returns the calling thread's pipeline, creating it if necessary.
+     *
+     * @return the pipeline for this thread.
+     * @throws ImageError
+     *             if the pipeline cannot be created.
+     */
+    public PipelineStage getStage() throws ImageError {
+        PipelineStage stage = tlStage.get();
+        if (stage == null) {
+            stage = factory.create();
+            tlStage.set(stage);
+        }
+        return stage;
+    }
+    
+    /**
+     * Returns true iff the calling thread's pipeline has no output available.
+     *
+     * @return true iff no image is available for this thread.
+     */
+    @Override
+    public boolean isEmpty() {
+        final PipelineStage stage = tlStage.get();
+        return (stage == null) || stage.isEmpty();
+    }
+    
+    /**
+     * Returns the output of the calling thread's pipeline.
+     *
+     * @return the output image.
+     * @throws ImageError
+     *             if no output is available for this thread.
+     */
+    @Override
+    public Image<?, ?> getFront() throws ImageError {
+        final PipelineStage stage = tlStage.get();
+        if (stage == null) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, toString(), null, null);
+        }
+        return stage.getFront();
+    }
+    
+    /**
+     * Push an image through the calling thread's pipeline.
+     *
+     * @param image
+     *            the input image.
+     * @throws ImageError
+     *             if the pipeline cannot be created or fails.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        getStage().push(image);
+    }
+    
+    /**
+     * Release the calling thread's pipeline. It is created again on the
+     * thread's next push.
+     */
+    public void remove() {
+        tlStage.remove();
+    }
+}
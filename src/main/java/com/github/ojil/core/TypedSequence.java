@@ -0,0 +1,161 @@
+/*
+ * TypedSequence.java
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.github.ojil.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TypedSequence is a sequence of BufferedStage's whose image types and sizes
+ * are checked as the sequence is assembled rather than as images are pushed.
+ * The sequence is created with the spec of the images that will be pushed,
+ * and each stage added is checked against the output spec of the stage before
+ * it, so a mismatched pipeline fails when it is built.
+ * <p>
+ * Pushing an image checks only that the image matches the input spec. Each
+ * stage is then run through BufferedStage.push(Image, Image), which does no
+ * checking of its own, into a newly allocated output image. Like Sequence,
+ * the result of a push stays valid after later pushes. To reuse the output
+ * images from one push to the next as well, use compile to get a
+ * CompiledSequence.
+ *
+ * @author webb
+ */
+public class TypedSequence extends PipelineStage {
+    private final ImageSpec specInput;
+    private final List<BufferedStage> rStages = new ArrayList<>();
+    private final List<ImageSpec> rSpecs = new ArrayList<>();
+    
+    /**
+     * Creates a new, empty TypedSequence.
+     *
+     * @param specInput
+     *            the spec of the images that will be pushed.
+     */
+    public TypedSequence(final ImageSpec specInput) {
+        this.specInput = specInput;
+    }
+    
+    /**
+     * Add a stage at the end of the sequence, checking that it accepts the
+     * output of the current last stage.
+     *
+     * @param stage
+     *            the stage to add.
+     * @return this TypedSequence, so calls can be chained.
+     * @throws ImageError
+     *             if the stage does not accept the output of the last stage.
+     */
+    public TypedSequence add(final BufferedStage stage) throws ImageError {
+        final ImageSpec spec = stage.getOutputSpec(getOutputSpec());
+        rStages.add(stage);
+        rSpecs.add(spec);
+        return this;
+    }
+    
+    /**
+     * Build a CompiledSequence from the stages in this sequence. The stages
+     * are shared, not copied.
+     *
+     * @return the compiled sequence.
+     * @throws ImageError
+     *             if the sequence is empty.
+     */
+    public CompiledSequence compile() throws ImageError {
+        return new CompiledSequence(specInput, rStages.toArray(new BufferedStage[rStages.size()]));
+    }
+    
+    /**
+     * Returns the spec of the images this sequence accepts.
+     *
+     * @return the input spec.
+     */
+    public ImageSpec getInputSpec() {
+        return specInput;
+    }
+    
+    /**
+     * Returns the spec of the images this sequence produces.
+     *
+     * @return the output spec, which is the input spec if the sequence is
+     *         empty.
+     */
+    public ImageSpec getOutputSpec() {
+        if (rSpecs.isEmpty()) {
+            return specInput;
+        }
+        return rSpecs.get(rSpecs.size() - 1);
+    }
+    
+    /**
+     * Run the stages on an input image.
+     *
+     * @param image
+     *            the input image.
+     * @throws ImageError
+     *             if the sequence is empty or the image does not match the
+     *             input spec.
+     */
+    @Override
+    public void push(final Image<?, ?> image) throws ImageError {
+        super.setOutput(apply(image));
+    }
+    
+    /**
+     * Run the stages on an input image and return the result, without storing
+     * it in this sequence. This does not modify the sequence, so once it is
+     * assembled one TypedSequence can be applied from several threads at once.
+     *
+     * @param image
+     *            the input image.
+     * @return the output of the last stage.
+     * @throws ImageError
+     *             if the sequence is empty or the image does not match the
+     *             input spec.
+     */
+    public Image<?, ?> apply(final Image<?, ?> image) throws ImageError {
+        if (rStages.isEmpty()) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.PIPELINE_EMPTY_PUSH, toString(), null, null);
+        }
+        if (!specInput.matches(image)) {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, image.toString(), specInput.toString(), null);
+        }
+        Image<?, ?> imageIn = image;
+        for (int i = 0; i < rStages.size(); i++) {
+            final Image<?, ?> imageOut = rSpecs.get(i).createImage();
+            rStages.get(i).push(imageIn, imageOut);
+            imageIn = imageOut;
+        }
+        return imageIn;
+    }
+    
+    /**
+     * Return a string describing the sequence.
+     *
+     * @return the string describing the sequence.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(specInput.toString());
+        for (int i = 0; i < rStages.size(); i++) {
+            sb.append(" -> ").append(rStages.get(i).toString()).append(" -> ").append(rSpecs.get(i).toString()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.ojil.algorithm;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BilateralGridTest {
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 64;
+    // the step is between these two columns
+    private static final int EDGE = 48;
+    private static final int DARK = 60;
+    private static final int LIGHT = 190;
+
+    // a step edge with Gaussian noise of standard deviation 9
+    private static byte[] createStep(final Random r) {
+        final byte[] rb = new byte[BilateralGridTest.WIDTH * BilateralGridTest.HEIGHT];
+        for (int i = 0; i < BilateralGridTest.HEIGHT; i++) {
+            for (int j = 0; j < BilateralGridTest.WIDTH; j++) {
+                final int nLevel = (j < BilateralGridTest.EDGE) ? BilateralGridTest.DARK : BilateralGridTest.LIGHT;
+                final long lValue = Math.round(nLevel + (9 * r.nextGaussian()));
+                rb[(i * BilateralGridTest.WIDTH) + j] = (byte) Math.max(0, Math.min(255, lValue));
+            }
+        }
+        return rb;
+    }
+
+    // the exact bilateral filter, with Gaussian weights out to three sigma
+    // and no weight for pixels outside the image
+    private static double[] reference(final byte[] rbIn, final int cWidth, final int cHeight, final int nSpatial, final int nRange) {
+        final int nRadius = 3 * nSpatial;
+        final double[] rdSpatial = new double[nRadius + 1];
+        for (int d = 0; d <= nRadius; d++) {
+            rdSpatial[d] = Math.exp(-(double) (d * d) / (2.0 * nSpatial * nSpatial));
+        }
+        final double[] rdRange = new double[256];
+        for (int d = 0; d < 256; d++) {
+            rdRange[d] = Math.exp(-(double) (d * d) / (2.0 * nRange * nRange));
+        }
+        final double[] rdOut = new double[rbIn.length];
+        for (int i = 0; i < cHeight; i++) {
+            for (int j = 0; j < cWidth; j++) {
+                final int nCenter = rbIn[(i * cWidth) + j] & 0xff;
+                double dSum = 0;
+                double dWeight = 0;
+                for (int k = Math.max(0, i - nRadius); k <= Math.min(cHeight - 1, i + nRadius); k++) {
+                    for (int l = Math.max(0, j - nRadius); l <= Math.min(cWidth - 1, j + nRadius); l++) {
+                        final int nValue = rbIn[(k * cWidth) + l] & 0xff;
+                        final double dW = rdSpatial[Math.abs(k - i)] * rdSpatial[Math.abs(l - j)] * rdRange[Math.abs(nValue - nCenter)];
+                        dSum += dW * nValue;
+                        dWeight += dW;
+                    }
+                }
+                rdOut[(i * cWidth) + j] = dSum / dWeight;
+            }
+        }
+        return rdOut;
+    }
+
+    // the standard deviation about the true level of the pixels at least
+    // nMargin columns from the edge
+    private static double flatNoise(final byte[] rb, final int nMargin) {
+        double dSum = 0;
+        int n = 0;
+        for (int i = 0; i < BilateralGridTest.HEIGHT; i++) {
+            for (int j = 0; j < BilateralGridTest.WIDTH; j++) {
+                if (Math.abs(j - BilateralGridTest.EDGE) >= nMargin) {
+                    final int nLevel = (j < BilateralGridTest.EDGE) ? BilateralGridTest.DARK : BilateralGridTest.LIGHT;
+                    final double d = (rb[(i * BilateralGridTest.WIDTH) + j] & 0xff) - nLevel;
+                    dSum += d * d;
+                    n++;
+                }
+            }
+        }
+        return Math.sqrt(dSum / n);
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        final Random r = new Random(1);
+        final byte[] rbIn = BilateralGridTest.createStep(r);
+        final double dNoiseIn = BilateralGridTest.flatNoise(rbIn, 0);
+        final int[][] rrnSigmas = { { 3, 15 }, { 4, 20 }, { 8, 30 }, { 16, 40 } };
+        for (final int[] rnSigmas : rrnSigmas) {
+            final byte[] rbOut = new byte[rbIn.length];
+            new BilateralGrid(rnSigmas[0], rnSigmas[1]).filter(rbIn, rbOut, BilateralGridTest.WIDTH, BilateralGridTest.HEIGHT);
+            final double[] rdExact = BilateralGridTest.reference(rbIn, BilateralGridTest.WIDTH, BilateralGridTest.HEIGHT, rnSigmas[0], rnSigmas[1]);
+            double dDiff = 0;
+            for (int i = 0; i < rbOut.length; i++) {
+                dDiff += Math.abs((rbOut[i] & 0xff) - rdExact[i]);
+            }
+            // the grid is an approximation, but on average a close one
+            assertTrue(rnSigmas[0] + "/" + rnSigmas[1] + ": " + (dDiff / rbOut.length), (dDiff / rbOut.length) < 1.5);
+            // the noise is smoothed away...
+            assertTrue(BilateralGridTest.flatNoise(rbOut, 0) < (dNoiseIn / 2));
+            // ...but the step is not: it is still a single-pixel transition
+            // in every row
+            for (int i = 0; i < BilateralGridTest.HEIGHT; i++) {
+                for (int j = 0; j < BilateralGridTest.WIDTH; j++) {
+                    final int nValue = rbOut[(i * BilateralGridTest.WIDTH) + j] & 0xff;
+                    assertEquals(j < BilateralGridTest.EDGE, nValue < ((BilateralGridTest.DARK + BilateralGridTest.LIGHT) / 2));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFlatImageUnchanged() {
+        final byte[] rbIn = new byte[37 * 23];
+        for (int i = 0; i < rbIn.length; i++) {
+            rbIn[i] = (byte) 173;
+        }
+        final byte[] rbOut = new byte[rbIn.length];
+        new BilateralGrid(5, 10).filter(rbIn, rbOut, 37, 23);
+        assertArrayEquals(rbIn, rbOut);
+    }
+}
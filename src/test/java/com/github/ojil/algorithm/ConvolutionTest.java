@@ -0,0 +1,155 @@
+package com.github.ojil.algorithm;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.ojil.core.ImageError;
+
+public class ConvolutionTest {
+
+    // brute-force convolution with the border repeated, divided by nDivisor
+    // and rounded to nearest, halves up
+    private static int[] reference(final int[] rnIn, final int cWidth, final int cHeight, final int[] rnKernel, final int cKernelWidth, final int nDivisor) {
+        final int cKernelHeight = rnKernel.length / cKernelWidth;
+        final int nCx = (cKernelWidth - 1) / 2;
+        final int nCy = (cKernelHeight - 1) / 2;
+        final int[] rnOut = new int[cWidth * cHeight];
+        for (int y = 0; y < cHeight; y++) {
+            for (int x = 0; x < cWidth; x++) {
+                long lSum = 0;
+                for (int i = 0; i < cKernelHeight; i++) {
+                    final int yIn = Math.min(Math.max((y + i) - nCy, 0), cHeight - 1);
+                    for (int j = 0; j < cKernelWidth; j++) {
+                        final int xIn = Math.min(Math.max((x + j) - nCx, 0), cWidth - 1);
+                        lSum += (long) rnKernel[(i * cKernelWidth) + j] * rnIn[(yIn * cWidth) + xIn];
+                    }
+                }
+                // floor(s / d + 1/2) = floor((2s + d) / 2d) for either sign of d
+                rnOut[(y * cWidth) + x] = (int) Math.floorDiv((2 * lSum) + nDivisor, 2L * nDivisor);
+            }
+        }
+        return rnOut;
+    }
+
+    private static int[] convolve(final Convolution c, final int nStrategy, final int[] rnIn, final int cWidth, final int cHeight) throws ImageError {
+        c.setStrategy(nStrategy);
+        final int[] rnOut = new int[cWidth * cHeight];
+        c.push(rnIn, rnOut, cWidth, cHeight);
+        return rnOut;
+    }
+
+    private static int[] random(final Random r, final int n, final int nMin, final int nMax) {
+        final int[] rn = new int[n];
+        for (int i = 0; i < n; i++) {
+            rn[i] = (int) (nMin + (long) (r.nextDouble() * (((double) nMax - nMin) + 1)));
+        }
+        return rn;
+    }
+
+    @Test
+    public void testIntegerKernelsMatchReference() throws ImageError {
+        final Random r = new Random(1);
+        final int[] rnDivisors = { 1, 7, -3, -16, 100 };
+        for (int nTrial = 0; nTrial < 40; nTrial++) {
+            final int cWidth = 1 + r.nextInt(40);
+            final int cHeight = 1 + r.nextInt(30);
+            final int cKernelWidth = 1 + r.nextInt(9);
+            final int cKernelHeight = 1 + r.nextInt(9);
+            final int[] rnKernel = ConvolutionTest.random(r, cKernelWidth * cKernelHeight, -20, 20);
+            final int nDivisor = rnDivisors[nTrial % rnDivisors.length];
+            final int[] rnIn = ConvolutionTest.random(r, cWidth * cHeight, -128, 255);
+            final int[] rnExpected = ConvolutionTest.reference(rnIn, cWidth, cHeight, rnKernel, cKernelWidth, nDivisor);
+            final Convolution c = new Convolution(rnKernel, cKernelWidth, nDivisor);
+            assertArrayEquals(rnExpected, ConvolutionTest.convolve(c, Convolution.AUTO, rnIn, cWidth, cHeight));
+            assertArrayEquals(rnExpected, ConvolutionTest.convolve(c, Convolution.DIRECT, rnIn, cWidth, cHeight));
+            assertArrayEquals(rnExpected, ConvolutionTest.convolve(c, Convolution.FFT, rnIn, cWidth, cHeight));
+        }
+    }
+
+    @Test
+    public void testSeparableKernelsMatchReference() throws ImageError {
+        final Random r = new Random(2);
+        for (int nTrial = 0; nTrial < 20; nTrial++) {
+            final int cWidth = 1 + r.nextInt(40);
+            final int cHeight = 1 + r.nextInt(30);
+            final int[] rnCol = ConvolutionTest.random(r, 1 + r.nextInt(7), -6, 6);
+            final int[] rnRow = ConvolutionTest.random(r, 1 + r.nextInt(7), -6, 6);
+            final int[] rnKernel = new int[rnCol.length * rnRow.length];
+            for (int i = 0; i < rnCol.length; i++) {
+                for (int j = 0; j < rnRow.length; j++) {
+                    rnKernel[(i * rnRow.length) + j] = rnCol[i] * rnRow[j];
+                }
+            }
+            final int nDivisor = ((nTrial % 2) == 0) ? 9 : -5;
+            final int[] rnIn = ConvolutionTest.random(r, cWidth * cHeight, -128, 255);
+            final Convolution c = new Convolution(rnKernel, rnRow.length, nDivisor);
+            assertTrue(c.isSeparable());
+            final int[] rnExpected = ConvolutionTest.reference(rnIn, cWidth, cHeight, rnKernel, rnRow.length, nDivisor);
+            assertArrayEquals(rnExpected, ConvolutionTest.convolve(c, Convolution.SEPARABLE, rnIn, cWidth, cHeight));
+            assertArrayEquals(rnExpected, ConvolutionTest.convolve(c, Convolution.DIRECT, rnIn, cWidth, cHeight));
+            assertArrayEquals(rnExpected, ConvolutionTest.convolve(c, Convolution.FFT, rnIn, cWidth, cHeight));
+        }
+    }
+
+    @Test
+    public void testFullRangeInputIsExact() throws ImageError {
+        final Random r = new Random(3);
+        final int cWidth = 64;
+        final int cHeight = 48;
+        final int[] rnIn = ConvolutionTest.random(r, cWidth * cHeight, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        for (final int cKernel : new int[] { 31, 63 }) {
+            final int[] rnKernel = ConvolutionTest.random(r, cKernel * cKernel, -100, 100);
+            // the divisor keeps the results within an int
+            final Convolution c = new Convolution(rnKernel, cKernel, 1000003);
+            assertFalse(c.isSeparable());
+            // the cost model picks the FFT, which is not exact for this input
+            assertEquals(Convolution.FFT, c.chooseStrategy(cWidth, cHeight));
+            final int[] rnExpected = ConvolutionTest.reference(rnIn, cWidth, cHeight, rnKernel, cKernel, 1000003);
+            assertArrayEquals(rnExpected, ConvolutionTest.convolve(c, Convolution.AUTO, rnIn, cWidth, cHeight));
+            assertArrayEquals(rnExpected, ConvolutionTest.convolve(c, Convolution.DIRECT, rnIn, cWidth, cHeight));
+        }
+    }
+
+    @Test
+    public void testHalvesRoundUp() throws ImageError {
+        final int[] rnIn = { -3, -1, 1, 3 };
+        assertArrayEquals(new int[] { -1, 0, 1, 2 }, ConvolutionTest.convolve(new Convolution(new int[] { 1 }, 1, 2), Convolution.DIRECT, rnIn, 4, 1));
+        assertArrayEquals(new int[] { 2, 1, 0, -1 }, ConvolutionTest.convolve(new Convolution(new int[] { 1 }, 1, -2), Convolution.DIRECT, rnIn, 4, 1));
+    }
+
+    @Test
+    public void testFloatKernelsAreClose() throws ImageError {
+        final Random r = new Random(4);
+        final int cWidth = 37;
+        final int cHeight = 23;
+        final float[] rfKernel = new float[7 * 5];
+        final int[] rnScaled = new int[rfKernel.length];
+        for (int i = 0; i < rfKernel.length; i++) {
+            rnScaled[i] = r.nextInt(41) - 20;
+            rfKernel[i] = rnScaled[i] / 64f;
+        }
+        final int[] rnIn = ConvolutionTest.random(r, cWidth * cHeight, 0, 255);
+        // dividing by 64 is exact, so this is the float result rounded
+        final int[] rnExpected = ConvolutionTest.reference(rnIn, cWidth, cHeight, rnScaled, 7, 64);
+        final Convolution c = new Convolution(rfKernel, 7);
+        for (final int nStrategy : new int[] { Convolution.DIRECT, Convolution.FFT }) {
+            final int[] rnOut = ConvolutionTest.convolve(c, nStrategy, rnIn, cWidth, cHeight);
+            for (int i = 0; i < rnOut.length; i++) {
+                assertTrue(Math.abs(rnOut[i] - rnExpected[i]) <= 1);
+            }
+        }
+    }
+
+    @Test(expected = ImageError.class)
+    public void testZeroDivisor() throws ImageError {
+        new Convolution(new int[] { 1 }, 1, 0);
+    }
+
+    @Test(expected = ImageError.class)
+    public void testSeparableRejected() throws ImageError {
+        new Convolution(new int[] { 1, 2, 3, 4 }, 2, 1).setStrategy(Convolution.SEPARABLE);
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.ojil.algorithm;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.ImageError;
+
+public class Gray8CannyTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    // a step between columns nEdge - 1 and nEdge, or between rows if bRows,
+    // from -nTop to nTop in the top row and -nBottom to nBottom in the
+    // bottom row, the contrast changing smoothly in between
+    private static Gray8Image<?> createStep(final int nEdge, final boolean bRows, final int nTop, final int nBottom) {
+        final Gray8Image<?> image = new Gray8Image<>(Gray8CannyTest.WIDTH, Gray8CannyTest.HEIGHT, Byte.valueOf((byte) 0));
+        final Byte[] rb = image.getData();
+        for (int i = 0; i < Gray8CannyTest.HEIGHT; i++) {
+            final int nContrast = nTop + (((nBottom - nTop) * i) / (Gray8CannyTest.HEIGHT - 1));
+            for (int j = 0; j < Gray8CannyTest.WIDTH; j++) {
+                rb[(i * Gray8CannyTest.WIDTH) + j] = (byte) (((bRows ? i : j) < nEdge) ? -nContrast : nContrast);
+            }
+        }
+        return image;
+    }
+
+    private static Byte[] edges(final Gray8Canny canny, final Gray8Image<?> image) throws ImageError {
+        canny.push(image);
+        return ((Gray8Image<?>) canny.getFront()).getData();
+    }
+
+    private static boolean isEdge(final Byte[] rb, final int i, final int j) {
+        final Byte b = rb[(i * Gray8CannyTest.WIDTH) + j];
+        if (b == Byte.MAX_VALUE) {
+            return true;
+        }
+        assertEquals(Byte.valueOf(Byte.MIN_VALUE), b);
+        return false;
+    }
+
+    @Test
+    public void testVerticalStepIsOnePixelWide() throws ImageError {
+        for (final int cSigma : new int[] { 10, 20, 40 }) {
+            final Byte[] rb = Gray8CannyTest.edges(new Gray8Canny(cSigma, 5, 10), Gray8CannyTest.createStep(32, false, 80, 80));
+            int nColumn = -1;
+            for (int i = 0; i < Gray8CannyTest.HEIGHT; i++) {
+                int cEdges = 0;
+                for (int j = 0; j < Gray8CannyTest.WIDTH; j++) {
+                    if (Gray8CannyTest.isEdge(rb, i, j)) {
+                        cEdges++;
+                        // one of the two pixels either side of the step,
+                        // and the same one in every row
+                        assertTrue((j == 31) || (j == 32));
+                        assertTrue((nColumn == -1) || (nColumn == j));
+                        nColumn = j;
+                    }
+                }
+                assertEquals(1, cEdges);
+            }
+        }
+    }
+
+    @Test
+    public void testHorizontalStepIsOnePixelWide() throws ImageError {
+        final Byte[] rb = Gray8CannyTest.edges(new Gray8Canny(15, 5, 10), Gray8CannyTest.createStep(20, true, 80, 80));
+        for (int j = 0; j < Gray8CannyTest.WIDTH; j++) {
+            int cEdges = 0;
+            for (int i = 0; i < Gray8CannyTest.HEIGHT; i++) {
+                if (Gray8CannyTest.isEdge(rb, i, j)) {
+                    cEdges++;
+                    assertTrue((i == 19) || (i == 20));
+                }
+            }
+            assertEquals(1, cEdges);
+        }
+    }
+
+    @Test
+    public void testFlatImageHasNoEdges() throws ImageError {
+        final Gray8Image<?> image = new Gray8Image<>(Gray8CannyTest.WIDTH, Gray8CannyTest.HEIGHT, Byte.valueOf((byte) 37));
+        final Byte[] rb = Gray8CannyTest.edges(new Gray8Canny(15, 0, 1), image);
+        for (int i = 0; i < Gray8CannyTest.HEIGHT; i++) {
+            for (int j = 0; j < Gray8CannyTest.WIDTH; j++) {
+                assertFalse(Gray8CannyTest.isEdge(rb, i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testHysteresis() throws ImageError {
+        // the gradient at the step is above the high threshold at the top of
+        // the image and falls to between the thresholds at the bottom
+        final Gray8Canny canny = new Gray8Canny(15, 2, 20);
+        // connected to the strong part, the weak part is kept
+        Byte[] rb = Gray8CannyTest.edges(canny, Gray8CannyTest.createStep(32, false, 80, 8));
+        for (int i = 0; i < Gray8CannyTest.HEIGHT; i++) {
+            assertTrue(Gray8CannyTest.isEdge(rb, i, 31) || Gray8CannyTest.isEdge(rb, i, 32));
+        }
+        // on its own it is not
+        rb = Gray8CannyTest.edges(canny, Gray8CannyTest.createStep(32, false, 8, 8));
+        for (int i = 0; i < Gray8CannyTest.HEIGHT; i++) {
+            for (int j = 0; j < Gray8CannyTest.WIDTH; j++) {
+                assertFalse(Gray8CannyTest.isEdge(rb, i, j));
+            }
+        }
+        // with a lower high threshold it is an edge by itself
+        canny.setThresholds(2, 3);
+        rb = Gray8CannyTest.edges(canny, Gray8CannyTest.createStep(32, false, 8, 8));
+        for (int i = 0; i < Gray8CannyTest.HEIGHT; i++) {
+            assertTrue(Gray8CannyTest.isEdge(rb, i, 31) || Gray8CannyTest.isEdge(rb, i, 32));
+        }
+    }
+
+    @Test(expected = ImageError.class)
+    public void testThresholdsOutOfOrder() throws ImageError {
+        new Gray8Canny(15, 20, 10);
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.ojil.algorithm;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.ImageError;
+
+public class Gray8ConnCompTest {
+
+    // a background image with the given pixels set, each as { x, y }
+    private static Gray8Image<?> createImage(final int cWidth, final int cHeight, final int[][] rrnPixels) {
+        final Gray8Image<?> image = new Gray8Image<>(cWidth, cHeight, Byte.valueOf(Byte.MIN_VALUE));
+        for (final int[] rnPixel : rrnPixels) {
+            image.getData()[(rnPixel[1] * cWidth) + rnPixel[0]] = Byte.MAX_VALUE;
+        }
+        return image;
+    }
+
+    // a 2x2 square and a single pixel
+    private static Gray8Image<?> createSecond() {
+        return Gray8ConnCompTest.createImage(6, 6, new int[][] { { 0, 0 }, { 1, 0 }, { 0, 1 }, { 1, 1 }, { 4, 4 } });
+    }
+
+    @Test
+    public void testLabelTwice() throws ImageError {
+        final Gray8ConnComp cc = new Gray8ConnComp();
+        // four separate lines of pixels, so the first image uses more labels
+        // than the second
+        cc.push(Gray8ConnCompTest.createImage(8, 8, new int[][] { { 0, 0 }, { 1, 0 }, { 2, 0 }, { 0, 3 }, { 1, 3 }, { 2, 3 }, { 5, 5 }, { 6, 5 }, { 7, 5 }, { 0, 7 }, { 1, 7 } }));
+        assertEquals(4, cc.getComponentCount());
+        assertEquals(8, cc.getPerimeter(0));
+        cc.push(Gray8ConnCompTest.createSecond());
+        assertEquals(2, cc.getComponentCount());
+        assertEquals(4, cc.getPixelCount(0));
+        assertEquals(8, cc.getPerimeter(0));
+        assertEquals(1, cc.getPixelCount(1));
+        assertEquals(4, cc.getPerimeter(1));
+        // labels start again from 1, so the result is the same as from a new
+        // stage
+        final Gray8ConnComp ccNew = new Gray8ConnComp();
+        ccNew.push(Gray8ConnCompTest.createSecond());
+        assertArrayEquals(ccNew.getLabeledImage().getData(), cc.getLabeledImage().getData());
+        for (final Short s : cc.getLabeledImage().getData()) {
+            assertTrue((s >= 0) && (s <= 2));
+        }
+    }
+
+    @Test
+    public void testDiagonalPixelsConnect() throws ImageError {
+        final Gray8ConnComp cc = new Gray8ConnComp();
+        cc.push(Gray8ConnCompTest.createImage(4, 4, new int[][] { { 0, 0 }, { 1, 1 }, { 2, 2 }, { 3, 0 } }));
+        assertEquals(2, cc.getComponentCount());
+        assertEquals(3, cc.getPixelCount(0));
+        assertEquals(1, cc.getPixelCount(1));
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.ojil.algorithm;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.ojil.core.Deadline;
+import com.github.ojil.core.ErrorCodes;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.ImageSpec;
+import com.github.ojil.core.PipelineEvents;
+import com.github.ojil.core.PipelineListener;
+import com.github.ojil.core.PipelineStage;
+
+public class Gray8DetectHaarMultiScaleTest {
+    // the scales searched in a 200x160 image: 160 / 20 = 8 is the coarsest
+    private static final int[] SCALES = { 8, 6, 5, 4, 3, 2, 1 };
+
+    /**
+     * Records the number of windows tested in each pass, and expires a
+     * deadline once a given number of passes have finished.
+     */
+    private static class WindowCounter implements PipelineListener {
+        private final List<Integer> lWindows = new ArrayList<>();
+        private int nExpireAfter = Integer.MAX_VALUE;
+        private volatile boolean bExpired = false;
+        private final Deadline deadline = new Deadline() {
+            @Override
+            public boolean isExpired() {
+                return bExpired;
+            }
+        };
+
+        @Override
+        public void bufferAssigned(final ImageSpec spec, final boolean bHit) {
+        }
+
+        @Override
+        public void fftTransformed(final int nWidth, final int nHeight, final boolean bInverse, final long lNanos) {
+        }
+
+        @Override
+        public void haarScalePassed(final int nScale, final int nWidth, final int nHeight, final int nWindows, final long lNanos) {
+            lWindows.add(nWindows);
+            if (lWindows.size() >= nExpireAfter) {
+                bExpired = true;
+            }
+        }
+
+        @Override
+        public void stagePushed(final PipelineStage stage, final Image<?, ?> image, final long lNanos) {
+        }
+
+        int sum(final int nFrom, final int nTo) {
+            int nSum = 0;
+            for (int i = nFrom; i < nTo; i++) {
+                nSum += lWindows.get(i);
+            }
+            return nSum;
+        }
+    }
+
+    // a cascade of one stage which every window passes if nThreshold is 0,
+    // and none if it is 1
+    private static Gray8DetectHaarMultiScale create(final int nThreshold) throws ImageError, IOException {
+        final String szCascade = "(hcsb 20 20 1 (hcs 1 (hwcs (hf (hr 0 0 20 10 -1)(hr 0 10 20 10 1)(hr 0 0 0 0 0)0)0 0 0)" + nThreshold + "))";
+        return new Gray8DetectHaarMultiScale(new ByteArrayInputStream(szCascade.getBytes()), 1, 10);
+    }
+
+    private static Gray8Image<?> createImage() {
+        final Gray8Image<?> image = new Gray8Image<>(200, 160);
+        final Byte[] rb = image.getData();
+        for (int i = 0; i < rb.length; i++) {
+            rb[i] = (byte) ((i * 37) % 251);
+        }
+        return image;
+    }
+
+    @Test
+    public void testPushSearchesEveryScale() throws ImageError, IOException {
+        final Gray8DetectHaarMultiScale haar = Gray8DetectHaarMultiScaleTest.create(1);
+        haar.push(Gray8DetectHaarMultiScaleTest.createImage());
+        assertArrayEquals(Gray8DetectHaarMultiScaleTest.SCALES, haar.getCompletedScales());
+        assertEquals(0, haar.getSparseScales().length);
+        assertTrue(haar.isComplete());
+        for (final Byte b : ((Gray8Image<?>) haar.getFront()).getData()) {
+            assertEquals(Byte.valueOf(Byte.MIN_VALUE), b);
+        }
+    }
+
+    @Test
+    public void testRefinementSkipsSparseWindows() throws ImageError, IOException {
+        final WindowCounter counter = new WindowCounter();
+        PipelineEvents.setListener(counter);
+        try {
+            final Gray8DetectHaarMultiScale haar = Gray8DetectHaarMultiScaleTest.create(1);
+            final int nScales = Gray8DetectHaarMultiScaleTest.SCALES.length;
+            haar.push(Gray8DetectHaarMultiScaleTest.createImage());
+            final int nFull = counter.sum(0, nScales);
+            haar.push(Gray8DetectHaarMultiScaleTest.createImage(), Deadline.NEVER);
+            assertEquals(3 * nScales, counter.lWindows.size());
+            final int nSparse = counter.sum(nScales, 2 * nScales);
+            final int nRefine = counter.sum(2 * nScales, 3 * nScales);
+            // nothing is found, so the two passes together test each window
+            // of the full search exactly once
+            assertTrue(nSparse > 0);
+            assertTrue(nRefine > 0);
+            assertEquals(nFull, nSparse + nRefine);
+            assertTrue(haar.isComplete());
+            assertArrayEquals(Gray8DetectHaarMultiScaleTest.SCALES, haar.getSparseScales());
+            assertArrayEquals(Gray8DetectHaarMultiScaleTest.SCALES, haar.getCompletedScales());
+        } finally {
+            PipelineEvents.setListener(null);
+        }
+    }
+
+    @Test
+    public void testBudgetKeepsSparseFeatures() throws ImageError, IOException {
+        final Gray8DetectHaarMultiScale haar = Gray8DetectHaarMultiScaleTest.create(0);
+        haar.push(Gray8DetectHaarMultiScaleTest.createImage(), Deadline.NEVER);
+        final Gray8Image<?> imMask = (Gray8Image<?>) haar.getFront();
+        assertEquals(200, imMask.getWidth());
+        assertEquals(160, imMask.getHeight());
+        assertTrue(haar.isComplete());
+        // the first window at the coarsest scale covers the top left corner
+        assertEquals(Byte.valueOf(Byte.MAX_VALUE), imMask.getData()[(80 * 200) + 80]);
+    }
+
+    @Test
+    public void testBudgetExpiresDuringRefinement() throws ImageError, IOException {
+        final WindowCounter counter = new WindowCounter();
+        final int nScales = Gray8DetectHaarMultiScaleTest.SCALES.length;
+        // expire after the sparse search and two scales of the refinement
+        counter.nExpireAfter = nScales + 2;
+        PipelineEvents.setListener(counter);
+        try {
+            final Gray8DetectHaarMultiScale haar = Gray8DetectHaarMultiScaleTest.create(1);
+            haar.push(Gray8DetectHaarMultiScaleTest.createImage(), counter.deadline);
+            assertFalse(haar.isComplete());
+            assertArrayEquals(Gray8DetectHaarMultiScaleTest.SCALES, haar.getSparseScales());
+            assertArrayEquals(new int[] { 8, 6 }, haar.getCompletedScales());
+            assertEquals(200, haar.getFront().getWidth());
+        } finally {
+            PipelineEvents.setListener(null);
+        }
+    }
+
+    @Test
+    public void testBudgetAlreadyExpired() throws ImageError, IOException {
+        final Gray8DetectHaarMultiScale haar = Gray8DetectHaarMultiScaleTest.create(0);
+        haar.push(Gray8DetectHaarMultiScaleTest.createImage(), Deadline.after(0));
+        assertFalse(haar.isComplete());
+        assertEquals(0, haar.getSparseScales().length);
+        assertEquals(0, haar.getCompletedScales().length);
+        final Gray8Image<?> imMask = (Gray8Image<?>) haar.getFront();
+        assertEquals(160, imMask.getHeight());
+        for (final Byte b : imMask.getData()) {
+            assertEquals(Byte.valueOf(Byte.MIN_VALUE), b);
+        }
+    }
+
+    @Test
+    public void testDeadlineAbandonsImage() throws ImageError, IOException {
+        final Gray8DetectHaarMultiScale haar = Gray8DetectHaarMultiScaleTest.create(1);
+        assertSame(Deadline.NEVER, haar.getDeadline());
+        haar.setDeadline(Deadline.after(0));
+        for (int i = 0; i < 2; i++) {
+            try {
+                if (i == 0) {
+                    haar.push(Gray8DetectHaarMultiScaleTest.createImage());
+                } else {
+                    haar.push(Gray8DetectHaarMultiScaleTest.createImage(), Deadline.NEVER);
+                }
+                fail("expected the deadline to expire");
+            } catch (final ImageError e) {
+                assertEquals(ImageError.PACKAGE.CORE, e.getPackage());
+                assertEquals(ErrorCodes.PIPELINE_DEADLINE_EXPIRED, e.getCode());
+            }
+        }
+    }
+}
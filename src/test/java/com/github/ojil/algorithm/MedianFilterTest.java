@@ -0,0 +1,95 @@
+package com.github.ojil.algorithm;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class MedianFilterTest {
+
+    // the median of each window found by sorting, with the border pixels
+    // repeated
+    private static byte[] reference(final byte[] rbIn, final int cWidth, final int cHeight, final int nRadius) {
+        final int cSide = (2 * nRadius) + 1;
+        final int[] rnWindow = new int[cSide * cSide];
+        final byte[] rbOut = new byte[rbIn.length];
+        for (int i = 0; i < cHeight; i++) {
+            for (int j = 0; j < cWidth; j++) {
+                int n = 0;
+                for (int k = i - nRadius; k <= (i + nRadius); k++) {
+                    final int nRow = Math.min(Math.max(k, 0), cHeight - 1);
+                    for (int l = j - nRadius; l <= (j + nRadius); l++) {
+                        rnWindow[n++] = rbIn[(nRow * cWidth) + Math.min(Math.max(l, 0), cWidth - 1)] & 0xff;
+                    }
+                }
+                Arrays.sort(rnWindow);
+                rbOut[(i * cWidth) + j] = (byte) rnWindow[rnWindow.length / 2];
+            }
+        }
+        return rbOut;
+    }
+
+    private static byte[] random(final Random r, final int n) {
+        final byte[] rb = new byte[n];
+        r.nextBytes(rb);
+        return rb;
+    }
+
+    private static void check(final MedianFilter filter, final Random r, final int cWidth, final int cHeight, final int nRadius) {
+        final byte[] rbIn = MedianFilterTest.random(r, cWidth * cHeight);
+        final byte[] rbOut = new byte[rbIn.length];
+        filter.filter(rbIn, rbOut, cWidth, cHeight);
+        assertArrayEquals(MedianFilterTest.reference(rbIn, cWidth, cHeight, nRadius), rbOut);
+    }
+
+    @Test
+    public void testMatchesSort() {
+        final Random r = new Random(1);
+        // strips are at most 192 columns and at least 4 windows wide, so
+        // these give one, two and three strips, and windows larger than the
+        // image
+        final int[][] rrnCases = { { 1, 50, 30 }, { 2, 400, 20 }, { 3, 385, 25 }, { 5, 250, 17 }, { 12, 400, 31 }, { 30, 300, 12 }, { 4, 6, 3 } };
+        for (final int[] rnCase : rrnCases) {
+            MedianFilterTest.check(new MedianFilter(rnCase[0], null), r, rnCase[1], rnCase[2], rnCase[0]);
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSort() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final Random r = new Random(2);
+            // at least one strip per thread, unless that would make them too
+            // narrow
+            final int[][] rrnCases = { { 1, 600, 20 }, { 3, 90, 15 }, { 7, 250, 18 }, { 2, 13, 40 } };
+            for (final int[] rnCase : rrnCases) {
+                MedianFilterTest.check(new MedianFilter(rnCase[0], pool), r, rnCase[1], rnCase[2], rnCase[0]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testReusedFilter() {
+        // the strips are rebuilt when the size changes, and their histograms
+        // cleared on every call
+        final Random r = new Random(3);
+        final MedianFilter filter = new MedianFilter(2, null);
+        for (final int cWidth : new int[] { 400, 400, 37, 400 }) {
+            MedianFilterTest.check(filter, r, cWidth, 11, 2);
+        }
+    }
+
+    @Test
+    public void testRadiusZero() {
+        final Random r = new Random(4);
+        final byte[] rbIn = MedianFilterTest.random(r, 20 * 10);
+        final byte[] rbOut = new byte[rbIn.length];
+        new MedianFilter(0, null).filter(rbIn, rbOut, 20, 10);
+        assertArrayEquals(rbIn, rbOut);
+    }
+}
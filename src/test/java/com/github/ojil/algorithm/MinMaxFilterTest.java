@@ -0,0 +1,107 @@
+package com.github.ojil.algorithm;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MinMaxFilterTest {
+    // the binary path packs 64 pixels to a long, so widths either side of
+    // a multiple of 64 exercise its word boundaries
+    private static final int[] WIDTHS = { 1, 5, 63, 64, 65, 127, 128, 130 };
+    private static final boolean[][] OPS = { { true }, { false }, { false, true }, { true, false }, { true, true, false } };
+
+    // brute-force maximum or minimum over the window, cut off at the borders,
+    // for each operation in turn
+    private static Byte[] reference(final Byte[] bIn, final int cWidth, final int cHeight, final int nWindowWidth, final int nWindowHeight, final boolean[] rbDilate) {
+        Byte[] b = bIn.clone();
+        for (int nOp = 0; nOp < rbDilate.length; nOp++) {
+            // odd operations use the reflected window
+            final int nLeft = ((nOp % 2) == 0) ? (nWindowWidth - 1) / 2 : nWindowWidth / 2;
+            final int nTop = ((nOp % 2) == 0) ? (nWindowHeight - 1) / 2 : nWindowHeight / 2;
+            final Byte[] bNext = new Byte[b.length];
+            for (int i = 0; i < cHeight; i++) {
+                for (int j = 0; j < cWidth; j++) {
+                    int n = rbDilate[nOp] ? Byte.MIN_VALUE : Byte.MAX_VALUE;
+                    for (int k = Math.max(0, i - nTop); k < Math.min(cHeight, (i - nTop) + nWindowHeight); k++) {
+                        for (int l = Math.max(0, j - nLeft); l < Math.min(cWidth, (j - nLeft) + nWindowWidth); l++) {
+                            n = rbDilate[nOp] ? Math.max(n, b[(k * cWidth) + l]) : Math.min(n, b[(k * cWidth) + l]);
+                        }
+                    }
+                    bNext[(i * cWidth) + j] = (byte) n;
+                }
+            }
+            b = bNext;
+        }
+        return b;
+    }
+
+    private static Byte[] filter(final Byte[] bIn, final int cWidth, final int cHeight, final int nWindowWidth, final int nWindowHeight, final boolean[] rbDilate) {
+        final Byte[] bOut = new Byte[bIn.length];
+        new MinMaxFilter().push(bIn, bOut, cWidth, cHeight, nWindowWidth, nWindowHeight, rbDilate);
+        return bOut;
+    }
+
+    @Test
+    public void testBinaryMatchesGray() {
+        final Random r = new Random(1);
+        for (final int cWidth : MinMaxFilterTest.WIDTHS) {
+            final int cHeight = 1 + r.nextInt(20);
+            final Byte[] bBinary = new Byte[cWidth * cHeight];
+            final Byte[] bGray = new Byte[bBinary.length];
+            for (int i = 0; i < bBinary.length; i++) {
+                final boolean bSet = r.nextInt(5) == 0;
+                bBinary[i] = bSet ? Byte.MAX_VALUE : Byte.MIN_VALUE;
+                // the same image with other values, which takes the gray path;
+                // max and min commute with this mapping
+                bGray[i] = (byte) (bSet ? 100 : -100);
+            }
+            for (final boolean[] rbDilate : MinMaxFilterTest.OPS) {
+                final int nWindowWidth = 1 + r.nextInt(Math.min(cWidth + 2, 70));
+                final int nWindowHeight = 1 + r.nextInt(7);
+                final Byte[] bOutBinary = MinMaxFilterTest.filter(bBinary, cWidth, cHeight, nWindowWidth, nWindowHeight, rbDilate);
+                final Byte[] bOutGray = MinMaxFilterTest.filter(bGray, cWidth, cHeight, nWindowWidth, nWindowHeight, rbDilate);
+                for (int i = 0; i < bOutBinary.length; i++) {
+                    assertEquals((bOutGray[i] == 100) ? Byte.valueOf(Byte.MAX_VALUE) : Byte.valueOf(Byte.MIN_VALUE), bOutBinary[i]);
+                }
+                assertArrayEquals(MinMaxFilterTest.reference(bBinary, cWidth, cHeight, nWindowWidth, nWindowHeight, rbDilate), bOutBinary);
+            }
+        }
+    }
+
+    @Test
+    public void testGrayMatchesReference() {
+        final Random r = new Random(2);
+        for (final int cWidth : MinMaxFilterTest.WIDTHS) {
+            final int cHeight = 1 + r.nextInt(20);
+            final Byte[] bIn = new Byte[cWidth * cHeight];
+            for (int i = 0; i < bIn.length; i++) {
+                bIn[i] = (byte) r.nextInt(256);
+            }
+            for (final boolean[] rbDilate : MinMaxFilterTest.OPS) {
+                final int nWindowWidth = 1 + r.nextInt(Math.min(cWidth + 2, 20));
+                final int nWindowHeight = 1 + r.nextInt(cHeight + 2);
+                assertArrayEquals(MinMaxFilterTest.reference(bIn, cWidth, cHeight, nWindowWidth, nWindowHeight, rbDilate),
+                        MinMaxFilterTest.filter(bIn, cWidth, cHeight, nWindowWidth, nWindowHeight, rbDilate));
+            }
+        }
+    }
+
+    @Test
+    public void testReusedFilter() {
+        // the buffers are kept between pushes, even of different sizes
+        final MinMaxFilter filter = new MinMaxFilter();
+        final Random r = new Random(3);
+        for (final int cWidth : new int[] { 130, 7, 64 }) {
+            final Byte[] bIn = new Byte[cWidth * 9];
+            for (int i = 0; i < bIn.length; i++) {
+                bIn[i] = ((cWidth % 2) == 0) ? (byte) r.nextInt(256) : (r.nextBoolean() ? Byte.MAX_VALUE : Byte.MIN_VALUE);
+            }
+            final Byte[] bOut = new Byte[bIn.length];
+            final boolean[] rbDilate = { false, true };
+            filter.push(bIn, bOut, cWidth, 9, 4, 3, rbDilate);
+            assertArrayEquals(MinMaxFilterTest.reference(bIn, cWidth, 9, 4, 3, rbDilate), bOut);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.github.ojil.algorithm;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.ojil.core.ErrorCodes;
+import com.github.ojil.core.Gray32Image;
+import com.github.ojil.core.Gray32MaskedImage;
+import com.github.ojil.core.Gray32OffsetImage;
+import com.github.ojil.core.Gray8Image;
+import com.github.ojil.core.Gray8MaskedImage;
+import com.github.ojil.core.Gray8OffsetImage;
+import com.github.ojil.core.Image;
+import com.github.ojil.core.ImageError;
+import com.github.ojil.core.PipelineStage;
+
+public class WindowSpliteratorTest {
+    private static final int WIDTH = 61;
+    private static final int HEIGHT = 47;
+
+    /**
+     * Counts the visits to each window, keyed by its offset.
+     */
+    private static class Counter implements WindowSpliterator.Visitor {
+        private final Map<String, AtomicInteger> mapCounts = new ConcurrentHashMap<>();
+
+        @Override
+        public void visit(final int nX, final int nY) {
+            final String szKey = nX + "," + nY;
+            mapCounts.putIfAbsent(szKey, new AtomicInteger());
+            mapCounts.get(szKey).incrementAndGet();
+        }
+    }
+
+    // masks every third pixel, so some window centers are masked and some not
+    private static Gray8Image<?> createMask() {
+        final Gray8Image<?> imMask = new Gray8Image<>(WindowSpliteratorTest.WIDTH, WindowSpliteratorTest.HEIGHT, Byte.valueOf(Byte.MIN_VALUE));
+        final Byte[] rb = imMask.getData();
+        for (int i = 0; i < rb.length; i++) {
+            if ((i % 3) == 0) {
+                rb[i] = Byte.MAX_VALUE;
+            }
+        }
+        return imMask;
+    }
+
+    private static PipelineStage[] createGenerators() throws ImageError {
+        final Gray8Image<?> imGray8 = new Gray8Image<>(WindowSpliteratorTest.WIDTH, WindowSpliteratorTest.HEIGHT, Byte.valueOf((byte) 0));
+        final Gray32Image<?> imGray32 = new Gray32Image<>(WindowSpliteratorTest.WIDTH, WindowSpliteratorTest.HEIGHT, 0);
+        final PipelineStage[] rGenerators = { new Gray8SubImageGenerator(8, 6, 3, 2), new MaskedGray8SubImgGen(8, 6, 3, 2), new MaskedGray32SubImgGen(8, 6, 3, 2) };
+        rGenerators[0].push(imGray8);
+        rGenerators[1].push(new Gray8MaskedImage<>(imGray8, WindowSpliteratorTest.createMask()));
+        rGenerators[2].push(new Gray32MaskedImage<>(imGray32, WindowSpliteratorTest.createMask()));
+        return rGenerators;
+    }
+
+    private static WindowSpliterator windows(final PipelineStage generator) throws ImageError {
+        if (generator instanceof Gray8SubImageGenerator) {
+            return ((Gray8SubImageGenerator) generator).windows();
+        } else if (generator instanceof MaskedGray8SubImgGen) {
+            return ((MaskedGray8SubImgGen) generator).windows();
+        }
+        return ((MaskedGray32SubImgGen) generator).windows();
+    }
+
+    // the offsets of the windows getFront returns, in order
+    private static List<String> drain(final PipelineStage generator) throws ImageError {
+        final List<String> lOffsets = new ArrayList<>();
+        while (!generator.isEmpty()) {
+            final Image<?, ?> image = generator.getFront();
+            if (image instanceof Gray8OffsetImage) {
+                lOffsets.add(((Gray8OffsetImage<?>) image).getXOffset() + "," + ((Gray8OffsetImage<?>) image).getYOffset());
+            } else {
+                lOffsets.add(((Gray32OffsetImage<?>) image).getXOffset() + "," + ((Gray32OffsetImage<?>) image).getYOffset());
+            }
+        }
+        return lOffsets;
+    }
+
+    // splits ws until no part can be split any further
+    private static void splitAll(final WindowSpliterator ws, final List<WindowSpliterator> lParts) {
+        final WindowSpliterator wsPrefix = ws.trySplit();
+        if (wsPrefix == null) {
+            lParts.add(ws);
+        } else {
+            WindowSpliteratorTest.splitAll(wsPrefix, lParts);
+            WindowSpliteratorTest.splitAll(ws, lParts);
+        }
+    }
+
+    private static void checkOnce(final List<String> lExpected, final Counter counter) {
+        assertEquals(lExpected.size(), counter.mapCounts.size());
+        for (final String szKey : lExpected) {
+            assertNotNull(szKey, counter.mapCounts.get(szKey));
+            assertEquals(szKey, 1, counter.mapCounts.get(szKey).get());
+        }
+    }
+
+    @Test
+    public void testSequentialMatchesGetFront() throws ImageError {
+        for (final PipelineStage generator : WindowSpliteratorTest.createGenerators()) {
+            final WindowSpliterator ws = WindowSpliteratorTest.windows(generator);
+            final List<String> lVisited = new ArrayList<>();
+            ws.forEachRemaining(new WindowSpliterator.Visitor() {
+                @Override
+                public void visit(final int nX, final int nY) {
+                    lVisited.add(nX + "," + nY);
+                }
+            });
+            assertEquals(0, ws.estimateSize());
+            assertFalse(lVisited.isEmpty());
+            assertEquals(WindowSpliteratorTest.drain(generator), lVisited);
+        }
+    }
+
+    @Test
+    public void testSplitCoversEveryWindowOnce() throws ImageError {
+        for (final PipelineStage generator : WindowSpliteratorTest.createGenerators()) {
+            final WindowSpliterator ws = WindowSpliteratorTest.windows(generator);
+            final long nSize = ws.estimateSize();
+            final List<WindowSpliterator> lParts = new ArrayList<>();
+            WindowSpliteratorTest.splitAll(ws, lParts);
+            assertTrue(lParts.size() > 1);
+            long nPartSize = 0;
+            for (final WindowSpliterator wsPart : lParts) {
+                assertTrue(wsPart.estimateSize() <= 1);
+                nPartSize += wsPart.estimateSize();
+            }
+            assertEquals(nSize, nPartSize);
+            final Counter counter = new Counter();
+            for (final WindowSpliterator wsPart : lParts) {
+                wsPart.forEachRemaining(counter);
+            }
+            WindowSpliteratorTest.checkOnce(WindowSpliteratorTest.drain(generator), counter);
+        }
+    }
+
+    @Test
+    public void testSplitHalves() throws ImageError {
+        final WindowSpliterator ws = WindowSpliteratorTest.windows(WindowSpliteratorTest.createGenerators()[0]);
+        final long nSize = ws.estimateSize();
+        final WindowSpliterator wsPrefix = ws.trySplit();
+        assertEquals(nSize / 2, wsPrefix.estimateSize());
+        assertEquals(nSize - (nSize / 2), ws.estimateSize());
+        // the prefix holds the first windows
+        final List<String> lFirst = new ArrayList<>();
+        wsPrefix.tryAdvance(new WindowSpliterator.Visitor() {
+            @Override
+            public void visit(final int nX, final int nY) {
+                lFirst.add(nX + "," + nY);
+            }
+        });
+        assertEquals("0,0", lFirst.get(0));
+    }
+
+    @Test
+    public void testForEachParallel() throws ImageError {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (final PipelineStage generator : WindowSpliteratorTest.createGenerators()) {
+                final WindowSpliterator ws = WindowSpliteratorTest.windows(generator);
+                final Counter counter = new Counter();
+                ws.forEachParallel(pool, counter);
+                WindowSpliteratorTest.checkOnce(WindowSpliteratorTest.drain(generator), counter);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testForEachParallelThrows() throws ImageError {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final WindowSpliterator ws = WindowSpliteratorTest.windows(WindowSpliteratorTest.createGenerators()[0]);
+            ws.forEachParallel(pool, new WindowSpliterator.Visitor() {
+                @Override
+                public void visit(final int nX, final int nY) throws ImageError {
+                    if ((nX == 3) && (nY == 2)) {
+                        throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, null, null, null);
+                    }
+                }
+            });
+            fail("expected the visitor's ImageError");
+        } catch (final ImageError e) {
+            assertEquals(ErrorCodes.ILLEGAL_PARAMETER_VALUE, e.getCode());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCrop() throws ImageError {
+        final Gray8Image<?> image = new Gray8Image<>(5, 4, Byte.valueOf((byte) 0));
+        for (int i = 0; i < image.getData().length; i++) {
+            image.getData()[i] = (byte) i;
+        }
+        final Gray8SubImageGenerator generator = new Gray8SubImageGenerator(2, 2, 1, 1);
+        generator.push(image);
+        final Gray8OffsetImage<?> imCrop = (Gray8OffsetImage<?>) generator.windows().crop(2, 1);
+        assertEquals(2, imCrop.getXOffset());
+        assertEquals(1, imCrop.getYOffset());
+        assertArrayEquals(new Byte[] { 7, 8, 12, 13 }, imCrop.getData());
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BufferPlanTest {
+    private static final ImageSpec GRAY_4X4 = new ImageSpec(Gray8Image.class, 4, 4);
+    private static final ImageSpec GRAY_8X8 = new ImageSpec(Gray8Image.class, 8, 8);
+    private static final ImageSpec GRAY32_4X4 = new ImageSpec(Gray32Image.class, 4, 4);
+
+    @Test
+    public void testChainUsesTwoBuffers() {
+        final BufferPlan plan = new BufferPlan();
+        for (int i = 0; i < 10; i++) {
+            final int nImage = plan.define(BufferPlanTest.GRAY_4X4, i);
+            if (i > 0) {
+                plan.use(nImage - 1, i);
+            }
+        }
+        assertEquals(2, plan.getBufferCount());
+        for (int i = 1; i < 10; i++) {
+            // a stage never writes into the buffer it reads
+            assertTrue(plan.getBuffer(i - 1) != plan.getBuffer(i));
+        }
+    }
+
+    @Test
+    public void testDifferentSpecsDoNotShare() {
+        final BufferPlan plan = new BufferPlan();
+        final int nFirst = plan.define(BufferPlanTest.GRAY_4X4, 0);
+        final int nSecond = plan.define(BufferPlanTest.GRAY_8X8, 1);
+        plan.use(nFirst, 1);
+        final int nThird = plan.define(BufferPlanTest.GRAY32_4X4, 2);
+        plan.use(nSecond, 2);
+        final int nFourth = plan.define(BufferPlanTest.GRAY_4X4, 3);
+        plan.use(nThird, 3);
+        assertEquals(3, plan.getBufferCount());
+        // the first image is dead by step 3 and its spec matches
+        assertEquals(plan.getBuffer(nFirst), plan.getBuffer(nFourth));
+    }
+
+    @Test
+    public void testLongLivedImageKeepsItsBuffer() {
+        final BufferPlan plan = new BufferPlan();
+        // image 0 is read at steps 1 and 3, like a skip connection
+        final int nSkip = plan.define(BufferPlanTest.GRAY_4X4, 0);
+        plan.use(nSkip, 1);
+        final int nA = plan.define(BufferPlanTest.GRAY_4X4, 1);
+        final int nB = plan.define(BufferPlanTest.GRAY_4X4, 2);
+        plan.use(nA, 2);
+        final int nC = plan.define(BufferPlanTest.GRAY_4X4, 3);
+        plan.use(nB, 3);
+        plan.use(nSkip, 3);
+        assertTrue(plan.getBuffer(nSkip) != plan.getBuffer(nA));
+        assertTrue(plan.getBuffer(nSkip) != plan.getBuffer(nB));
+        assertTrue(plan.getBuffer(nSkip) != plan.getBuffer(nC));
+        assertTrue(plan.getBuffer(nB) != plan.getBuffer(nC));
+        assertEquals(plan.getBuffer(nA), plan.getBuffer(nC));
+        assertEquals(3, plan.getBufferCount());
+    }
+
+    @Test
+    public void testUnreadImageStaysLive() {
+        final BufferPlan plan = new BufferPlan();
+        plan.define(BufferPlanTest.GRAY_4X4, 0);
+        final int nA = plan.define(BufferPlanTest.GRAY_4X4, 1);
+        final int nB = plan.define(BufferPlanTest.GRAY_4X4, 2);
+        plan.use(nA, 2);
+        plan.define(BufferPlanTest.GRAY_4X4, 3);
+        plan.use(nB, 3);
+        // image 0 is never read, so only images 1 and 2 can trade buffers
+        assertEquals(3, plan.getBufferCount());
+    }
+
+    @Test
+    public void testReplanAfterUse() {
+        final BufferPlan plan = new BufferPlan();
+        final int nA = plan.define(BufferPlanTest.GRAY_4X4, 0);
+        final int nB = plan.define(BufferPlanTest.GRAY_4X4, 1);
+        plan.use(nA, 1);
+        final int nC = plan.define(BufferPlanTest.GRAY_4X4, 2);
+        plan.use(nB, 2);
+        assertEquals(plan.getBuffer(nA), plan.getBuffer(nC));
+        // reading image A later extends its range, so the plan must change
+        plan.use(nA, 2);
+        assertTrue(plan.getBuffer(nA) != plan.getBuffer(nC));
+        assertEquals(3, plan.getBufferCount());
+    }
+
+    @Test
+    public void testAllocate() throws ImageError {
+        final BufferPlan plan = new BufferPlan();
+        final int nA = plan.define(BufferPlanTest.GRAY_4X4, 0);
+        final int nB = plan.define(BufferPlanTest.GRAY32_4X4, 1);
+        plan.use(nA, 1);
+        final Image<?, ?>[] rImages = plan.allocate();
+        assertEquals(2, rImages.length);
+        assertTrue(BufferPlanTest.GRAY_4X4.matches(rImages[plan.getBuffer(nA)]));
+        assertTrue(BufferPlanTest.GRAY32_4X4.matches(rImages[plan.getBuffer(nB)]));
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CachedStageTest {
+
+    /**
+     * Adds a constant to every pixel and counts its pushes.
+     */
+    private static class CountingStage extends SequenceTest.AddStage {
+        private int nPushes = 0;
+
+        CountingStage(final int nAdd) {
+            super(nAdd);
+        }
+
+        @Override
+        public void push(final Image<?, ?> image) throws ImageError {
+            nPushes++;
+            super.push(image);
+        }
+    }
+
+    private static Gray8Image<?> createImage(final int nValue) {
+        return new Gray8Image<>(3, 3, Byte.valueOf((byte) nValue));
+    }
+
+    @Test
+    public void testHitAndMiss() throws ImageError {
+        final CountingStage stage = new CountingStage(1);
+        final CachedStage cached = new CachedStage(stage, 4);
+        cached.push(CachedStageTest.createImage(1));
+        assertEquals(Byte.valueOf((byte) 2), cached.getFront().getData()[0]);
+        assertTrue(cached.isEmpty());
+        cached.push(CachedStageTest.createImage(1));
+        assertEquals(Byte.valueOf((byte) 2), cached.getFront().getData()[0]);
+        cached.push(CachedStageTest.createImage(5));
+        assertEquals(Byte.valueOf((byte) 6), cached.getFront().getData()[0]);
+        assertEquals(2, stage.nPushes);
+        assertEquals(1, cached.getHitCount());
+        assertEquals(2, cached.getMissCount());
+        assertEquals(2, cached.getSize());
+        assertEquals(18, cached.getPixels());
+    }
+
+    @Test
+    public void testOutputsAreCopies() throws ImageError {
+        final CachedStage cached = new CachedStage(new CountingStage(1), 4);
+        cached.push(CachedStageTest.createImage(1));
+        final Image<?, ?> image1 = cached.getFront();
+        image1.getData()[0] = null;
+        cached.push(CachedStageTest.createImage(1));
+        final Image<?, ?> image2 = cached.getFront();
+        // changing a returned image does not change the cache
+        assertNotSame(image1, image2);
+        assertEquals(Byte.valueOf((byte) 2), image2.getData()[0]);
+    }
+
+    @Test
+    public void testSizeIsPartOfKey() throws ImageError {
+        final CountingStage stage = new CountingStage(1);
+        final CachedStage cached = new CachedStage(stage, 4);
+        cached.push(new Gray8Image<>(2, 3, Byte.valueOf((byte) 0)));
+        cached.push(new Gray8Image<>(3, 2, Byte.valueOf((byte) 0)));
+        assertEquals(2, stage.nPushes);
+        assertEquals(3, cached.getFront().getWidth());
+        assertTrue(cached.hash(new Gray8Image<>(2, 3)) != cached.hash(new Gray8Image<>(3, 2)));
+    }
+
+    @Test
+    public void testEviction() throws ImageError {
+        final CountingStage stage = new CountingStage(1);
+        final CachedStage cached = new CachedStage(stage, 2);
+        cached.push(CachedStageTest.createImage(1));
+        cached.push(CachedStageTest.createImage(2));
+        // touch image 1 so that image 2 is the least recently used
+        cached.push(CachedStageTest.createImage(1));
+        cached.push(CachedStageTest.createImage(3));
+        assertEquals(1, cached.getEvictionCount());
+        assertEquals(2, cached.getSize());
+        cached.push(CachedStageTest.createImage(1));
+        assertEquals(3, stage.nPushes);
+        cached.push(CachedStageTest.createImage(2));
+        assertEquals(4, stage.nPushes);
+    }
+
+    @Test
+    public void testPixelLimit() throws ImageError {
+        final CachedStage cached = new CachedStage(new CountingStage(1), 10, 20, 1);
+        cached.push(CachedStageTest.createImage(1));
+        cached.push(CachedStageTest.createImage(2));
+        cached.push(CachedStageTest.createImage(3));
+        assertEquals(2, cached.getSize());
+        assertEquals(18, cached.getPixels());
+        cached.clear();
+        assertEquals(0, cached.getSize());
+        assertEquals(0, cached.getPixels());
+    }
+
+    @Test(expected = ImageError.class)
+    public void testNoEntries() throws ImageError {
+        new CachedStage(new CountingStage(1), 0);
+    }
+}
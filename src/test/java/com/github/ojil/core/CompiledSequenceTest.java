@@ -0,0 +1,92 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CompiledSequenceTest {
+
+    /**
+     * Adds a constant to every pixel of a Gray8Image, writing into the image
+     * it is given.
+     */
+    static class AddBufferedStage implements BufferedStage {
+        private final byte bAdd;
+
+        AddBufferedStage(final int nAdd) {
+            bAdd = (byte) nAdd;
+        }
+
+        @Override
+        public ImageSpec getOutputSpec(final ImageSpec specInput) throws ImageError {
+            if (!specInput.is(Gray8Image.class)) {
+                throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, specInput.toString(), null, null);
+            }
+            return specInput;
+        }
+
+        @Override
+        public void push(final Image<?, ?> imageInput, final Image<?, ?> imageOutput) {
+            final Byte[] rbIn = ((Gray8Image<?>) imageInput).getData();
+            final Byte[] rbOut = ((Gray8Image<?>) imageOutput).getData();
+            for (int i = 0; i < rbIn.length; i++) {
+                rbOut[i] = (byte) (rbIn[i] + bAdd);
+            }
+        }
+    }
+
+    private static final ImageSpec GRAY_4X3 = new ImageSpec(Gray8Image.class, 4, 3);
+
+    @Test
+    public void testChainUsesTwoBuffers() throws ImageError {
+        final CompiledSequence seq = new CompiledSequence(CompiledSequenceTest.GRAY_4X3, new AddBufferedStage(1), new AddBufferedStage(2), new AddBufferedStage(3), new AddBufferedStage(4));
+        assertEquals(2, seq.getBufferCount());
+        assertEquals(CompiledSequenceTest.GRAY_4X3, seq.getInputSpec());
+    }
+
+    @Test
+    public void testSingleStageUsesOneBuffer() throws ImageError {
+        assertEquals(1, new CompiledSequence(CompiledSequenceTest.GRAY_4X3, new AddBufferedStage(1)).getBufferCount());
+    }
+
+    @Test
+    public void testPush() throws ImageError {
+        final CompiledSequence seq = new CompiledSequence(CompiledSequenceTest.GRAY_4X3, new AddBufferedStage(1), new AddBufferedStage(2), new AddBufferedStage(3));
+        final Gray8Image<?> image = new Gray8Image<>(4, 3, Byte.valueOf((byte) 10));
+        seq.push(image);
+        final Image<?, ?> imageResult = seq.getFront();
+        assertNotSame(image, imageResult);
+        assertTrue(CompiledSequenceTest.GRAY_4X3.matches(imageResult));
+        for (final Object b : imageResult.getData()) {
+            assertEquals(Byte.valueOf((byte) 16), b);
+        }
+        // the input is not modified
+        for (final Byte b : image.getData()) {
+            assertEquals(Byte.valueOf((byte) 10), b);
+        }
+    }
+
+    @Test
+    public void testRepeatedPush() throws ImageError {
+        final CompiledSequence seq = new CompiledSequence(CompiledSequenceTest.GRAY_4X3, new AddBufferedStage(1), new AddBufferedStage(1));
+        seq.push(new Gray8Image<>(4, 3, Byte.valueOf((byte) 0)));
+        assertEquals(Byte.valueOf((byte) 2), seq.getFront().getData()[0]);
+        seq.push(new Gray8Image<>(4, 3, Byte.valueOf((byte) 5)));
+        assertEquals(Byte.valueOf((byte) 7), seq.getFront().getData()[0]);
+    }
+
+    @Test(expected = ImageError.class)
+    public void testWrongSize() throws ImageError {
+        new CompiledSequence(CompiledSequenceTest.GRAY_4X3, new AddBufferedStage(1)).push(new Gray8Image<>(3, 4));
+    }
+
+    @Test(expected = ImageError.class)
+    public void testWrongType() throws ImageError {
+        new CompiledSequence(new ImageSpec(Gray32Image.class, 4, 3), new AddBufferedStage(1));
+    }
+
+    @Test(expected = ImageError.class)
+    public void testNoStages() throws ImageError {
+        new CompiledSequence(CompiledSequenceTest.GRAY_4X3);
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class DeadlineTest {
+
+    @Test
+    public void testNever() {
+        assertFalse(Deadline.NEVER.isExpired());
+    }
+
+    @Test
+    public void testAfter() throws InterruptedException {
+        assertTrue(Deadline.after(0).isExpired());
+        assertTrue(Deadline.after(-1).isExpired());
+        assertFalse(Deadline.after(TimeUnit.HOURS.toNanos(1)).isExpired());
+        final Deadline deadline = Deadline.after(TimeUnit.MILLISECONDS.toNanos(1));
+        Thread.sleep(10);
+        assertTrue(deadline.isExpired());
+    }
+}
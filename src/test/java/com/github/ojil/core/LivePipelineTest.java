@@ -0,0 +1,87 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LivePipelineTest {
+
+    /**
+     * On its first push offers a newer frame to the live pipeline and then
+     * gives up on the current one, like a slow stage overtaken by the camera.
+     */
+    private static class OvertakenStage extends SequenceTest.AddStage {
+        private LivePipeline live;
+        private boolean bOvertaken = false;
+
+        OvertakenStage() {
+            super(1);
+        }
+
+        @Override
+        public void push(final Image<?, ?> image) throws ImageError {
+            if (!bOvertaken) {
+                bOvertaken = true;
+                live.offer(new Gray8Image<>(1, 1, Byte.valueOf((byte) 10)));
+            }
+            if (live.getNewerFrameDeadline().isExpired()) {
+                throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.PIPELINE_DEADLINE_EXPIRED, toString(), null, null);
+            }
+            super.push(image);
+        }
+    }
+
+    @Test
+    public void testNewestFrameWins() throws ImageError, InterruptedException {
+        final LivePipeline live = new LivePipeline(new SequenceTest.AddStage(1));
+        live.offer(new Gray8Image<>(1, 1, Byte.valueOf((byte) 1)));
+        live.offer(new Gray8Image<>(1, 1, Byte.valueOf((byte) 2)));
+        assertEquals(Byte.valueOf((byte) 3), live.process().getData()[0]);
+        assertEquals(2, live.getOfferedCount());
+        assertEquals(1, live.getDroppedCount());
+        assertEquals(1, live.getCompletedCount());
+        assertEquals(0, live.getAbortedCount());
+        assertTrue(live.getLastLatency() >= 0);
+        assertTrue(live.getMaxLatency() >= live.getLastLatency());
+        assertFalse(live.getNewerFrameDeadline().isExpired());
+    }
+
+    @Test
+    public void testAbortOnNewerFrame() throws ImageError, InterruptedException {
+        final OvertakenStage stage = new OvertakenStage();
+        final LivePipeline live = new LivePipeline(stage);
+        stage.live = live;
+        live.offer(new Gray8Image<>(1, 1, Byte.valueOf((byte) 1)));
+        assertEquals(Byte.valueOf((byte) 11), live.process().getData()[0]);
+        assertEquals(1, live.getAbortedCount());
+        assertEquals(1, live.getCompletedCount());
+        assertEquals(0, live.getDroppedCount());
+    }
+
+    @Test(expected = ImageError.class)
+    public void testErrorPropagates() throws ImageError, InterruptedException {
+        // an empty Sequence refuses the push
+        final LivePipeline live = new LivePipeline(new Sequence());
+        live.offer(new Gray8Image<>(1, 1));
+        live.process();
+    }
+
+    @Test
+    public void testProcessWaitsForFrame() throws ImageError, InterruptedException {
+        final LivePipeline live = new LivePipeline(new SequenceTest.AddStage(1));
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                live.offer(new Gray8Image<>(1, 1, Byte.valueOf((byte) 4)));
+            }
+        };
+        thread.start();
+        assertEquals(Byte.valueOf((byte) 5), live.process().getData()[0]);
+        thread.join();
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PipelineExecutorTest {
+
+    /**
+     * Copies its input into the same output image on every push, like the
+     * stages that plan their output buffers.
+     */
+    private static class ReusingStage extends PipelineStage {
+        private Gray8Image<?> imageReused;
+
+        @Override
+        public void push(final Image<?, ?> imageInput) throws ImageError {
+            if ((imageReused == null) || (imageReused.getWidth() != imageInput.getWidth()) || (imageReused.getHeight() != imageInput.getHeight())) {
+                imageReused = new Gray8Image<>(imageInput.getWidth(), imageInput.getHeight());
+            }
+            System.arraycopy(imageInput.getData(), 0, imageReused.getData(), 0, imageInput.getWidth() * imageInput.getHeight());
+            setOutput(imageReused);
+        }
+    }
+
+    /**
+     * Outputs its input and then a second image of 99s, or fails part way
+     * through if the input is 0, leaving its input as a partial result.
+     */
+    private static class FlakyStage extends PipelineStage {
+        private final LinkedList<Image<?, ?>> llOutputs = new LinkedList<>();
+
+        @Override
+        public void push(final Image<?, ?> imageInput) throws ImageError {
+            llOutputs.add(imageInput);
+            if (((Byte) imageInput.getData()[0]) == 0) {
+                throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, toString(), null, null);
+            }
+            llOutputs.add(new Gray8Image<>(imageInput.getWidth(), imageInput.getHeight(), Byte.valueOf((byte) 99)));
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return llOutputs.isEmpty();
+        }
+
+        @Override
+        public Image<?, ?> getFront() throws ImageError {
+            if (llOutputs.isEmpty()) {
+                throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.NO_RESULT_AVAILABLE, toString(), null, null);
+            }
+            return llOutputs.removeFirst();
+        }
+    }
+
+    @Test
+    public void testOverlappingRequestsOnPooledPipeline() throws Exception {
+        final AtomicInteger nCreated = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final PipelineExecutor pe = new PipelineExecutor(new PipelineExecutor.Factory() {
+            @Override
+            public PipelineStage create() {
+                nCreated.incrementAndGet();
+                return new ReusingStage();
+            }
+        }, executor, 1);
+        try {
+            final Future<Image<?, ?>> f1 = pe.submit(new Gray8Image<>(4, 4, Byte.valueOf((byte) 1)));
+            final Future<Image<?, ?>> f2 = pe.submit(new Gray8Image<>(4, 4, Byte.valueOf((byte) 2)));
+            final Image<?, ?> image1 = f1.get(10, TimeUnit.SECONDS);
+            final Image<?, ?> image2 = f2.get(10, TimeUnit.SECONDS);
+            // only one push runs at a time, so both requests borrow one pipeline
+            assertEquals(1, nCreated.get());
+            assertEquals(1, pe.getIdleCount());
+            assertNotSame(image1, image2);
+            for (final Object b : image1.getData()) {
+                assertEquals(Byte.valueOf((byte) 1), b);
+            }
+            for (final Object b : image2.getData()) {
+                assertEquals(Byte.valueOf((byte) 2), b);
+            }
+        } finally {
+            pe.shutdown();
+        }
+    }
+
+    @Test
+    public void testImageErrorIsCause() throws Exception {
+        final PipelineExecutor pe = new PipelineExecutor(new PipelineExecutor.Factory() {
+            @Override
+            public PipelineStage create() throws ImageError {
+                throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, null, null, null);
+            }
+        }, Executors.newFixedThreadPool(1), 1);
+        try {
+            pe.submit(new Gray8Image<>(1, 1)).get(10, TimeUnit.SECONDS);
+            fail("expected an ExecutionException");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof ImageError);
+        } finally {
+            pe.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelInterruptsRunningRequest() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        final PipelineExecutor pe = new PipelineExecutor(new PipelineExecutor.Factory() {
+            @Override
+            public PipelineStage create() {
+                return new ReusingStage();
+            }
+        }, executor, 1);
+        final CountDownLatch latchStarted = new CountDownLatch(1);
+        final CountDownLatch latchInterrupted = new CountDownLatch(1);
+        try {
+            final Future<Image<?, ?>> f = pe.submit(new Callable<Image<?, ?>>() {
+                @Override
+                public Image<?, ?> call() throws InterruptedException {
+                    latchStarted.countDown();
+                    try {
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                    } catch (final InterruptedException e) {
+                        latchInterrupted.countDown();
+                        throw e;
+                    }
+                    return new Gray8Image<>(1, 1);
+                }
+            });
+            assertTrue(latchStarted.await(10, TimeUnit.SECONDS));
+            assertTrue(f.cancel(true));
+            assertTrue(latchInterrupted.await(10, TimeUnit.SECONDS));
+            assertTrue(f.isCancelled());
+        } finally {
+            pe.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedPipelineIsDropped() throws Exception {
+        final AtomicInteger nCreated = new AtomicInteger();
+        final PipelineExecutor pe = new PipelineExecutor(new PipelineExecutor.Factory() {
+            @Override
+            public PipelineStage create() {
+                nCreated.incrementAndGet();
+                return new FlakyStage();
+            }
+        }, Executors.newFixedThreadPool(1), 1);
+        try {
+            try {
+                pe.submit(new Gray8Image<>(2, 2, Byte.valueOf((byte) 0))).get(10, TimeUnit.SECONDS);
+                fail("expected an ExecutionException");
+            } catch (final ExecutionException e) {
+                assertTrue(e.getCause() instanceof ImageError);
+            }
+            assertEquals(0, pe.getIdleCount());
+            // a new pipeline serves the next request, so the partial result of
+            // the failed one is not returned
+            final Image<?, ?> image = pe.submit(new Gray8Image<>(2, 2, Byte.valueOf((byte) 5))).get(10, TimeUnit.SECONDS);
+            assertEquals(Byte.valueOf((byte) 5), image.getData()[0]);
+            assertEquals(2, nCreated.get());
+            assertEquals(1, pe.getIdleCount());
+            // the second output of the last push was discarded, not returned
+            final Image<?, ?> imageNext = pe.submit(new Gray8Image<>(2, 2, Byte.valueOf((byte) 7))).get(10, TimeUnit.SECONDS);
+            assertEquals(Byte.valueOf((byte) 7), imageNext.getData()[0]);
+            assertEquals(2, nCreated.get());
+        } finally {
+            pe.shutdown();
+        }
+    }
+}
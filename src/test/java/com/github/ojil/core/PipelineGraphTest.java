@@ -0,0 +1,198 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class PipelineGraphTest {
+
+    /**
+     * Zeroes its input in place and passes it on.
+     */
+    private static class ClearStage extends PipelineStage {
+        @Override
+        public void push(final Image<?, ?> image) {
+            final Byte[] rb = ((Gray8Image<?>) image).getData();
+            for (int i = 0; i < rb.length; i++) {
+                rb[i] = 0;
+            }
+            setOutput(image);
+        }
+    }
+
+    /**
+     * Passes its input on once it is released, ignoring interrupts.
+     */
+    private static class BlockingStage extends PipelineStage {
+        private final CountDownLatch latchStarted = new CountDownLatch(1);
+        private final CountDownLatch latchRelease = new CountDownLatch(1);
+        private final AtomicBoolean bFinished = new AtomicBoolean();
+
+        @Override
+        public void push(final Image<?, ?> image) {
+            latchStarted.countDown();
+            boolean bReleased = false;
+            while (!bReleased) {
+                try {
+                    latchRelease.await();
+                    bReleased = true;
+                } catch (final InterruptedException e) {
+                    // keep running, like a stage that does not check
+                }
+            }
+            bFinished.set(true);
+            setOutput(image);
+        }
+    }
+
+    private static final Ladder.Join SUM = new Ladder.Join() {
+        @Override
+        public Image<?, ?> doJoin(final Image<?, ?> imageFirst, final Image<?, ?> imageSecond) throws ImageError {
+            return PipelineGraphTest.MERGE_SUM.doMerge(new Image<?, ?>[] { imageFirst, imageSecond });
+        }
+    };
+
+    private static final PipelineGraph.Merge MERGE_SUM = new PipelineGraph.Merge() {
+        @Override
+        public Image<?, ?> doMerge(final Image<?, ?>[] rImages) {
+            final Gray8Image<?> result = new Gray8Image<>(rImages[0].getWidth(), rImages[0].getHeight(), Byte.valueOf((byte) 0));
+            final Byte[] rbOut = result.getData();
+            for (final Image<?, ?> image : rImages) {
+                final Byte[] rbIn = ((Gray8Image<?>) image).getData();
+                for (int i = 0; i < rbOut.length; i++) {
+                    rbOut[i] = (byte) (rbOut[i] + rbIn[i]);
+                }
+            }
+            return result;
+        }
+    };
+
+    // input -> a (+1), input -> b (+2), join = a + b, merge = input + a + b + join
+    private static PipelineGraph createDiamond(final ExecutorService executor) throws ImageError {
+        final PipelineGraph graph = new PipelineGraph(executor);
+        graph.addStage("a", new SequenceTest.AddStage(1), PipelineGraph.INPUT);
+        graph.addStage("b", new SequenceTest.AddStage(2), PipelineGraph.INPUT);
+        graph.addJoin("join", PipelineGraphTest.SUM, "a", "b");
+        graph.addMerge("merge", PipelineGraphTest.MERGE_SUM, PipelineGraph.INPUT, "a", "b", "join");
+        return graph;
+    }
+
+    private static void checkDiamond(final PipelineGraph graph) throws ImageError {
+        graph.push(new Gray8Image<>(2, 2, Byte.valueOf((byte) 10)));
+        assertEquals(Byte.valueOf((byte) 11), graph.getResult("a").getData()[0]);
+        assertEquals(Byte.valueOf((byte) 12), graph.getResult("b").getData()[0]);
+        assertEquals(Byte.valueOf((byte) 23), graph.getResult("join").getData()[0]);
+        assertEquals(Byte.valueOf((byte) 56), graph.getResult("merge").getData()[3]);
+        // the most recently added node is the result
+        assertSame(graph.getResult("merge"), graph.getFront());
+    }
+
+    @Test
+    public void testDiamond() throws ImageError {
+        PipelineGraphTest.checkDiamond(PipelineGraphTest.createDiamond(null));
+    }
+
+    @Test
+    public void testDiamondParallel() throws ImageError {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final PipelineGraph graph = PipelineGraphTest.createDiamond(executor);
+            for (int i = 0; i < 10; i++) {
+                PipelineGraphTest.checkDiamond(graph);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInterruptWaitsForLevel() throws ImageError, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final BlockingStage stage = new BlockingStage();
+        final PipelineGraph graph = new PipelineGraph(executor);
+        graph.addStage("block", stage, PipelineGraph.INPUT);
+        graph.addStage("add", new SequenceTest.AddStage(1), PipelineGraph.INPUT);
+        final AtomicReference<ImageError> refError = new AtomicReference<>();
+        final AtomicBoolean bFinishedFirst = new AtomicBoolean();
+        final AtomicBoolean bInterrupted = new AtomicBoolean();
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    graph.push(new Gray8Image<>(1, 1, Byte.valueOf((byte) 0)));
+                } catch (final ImageError e) {
+                    refError.set(e);
+                }
+                bFinishedFirst.set(stage.bFinished.get());
+                bInterrupted.set(Thread.currentThread().isInterrupted());
+            }
+        };
+        try {
+            thread.start();
+            assertTrue(stage.latchStarted.await(10, TimeUnit.SECONDS));
+            thread.interrupt();
+            // push keeps waiting while the node is still running
+            thread.join(200);
+            assertTrue(thread.isAlive());
+            stage.latchRelease.countDown();
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(thread.isAlive());
+            assertTrue(bFinishedFirst.get());
+            assertTrue(bInterrupted.get());
+            assertNotNull(refError.get());
+            assertEquals(ErrorCodes.PIPELINE_INTERRUPTED, refError.get().getCode());
+        } finally {
+            stage.latchRelease.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSetResult() throws ImageError {
+        final PipelineGraph graph = PipelineGraphTest.createDiamond(null);
+        graph.setResult("b");
+        graph.push(new Gray8Image<>(1, 1, Byte.valueOf((byte) 0)));
+        assertEquals(Byte.valueOf((byte) 2), graph.getFront().getData()[0]);
+    }
+
+    @Test
+    public void testCopyProtectsSharedInput() throws ImageError {
+        final PipelineGraph graph = new PipelineGraph();
+        graph.addStage("clear", new ClearStage(), PipelineGraph.INPUT, true);
+        graph.addStage("add", new SequenceTest.AddStage(1), PipelineGraph.INPUT);
+        final Gray8Image<?> image = new Gray8Image<>(2, 2, Byte.valueOf((byte) 5));
+        graph.push(image);
+        assertEquals(Byte.valueOf((byte) 0), graph.getResult("clear").getData()[0]);
+        assertEquals(Byte.valueOf((byte) 6), graph.getResult("add").getData()[0]);
+        assertEquals(Byte.valueOf((byte) 5), image.getData()[0]);
+    }
+
+    @Test(expected = ImageError.class)
+    public void testDuplicateName() throws ImageError {
+        final PipelineGraph graph = new PipelineGraph();
+        graph.addStage("a", new SequenceTest.AddStage(1), PipelineGraph.INPUT);
+        graph.addStage("a", new SequenceTest.AddStage(1), PipelineGraph.INPUT);
+    }
+
+    @Test(expected = ImageError.class)
+    public void testUnknownInput() throws ImageError {
+        new PipelineGraph().addStage("a", new SequenceTest.AddStage(1), "missing");
+    }
+
+    @Test(expected = ImageError.class)
+    public void testResultBeforePush() throws ImageError {
+        PipelineGraphTest.createDiamond(null).getResult("a");
+    }
+
+    @Test(expected = ImageError.class)
+    public void testEmptyPush() throws ImageError {
+        new PipelineGraph().push(new Gray8Image<>(1, 1));
+    }
+}
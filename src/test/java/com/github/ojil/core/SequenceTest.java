@@ -0,0 +1,57 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SequenceTest {
+
+    /**
+     * Adds a constant to every pixel of a Gray8Image.
+     */
+    static class AddStage extends PipelineStage {
+        private final byte bAdd;
+
+        AddStage(final int nAdd) {
+            bAdd = (byte) nAdd;
+        }
+
+        @Override
+        public void push(final Image<?, ?> image) throws ImageError {
+            final Byte[] rbIn = ((Gray8Image<?>) image).getData();
+            final Gray8Image<?> result = new Gray8Image<>(image.getWidth(), image.getHeight());
+            final Byte[] rbOut = result.getData();
+            for (int i = 0; i < rbIn.length; i++) {
+                rbOut[i] = (byte) (rbIn[i] + bAdd);
+            }
+            setOutput(result);
+        }
+    }
+
+    @Test
+    public void testNullHeadIsEmpty() throws ImageError {
+        final Sequence seq = new Sequence(null);
+        assertTrue(seq.isEmpty());
+        assertEquals("(null)", seq.toString());
+        seq.add(new AddStage(1));
+        seq.add(new AddStage(2));
+        seq.push(new Gray8Image<>(2, 2, Byte.valueOf((byte) 0)));
+        assertEquals(Byte.valueOf((byte) 3), seq.getFront().getData()[0]);
+    }
+
+    @Test(expected = ImageError.class)
+    public void testEmptyPush() throws ImageError {
+        new Sequence().push(new Gray8Image<>(1, 1));
+    }
+
+    @Test
+    public void testLongSequence() throws ImageError {
+        // long enough that the old recursive push would overflow the stack
+        final Sequence seq = new Sequence();
+        for (int n = 0; n < 20000; n++) {
+            seq.add(new AddStage(1));
+        }
+        seq.push(new Gray8Image<>(1, 1, Byte.valueOf((byte) 0)));
+        assertEquals(Byte.valueOf((byte) (20000 % 256)), seq.getFront().getData()[0]);
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StageProcessorTest {
+
+    /**
+     * Records what upstream was asked for.
+     */
+    private static class Upstream implements Flow.Subscription {
+        private long nRequested = 0;
+        private boolean bCancelled = false;
+
+        @Override
+        public void cancel() {
+            bCancelled = true;
+        }
+
+        @Override
+        public void request(final long n) {
+            nRequested += n;
+        }
+    }
+
+    /**
+     * Records what it receives.
+     */
+    private static class Downstream implements Flow.Subscriber<Image<?, ?>> {
+        private Flow.Subscription subscription;
+        private final List<Image<?, ?>> lImages = new ArrayList<>();
+        private Throwable err;
+        private boolean bComplete = false;
+
+        @Override
+        public void onComplete() {
+            bComplete = true;
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            err = throwable;
+        }
+
+        @Override
+        public void onNext(final Image<?, ?> image) {
+            lImages.add(image);
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+    }
+
+    /**
+     * Rejects every image.
+     */
+    private static class FailingStage extends PipelineStage {
+        @Override
+        public void push(final Image<?, ?> image) throws ImageError {
+            throw new ImageError(ImageError.PACKAGE.CORE, ErrorCodes.ILLEGAL_PARAMETER_VALUE, image.toString(), null, null);
+        }
+    }
+
+    @Test
+    public void testDemand() {
+        final StageProcessor processor = new StageProcessor(new SequenceTest.AddStage(1));
+        final Upstream upstream = new Upstream();
+        final Downstream downstream = new Downstream();
+        processor.onSubscribe(upstream);
+        processor.subscribe(downstream);
+        // nothing is requested until downstream asks
+        assertEquals(0, upstream.nRequested);
+        downstream.subscription.request(2);
+        assertEquals(1, upstream.nRequested);
+        processor.onNext(new Gray8Image<>(1, 1, Byte.valueOf((byte) 1)));
+        assertEquals(2, upstream.nRequested);
+        processor.onNext(new Gray8Image<>(1, 1, Byte.valueOf((byte) 2)));
+        // demand is used up
+        assertEquals(2, upstream.nRequested);
+        assertEquals(2, downstream.lImages.size());
+        assertEquals(Byte.valueOf((byte) 3), downstream.lImages.get(1).getData()[0]);
+        processor.onComplete();
+        assertTrue(downstream.bComplete);
+        assertNull(downstream.err);
+    }
+
+    @Test
+    public void testStageError() {
+        final StageProcessor processor = new StageProcessor(new FailingStage());
+        final Upstream upstream = new Upstream();
+        final Downstream downstream = new Downstream();
+        processor.onSubscribe(upstream);
+        processor.subscribe(downstream);
+        downstream.subscription.request(1);
+        processor.onNext(new Gray8Image<>(1, 1));
+        assertTrue(downstream.err instanceof ImageError);
+        assertTrue(upstream.bCancelled);
+        assertFalse(downstream.bComplete);
+    }
+
+    @Test
+    public void testCancel() {
+        final StageProcessor processor = new StageProcessor(new SequenceTest.AddStage(1));
+        final Upstream upstream = new Upstream();
+        final Downstream downstream = new Downstream();
+        processor.onSubscribe(upstream);
+        processor.subscribe(downstream);
+        downstream.subscription.cancel();
+        assertTrue(upstream.bCancelled);
+        processor.onNext(new Gray8Image<>(1, 1));
+        assertTrue(downstream.lImages.isEmpty());
+    }
+
+    @Test
+    public void testSecondSubscriber() {
+        final StageProcessor processor = new StageProcessor(new SequenceTest.AddStage(1));
+        processor.subscribe(new Downstream());
+        final Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        assertTrue(downstream.err instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testBadRequest() {
+        final StageProcessor processor = new StageProcessor(new SequenceTest.AddStage(1));
+        final Upstream upstream = new Upstream();
+        final Downstream downstream = new Downstream();
+        processor.onSubscribe(upstream);
+        processor.subscribe(downstream);
+        downstream.subscription.request(0);
+        assertTrue(downstream.err instanceof IllegalArgumentException);
+        assertTrue(upstream.bCancelled);
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class StageTimeTrackerTest {
+
+    @Test
+    public void testRecord() {
+        final StageTimeTracker tracker = new StageTimeTracker();
+        for (int i = 1; i <= 100; i++) {
+            tracker.record("task", i * 1000L, 0);
+        }
+        final StageTimeTracker.Stats stats = tracker.getStats("task");
+        assertEquals("task", stats.getName());
+        assertEquals(100, stats.getCount());
+        assertEquals(5050000L, stats.getTotal());
+        assertEquals(100000L, stats.getMax());
+        // percentiles are bucket upper bounds, within one part in eight
+        assertTrue(stats.getP50() >= 50000L);
+        assertTrue(stats.getP50() <= 50000L + (50000L / 8));
+        assertTrue(stats.getP99() >= 99000L);
+        assertTrue(stats.getP99() <= stats.getMax());
+        assertEquals(stats.getMax(), stats.getPercentile(100));
+        assertNull(tracker.getStats("other"));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        final StageTimeTracker tracker = new StageTimeTracker();
+        for (int i = 0; i < 10; i++) {
+            tracker.record("task", i, 0);
+        }
+        assertEquals(4, tracker.getStats("task").getP50());
+        assertEquals(9, tracker.getStats("task").getP99());
+    }
+
+    @Test
+    public void testPush() throws ImageError {
+        final StageTimeTracker tracker = new StageTimeTracker();
+        final SequenceTest.AddStage stage = new SequenceTest.AddStage(1);
+        tracker.push(stage, new Gray8Image<>(2, 2, Byte.valueOf((byte) 0)));
+        tracker.push(stage, new Gray8Image<>(2, 2, Byte.valueOf((byte) 0)));
+        final StageTimeTracker.Stats stats = tracker.getStats(StageTimeTracker.getName(stage));
+        assertEquals("AddStage", stats.getName());
+        assertEquals(2, stats.getCount());
+        assertFalse(stage.isEmpty());
+    }
+
+    @Test
+    public void testStatsOrderAndReset() {
+        final StageTimeTracker tracker = new StageTimeTracker();
+        tracker.record("fast", 10, 0);
+        tracker.record("slow", 1000, 0);
+        final List<StageTimeTracker.Stats> lStats = tracker.getStats();
+        assertEquals(2, lStats.size());
+        // by decreasing total time
+        assertEquals("slow", lStats.get(0).getName());
+        tracker.reset();
+        assertTrue(tracker.getStats().isEmpty());
+    }
+
+    @Test
+    public void testStartEndTask() {
+        final StageTimeTracker tracker = new StageTimeTracker();
+        tracker.startTask("task");
+        tracker.endTask("task");
+        assertEquals(1, tracker.getStats("task").getCount());
+        // ending a task that was not started records nothing
+        tracker.endTask("other");
+        assertNull(tracker.getStats("other"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ThreadLocalStageTest {
+
+    private static ThreadLocalStage create(final AtomicInteger nCreated) {
+        return new ThreadLocalStage(new PipelineExecutor.Factory() {
+            @Override
+            public PipelineStage create() {
+                nCreated.incrementAndGet();
+                return new SequenceTest.AddStage(1);
+            }
+        });
+    }
+
+    @Test
+    public void testEachThreadHasItsOwnPipeline() throws InterruptedException {
+        final AtomicInteger nCreated = new AtomicInteger();
+        final ThreadLocalStage stage = ThreadLocalStageTest.create(nCreated);
+        // both threads push before either reads its output, so a shared
+        // pipeline would hand one of them the other's result
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final Thread[] rThreads = new Thread[2];
+        final AtomicReference<Throwable> refError = new AtomicReference<>();
+        final Byte[] rbResults = new Byte[2];
+        for (int i = 0; i < rThreads.length; i++) {
+            final int nThread = i;
+            rThreads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        stage.push(new Gray8Image<>(1, 1, Byte.valueOf((byte) (10 * nThread))));
+                        barrier.await(10, TimeUnit.SECONDS);
+                        rbResults[nThread] = (Byte) stage.getFront().getData()[0];
+                        assertTrue(stage.isEmpty());
+                    } catch (final Throwable t) {
+                        refError.set(t);
+                    }
+                }
+            };
+            rThreads[i].start();
+        }
+        for (final Thread thread : rThreads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        assertNull(refError.get());
+        assertEquals(Byte.valueOf((byte) 1), rbResults[0]);
+        assertEquals(Byte.valueOf((byte) 11), rbResults[1]);
+        assertEquals(2, nCreated.get());
+        // this thread has not pushed, so it has no pipeline
+        assertTrue(stage.isEmpty());
+    }
+
+    @Test
+    public void testRemove() throws ImageError {
+        final AtomicInteger nCreated = new AtomicInteger();
+        final ThreadLocalStage stage = ThreadLocalStageTest.create(nCreated);
+        final PipelineStage first = stage.getStage();
+        assertSame(first, stage.getStage());
+        stage.remove();
+        assertTrue(first != stage.getStage());
+        assertEquals(2, nCreated.get());
+    }
+
+    @Test(expected = ImageError.class)
+    public void testNoPipelineYet() throws ImageError {
+        ThreadLocalStageTest.create(new AtomicInteger()).getFront();
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.ojil.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TypedSequenceTest {
+    private static final ImageSpec GRAY_3X2 = new ImageSpec(Gray8Image.class, 3, 2);
+
+    @Test
+    public void testOutputSpec() throws ImageError {
+        final TypedSequence seq = new TypedSequence(TypedSequenceTest.GRAY_3X2);
+        assertEquals(TypedSequenceTest.GRAY_3X2, seq.getOutputSpec());
+        seq.add(new CompiledSequenceTest.AddBufferedStage(1));
+        assertEquals(TypedSequenceTest.GRAY_3X2, seq.getInputSpec());
+        assertEquals(TypedSequenceTest.GRAY_3X2, seq.getOutputSpec());
+    }
+
+    @Test(expected = ImageError.class)
+    public void testAddChecksType() throws ImageError {
+        new TypedSequence(new ImageSpec(RgbImage.class, 3, 2)).add(new CompiledSequenceTest.AddBufferedStage(1));
+    }
+
+    @Test
+    public void testApply() throws ImageError {
+        final TypedSequence seq = new TypedSequence(TypedSequenceTest.GRAY_3X2).add(new CompiledSequenceTest.AddBufferedStage(1)).add(new CompiledSequenceTest.AddBufferedStage(2));
+        final Image<?, ?> image1 = seq.apply(new Gray8Image<>(3, 2, Byte.valueOf((byte) 1)));
+        final Image<?, ?> image2 = seq.apply(new Gray8Image<>(3, 2, Byte.valueOf((byte) 2)));
+        // each call gets its own output
+        assertNotSame(image1, image2);
+        for (final Object b : image1.getData()) {
+            assertEquals(Byte.valueOf((byte) 4), b);
+        }
+        for (final Object b : image2.getData()) {
+            assertEquals(Byte.valueOf((byte) 5), b);
+        }
+        assertTrue(seq.isEmpty());
+        seq.push(new Gray8Image<>(3, 2, Byte.valueOf((byte) 0)));
+        assertEquals(Byte.valueOf((byte) 3), seq.getFront().getData()[0]);
+    }
+
+    @Test
+    public void testCompileMatchesApply() throws ImageError {
+        final TypedSequence seq = new TypedSequence(TypedSequenceTest.GRAY_3X2);
+        for (int i = 0; i < 5; i++) {
+            seq.add(new CompiledSequenceTest.AddBufferedStage(i));
+        }
+        final Byte[] rb = { 0, 10, 20, 30, 40, 50 };
+        final CompiledSequence compiled = seq.compile();
+        assertEquals(2, compiled.getBufferCount());
+        compiled.push(new Gray8Image<>(3, 2, rb));
+        assertArrayEquals(seq.apply(new Gray8Image<>(3, 2, rb)).getData(), compiled.getFront().getData());
+    }
+
+    @Test(expected = ImageError.class)
+    public void testEmptyApply() throws ImageError {
+        new TypedSequence(TypedSequenceTest.GRAY_3X2).apply(new Gray8Image<>(3, 2));
+    }
+
+    @Test(expected = ImageError.class)
+    public void testWrongInput() throws ImageError {
+        new TypedSequence(TypedSequenceTest.GRAY_3X2).add(new CompiledSequenceTest.AddBufferedStage(1)).apply(new Gray8Image<>(2, 3));
+    }
+}